@@ -0,0 +1,190 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.graphics.SurfaceTexture;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.Surface;
+import android.view.SurfaceHolder;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 系统播放器核心测试，使用生成的 WAV 文件与 SurfaceTexture 播放界面，在设备上执行
+ */
+@RunWith(AndroidJUnit4.class)
+public class BLVideoCoreTest {
+
+    private static final long TIMEOUT_MS = 10_000L;
+
+    private File directory;
+    private SurfaceTexture surfaceTexture;
+    private Surface surface;
+    private BLVideoCore core;
+
+    @Before
+    public void setUp() throws Exception {
+        final Context context = InstrumentationRegistry.getTargetContext();
+        directory = new File(context.getCacheDir(), "BLVideoCoreTest");
+        assertTrue(directory.isDirectory() || directory.mkdirs());
+        surfaceTexture = new SurfaceTexture(0);
+        surface = new Surface(surfaceTexture);
+        core = new BLVideoCore(context);
+        core.setDisplayObject(new TextureHolder(surface));
+    }
+
+    @After
+    public void tearDown() {
+        core.release();
+        surface.release();
+        surfaceTexture.release();
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void prepare_succeedsAfterPlayerError() throws Exception {
+        final File broken = new File(directory, "broken.mp4");
+        writeBytes(broken, randomBytes(4096));
+        final File valid = new File(directory, "valid.wav");
+        writeWav(valid, 8000, 4000);
+
+        final PrepareHandle failed = core.prepareAsync(broken.getPath(), false, TIMEOUT_MS);
+        assertEquals(PrepareHandle.State.FAILED, failed.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertEquals(Status.EMPTY, core.currentStatus());
+
+        //出错的播放器对象已回收，新的准备使用重置后的对象
+        final PrepareHandle ready = core.prepareAsync(valid.getPath(), false, TIMEOUT_MS);
+        assertEquals(PrepareHandle.State.READY, ready.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    }
+
+    private static byte[] randomBytes(int length) {
+        final byte[] data = new byte[length];
+        new Random(1L).nextBytes(data);
+        return data;
+    }
+
+    private static void writeBytes(File file, byte[] data) throws IOException {
+        final FileOutputStream outputStream = new FileOutputStream(file);
+        try {
+            outputStream.write(data);
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    /**
+     * 写入单声道 16 位静音 WAV 文件
+     */
+    private static void writeWav(File file, int sampleRate, int frames) throws IOException {
+        final int dataLength = frames * 2;
+        final DataOutputStream output = new DataOutputStream(new FileOutputStream(file));
+        try {
+            output.writeBytes("RIFF");
+            output.writeInt(Integer.reverseBytes(36 + dataLength));
+            output.writeBytes("WAVEfmt ");
+            output.writeInt(Integer.reverseBytes(16));
+            output.writeShort(Short.reverseBytes((short) 1));
+            output.writeShort(Short.reverseBytes((short) 1));
+            output.writeInt(Integer.reverseBytes(sampleRate));
+            output.writeInt(Integer.reverseBytes(sampleRate * 2));
+            output.writeShort(Short.reverseBytes((short) 2));
+            output.writeShort(Short.reverseBytes((short) 16));
+            output.writeBytes("data");
+            output.writeInt(Integer.reverseBytes(dataLength));
+            output.write(new byte[dataLength]);
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * 使用 SurfaceTexture 的播放界面，不需要界面布局
+     */
+    private static final class TextureHolder implements SurfaceHolder {
+
+        private final Surface surface;
+
+        TextureHolder(Surface surface) {
+            this.surface = surface;
+        }
+
+        @Override
+        public Surface getSurface() {
+            return surface;
+        }
+
+        @Override
+        public void addCallback(Callback callback) {
+        }
+
+        @Override
+        public void removeCallback(Callback callback) {
+        }
+
+        @Override
+        public boolean isCreating() {
+            return false;
+        }
+
+        @Override
+        public void setType(int type) {
+        }
+
+        @Override
+        public void setFixedSize(int width, int height) {
+        }
+
+        @Override
+        public void setSizeFromLayout() {
+        }
+
+        @Override
+        public void setFormat(int format) {
+        }
+
+        @Override
+        public void setKeepScreenOn(boolean screenOn) {
+        }
+
+        @Override
+        public Canvas lockCanvas() {
+            return null;
+        }
+
+        @Override
+        public Canvas lockCanvas(Rect dirty) {
+            return null;
+        }
+
+        @Override
+        public void unlockCanvasAndPost(Canvas canvas) {
+        }
+
+        @Override
+        public Rect getSurfaceFrame() {
+            return new Rect();
+        }
+
+    }
+
+}
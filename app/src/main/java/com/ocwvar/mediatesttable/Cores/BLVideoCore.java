@@ -1,7 +1,10 @@
 package com.ocwvar.mediatesttable.Cores;
 
 import android.content.Context;
+import android.media.MediaPlayer;
 import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v4.content.FileProvider;
@@ -21,65 +24,341 @@ import tv.danmaku.ijk.media.player.IjkMediaPlayer;
  * Created by OCWVAR
  * On 17-7-5 下午4:30
  * File Location com.ocwvar.mediatesttable.Cores
- * This file use to :
+ * This file use to :   基于 IMediaPlayer 的视频核心，支持系统 MediaPlayer 与 IjkMediaPlayer 两种引擎
+ *
+ * 播放器对象在核心自己的播放器线程中创建，公开方法把命令加入 CommandQueue 后马上返回，命令与播放器回调都在播放器线程中执行
+ * 播放器的 prepare / stop / release 等调用会阻塞数十毫秒，不会再影响主线程
  */
 public class BLVideoCore implements IVideoCore {
 
+    //播放界面销毁时等待释放视频资源的最长时间，单位：毫秒
+    private static final long SURFACE_RELEASE_TIMEOUT_MS = 500L;
+
     private BLCallbacks blCallbacks = null;
     private DisplayCallbacks displayCallbacks = null;
-    private AndroidMediaPlayer videoPlayer = null;
+    private SurfaceHolder displayHolder = null;
+    private volatile IMediaPlayer videoPlayer = null;
     private Context appContext = null;
+    private MediaPlayerPool playerPool = null;
+    private volatile MediaDiskCache mediaCache = null;
+    private volatile MediaProbe mediaProbe = null;
 
-    //当前视频资源长度
-    private long videoDuration = -1L;
+    //播放器当前读取的资源路径（命中时为缓存文件），没有时为NULL，只在播放器线程中读写
+    private String sourcePath = null;
+    private VideoEngine engine = VideoEngine.SYSTEM;
+
+    //播放器线程，播放器对象在此线程中创建，播放器回调与队列中的命令都在此线程中执行
+    private final Handler playerHandler = CoreThreads.newPlayerHandler("BLVideoCore");
+
+    //命令队列，公开方法把命令加入队列后马上返回，不阻塞调用线程
+    private final CommandQueue commandQueue = new CommandQueue(CoreThreads.handlerExecutor(playerHandler));
 
-    //当前状态
-    private Status currentStatus = Status.EMPTY;
+    //尚未完成的异步准备，只在播放器线程中读写
+    private PrepareHandle pendingPrepare = null;
+
+    //性能统计
+    private final CoreMetrics metrics = new CoreMetrics();
+
+    //拖动进度条时的跳转控制，只在播放器线程中使用
+    private final ScrubSeeker scrubSeeker = new ScrubSeeker(metrics, new ScrubSeeker.Target() {
+        @Override
+        public void seekTo(long ms, boolean isExact) {
+            seekPlayer(ms, isExact);
+        }
+    });
 
-    //播放状态是否已准备好
-    private boolean isReady = false;
+    //当前视频资源长度
+    private volatile long videoDuration = -1L;
 
-    //是否准备好就执行播放
-    private boolean isPlayWhenReady = false;
+    //当前状态以及 准备好、准备好就执行播放 标记
+    private final PlayerStateMachine stateMachine = new PlayerStateMachine();
 
     public BLVideoCore(Context context) {
+        this(context, VideoEngine.SYSTEM);
+    }
+
+    /**
+     * @param context Context
+     * @param engine  使用的引擎，只支持 VideoEngine.SYSTEM 与 VideoEngine.IJK
+     */
+    public BLVideoCore(Context context, @NonNull VideoEngine engine) {
+        this(context, engine, MediaPlayerPool.DEFAULT_SIZE, MediaPlayerPool.DEFAULT_IDLE_MILLIS);
+    }
+
+    /**
+     * @param context        Context
+     * @param poolSize       播放器对象池大小，为 0 时不复用播放器对象
+     * @param poolIdleMillis 播放器对象最长闲置时间，单位：毫秒
+     */
+    public BLVideoCore(Context context, int poolSize, long poolIdleMillis) {
+        this(context, VideoEngine.SYSTEM, poolSize, poolIdleMillis);
+    }
+
+    /**
+     * @param context        Context
+     * @param engine         使用的引擎，只支持 VideoEngine.SYSTEM 与 VideoEngine.IJK
+     * @param poolSize       播放器对象池大小，为 0 时不复用播放器对象
+     * @param poolIdleMillis 播放器对象最长闲置时间，单位：毫秒
+     */
+    public BLVideoCore(Context context, @NonNull VideoEngine engine, int poolSize, long poolIdleMillis) {
+        if (engine == VideoEngine.EXO) {
+            throw new IllegalArgumentException("VideoEngine.EXO is provided by ExoVideoCore");
+        }
         this.appContext = context.getApplicationContext();
+        this.engine = engine;
         this.blCallbacks = new BLCallbacks();
         this.displayCallbacks = new DisplayCallbacks();
+        this.playerPool = new MediaPlayerPool(new MediaPlayerPool.Factory() {
+            @NonNull
+            @Override
+            public IMediaPlayer create() {
+                final IMediaPlayer videoPlayer;
+                if (BLVideoCore.this.engine == VideoEngine.IJK) {
+                    videoPlayer = new IjkMediaPlayer(blCallbacks);
+                } else {
+                    videoPlayer = new AndroidMediaPlayer();
+                }
+                videoPlayer.setOnPreparedListener(blCallbacks);
+                videoPlayer.setOnErrorListener(blCallbacks);
+                videoPlayer.setOnCompletionListener(blCallbacks);
+                videoPlayer.setOnInfoListener(blCallbacks);
+                videoPlayer.setOnSeekCompleteListener(blCallbacks);
+                return videoPlayer;
+            }
+        }, poolSize, poolIdleMillis, playerHandler.getLooper());
     }
 
     /**
-     * 生成播放器对象
+     * 获取播放器对象，优先复用对象池中的闲置对象，只在播放器线程中调用，播放器回调会在此线程中执行
      *
      * @return 播放器对象，在播放界面无效时返回NULL
      */
     private
     @Nullable
-    AndroidMediaPlayer init() {
+    IMediaPlayer init() {
         if (this.displayCallbacks.surfaceHolder != null) {
             //只有在播放界面存在且有效的时候才能进行对象生成
-            final AndroidMediaPlayer videoPlayer = new AndroidMediaPlayer();
-            videoPlayer.setOnPreparedListener(this.blCallbacks);
-            videoPlayer.setOnErrorListener(this.blCallbacks);
-            videoPlayer.setOnCompletionListener(this.blCallbacks);
+            final IMediaPlayer videoPlayer = this.playerPool.acquire();
+            if (videoPlayer instanceof IjkMediaPlayer) {
+                //播放器重置后参数也会被清除，每次使用前都需要重新设置
+                applyIjkOptions((IjkMediaPlayer) videoPlayer);
+            }
             videoPlayer.setDisplay(this.displayCallbacks.surfaceHolder);
             return videoPlayer;
         }
         return null;
     }
 
+    /**
+     * 设置 IjkMediaPlayer 的解码参数：使用 MediaCodec 硬件解码，解码速度跟不上时允许丢帧
+     *
+     * @param ijkMediaPlayer 播放器对象
+     */
+    private void applyIjkOptions(@NonNull IjkMediaPlayer ijkMediaPlayer) {
+        ijkMediaPlayer.setOption(IjkMediaPlayer.OPT_CATEGORY_PLAYER, "mediacodec", 1L);
+        ijkMediaPlayer.setOption(IjkMediaPlayer.OPT_CATEGORY_PLAYER, "mediacodec-auto-rotate", 1L);
+        ijkMediaPlayer.setOption(IjkMediaPlayer.OPT_CATEGORY_PLAYER, "mediacodec-handle-resolution-change", 1L);
+        ijkMediaPlayer.setOption(IjkMediaPlayer.OPT_CATEGORY_PLAYER, "framedrop", 1L);
+        ijkMediaPlayer.setOption(IjkMediaPlayer.OPT_CATEGORY_PLAYER, "start-on-prepared", 0L);
+        ijkMediaPlayer.setOption(IjkMediaPlayer.OPT_CATEGORY_CODEC, "skip_loop_filter", 48L);
+    }
+
     /**
      * 准备视频
      *
      * @param filePath        视频路径
      * @param isPlayWhenReady 视频准备好后马上进行播放，此标记在成功播放后将重置为：False
-     * @return 执行结果
+     * @return 命令是否已加入队列
      */
     @Override
-    public boolean prepare(@NonNull String filePath, boolean isPlayWhenReady) {
-        if (this.currentStatus != Status.EMPTY) {
+    public boolean prepare(@NonNull final String filePath, final boolean isPlayWhenReady) {
+        return this.commandQueue.post(StatusTransitions.CMD_PREPARE, new Runnable() {
+            @Override
+            public void run() {
+                cancelPendingPrepare();
+                metrics.prepareStarted();
+                final long durationMs = probedDuration(filePath);
+                if (!prepareSource(resolvePath(filePath), isPlayWhenReady, durationMs)) {
+                    metrics.prepareFailed();
+                }
+            }
+        });
+    }
+
+    /**
+     * 异步准备视频
+     *
+     * @param filePath        视频路径
+     * @param isPlayWhenReady 视频准备好后马上进行播放
+     * @param timeoutMillis   超时时间，单位：毫秒，小于等于 0 时不设置超时
+     * @return 准备结果
+     */
+    @NonNull
+    @Override
+    public PrepareHandle prepareAsync(@NonNull final String filePath, final boolean isPlayWhenReady, long timeoutMillis) {
+        final PrepareHandle handle = new PrepareHandle(filePath);
+        handle.setAbortAction(new Runnable() {
+            @Override
+            public void run() {
+                commandQueue.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (pendingPrepare == handle) {
+                            pendingPrepare = null;
+                            metrics.stopped();
+                            abortPrepare();
+                        }
+                    }
+                });
+            }
+        });
+
+        final boolean isPosted = this.commandQueue.post(StatusTransitions.CMD_PREPARE, new Runnable() {
+            @Override
+            public void run() {
+                cancelPendingPrepare();
+                if (handle.isDone()) {
+                    //在命令执行前已被取消
+                    return;
+                }
+                pendingPrepare = handle;
+                metrics.prepareStarted();
+
+                CoreThreads.worker().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (handle.isDone()) {
+                            return;
+                        }
+
+                        //缓存查找与索引查找在工作线程中进行
+                        final long durationMs = probedDuration(filePath);
+                        final String sourcePath = resolvePath(filePath);
+                        final boolean isPosted = commandQueue.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (pendingPrepare != handle) {
+                                    releaseSourcePath(sourcePath);
+                                } else if (!prepareSource(sourcePath, isPlayWhenReady, durationMs)) {
+                                    pendingPrepare = null;
+                                    metrics.prepareFailed();
+                                    handle.setFailed(new IllegalStateException("无法准备视频：" + filePath));
+                                }
+                            }
+                        });
+                        if (!isPosted) {
+                            releaseSourcePath(sourcePath);
+                        }
+                    }
+                });
+            }
+        });
+        if (!isPosted) {
+            handle.setFailed(new IllegalStateException("视频核心已释放"));
+            return handle;
+        }
+        handle.armTimeout(timeoutMillis, CoreThreads.worker());
+        return handle;
+    }
+
+    /**
+     * 获取视频实际读取的路径，不再使用时需要交还给磁盘缓存
+     *
+     * @param filePath 视频路径
+     * @return 命中缓存时返回缓存文件路径，否则返回原始路径
+     */
+    @NonNull
+    private String resolvePath(@NonNull String filePath) {
+        final MediaDiskCache mediaCache = this.mediaCache;
+        return (mediaCache == null) ? filePath : mediaCache.resolvePath(filePath);
+    }
+
+    /**
+     * 将资源路径交还给磁盘缓存，缓存文件可以被删除，未命中的原始资源开始写入缓存
+     *
+     * @param sourcePath resolvePath() 返回的路径
+     */
+    private void releaseSourcePath(@Nullable String sourcePath) {
+        final MediaDiskCache mediaCache = this.mediaCache;
+        if (sourcePath != null && mediaCache != null) {
+            mediaCache.releasePath(sourcePath);
+        }
+    }
+
+    /**
+     * 交还播放器当前读取的资源路径，播放器需要已经停止或回收
+     */
+    private void releaseSourcePath() {
+        final String sourcePath = this.sourcePath;
+        this.sourcePath = null;
+        releaseSourcePath(sourcePath);
+    }
+
+    /**
+     * @param filePath 视频路径
+     * @return 媒体信息索引中记录的长度，没有记录时返回 -1 并在后台探测
+     */
+    private long probedDuration(@NonNull String filePath) {
+        final MediaProbe mediaProbe = this.mediaProbe;
+        return (mediaProbe == null) ? -1L : mediaProbe.durationMs(filePath);
+    }
+
+    /**
+     * 取消尚未完成的异步准备，准备中的播放器对象不能再设置数据源，需要先回收
+     */
+    private void cancelPendingPrepare() {
+        final PrepareHandle handle = this.pendingPrepare;
+        this.pendingPrepare = null;
+        if (handle != null && handle.cancel()) {
+            abortPrepare();
+        }
+    }
+
+    /**
+     * 放弃准备中或出错的视频，此时状态为 EMPTY，releaseVideo() 不会处理，直接回收播放器对象
+     */
+    private void abortPrepare() {
+        if (this.videoPlayer != null) {
+            this.playerPool.recycle(this.videoPlayer);
+            this.videoPlayer = null;
+        }
+        releaseSourcePath();
+        this.scrubSeeker.reset();
+        this.stateMachine.reset();
+    }
+
+    /**
+     * 准备视频，成功后记录资源路径，失败时直接交还给磁盘缓存
+     *
+     * @param sourcePath      视频路径，resolvePath() 返回的路径
+     * @param isPlayWhenReady 视频准备好后马上进行播放
+     * @param durationMs      媒体信息索引中记录的长度，准备完成前使用，没有记录时为 -1
+     * @return 执行结果
+     */
+    private boolean prepareSource(@NonNull String sourcePath, boolean isPlayWhenReady, long durationMs) {
+        final boolean isOpened = openSource(sourcePath, isPlayWhenReady, durationMs);
+        if (isOpened) {
+            releaseSourcePath();
+            this.sourcePath = sourcePath;
+        } else {
+            releaseSourcePath(sourcePath);
+        }
+        return isOpened;
+    }
+
+    /**
+     * 将资源交给播放器并开始异步准备
+     *
+     * @param sourcePath      视频路径，已经过缓存查找
+     * @param isPlayWhenReady 视频准备好后马上进行播放
+     * @param durationMs      媒体信息索引中记录的长度，准备完成前使用，没有记录时为 -1
+     * @return 执行结果
+     */
+    private boolean openSource(@NonNull String sourcePath, boolean isPlayWhenReady, long durationMs) {
+        this.scrubSeeker.reset();
+        if (this.stateMachine.status() != Status.EMPTY) {
             //如果当前已经有视频资源，则进行释放
-            releaseVideo();
+            doReleaseVideo();
         }
 
         if (this.videoPlayer == null) {
@@ -91,14 +370,22 @@ public class BLVideoCore implements IVideoCore {
             //同时满足条件：
             // 1.有有效的播放器对象
             // 2.当前没有加载数据
-            final boolean isReady2Prepare = (this.currentStatus == Status.EMPTY && this.videoPlayer != null);
+            final boolean isReady2Prepare = (this.stateMachine.status() == Status.EMPTY && this.videoPlayer != null);
 
             if (isReady2Prepare) {
                 //重置状态和标记
-                this.isReady = false;
-                this.isPlayWhenReady = isPlayWhenReady;
+                this.stateMachine.setReady(false);
+                this.stateMachine.setPlayWhenReady(isPlayWhenReady);
+                this.videoDuration = durationMs;
+                if (new File(sourcePath).isFile()) {
+                    //本地文件直接交给播放器读取，不经过 ContentResolver
+                    this.videoPlayer.setDataSource(sourcePath);
+                    this.videoPlayer.prepareAsync();
+                    return true;
+                }
+
                 //生成数据源对象
-                final Uri sourceUri = file2Uri(filePath);
+                final Uri sourceUri = file2Uri(sourcePath);
 
                 if (sourceUri != null && sourceUri != Uri.EMPTY) {
                     //数据源有效，则进行数据加载
@@ -110,12 +397,32 @@ public class BLVideoCore implements IVideoCore {
                 return false;
             }
 
-        } catch (IOException e) {
+        } catch (IOException | IllegalStateException | IllegalArgumentException e) {
             return false;
         }
         return false;
     }
 
+    /**
+     * 设置媒体资源磁盘缓存
+     *
+     * @param mediaCache 磁盘缓存，为NULL时不使用缓存
+     */
+    @Override
+    public void setMediaCache(@Nullable MediaDiskCache mediaCache) {
+        this.mediaCache = mediaCache;
+    }
+
+    /**
+     * 设置媒体信息索引
+     *
+     * @param mediaProbe 媒体信息索引，为NULL时不使用
+     */
+    @Override
+    public void setMediaProbe(@Nullable MediaProbe mediaProbe) {
+        this.mediaProbe = mediaProbe;
+    }
+
     /**
      * 设置播放显示位置
      *
@@ -124,7 +431,12 @@ public class BLVideoCore implements IVideoCore {
     @Override
     public void setDisplayObject(SurfaceHolder surfaceHolder) {
         if (surfaceHolder != null) {
+            this.displayHolder = surfaceHolder;
             surfaceHolder.addCallback(this.displayCallbacks);
+            if (surfaceHolder.getSurface() != null && surfaceHolder.getSurface().isValid()) {
+                //播放界面已经创建，不会再收到 surfaceCreated() 回调
+                this.displayCallbacks.surfaceHolder = surfaceHolder;
+            }
         }
     }
 
@@ -132,7 +444,7 @@ public class BLVideoCore implements IVideoCore {
      * 准备视频
      *
      * @param filePath 视频路径
-     * @return 执行结果
+     * @return 命令是否已加入队列
      */
     @Override
     public boolean prepare(@NonNull String filePath) {
@@ -143,7 +455,7 @@ public class BLVideoCore implements IVideoCore {
      * 直接准备并播放视频
      *
      * @param filePath 视频路径
-     * @return 执行结果
+     * @return 命令是否已加入队列
      */
     @Override
     public boolean play(@NonNull String filePath) {
@@ -151,39 +463,46 @@ public class BLVideoCore implements IVideoCore {
     }
 
     /**
-     * 播放已准备好的视频
+     * 播放已准备好的视频，命令在播放器线程中按状态机的规则执行，被拒绝的命令记录在 statusTrace() 中
      *
-     * @return 执行结果
+     * @return 命令是否已加入队列
      */
     @Override
     public boolean play() {
+        return this.commandQueue.post(StatusTransitions.CMD_PLAY, new Runnable() {
+            @Override
+            public void run() {
+                doPlay();
+            }
+        });
+    }
+
+    private boolean doPlay() {
         if (this.videoPlayer == null) {
             //播放器对象未加载
             return false;
         }
 
+        //先原子地转换状态，同时调用时只有一个能开始播放
+        final Status status = this.stateMachine.command(StatusTransitions.CMD_PLAY, Status.PLAYING);
+        if (status == null) {
+            return false;
+        }
+
         try {
-            switch (this.currentStatus) {
-                case PAUSED:
-                    //暂停状态则直接播放
-                    this.videoPlayer.start();
-                    this.currentStatus = Status.PLAYING;
-                    return true;
-                case PLAYING:
-                    return false;
-                case STOPPED:
-                    //停止状态需要先重置开始位置再进行播放
-                    this.videoPlayer.seekTo(0L);
-                    this.videoPlayer.start();
-                    this.currentStatus = Status.PLAYING;
-                    return true;
-                case EMPTY:
-                    return false;
+            if (status == Status.STOPPED) {
+                //停止状态需要先重置开始位置再进行播放
+                this.videoPlayer.seekTo(0L);
+            } else {
+                this.metrics.playRequested();
             }
+            this.videoPlayer.start();
+            return true;
         } catch (Exception e) {
+            //播放器没有开始播放，恢复原来的状态
+            this.stateMachine.observe(status);
             return false;
         }
-        return false;
     }
 
     /**
@@ -191,13 +510,13 @@ public class BLVideoCore implements IVideoCore {
      */
     @Override
     public boolean isReady() {
-        return isReady;
+        return this.stateMachine.isReady();
     }
 
     /**
      * 恢复播放
      *
-     * @return 执行结果
+     * @return 命令是否已加入队列
      */
     @Override
     public boolean resume() {
@@ -207,93 +526,237 @@ public class BLVideoCore implements IVideoCore {
     /**
      * 停止播放
      *
-     * @return 执行结果
+     * @return 命令是否已加入队列
      */
     @Override
     public boolean pause() {
-        if (this.videoPlayer != null && this.currentStatus == Status.PLAYING) {
-            try {
-                this.videoPlayer.pause();
-                this.currentStatus = Status.PAUSED;
-                return true;
-            } catch (IllegalStateException e) {
-                return false;
+        return this.commandQueue.post(StatusTransitions.CMD_PAUSE, new Runnable() {
+            @Override
+            public void run() {
+                doPause();
             }
+        });
+    }
+
+    private boolean doPause() {
+        if (this.videoPlayer == null) {
+            return false;
+        }
+
+        final Status status = this.stateMachine.command(StatusTransitions.CMD_PAUSE, Status.PAUSED);
+        if (status == null) {
+            return false;
+        }
+        try {
+            this.videoPlayer.pause();
+            return true;
+        } catch (IllegalStateException e) {
+            this.stateMachine.observe(status);
+            return false;
         }
-        return false;
     }
 
     /**
      * 停止播放并重置播放进度至开头 （00:00）
      *
-     * @return 执行结果
+     * @return 命令是否已加入队列
      */
     @Override
     public boolean stop() {
-        final boolean result = pause();
-        if (result) {
-            this.currentStatus = Status.STOPPED;
+        return this.commandQueue.post(StatusTransitions.CMD_STOP, new Runnable() {
+            @Override
+            public void run() {
+                doStop();
+            }
+        });
+    }
+
+    private boolean doStop() {
+        if (this.videoPlayer == null) {
+            return false;
+        }
+
+        final Status status = this.stateMachine.command(StatusTransitions.CMD_STOP, Status.STOPPED);
+        if (status == null) {
+            return false;
+        }
+        try {
+            if (status == Status.PLAYING) {
+                this.videoPlayer.pause();
+            }
+            return true;
+        } catch (IllegalStateException e) {
+            this.stateMachine.observe(status);
+            return false;
         }
-        return result;
     }
 
     /**
-     * 释放视频资源，调用此方法后播放器对象将变为NULL，需要重新调用 init() 获取对象，播放状态变为 Status.EMPTY
+     * 释放视频资源，调用此方法后播放器对象将变为NULL并放回对象池，需要重新调用 init() 获取对象，播放状态变为 Status.EMPTY
      *
-     * @return 执行结果
+     * @return 命令是否已加入队列
      */
     @Override
     public boolean releaseVideo() {
-        if (this.videoPlayer != null && this.currentStatus != Status.EMPTY) {
-            //只有在有资源加载的情况下才能进行资源释放
-            try {
-                if (this.currentStatus != Status.STOPPED) {
-                    //如果视频不是停止状态，则执行停止
-                    this.videoPlayer.stop();
-                }
-                this.videoPlayer.release();
-                this.videoPlayer = null;
-                this.currentStatus = Status.EMPTY;
-                return true;
-            } catch (IllegalStateException e) {
-                return false;
+        return this.commandQueue.post(StatusTransitions.CMD_RELEASE, new Runnable() {
+            @Override
+            public void run() {
+                doReleaseVideo();
             }
-        } else {
+        });
+    }
+
+    private boolean doReleaseVideo() {
+        if (this.videoPlayer == null) {
             return false;
         }
+
+        //只有在有资源加载的情况下才能进行资源释放
+        final Status status = this.stateMachine.command(StatusTransitions.CMD_RELEASE, Status.EMPTY);
+        if (status == null) {
+            return false;
+        }
+        try {
+            if (status != Status.STOPPED) {
+                //如果视频不是停止状态，则执行停止
+                this.videoPlayer.stop();
+            }
+            this.playerPool.recycle(this.videoPlayer);
+            this.videoPlayer = null;
+            releaseSourcePath();
+            this.scrubSeeker.reset();
+            this.stateMachine.reset();
+            return true;
+        } catch (IllegalStateException e) {
+            this.stateMachine.observe(status);
+            return false;
+        }
+    }
+
+    /**
+     * 释放视频资源以及对象池中所有闲置的播放器对象，在不再需要播放视频时调用
+     */
+    public void releasePlayerPool() {
+        this.commandQueue.post(StatusTransitions.CMD_RELEASE, new Runnable() {
+            @Override
+            public void run() {
+                doReleaseVideo();
+                playerPool.clear();
+            }
+        });
+    }
+
+    /**
+     * 释放视频资源以及播放器对象，在之前加入的命令执行完毕后释放，调用后此核心不能再使用
+     */
+    @Override
+    public void release() {
+        this.commandQueue.postLast(StatusTransitions.CMD_RELEASE, new Runnable() {
+            @Override
+            public void run() {
+                cancelPendingPrepare();
+                doReleaseVideo();
+                playerPool.clear();
+                //出错后状态已重置，doReleaseVideo() 不会交还资源路径
+                releaseSourcePath();
+                metrics.stopped();
+                playerHandler.getLooper().quit();
+            }
+        });
+        if (this.displayHolder != null) {
+            this.displayHolder.removeCallback(this.displayCallbacks);
+            this.displayHolder = null;
+        }
+    }
+
+    /**
+     * @return 播放器对象池，用于获取复用率等统计数据
+     */
+    @NonNull
+    public MediaPlayerPool playerPool() {
+        return this.playerPool;
     }
 
     /**
      * @param isLoop 是否循环播放
      */
     @Override
-    public void setLoop(boolean isLoop) {
-        if (this.videoPlayer != null) {
-            this.videoPlayer.setLooping(isLoop);
+    public void setLoop(final boolean isLoop) {
+        this.commandQueue.post(new Runnable() {
+            @Override
+            public void run() {
+                if (videoPlayer != null) {
+                    videoPlayer.setLooping(isLoop);
+                }
+            }
+        });
+    }
+
+    /**
+     * 定位音频位置，连续的跳转只执行最后一次
+     *
+     * @param ms 毫秒数
+     * @return 命令是否已加入队列，位置无效时返回 False
+     */
+    @Override
+    public boolean seek2(final long ms) {
+        if (ms < 0) {
+            return false;
         }
+        return this.commandQueue.post(StatusTransitions.CMD_SEEK, new Runnable() {
+            @Override
+            public void run() {
+                if (videoPlayer != null && stateMachine.status() != Status.STOPPED && stateMachine.command(StatusTransitions.CMD_SEEK) != null) {
+                    //视频状态OK
+                    if (ms <= videoDuration) {
+                        //跳转位置OK
+                        scrubSeeker.seekTo(ms);
+                    }
+                }
+            }
+        });
     }
 
     /**
-     * 定位音频位置
+     * 拖动进度条时定位视频位置，跳转到附近的关键帧，上一次跳转未完成时只保留最后一个位置，松开进度条时使用 seek2()
      *
      * @param ms 毫秒数
-     * @return 执行结果
+     * @return 命令是否已加入队列，位置无效时返回 False
      */
     @Override
-    public boolean seek2(long ms) {
-        if (this.videoPlayer != null && (this.currentStatus == Status.PAUSED || this.currentStatus == Status.PLAYING)) {
-            //视频状态OK
-            if (ms >= 0 && ms <= this.videoDuration) {
-                //跳转位置OK
-                this.videoPlayer.seekTo(ms);
-                return true;
+    public boolean scrubTo(final long ms) {
+        if (ms < 0) {
+            return false;
+        }
+        return this.commandQueue.post(StatusTransitions.CMD_SEEK, new Runnable() {
+            @Override
+            public void run() {
+                if (videoPlayer != null && stateMachine.status() != Status.STOPPED && ms <= videoDuration && stateMachine.command(StatusTransitions.CMD_SEEK) != null) {
+                    scrubSeeker.scrubTo(ms);
+                }
             }
+        });
+    }
+
+    /**
+     * 执行跳转，只在播放器线程中调用
+     * 系统播放器在 Android O 以上可以指定跳转方式：拖动时跳转到之前的关键帧，精确跳转时解码到指定位置
+     * 更低的版本与 IjkMediaPlayer 只有一种跳转方式（IjkMediaPlayer 未开启 enable-accurate-seek，跳转到关键帧）
+     *
+     * @param ms      跳转位置
+     * @param isExact 是否精确跳转
+     */
+    private void seekPlayer(long ms, boolean isExact) {
+        if (this.videoPlayer instanceof AndroidMediaPlayer && Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            final MediaPlayer mediaPlayer = ((AndroidMediaPlayer) this.videoPlayer).getInternalMediaPlayer();
+            mediaPlayer.seekTo(ms, isExact ? MediaPlayer.SEEK_CLOSEST : MediaPlayer.SEEK_PREVIOUS_SYNC);
+        } else {
+            this.videoPlayer.seekTo(ms);
         }
-        return false;
     }
 
     /**
-     * @return 视频长度，无效长度返回 -1
+     * @return 视频长度，准备完成前返回媒体信息索引中记录的长度，无效长度返回 -1
      */
     @Override
     public long videoDuration() {
@@ -305,9 +768,11 @@ public class BLVideoCore implements IVideoCore {
      */
     @Override
     public long currentPosition() {
-        if (this.videoPlayer != null && (this.currentStatus == Status.PLAYING || this.currentStatus == Status.PAUSED)) {
-            return this.videoPlayer.getCurrentPosition();
-        } else if (this.videoPlayer == null || this.currentStatus == Status.STOPPED) {
+        final Status status = this.stateMachine.status();
+        final IMediaPlayer videoPlayer = this.videoPlayer;
+        if (videoPlayer != null && (status == Status.PLAYING || status == Status.PAUSED)) {
+            return videoPlayer.getCurrentPosition();
+        } else if (videoPlayer == null || status == Status.STOPPED) {
             return 0L;
         }
         return -1;
@@ -319,11 +784,39 @@ public class BLVideoCore implements IVideoCore {
     @NonNull
     @Override
     public Status currentStatus() {
-        return this.currentStatus;
+        return this.stateMachine.status();
+    }
+
+    /**
+     * @return 最近的状态变化与被拒绝的命令，用于排查问题
+     */
+    @NonNull
+    public String statusTrace() {
+        return this.stateMachine.dumpTrace();
     }
 
     /**
-     * 将文件路径转换为Uri地址
+     * @return 当前使用的引擎
+     */
+    @NonNull
+    @Override
+    public VideoEngine engine() {
+        return this.engine;
+    }
+
+    /**
+     * 性能统计，此引擎没有解码器初始化与丢帧的回调，这两项不会有数据
+     *
+     * @return 性能统计
+     */
+    @NonNull
+    @Override
+    public CoreMetrics metrics() {
+        return this.metrics;
+    }
+
+    /**
+     * 将文件路径转换为Uri地址，带有协议的地址（rtmp://、http:// 等）直接解析
      *
      * @param filePath 文件路径
      * @return 文件地址Uri，若无法转换则返回NULL
@@ -336,28 +829,69 @@ public class BLVideoCore implements IVideoCore {
             return null;
         }
 
-        return FileProvider.getUriForFile(this.appContext, "FileProvider", new File(filePath));
+        final Uri uri = Uri.parse(filePath);
+        if (uri.getScheme() != null) {
+            return uri;
+        }
+        try {
+            return FileProvider.getUriForFile(this.appContext, "FileProvider", new File(filePath));
+        } catch (IllegalArgumentException e) {
+            //路径不在 FileProvider 配置的目录中
+            return null;
+        }
     }
 
     /**
      * 播放器状态回调接口处理类
      */
-    private class BLCallbacks implements IjkMediaPlayer.OnInfoListener, IjkMediaPlayer.OnErrorListener, IMediaPlayer.OnPreparedListener, IMediaPlayer.OnCompletionListener, IjkLibLoader {
+    private class BLCallbacks implements IjkMediaPlayer.OnInfoListener, IjkMediaPlayer.OnErrorListener, IMediaPlayer.OnPreparedListener, IMediaPlayer.OnCompletionListener, IMediaPlayer.OnSeekCompleteListener, IjkLibLoader {
 
         @Override
         public boolean onInfo(IMediaPlayer iMediaPlayer, int i, int i1) {
+            switch (i) {
+                case IMediaPlayer.MEDIA_INFO_VIDEO_RENDERING_START:
+                    //第一帧画面已显示
+                    metrics.firstFrameRendered();
+                    break;
+                case IMediaPlayer.MEDIA_INFO_BUFFERING_START:
+                    metrics.bufferingStarted();
+                    break;
+                case IMediaPlayer.MEDIA_INFO_BUFFERING_END:
+                    metrics.ready();
+                    break;
+            }
             return false;
         }
 
+        @Override
+        public void onSeekComplete(IMediaPlayer iMediaPlayer) {
+            metrics.ready();
+            scrubSeeker.seekCompleted();
+        }
+
         @Override
         public void onCompletion(IMediaPlayer iMediaPlayer) {
-            stop();
+            metrics.stopped();
+            scrubSeeker.reset();
+            doStop();
         }
 
         @Override
         public boolean onError(IMediaPlayer iMediaPlayer, int i, int i1) {
-            currentStatus = Status.EMPTY;
-            return false;
+            if (iMediaPlayer != videoPlayer) {
+                //已经回收的播放器对象
+                return true;
+            }
+            metrics.prepareFailed();
+            //出错的播放器对象不能再设置数据源，回收到对象池中重置，之后的准备使用新的对象
+            abortPrepare();
+            if (pendingPrepare != null) {
+                final PrepareHandle handle = pendingPrepare;
+                pendingPrepare = null;
+                handle.setFailed(new IOException("播放器错误：" + i + ", " + i1));
+            }
+            //已经处理，不再回调 onCompletion()
+            return true;
         }
 
         /**
@@ -367,31 +901,42 @@ public class BLVideoCore implements IVideoCore {
          */
         @Override
         public void onPrepared(IMediaPlayer iMediaPlayer) {
+            metrics.ready();
+
             //设置：状态 标记 数据
-            isReady = true;
-            currentStatus = Status.PAUSED;
+            stateMachine.setReady(true);
+            stateMachine.observe(Status.PAUSED);
             videoDuration = iMediaPlayer.getDuration();
 
-            if (isPlayWhenReady) {
+            if (pendingPrepare != null) {
+                //已准备好第一帧数据
+                final PrepareHandle handle = pendingPrepare;
+                pendingPrepare = null;
+                handle.setReady();
+            }
+
+            if (stateMachine.takePlayWhenReady()) {
                 //是否需要马上进行播放
-                isPlayWhenReady = false;
-                play();
+                doPlay();
+            } else {
+                //首帧在开始播放后才显示，不计入准备后等待的时间
+                metrics.firstFrameCancelled();
             }
         }
 
         @Override
         public void loadLibrary(String s) throws UnsatisfiedLinkError, SecurityException {
-
+            System.loadLibrary(s);
         }
 
     }
 
     /**
-     * 显示的Holder状态回调
+     * 显示的Holder状态回调，在主线程中执行
      */
     private class DisplayCallbacks implements SurfaceHolder.Callback {
 
-        private SurfaceHolder surfaceHolder = null;
+        private volatile SurfaceHolder surfaceHolder = null;
 
         @Override
         public void surfaceCreated(SurfaceHolder surfaceHolder) {
@@ -408,8 +953,9 @@ public class BLVideoCore implements IVideoCore {
 
         @Override
         public void surfaceDestroyed(SurfaceHolder surfaceHolder) {
-            //在播放界面被销毁的时候，直接释放视频资源
+            //在播放界面被销毁的时候，直接释放视频资源。播放界面在此方法返回后失效，需要等待播放器停止使用界面
             releaseVideo();
+            commandQueue.await(SURFACE_RELEASE_TIMEOUT_MS);
 
             this.surfaceHolder = null;
         }
@@ -0,0 +1,218 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-8-2 上午10:30
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   播放器命令队列
+ *
+ * 核心的公开方法只把命令加入队列后马上返回，命令按加入的顺序在 Executor（核心的播放器线程）中逐条执行
+ * 与 CoreEventDispatcher 相同，队列从空变为非空时向 Executor 提交一次处理任务，处理任务对象重复使用
+ * 尚未执行的命令会进行合并，只与队列末尾的命令比较，不会改变其它命令的顺序：
+ * 1.连续的跳转只执行最后一次
+ * 2.连续的播放与暂停只执行最后一条。例如播放后马上暂停：原来在播放时只执行暂停，原来已暂停时暂停命令被状态机拒绝，两者相互抵消
+ */
+final class CommandQueue implements Runnable {
+
+    /**
+     * 不参与合并的命令类型，参与合并的命令使用 StatusTransitions.CMD_PLAY 等命令编号
+     */
+    static final int TYPE_OTHER = -1;
+
+    private final Executor executor;
+
+    //以下字段只在持有 this 锁时访问
+    private final ArrayDeque<Command> commands = new ArrayDeque<>();
+    //处理任务是否已提交给 Executor
+    private boolean isScheduled = false;
+    private boolean isClosed = false;
+    //已加入与已完成（包括被合并）的命令数量，用于等待之前加入的命令执行完毕
+    private long postedCount = 0L;
+    private long finishedCount = 0L;
+    private long coalescedCount = 0L;
+    //正在执行命令的线程，没有时为NULL
+    private Thread drainThread = null;
+
+    /**
+     * @param executor 执行命令的 Executor，需要保证任务依次执行，例如 CoreThreads.handlerExecutor()
+     */
+    CommandQueue(@NonNull Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * 加入不参与合并的命令
+     *
+     * @param action 命令
+     * @return 是否已加入队列，队列关闭后返回 False
+     */
+    boolean post(@NonNull Runnable action) {
+        return post(TYPE_OTHER, action);
+    }
+
+    /**
+     * 加入命令，与队列末尾尚未执行的命令合并
+     *
+     * @param type   命令类型：StatusTransitions.CMD_PLAY 等，或 TYPE_OTHER
+     * @param action 命令
+     * @return 是否已加入队列，队列关闭后返回 False
+     */
+    boolean post(int type, @NonNull Runnable action) {
+        return post(type, action, false);
+    }
+
+    /**
+     * 加入最后一条命令并关闭队列，用于释放资源，之后加入的命令都会被拒绝
+     *
+     * @param type   命令类型
+     * @param action 命令
+     * @return 是否已加入队列，队列已关闭时返回 False
+     */
+    boolean postLast(int type, @NonNull Runnable action) {
+        return post(type, action, true);
+    }
+
+    private boolean post(int type, @NonNull Runnable action, boolean isLast) {
+        synchronized (this) {
+            if (isClosed) {
+                return false;
+            }
+            isClosed = isLast;
+            postedCount++;
+
+            final Command last = commands.peekLast();
+            if (last != null && canCoalesce(last.type, type)) {
+                //替换末尾的命令，被替换的命令视为已完成
+                last.type = type;
+                last.action = action;
+                coalescedCount++;
+                finishedCount++;
+                return true;
+            }
+            commands.offerLast(new Command(type, action));
+
+            if (isScheduled) {
+                return true;
+            }
+            isScheduled = true;
+        }
+        executor.execute(this);
+        return true;
+    }
+
+    /**
+     * 等待调用前已加入的命令执行完毕，在执行命令的线程中调用时直接返回
+     *
+     * @param timeoutMillis 最长等待时间，单位：毫秒
+     * @return 命令是否已执行完毕
+     */
+    boolean await(long timeoutMillis) {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        synchronized (this) {
+            if (drainThread == Thread.currentThread()) {
+                return false;
+            }
+            final long target = postedCount;
+            while (finishedCount < target) {
+                final long remainMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainMillis <= 0L) {
+                    return false;
+                }
+                try {
+                    wait(remainMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * @return 尚未执行的命令数量
+     */
+    int pendingCount() {
+        synchronized (this) {
+            return commands.size();
+        }
+    }
+
+    /**
+     * @return 被合并而没有执行的命令数量
+     */
+    long coalescedCount() {
+        synchronized (this) {
+            return coalescedCount;
+        }
+    }
+
+    /**
+     * 在 Executor 中依次执行队列中的命令
+     */
+    @Override
+    public void run() {
+        while (true) {
+            final Runnable action;
+            synchronized (this) {
+                final Command command = commands.pollFirst();
+                if (command == null) {
+                    isScheduled = false;
+                    drainThread = null;
+                    return;
+                }
+                action = command.action;
+                drainThread = Thread.currentThread();
+            }
+
+            try {
+                action.run();
+            } finally {
+                synchronized (this) {
+                    finishedCount++;
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * @param pending 队列末尾尚未执行的命令类型
+     * @param type    新加入的命令类型
+     * @return 新的命令是否可以直接替换队列末尾的命令
+     */
+    private static boolean canCoalesce(int pending, int type) {
+        switch (type) {
+            case StatusTransitions.CMD_SEEK:
+                return pending == StatusTransitions.CMD_SEEK;
+            case StatusTransitions.CMD_PLAY:
+            case StatusTransitions.CMD_PAUSE:
+                return pending == StatusTransitions.CMD_PLAY || pending == StatusTransitions.CMD_PAUSE;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 尚未执行的命令
+     */
+    private static final class Command {
+
+        private int type;
+        private Runnable action;
+
+        Command(int type, Runnable action) {
+            this.type = type;
+            this.action = action;
+        }
+
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.support.annotation.NonNull;
+
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.flv.FlvExtractor;
+import com.google.android.exoplayer2.extractor.mkv.MatroskaExtractor;
+import com.google.android.exoplayer2.extractor.mp3.Mp3Extractor;
+import com.google.android.exoplayer2.extractor.mp4.FragmentedMp4Extractor;
+import com.google.android.exoplayer2.extractor.mp4.Mp4Extractor;
+import com.google.android.exoplayer2.extractor.ogg.OggExtractor;
+import com.google.android.exoplayer2.extractor.ts.Ac3Extractor;
+import com.google.android.exoplayer2.extractor.ts.AdtsExtractor;
+import com.google.android.exoplayer2.extractor.ts.PsExtractor;
+import com.google.android.exoplayer2.extractor.ts.TsExtractor;
+import com.google.android.exoplayer2.extractor.wav.WavExtractor;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-17 上午10:10
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   ExoPlayer 支持的封装格式
+ *
+ * 枚举顺序与 DefaultExtractorsFactory 中的解析器顺序一致
+ */
+public enum ContainerFormat {
+
+    MKV,
+    FRAGMENTED_MP4,
+    MP4,
+    MP3,
+    ADTS,
+    AC3,
+    TS,
+    FLV,
+    OGG,
+    PS,
+    WAV;
+
+    /**
+     * @return 此格式使用的新解析器对象
+     */
+    @NonNull
+    Extractor createExtractor() {
+        switch (this) {
+            case MKV:
+                return new MatroskaExtractor();
+            case FRAGMENTED_MP4:
+                return new FragmentedMp4Extractor();
+            case MP4:
+                return new Mp4Extractor();
+            case MP3:
+                return new Mp3Extractor();
+            case ADTS:
+                return new AdtsExtractor();
+            case AC3:
+                return new Ac3Extractor();
+            case TS:
+                return new TsExtractor();
+            case FLV:
+                return new FlvExtractor();
+            case OGG:
+                return new OggExtractor();
+            case PS:
+                return new PsExtractor();
+            case WAV:
+            default:
+                return new WavExtractor();
+        }
+    }
+
+}
@@ -1,14 +0,0 @@
-package com.ocwvar.mediatesttable.Cores;
-
-/**
- * Project MediaTestTable
- * Created by OCWVAR
- * On 17-7-4 下午6:18
- * File Location com.ocwvar.mediatesttable.Cores
- * This file use to :
- */
-public interface CoreCallback {
-
-    void updateResultText(final String text);
-
-}
@@ -0,0 +1,240 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-26 上午10:40
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   播放核心事件分发
+ *
+ * 回调列表使用写时复制，注册与移除不会影响正在进行的分发，分发过程不加锁
+ * 没有指定 Executor 的回调直接在产生事件的线程中执行
+ * 指定了 Executor 的回调使用各自的事件队列：事件以基本类型保存在预先分配的数组中，队列从空变为非空时向 Executor 提交一次处理任务
+ * 提交的任务对象重复使用，分发过程不产生对象分配（队列满时扩容除外）
+ */
+final class CoreEventDispatcher implements SpectrumRing.PublishListener {
+
+    private static final Status[] STATUSES = Status.values();
+
+    private static final int EVENT_STATE = 0;
+    private static final int EVENT_POSITION = 1;
+    private static final int EVENT_BUFFERING = 2;
+    private static final int EVENT_ERROR = 3;
+    private static final int EVENT_SPECTRUM = 4;
+
+    private final CopyOnWriteArrayList<Entry> entries = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param listener 事件回调
+     * @param executor 执行回调的 Executor，为NULL时直接在产生事件的线程中执行
+     */
+    void addListener(@NonNull CoreEventListener listener, @Nullable Executor executor) {
+        removeListener(listener);
+        entries.add(new Entry(listener, executor));
+    }
+
+    /**
+     * @param listener 事件回调
+     */
+    void removeListener(@NonNull CoreEventListener listener) {
+        for (Entry entry : entries) {
+            if (entry.listener == listener) {
+                entry.isRemoved = true;
+                entries.remove(entry);
+            }
+        }
+    }
+
+    /**
+     * @return 是否有已注册的回调
+     */
+    boolean hasListeners() {
+        return !entries.isEmpty();
+    }
+
+    void stateChanged(@NonNull Status status, boolean playWhenReady) {
+        dispatch(EVENT_STATE, status.ordinal(), playWhenReady ? 1L : 0L, null);
+    }
+
+    void positionChanged(long positionMs, int reason) {
+        dispatch(EVENT_POSITION, reason, positionMs, null);
+    }
+
+    void bufferingChanged(boolean isBuffering) {
+        dispatch(EVENT_BUFFERING, isBuffering ? 1 : 0, 0L, null);
+    }
+
+    void error(int errorType, @NonNull Exception error) {
+        dispatch(EVENT_ERROR, errorType, 0L, error);
+    }
+
+    /**
+     * 频谱帧已发布，在频谱捕获线程中调用
+     *
+     * @param sequence 频谱帧序号
+     */
+    @Override
+    public void onPublished(long sequence) {
+        dispatch(EVENT_SPECTRUM, 0, sequence, null);
+    }
+
+    private void dispatch(int type, int intValue, long longValue, @Nullable Exception error) {
+        for (Entry entry : entries) {
+            if (entry.executor == null) {
+                deliver(entry.listener, type, intValue, longValue, error);
+            } else {
+                entry.enqueue(type, intValue, longValue, error);
+            }
+        }
+    }
+
+    private static void deliver(@NonNull CoreEventListener listener, int type, int intValue, long longValue, @Nullable Exception error) {
+        switch (type) {
+            case EVENT_STATE:
+                listener.onStateChanged(STATUSES[intValue], longValue != 0L);
+                break;
+            case EVENT_POSITION:
+                listener.onPositionChanged(longValue, intValue);
+                break;
+            case EVENT_BUFFERING:
+                listener.onBufferingChanged(intValue != 0);
+                break;
+            case EVENT_ERROR:
+                if (error != null) {
+                    listener.onError(intValue, error);
+                }
+                break;
+            case EVENT_SPECTRUM:
+                listener.onSpectrumAvailable(longValue);
+                break;
+        }
+    }
+
+    /**
+     * 回调、执行回调的 Executor 以及待执行的事件队列
+     */
+    private static final class Entry implements Runnable {
+
+        //事件队列的初始长度
+        private static final int INITIAL_CAPACITY = 16;
+
+        private final CoreEventListener listener;
+        private final Executor executor;
+
+        //以下字段只在持有 this 锁时访问
+        private int[] types = new int[INITIAL_CAPACITY];
+        private int[] intValues = new int[INITIAL_CAPACITY];
+        private long[] longValues = new long[INITIAL_CAPACITY];
+        private Exception[] errors = new Exception[INITIAL_CAPACITY];
+        private int head = 0;
+        private int size = 0;
+        //队列中尚未执行的频谱事件的位置，没有时为 -1
+        private int pendingSpectrum = -1;
+        //处理任务是否已提交给 Executor
+        private boolean isScheduled = false;
+
+        private volatile boolean isRemoved = false;
+
+        Entry(CoreEventListener listener, Executor executor) {
+            this.listener = listener;
+            this.executor = executor;
+        }
+
+        void enqueue(int type, int intValue, long longValue, @Nullable Exception error) {
+            synchronized (this) {
+                if (type == EVENT_SPECTRUM && pendingSpectrum >= 0) {
+                    //合并为最新的频谱帧
+                    longValues[pendingSpectrum] = longValue;
+                    return;
+                }
+
+                if (size == types.length) {
+                    grow();
+                }
+                final int index = (head + size) % types.length;
+                types[index] = type;
+                intValues[index] = intValue;
+                longValues[index] = longValue;
+                errors[index] = error;
+                size++;
+                if (type == EVENT_SPECTRUM) {
+                    pendingSpectrum = index;
+                }
+
+                if (isScheduled) {
+                    return;
+                }
+                isScheduled = true;
+            }
+            executor.execute(this);
+        }
+
+        /**
+         * 在 Executor 中依次执行队列中的事件
+         */
+        @Override
+        public void run() {
+            while (true) {
+                final int type, intValue;
+                final long longValue;
+                final Exception error;
+                synchronized (this) {
+                    if (size == 0 || isRemoved) {
+                        head = 0;
+                        size = 0;
+                        pendingSpectrum = -1;
+                        isScheduled = false;
+                        return;
+                    }
+                    type = types[head];
+                    intValue = intValues[head];
+                    longValue = longValues[head];
+                    error = errors[head];
+                    errors[head] = null;
+                    if (pendingSpectrum == head) {
+                        pendingSpectrum = -1;
+                    }
+                    head = (head + 1) % types.length;
+                    size--;
+                }
+                deliver(listener, type, intValue, longValue, error);
+            }
+        }
+
+        /**
+         * 将队列长度扩大一倍，并把事件移动到数组开头
+         */
+        private void grow() {
+            final int capacity = types.length << 1;
+            final int[] newTypes = new int[capacity];
+            final int[] newIntValues = new int[capacity];
+            final long[] newLongValues = new long[capacity];
+            final Exception[] newErrors = new Exception[capacity];
+            int newPendingSpectrum = -1;
+            for (int i = 0; i < size; i++) {
+                final int index = (head + i) % types.length;
+                newTypes[i] = types[index];
+                newIntValues[i] = intValues[index];
+                newLongValues[i] = longValues[index];
+                newErrors[i] = errors[index];
+                if (pendingSpectrum == index) {
+                    newPendingSpectrum = i;
+                }
+            }
+            pendingSpectrum = newPendingSpectrum;
+            types = newTypes;
+            intValues = newIntValues;
+            longValues = newLongValues;
+            errors = newErrors;
+            head = 0;
+        }
+
+    }
+
+}
@@ -0,0 +1,76 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-26 上午10:15
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   播放核心事件回调
+ *
+ * 通过 IAudioCore.addEventListener() 注册，事件只包含基本类型的数据，需要显示的文字由回调自行生成
+ * 没有指定 Executor 时回调直接在产生事件的线程中执行：频谱事件在频谱捕获线程中，其余事件在核心的播放器线程中
+ */
+public interface CoreEventListener {
+
+    /**
+     * 位置变化原因：调用 seek2() 跳转
+     */
+    int POSITION_SEEK = 0;
+
+    /**
+     * 位置变化原因：播放队列切换音频或播放器调整了播放位置
+     */
+    int POSITION_DISCONTINUITY = 1;
+
+    /**
+     * 错误类型：无法读取资源
+     */
+    int ERROR_SOURCE = 0;
+
+    /**
+     * 错误类型：播放器出现异常
+     */
+    int ERROR_PLAYER = 1;
+
+    /**
+     * 播放器状态变化
+     *
+     * @param status        当前播放器状态
+     * @param playWhenReady 是否在数据准备好后马上播放
+     */
+    void onStateChanged(@NonNull Status status, boolean playWhenReady);
+
+    /**
+     * 播放位置发生跳跃
+     *
+     * @param positionMs 新的播放位置，单位：毫秒
+     * @param reason     变化原因：POSITION_SEEK、POSITION_DISCONTINUITY
+     */
+    void onPositionChanged(long positionMs, int reason);
+
+    /**
+     * 缓冲状态变化
+     *
+     * @param isBuffering 是否正在缓冲
+     */
+    void onBufferingChanged(boolean isBuffering);
+
+    /**
+     * 发生错误
+     *
+     * @param errorType 错误类型：ERROR_SOURCE、ERROR_PLAYER
+     * @param error     异常对象
+     */
+    void onError(int errorType, @NonNull Exception error);
+
+    /**
+     * 新的频谱帧已写入，可通过 IAudioCore.currentSpectrum(float[]) 读取
+     * 通过 Executor 发送时，尚未执行的频谱事件会合并为最新的一个
+     *
+     * @param sequence 频谱帧序号
+     */
+    void onSpectrumAvailable(long sequence);
+
+}
@@ -0,0 +1,53 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+
+import com.google.android.exoplayer2.DefaultLoadControl;
+import com.google.android.exoplayer2.ExoPlayerFactory;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.audio.AudioProcessor;
+import com.google.android.exoplayer2.trackselection.TrackSelector;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-10 下午4:40
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   挂载了自定义音频处理链的EXO播放器
+ */
+final class CoreExoPlayer extends SimpleExoPlayer {
+
+    //以下对象在父类的构造方法中通过 buildAudioProcessors() 创建，所以不能带有初始值，否则会在父类构造完成后被重置
+    private PcmAnalyzer pcmAnalyzer;
+    private GainProcessor gainProcessor;
+
+    CoreExoPlayer(Context context, TrackSelector trackSelector) {
+        super(context, trackSelector, new DefaultLoadControl(), null, EXTENSION_RENDERER_MODE_OFF, ExoPlayerFactory.DEFAULT_ALLOWED_VIDEO_JOINING_TIME_MS);
+    }
+
+    @Override
+    protected AudioProcessor[] buildAudioProcessors() {
+        pcmAnalyzer = new PcmAnalyzer(PcmAnalyzer.DEFAULT_FFT_SIZE, IAudioCore.SPECTRUM_SIZE);
+        gainProcessor = new GainProcessor();
+        //频谱分析使用增益处理前的数据，不受音量与淡入淡出影响
+        return new AudioProcessor[]{new PcmSpectrumTap(pcmAnalyzer), gainProcessor};
+    }
+
+    /**
+     * @return PCM频谱分析器
+     */
+    @NonNull
+    PcmAnalyzer pcmAnalyzer() {
+        return pcmAnalyzer;
+    }
+
+    /**
+     * @return 音量与淡入淡出的增益处理器
+     */
+    @NonNull
+    GainProcessor gainProcessor() {
+        return gainProcessor;
+    }
+
+}
@@ -0,0 +1,399 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-25 上午11:00
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   播放核心的性能统计
+ *
+ * 每个核心持有一个统计对象，核心在操作与播放器回调中调用 prepareStarted()、ready() 等方法记录事件
+ * 延迟数据记录在无锁直方图中，单位统一为微秒；计数器使用原子变量，可在任意线程中读取
+ * 每次记录延迟时同步通知回调，回调在记录所在的线程（通常是核心的播放器线程）中执行，不能进行耗时操作
+ */
+public final class CoreMetrics {
+
+    /**
+     * 延迟类型
+     */
+    public enum Metric {
+
+        /**
+         * 从开始准备到播放器准备好第一段数据
+         */
+        PREPARE("prepareToReady"),
+
+        /**
+         * 从请求跳转到播放器在新位置准备好数据
+         */
+        SEEK("seek"),
+
+        /**
+         * 拖动进度条时，从执行跳转到播放器在附近的关键帧准备好数据，跳转前在队列中等待的时间不计入
+         */
+        SCRUB_SEEK("scrubSeek"),
+
+        /**
+         * 视频：从开始准备到第一帧画面显示  音频：从开始准备或请求播放到开始播放，准备后没有马上播放时不记录
+         */
+        FIRST_FRAME("firstFrame"),
+
+        /**
+         * 播放过程中因数据不足而等待缓冲的时长
+         */
+        REBUFFER("rebuffer"),
+
+        /**
+         * 解码器初始化耗时
+         */
+        DECODER_INIT("decoderInit");
+
+        private final String jsonName;
+
+        Metric(String jsonName) {
+            this.jsonName = jsonName;
+        }
+
+    }
+
+    /**
+     * 延迟记录回调
+     */
+    public interface Listener {
+
+        /**
+         * @param metric  延迟类型
+         * @param valueUs 延迟，单位：微秒
+         */
+        void onMetric(@NonNull Metric metric, long valueUs);
+
+    }
+
+    //没有进行中的计时
+    private static final long IDLE = Long.MIN_VALUE;
+
+    private static final Metric[] METRICS = Metric.values();
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[METRICS.length];
+
+    //进行中的计时的开始时间 System.nanoTime()，没有计时为 IDLE
+    private final AtomicLongArray startNanos = new AtomicLongArray(METRICS.length);
+
+    private final AtomicLong prepareCount = new AtomicLong(0L);
+    private final AtomicLong prepareFailureCount = new AtomicLong(0L);
+    private final AtomicLong loadErrorCount = new AtomicLong(0L);
+    private final AtomicLong seekCount = new AtomicLong(0L);
+    private final AtomicLong scrubSeekCount = new AtomicLong(0L);
+    private final AtomicLong scrubSkippedCount = new AtomicLong(0L);
+    private final AtomicLong rebufferCount = new AtomicLong(0L);
+    private final AtomicLong droppedFrameCount = new AtomicLong(0L);
+
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    CoreMetrics() {
+        for (int i = 0; i < METRICS.length; i++) {
+            histograms[i] = new LatencyHistogram();
+            startNanos.set(i, IDLE);
+        }
+    }
+
+    /**
+     * @param listener 延迟记录回调
+     */
+    public void addListener(@NonNull Listener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    /**
+     * @param listener 延迟记录回调
+     */
+    public void removeListener(@NonNull Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return 准备次数
+     */
+    public long prepareCount() {
+        return prepareCount.get();
+    }
+
+    /**
+     * @return 准备失败次数
+     */
+    public long prepareFailureCount() {
+        return prepareFailureCount.get();
+    }
+
+    /**
+     * @return 读取资源出错次数，包含之后重试成功的情况
+     */
+    public long loadErrorCount() {
+        return loadErrorCount.get();
+    }
+
+    /**
+     * @return 跳转次数
+     */
+    public long seekCount() {
+        return seekCount.get();
+    }
+
+    /**
+     * @return 拖动进度条时执行的跳转次数
+     */
+    public long scrubSeekCount() {
+        return scrubSeekCount.get();
+    }
+
+    /**
+     * @return 拖动进度条时因上一次跳转未完成而被后来的位置替换、没有执行的跳转次数
+     */
+    public long scrubSkippedCount() {
+        return scrubSkippedCount.get();
+    }
+
+    /**
+     * @return 播放过程中重新缓冲的次数
+     */
+    public long rebufferCount() {
+        return rebufferCount.get();
+    }
+
+    /**
+     * @return 丢弃的视频帧数量
+     */
+    public long droppedFrameCount() {
+        return droppedFrameCount.get();
+    }
+
+    /**
+     * @param metric 延迟类型
+     * @return 记录次数
+     */
+    public long count(@NonNull Metric metric) {
+        return histograms[metric.ordinal()].count();
+    }
+
+    /**
+     * @param metric     延迟类型
+     * @param percentile 百分位，0 ~ 100
+     * @return 百分位对应的延迟，单位：微秒，没有记录时返回 0
+     */
+    public long percentileUs(@NonNull Metric metric, double percentile) {
+        return histograms[metric.ordinal()].percentile(percentile);
+    }
+
+    /**
+     * @param metric 延迟类型
+     * @return 平均延迟，单位：微秒，没有记录时返回 0
+     */
+    public long meanUs(@NonNull Metric metric) {
+        return histograms[metric.ordinal()].mean();
+    }
+
+    /**
+     * @param metric 延迟类型
+     * @return 最大延迟，单位：微秒，没有记录时返回 0
+     */
+    public long maxUs(@NonNull Metric metric) {
+        return histograms[metric.ordinal()].max();
+    }
+
+    /**
+     * 清空所有统计数据与进行中的计时
+     */
+    public void reset() {
+        for (int i = 0; i < METRICS.length; i++) {
+            histograms[i].reset();
+            startNanos.set(i, IDLE);
+        }
+        prepareCount.set(0L);
+        prepareFailureCount.set(0L);
+        loadErrorCount.set(0L);
+        seekCount.set(0L);
+        scrubSeekCount.set(0L);
+        scrubSkippedCount.set(0L);
+        rebufferCount.set(0L);
+        droppedFrameCount.set(0L);
+    }
+
+    /**
+     * 导出所有统计数据，延迟单位为微秒
+     *
+     * @return JSON字符串
+     */
+    @NonNull
+    public String toJson() {
+        final StringBuilder json = new StringBuilder(512);
+        json.append("{\"counters\":{")
+                .append("\"prepare\":").append(prepareCount())
+                .append(",\"prepareFailure\":").append(prepareFailureCount())
+                .append(",\"loadError\":").append(loadErrorCount())
+                .append(",\"seek\":").append(seekCount())
+                .append(",\"scrubSeek\":").append(scrubSeekCount())
+                .append(",\"scrubSkipped\":").append(scrubSkippedCount())
+                .append(",\"rebuffer\":").append(rebufferCount())
+                .append(",\"droppedFrames\":").append(droppedFrameCount())
+                .append("},\"latencyUs\":{");
+        for (int i = 0; i < METRICS.length; i++) {
+            if (i > 0) json.append(',');
+            json.append('"').append(METRICS[i].jsonName).append("\":");
+            histograms[i].appendJson(json);
+        }
+        json.append("}}");
+        return json.toString();
+    }
+
+    /**
+     * 开始准备，同时开始首帧计时，之前未完成的计时全部取消
+     */
+    void prepareStarted() {
+        prepareCount.incrementAndGet();
+        for (int i = 0; i < METRICS.length; i++) {
+            startNanos.set(i, IDLE);
+        }
+        begin(Metric.PREPARE);
+        begin(Metric.FIRST_FRAME);
+    }
+
+    /**
+     * 准备失败，取消准备与首帧计时
+     */
+    void prepareFailed() {
+        if (cancel(Metric.PREPARE)) {
+            prepareFailureCount.incrementAndGet();
+        }
+        cancel(Metric.FIRST_FRAME);
+    }
+
+    /**
+     * 读取资源出错，数据源之后会重试，不影响进行中的计时
+     */
+    void loadError() {
+        loadErrorCount.incrementAndGet();
+    }
+
+    /**
+     * 开始跳转，取消进行中的拖动跳转计时
+     */
+    void seekStarted() {
+        seekCount.incrementAndGet();
+        cancel(Metric.SCRUB_SEEK);
+        begin(Metric.SEEK);
+    }
+
+    /**
+     * 拖动进度条时开始跳转
+     */
+    void scrubSeekStarted() {
+        scrubSeekCount.incrementAndGet();
+        begin(Metric.SCRUB_SEEK);
+    }
+
+    /**
+     * 拖动进度条时的跳转被后来的位置替换
+     */
+    void scrubSkipped() {
+        scrubSkippedCount.incrementAndGet();
+    }
+
+    /**
+     * 播放器开始缓冲，准备与跳转过程中的缓冲不计入重新缓冲
+     */
+    void bufferingStarted() {
+        if (!isPending(Metric.PREPARE) && !isPending(Metric.SEEK) && !isPending(Metric.SCRUB_SEEK) && !isPending(Metric.REBUFFER)) {
+            rebufferCount.incrementAndGet();
+            begin(Metric.REBUFFER);
+        }
+    }
+
+    /**
+     * 播放器已准备好数据，结束进行中的准备、跳转、拖动跳转与重新缓冲计时
+     */
+    void ready() {
+        end(Metric.PREPARE);
+        end(Metric.SEEK);
+        end(Metric.SCRUB_SEEK);
+        end(Metric.REBUFFER);
+    }
+
+    /**
+     * 请求播放，已有首帧计时时保留原来的开始时间
+     */
+    void playRequested() {
+        if (!isPending(Metric.FIRST_FRAME)) {
+            begin(Metric.FIRST_FRAME);
+        }
+    }
+
+    /**
+     * 第一帧画面显示或开始输出声音
+     */
+    void firstFrameRendered() {
+        end(Metric.FIRST_FRAME);
+    }
+
+    /**
+     * 首帧计时在准备后没有马上播放时取消
+     */
+    void firstFrameCancelled() {
+        cancel(Metric.FIRST_FRAME);
+    }
+
+    /**
+     * 播放结束或释放，取消所有进行中的计时
+     */
+    void stopped() {
+        for (int i = 0; i < METRICS.length; i++) {
+            startNanos.set(i, IDLE);
+        }
+    }
+
+    /**
+     * @param durationMs 解码器初始化耗时，单位：毫秒
+     */
+    void decoderInitialized(long durationMs) {
+        record(Metric.DECODER_INIT, durationMs * 1000L);
+    }
+
+    /**
+     * @param count 丢弃的视频帧数量
+     */
+    void framesDropped(int count) {
+        droppedFrameCount.addAndGet(count);
+    }
+
+    private void begin(@NonNull Metric metric) {
+        startNanos.set(metric.ordinal(), System.nanoTime());
+    }
+
+    private boolean isPending(@NonNull Metric metric) {
+        return startNanos.get(metric.ordinal()) != IDLE;
+    }
+
+    private boolean cancel(@NonNull Metric metric) {
+        return startNanos.getAndSet(metric.ordinal(), IDLE) != IDLE;
+    }
+
+    private void end(@NonNull Metric metric) {
+        final long start = startNanos.getAndSet(metric.ordinal(), IDLE);
+        if (start != IDLE) {
+            record(metric, (System.nanoTime() - start) / 1000L);
+        }
+    }
+
+    private void record(@NonNull Metric metric, long valueUs) {
+        histograms[metric.ordinal()].record(valueUs);
+        for (Listener listener : listeners) {
+            listener.onMetric(metric, valueUs);
+        }
+    }
+
+}
@@ -0,0 +1,135 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-20 上午10:40
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   核心共用的线程
+ *
+ * 主线程：事件回调与界面操作
+ * 播放器线程：每个核心各自使用一条，播放器对象在此线程中创建，播放器的所有操作与回调都在此线程中进行，不会阻塞主线程
+ * 工作线程：准备资源前的文件检查、缓存查找等耗时操作，以及异步准备的超时计时
+ */
+public final class CoreThreads {
+
+    private static volatile Executor mainExecutor = null;
+    private static volatile ScheduledExecutorService worker = null;
+
+    private CoreThreads() {
+    }
+
+    /**
+     * @return 在主线程中执行任务的 Executor，可用于 PrepareHandle.addListener()
+     */
+    @NonNull
+    public static Executor mainExecutor() {
+        if (mainExecutor == null) {
+            synchronized (CoreThreads.class) {
+                if (mainExecutor == null) {
+                    mainExecutor = handlerExecutor(new Handler(Looper.getMainLooper()));
+                }
+            }
+        }
+        return mainExecutor;
+    }
+
+    /**
+     * @param handler 执行任务的 Handler
+     * @return 在 Handler 所在线程中依次执行任务的 Executor
+     */
+    @NonNull
+    static Executor handlerExecutor(@NonNull final Handler handler) {
+        return new Executor() {
+            @Override
+            public void execute(@NonNull Runnable command) {
+                handler.post(command);
+            }
+        };
+    }
+
+    /**
+     * 创建新的播放器线程，核心释放时需要调用 Looper.quitSafely() 结束线程
+     *
+     * @param name 线程名称
+     * @return 播放器线程的 Handler
+     */
+    @NonNull
+    static Handler newPlayerHandler(@NonNull String name) {
+        final HandlerThread thread = new HandlerThread(name);
+        thread.start();
+        return new Handler(thread.getLooper());
+    }
+
+    /**
+     * 在 Handler 所在线程中执行任务并等待结果，用于在播放器线程中创建播放器对象
+     * 不能在 Handler 所在线程中调用
+     *
+     * @param handler 执行任务的 Handler
+     * @param task    任务
+     * @return 任务结果
+     */
+    static <T> T callOn(@NonNull Handler handler, @NonNull Callable<T> task) {
+        final FutureTask<T> future = new FutureTask<>(task);
+        handler.post(future);
+        boolean isInterrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException e) {
+                    isInterrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            if (isInterrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return 核心共用的工作线程
+     */
+    @NonNull
+    static ScheduledExecutorService worker() {
+        if (worker == null) {
+            synchronized (CoreThreads.class) {
+                if (worker == null) {
+                    final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                        @Override
+                        public Thread newThread(@NonNull Runnable runnable) {
+                            final Thread thread = new Thread(runnable, "CoreWorker");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                    //取消的超时计时直接从队列中移除
+                    executor.setRemoveOnCancelPolicy(true);
+                    worker = executor;
+                }
+            }
+        }
+        return worker;
+    }
+
+}
@@ -1,34 +1,37 @@
 package com.ocwvar.mediatesttable.Cores;
 
 import android.content.Context;
+import android.media.AudioFormat;
+import android.media.AudioTrack;
 import android.media.audiofx.Visualizer;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v4.content.FileProvider;
-import android.text.TextUtils;
 import android.util.Log;
 
+import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.ExoPlaybackException;
 import com.google.android.exoplayer2.ExoPlayer;
-import com.google.android.exoplayer2.ExoPlayerFactory;
+import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.PlaybackParameters;
-import com.google.android.exoplayer2.SimpleExoPlayer;
 import com.google.android.exoplayer2.Timeline;
-import com.google.android.exoplayer2.extractor.DefaultExtractorsFactory;
-import com.google.android.exoplayer2.extractor.ExtractorsFactory;
+import com.google.android.exoplayer2.audio.AudioRendererEventListener;
+import com.google.android.exoplayer2.decoder.DecoderCounters;
+import com.google.android.exoplayer2.source.ConcatenatingMediaSource;
 import com.google.android.exoplayer2.source.ExtractorMediaSource;
 import com.google.android.exoplayer2.source.MediaSource;
 import com.google.android.exoplayer2.source.TrackGroupArray;
 import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
 import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
-import com.google.android.exoplayer2.upstream.DataSource;
-import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory;
-import com.google.android.exoplayer2.util.Util;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 
 /**
  * Project osu-plus
@@ -43,346 +46,1426 @@ public class EXOCore implements IAudioCore {
 
     private final String TAG = "播放核心EXO";
 
+    /**
+     * 默认使用的音频封装格式
+     */
+    private static final ContainerFormat[] AUDIO_FORMATS = {ContainerFormat.MP3, ContainerFormat.OGG, ContainerFormat.WAV, ContainerFormat.MP4, ContainerFormat.ADTS};
+
+    /**
+     * 播放中同步位置时钟的间隔，单位：毫秒
+     */
+    private static final long CLOCK_SYNC_INTERVAL_MS = 50L;
+
+    /**
+     * EXO播放器音频输出缓冲区的时长范围，与其中 AudioTrack 的缓冲区大小计算方式一致，单位：毫秒
+     * 淡出完成时处理完的数据还在缓冲区中，需要等待播放完毕再暂停或释放播放器
+     */
+    private static final long MIN_OUTPUT_BUFFER_MS = 250L;
+    private static final long MAX_OUTPUT_BUFFER_MS = 750L;
+
+    /**
+     * 等待输出缓冲区播放完毕时额外增加的时间，包括变速处理中暂存的数据与线程调度的延迟，单位：毫秒
+     */
+    private static final long DRAIN_MARGIN_MS = 50L;
+
     private final Context applicationContext;
-    private final SimpleExoPlayer musicPlayer;
+    /**
+     * 当前使用的播放器，交叉淡入淡出时会替换为新的播放器对象，只在播放器线程中替换，可在任意线程中读取
+     */
+    private volatile CoreExoPlayer musicPlayer;
+
+    /**
+     * 交叉淡入淡出时正在淡出的上一个播放器，没有时为NULL
+     */
+    private CoreExoPlayer crossfadePlayer = null;
+
+    /**
+     * 正在淡出的播放器读取的资源路径，淡出结束后交还给磁盘缓存，只在播放器线程中读写
+     */
+    private final ArrayList<String> crossfadePaths = new ArrayList<>();
+
+    /**
+     * 交叉淡入淡出的时长，上一个播放器在新的音频准备好后开始淡出，单位：毫秒
+     */
+    private long crossfadeMillis = 0L;
+
+    /**
+     * 上一个播放器淡出请求的编号，只有该请求完成时才结束交叉淡入淡出，没有时为 0
+     */
+    private int crossfadeOutId = 0;
+
+    /**
+     * 进行中的淡出请求编号，淡出完成后暂停播放，没有时为 0
+     */
+    private int fadeOutId = 0;
     private final ExoCallback exoCallback;
-    private VisualizerLoader visualizerLoader = null;
+    private final PlaybackEffects playbackEffects;
+    private final SourcePipeline sourcePipeline;
+    private volatile VisualizerLoader visualizerLoader = null;
 
     /**
      * 是否循环播放
      */
-    private boolean loopFlag = false;
+    private volatile boolean loopFlag = false;
+
+    /**
+     * 播放器状态与停止标记，在播放器线程中修改，可在任意线程中读取
+     */
+    private final PlayerStateMachine stateMachine = new PlayerStateMachine();
+
+    /**
+     * 事件分发
+     */
+    private final CoreEventDispatcher events = new CoreEventDispatcher();
+
+    /**
+     * 播放器是否正在缓冲，只在播放器线程中读写
+     */
+    private boolean isBuffering = false;
+
+    /**
+     * 媒体资源磁盘缓存，为NULL时不使用缓存
+     */
+    private volatile MediaDiskCache mediaCache = null;
+
+    /**
+     * 媒体信息索引，为NULL时不使用
+     */
+    private volatile MediaProbe mediaProbe = null;
+
+    /**
+     * 当前加载的音频资源长度，无效时为-1L
+     */
+    private volatile long audioDuration = -1L;
+
+    /**
+     * 播放队列中的音频路径，与 queueSources 中的资源一一对应，只在播放器线程中读写
+     * sourcePaths 为资源实际读取的路径（命中时为缓存文件），移出队列后交还给磁盘缓存
+     */
+    private final ArrayList<String> playQueue = new ArrayList<>();
+    private final ArrayList<MediaSource> queueSources = new ArrayList<>();
+    private final ArrayList<String> sourcePaths = new ArrayList<>();
+
+    /**
+     * 播放队列中的音频数量，可在任意线程中读取
+     */
+    private volatile int playQueueSize = 0;
+
+    /**
+     * 当前音频在播放队列中的位置，在播放器线程中跳转或切换音频后更新，可在任意线程中读取
+     */
+    private volatile int queueWindowIndex = 0;
+
+    /**
+     * 播放速度与音调，在播放器线程中设置或播放器报告变化后更新，可在任意线程中读取
+     */
+    private volatile PlaybackParameters playbackParameters = PlaybackParameters.DEFAULT;
+
+    /**
+     * 播放器线程，播放器对象在此线程中创建，播放器回调与队列中的命令都在此线程中执行
+     */
+    private final Handler playerHandler = CoreThreads.newPlayerHandler("EXOCore");
+
+    /**
+     * 命令队列，公开方法把命令加入队列后马上返回，不阻塞调用线程
+     */
+    private final CommandQueue commandQueue = new CommandQueue(CoreThreads.handlerExecutor(playerHandler));
+
+    /**
+     * 尚未完成的异步准备，只在播放器线程中读写
+     */
+    private PrepareHandle pendingPrepare = null;
+
+    /**
+     * 播放位置时钟，在播放器线程中同步，可在任意线程中读取
+     */
+    private final PositionClock positionClock = new PositionClock();
+
+    /**
+     * 性能统计
+     */
+    private final CoreMetrics metrics = new CoreMetrics();
+
+    /**
+     * 拖动进度条时的跳转控制，只在播放器线程中使用
+     */
+    private final ScrubSeeker scrubSeeker = new ScrubSeeker(metrics, new ScrubSeeker.Target() {
+        @Override
+        public void seekTo(long ms, boolean isExact) {
+            //ExoPlayer r2 没有跳转到关键帧的选项，拖动时只依靠跳转合并减少跳转次数
+            musicPlayer.seekTo(ms);
+            syncClock(true);
+            events.positionChanged(ms, CoreEventListener.POSITION_SEEK);
+        }
+    });
+
+    /**
+     * 播放中定时同步位置时钟
+     */
+    private final Runnable clockSyncTask = new Runnable() {
+        @Override
+        public void run() {
+            syncClock(false);
+        }
+    };
+
+    public EXOCore(Context context) {
+        this.applicationContext = context.getApplicationContext();
+        this.exoCallback = new ExoCallback();
+        this.playbackEffects = new PlaybackEffects(new EffectTarget(), new PlaybackEffects.Scheduler() {
+            @Override
+            public void postDelayed(@NonNull Runnable task, long delayMillis) {
+                playerHandler.postDelayed(task, delayMillis);
+            }
+
+            @Override
+            public void removeCallbacks(@NonNull Runnable task) {
+                playerHandler.removeCallbacks(task);
+            }
+        });
+        this.sourcePipeline = new SourcePipeline(applicationContext, AUDIO_FORMATS);
+        //播放器回调在创建播放器的线程中执行，所以需要在播放器线程中创建
+        this.musicPlayer = CoreThreads.callOn(playerHandler, new Callable<CoreExoPlayer>() {
+            @Override
+            public CoreExoPlayer call() {
+                return createPlayer();
+            }
+        });
+    }
+
+    /**
+     * 创建播放器对象并设置回调，只在播放器线程中调用
+     *
+     * @return 播放器对象
+     */
+    @NonNull
+    private CoreExoPlayer createPlayer() {
+        final CoreExoPlayer player = new CoreExoPlayer(applicationContext, new DefaultTrackSelector());
+        player.addListener(exoCallback);
+        player.setAudioDebugListener(exoCallback);
+        player.pcmAnalyzer().setPublishListener(events);
+        player.gainProcessor().setListener(new GainProcessor.Listener() {
+            @Override
+            public void onFadeFinished(final int fadeId) {
+                postAfterDrain(player, new Runnable() {
+                    @Override
+                    public void run() {
+                        if (player == musicPlayer && fadeId == fadeOutId) {
+                            fadeOutId = 0;
+                            doPause();
+                        }
+                    }
+                });
+            }
+        });
+        return player;
+    }
+
+    /**
+     * 添加事件回调，回调直接在产生事件的线程中执行
+     *
+     * @param listener 事件回调
+     */
+    @Override
+    public void addEventListener(@NonNull CoreEventListener listener) {
+        events.addListener(listener, null);
+    }
+
+    /**
+     * 添加事件回调
+     *
+     * @param listener 事件回调
+     * @param executor 执行回调的 Executor，例如 CoreThreads.mainExecutor()
+     */
+    @Override
+    public void addEventListener(@NonNull CoreEventListener listener, @NonNull Executor executor) {
+        events.addListener(listener, executor);
+    }
+
+    /**
+     * 移除事件回调
+     *
+     * @param listener 事件回调
+     */
+    @Override
+    public void removeEventListener(@NonNull CoreEventListener listener) {
+        events.removeListener(listener);
+    }
+
+    /**
+     * 设置媒体资源磁盘缓存
+     *
+     * @param mediaCache 磁盘缓存，为NULL时不使用缓存
+     */
+    @Override
+    public void setMediaCache(@Nullable MediaDiskCache mediaCache) {
+        this.mediaCache = mediaCache;
+    }
+
+    /**
+     * 设置媒体信息索引
+     *
+     * @param mediaProbe 媒体信息索引，为NULL时不使用
+     */
+    @Override
+    public void setMediaProbe(@Nullable MediaProbe mediaProbe) {
+        this.mediaProbe = mediaProbe;
+    }
+
+    /**
+     * 准备音频，命令在播放器线程中执行
+     *
+     * @param filePath 音频路径
+     * @return 命令是否已加入队列
+     */
+    @Override
+    public boolean prepare(@NonNull final String filePath) {
+        return commandQueue.post(StatusTransitions.CMD_PREPARE, new Runnable() {
+            @Override
+            public void run() {
+                doPrepare(filePath);
+            }
+        });
+    }
+
+    private void doPrepare(@NonNull String filePath) {
+        cancelPendingPrepare();
+        finishCrossfade();
+        metrics.prepareStarted();
+        prepareSource(filePath, resolveSourcePath(filePath));
+    }
+
+    /**
+     * 异步准备音频
+     *
+     * @param filePath      音频路径
+     * @param timeoutMillis 超时时间，单位：毫秒，小于等于 0 时不设置超时
+     * @return 准备结果
+     */
+    @NonNull
+    @Override
+    public PrepareHandle prepareAsync(@NonNull final String filePath, long timeoutMillis) {
+        final PrepareHandle handle = new PrepareHandle(filePath);
+        handle.setAbortAction(new Runnable() {
+            @Override
+            public void run() {
+                commandQueue.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (pendingPrepare == handle) {
+                            //取消或超时，释放已加载的资源
+                            pendingPrepare = null;
+                            metrics.stopped();
+                            musicPlayer.stop();
+                            clearQueue();
+                        }
+                    }
+                });
+            }
+        });
+
+        final boolean isPosted = commandQueue.post(StatusTransitions.CMD_PREPARE, new Runnable() {
+            @Override
+            public void run() {
+                cancelPendingPrepare();
+                finishCrossfade();
+                if (handle.isDone()) {
+                    //在命令执行前已被取消
+                    return;
+                }
+                metrics.prepareStarted();
+                pendingPrepare = handle;
+
+                CoreThreads.worker().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (handle.isDone()) {
+                            return;
+                        }
+
+                        //缓存查找在工作线程中进行
+                        final String sourcePath;
+                        try {
+                            sourcePath = resolveSourcePath(filePath);
+                        } catch (RuntimeException e) {
+                            failPendingPrepare(handle, e);
+                            return;
+                        }
+
+                        final boolean isPosted = commandQueue.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (pendingPrepare == handle) {
+                                    prepareSource(filePath, sourcePath);
+                                } else {
+                                    releaseSourcePath(sourcePath);
+                                }
+                            }
+                        });
+                        if (!isPosted) {
+                            releaseSourcePath(sourcePath);
+                        }
+                    }
+                });
+            }
+        });
+        if (!isPosted) {
+            handle.setFailed(new IllegalStateException("播放核心已释放"));
+            return handle;
+        }
+        handle.armTimeout(timeoutMillis, CoreThreads.worker());
+        return handle;
+    }
+
+    /**
+     * 以指定音频作为播放队列的第一首并准备播放器
+     *
+     * @param filePath   音频路径
+     * @param sourcePath resolveSourcePath() 返回的资源路径
+     */
+    private void prepareSource(@NonNull String filePath, @NonNull String sourcePath) {
+        //之前的资源在播放器切换到新的资源后再交还给磁盘缓存
+        final ArrayList<String> previousPaths = new ArrayList<>(sourcePaths);
+        playQueue.clear();
+        queueSources.clear();
+        sourcePaths.clear();
+        playQueue.add(filePath);
+        queueSources.add(createMediaSource(sourcePath));
+        sourcePaths.add(sourcePath);
+        playQueueSize = 1;
+        scrubSeeker.reset();
+        //准备完成前使用索引中记录的长度，播放器得到长度后再更新
+        updateDuration(probedDuration(filePath));
+        this.musicPlayer.prepare(buildQueueSource());
+        syncQueueIndex();
+        releaseSourcePaths(previousPaths);
+    }
+
+    /**
+     * 清空播放队列，资源交还给磁盘缓存，播放器需要已经停止
+     */
+    private void clearQueue() {
+        playQueue.clear();
+        queueSources.clear();
+        releaseSourcePaths(sourcePaths);
+        playQueueSize = 0;
+        queueWindowIndex = 0;
+    }
+
+    /**
+     * 从播放器读取当前音频在播放队列中的位置，只在播放器线程中调用
+     */
+    private void syncQueueIndex() {
+        queueWindowIndex = musicPlayer.getCurrentWindowIndex();
+    }
+
+    /**
+     * @param filePath 音频路径
+     * @return 媒体信息索引中记录的长度，没有记录时返回 -1 并在后台探测
+     */
+    private long probedDuration(@NonNull String filePath) {
+        final MediaProbe mediaProbe = this.mediaProbe;
+        return (mediaProbe == null) ? -1L : mediaProbe.durationMs(filePath);
+    }
+
+    /**
+     * @param durationMs 当前音频的长度，无效时为 -1
+     */
+    private void updateDuration(long durationMs) {
+        audioDuration = durationMs;
+        positionClock.setDurationUs((durationMs > 0L) ? durationMs * 1000L : PositionClock.UNSET);
+    }
+
+    /**
+     * 取消尚未完成的异步准备，已经由新的准备请求取代，不需要释放资源
+     */
+    private void cancelPendingPrepare() {
+        final PrepareHandle handle = pendingPrepare;
+        pendingPrepare = null;
+        if (handle != null) {
+            handle.cancel();
+        }
+    }
+
+    /**
+     * 异步准备失败
+     *
+     * @param handle 准备结果
+     * @param error  失败原因
+     */
+    private void failPendingPrepare(@NonNull final PrepareHandle handle, @NonNull final Throwable error) {
+        final boolean isPosted = commandQueue.post(new Runnable() {
+            @Override
+            public void run() {
+                if (pendingPrepare == handle) {
+                    pendingPrepare = null;
+                    handle.setFailed(error);
+                }
+            }
+        });
+        if (!isPosted) {
+            handle.setFailed(error);
+        }
+    }
+
+    /**
+     * 将音频添加到播放队列末尾
+     *
+     * ConcatenatingMediaSource 不支持动态添加资源，所以需要使用新的队列资源重新准备播放器
+     * 重新准备时保留当前的队列位置与播放进度，当前音频会重新缓冲一次，所以尽量在播放开始前添加好队列
+     *
+     * @param filePath 音频路径
+     * @return 命令是否已加入队列
+     */
+    @Override
+    public boolean enqueue(@NonNull final String filePath) {
+        return commandQueue.post(new Runnable() {
+            @Override
+            public void run() {
+                if (playQueue.isEmpty()) {
+                    doPrepare(filePath);
+                    return;
+                }
+                final String sourcePath = resolveSourcePath(filePath);
+                playQueue.add(filePath);
+                queueSources.add(createMediaSource(sourcePath));
+                sourcePaths.add(sourcePath);
+                playQueueSize = playQueue.size();
+                musicPlayer.prepare(buildQueueSource(), false, false);
+            }
+        });
+    }
+
+    /**
+     * 切换到播放队列中的下一首音频，下一首音频已经预先缓冲，可以马上开始播放
+     *
+     * @return 命令是否已加入队列，已经是最后一首时返回 False
+     */
+    @Override
+    public boolean next() {
+        final int index = queueIndex();
+        if (index < 0 || index + 1 >= playQueueSize) {
+            return false;
+        }
+        return commandQueue.post(new Runnable() {
+            @Override
+            public void run() {
+                //执行时再次检查，队列可能已经改变
+                final int index = musicPlayer.getCurrentWindowIndex();
+                if (!playQueue.isEmpty() && index + 1 < playQueue.size()) {
+                    metrics.seekStarted();
+                    musicPlayer.seekToDefaultPosition(index + 1);
+                    syncQueueIndex();
+                }
+            }
+        });
+    }
+
+    /**
+     * 切换到播放队列中的上一首音频
+     *
+     * @return 命令是否已加入队列，已经是第一首时返回 False
+     */
+    @Override
+    public boolean previous() {
+        if (queueIndex() <= 0) {
+            return false;
+        }
+        return commandQueue.post(new Runnable() {
+            @Override
+            public void run() {
+                final int index = musicPlayer.getCurrentWindowIndex();
+                if (!playQueue.isEmpty() && index > 0) {
+                    metrics.seekStarted();
+                    musicPlayer.seekToDefaultPosition(index - 1);
+                    syncQueueIndex();
+                }
+            }
+        });
+    }
+
+    /**
+     * @return 当前音频在播放队列中的位置，无效时返回 -1
+     */
+    @Override
+    public int queueIndex() {
+        if (playQueueSize == 0) {
+            return -1;
+        }
+        return queueWindowIndex;
+    }
+
+    /**
+     * @return 播放队列中的音频数量
+     */
+    @Override
+    public int queueSize() {
+        return playQueueSize;
+    }
+
+    /**
+     * 获取音频实际读取的路径，不再使用时需要调用 releaseSourcePath()
+     *
+     * @param filePath 音频路径
+     * @return 命中缓存时为缓存文件路径，否则为原始路径
+     */
+    @NonNull
+    private String resolveSourcePath(@NonNull String filePath) {
+        final MediaDiskCache mediaCache = this.mediaCache;
+        return (mediaCache == null) ? filePath : mediaCache.resolvePath(filePath);
+    }
+
+    /**
+     * 将资源路径交还给磁盘缓存，缓存文件可以被删除，未命中的原始资源开始写入缓存
+     *
+     * @param sourcePath resolveSourcePath() 返回的路径
+     */
+    private void releaseSourcePath(@NonNull String sourcePath) {
+        final MediaDiskCache mediaCache = this.mediaCache;
+        if (mediaCache != null) {
+            mediaCache.releasePath(sourcePath);
+        }
+    }
+
+    /**
+     * @param sourcePaths 交还给磁盘缓存的资源路径，交还后清空
+     */
+    private void releaseSourcePaths(@NonNull ArrayList<String> sourcePaths) {
+        for (int i = 0; i < sourcePaths.size(); i++) {
+            releaseSourcePath(sourcePaths.get(i));
+        }
+        sourcePaths.clear();
+    }
+
+    /**
+     * 生成单个音频的资源
+     *
+     * @param sourcePath 资源路径
+     * @return 音频资源
+     */
+    private MediaSource createMediaSource(@NonNull String sourcePath) {
+        return sourcePipeline.createMediaSource(file2Uri(sourcePath), playerHandler, exoCallback);
+    }
+
+    /**
+     * @return 资源生成管线，可用于设置支持的封装格式
+     */
+    @NonNull
+    public SourcePipeline sourcePipeline() {
+        return sourcePipeline;
+    }
+
+    /**
+     * 使用当前播放队列生成连续播放资源，播放器会在当前音频播放时提前缓冲下一首音频
+     *
+     * @return 队列资源
+     */
+    private MediaSource buildQueueSource() {
+        if (queueSources.size() == 1) {
+            return queueSources.get(0);
+        }
+        return new ConcatenatingMediaSource(queueSources.toArray(new MediaSource[queueSources.size()]));
+    }
+
+    /**
+     * 直接准备并播放音频
+     *
+     * @param filePath 音频路径
+     * @return 命令是否已加入队列
+     */
+    @Override
+    public boolean play(@NonNull final String filePath) {
+        return prepare(filePath) && play();
+    }
+
+    /**
+     * 播放已准备好的音频
+     *
+     * @return 命令是否已加入队列
+     */
+    @Override
+    public boolean play() {
+        return resume();
+    }
+
+    /**
+     * 恢复播放，命令在播放器线程中按状态机的规则执行，被拒绝的命令记录在 statusTrace() 中
+     *
+     * @return 命令是否已加入队列
+     */
+    @Override
+    public boolean resume() {
+        return commandQueue.post(StatusTransitions.CMD_PLAY, new Runnable() {
+            @Override
+            public void run() {
+                doResume();
+            }
+        });
+    }
+
+    private boolean doResume() {
+        final Status status = stateMachine.command(StatusTransitions.CMD_PLAY);
+        if (status == null) {
+            return false;
+        }
+        restoreFade();
+        if (status == Status.STOPPED) {
+            //已停止状态，设置播放位置到 0，然后进行播放
+            doSeek(0L);
+        }
+        metrics.playRequested();
+        musicPlayer.setPlayWhenReady(true);
+        return true;
+    }
+
+    /**
+     * 应用音频效果，指令格式见 EffectCommand，相同的指令只解析一次
+     * 指令在调用线程中解析，解析结果以命令的方式在播放器线程中执行
+     *
+     * @param code 效果指令，多条指令使用 ; 分隔
+     * @return 返回结果，没有结果返回NULL
+     */
+    @Override
+    public String applyPlaybackEffects(@NonNull String code){
+        if (code == null || code.isEmpty()) return null;
+
+        final EffectProgram program = playbackEffects.compile(code);
+        commandQueue.post(new Runnable() {
+            @Override
+            public void run() {
+                playbackEffects.run(program);
+            }
+        });
+        return program.result;
+    }
+
+    /**
+     * 停止播放
+     *
+     * @return 命令是否已加入队列
+     */
+    @Override
+    public boolean pause() {
+        return commandQueue.post(StatusTransitions.CMD_PAUSE, new Runnable() {
+            @Override
+            public void run() {
+                doPause();
+            }
+        });
+    }
+
+    private boolean doPause() {
+        if (stateMachine.command(StatusTransitions.CMD_PAUSE) == null) {
+            return false;
+        }
+        musicPlayer.setPlayWhenReady(false);
+        return true;
+    }
+
+    /**
+     * 停止播放并重置播放进度至开头 （00:00）
+     *
+     * @return 命令是否已加入队列
+     */
+    @Override
+    public boolean stop() {
+        return commandQueue.post(StatusTransitions.CMD_STOP, new Runnable() {
+            @Override
+            public void run() {
+                doStop();
+            }
+        });
+    }
+
+    private boolean doStop() {
+        if (stateMachine.command(StatusTransitions.CMD_STOP) == null) {
+            return false;
+        }
+        stateMachine.setStopAction(true);
+        musicPlayer.setPlayWhenReady(false);
+        return doSeek(0L);
+    }
+
+    /**
+     * 定位音频位置，连续的跳转只执行最后一次
+     *
+     * @param ms 毫秒数，单位毫秒
+     * @return 命令是否已加入队列，位置无效时返回 False
+     */
+    @Override
+    public boolean seek2(final long ms) {
+        if (ms < 0) {
+            return false;
+        }
+        return commandQueue.post(StatusTransitions.CMD_SEEK, new Runnable() {
+            @Override
+            public void run() {
+                doSeek(ms);
+            }
+        });
+    }
+
+    private boolean doSeek(long ms) {
+        if (ms >= 0 && ms <= audioDuration && stateMachine.command(StatusTransitions.CMD_SEEK) != null) {
+            scrubSeeker.seekTo(ms);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 拖动进度条时定位音频位置，上一次跳转未完成时只保留最后一个位置，松开进度条时使用 seek2()
+     *
+     * @param ms 毫秒数，单位毫秒
+     * @return 命令是否已加入队列，位置无效时返回 False
+     */
+    @Override
+    public boolean scrubTo(final long ms) {
+        if (ms < 0) {
+            return false;
+        }
+        return commandQueue.post(StatusTransitions.CMD_SEEK, new Runnable() {
+            @Override
+            public void run() {
+                if (ms <= audioDuration && stateMachine.command(StatusTransitions.CMD_SEEK) != null) {
+                    scrubSeeker.scrubTo(ms);
+                }
+            }
+        });
+    }
+
+    /**
+     * 释放资源，在之前加入的命令执行完毕后释放，之后加入的命令都会被拒绝
+     */
+    @Override
+    public void release() {
+        commandQueue.postLast(StatusTransitions.CMD_RELEASE, new Runnable() {
+            @Override
+            public void run() {
+                cancelPendingPrepare();
+                playbackEffects.cancel();
+                playerHandler.removeCallbacks(clockSyncTask);
+                positionClock.reset();
+                metrics.stopped();
+                scrubSeeker.reset();
+                if (visualizerLoader != null) {
+                    visualizerLoader.release();
+                }
+                finishCrossfade();
+                musicPlayer.pcmAnalyzer().stop();
+                musicPlayer.release();
+                stateMachine.reset();
+                clearQueue();
+                //结束播放器线程，已延迟执行的淡出等任务不再执行
+                playerHandler.getLooper().quit();
+            }
+        });
+    }
+
+    /**
+     * @return 音频长度，准备完成前返回媒体信息索引中记录的长度，无效长度返回 -1，单位毫秒
+     */
+    @Override
+    public long audioDuration() {
+        return audioDuration;
+    }
+
+    /**
+     * @return 当前播放位置，无效长度返回 -1，单位毫秒
+     */
+    @Override
+    public long currentPosition() {
+        final long positionUs = positionClock.positionUs();
+        return (positionUs == PositionClock.UNSET) ? -1L : positionUs / 1000L;
+    }
+
+    /**
+     * 由位置时钟推算的播放位置，不调用播放器，可在任意线程中高频率读取
+     *
+     * @return 当前播放位置，无效长度返回 -1，单位微秒
+     */
+    @Override
+    public long currentPositionUs() {
+        return positionClock.positionUs();
+    }
+
+    /**
+     * @return 性能统计
+     */
+    @NonNull
+    @Override
+    public CoreMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * 使用播放器报告的位置同步位置时钟，只在播放器线程中调用
+     *
+     * @param isHardSync 是否直接重新锚定，用于跳转、切换音频、改变播放速度等位置或速率不连续的情况
+     */
+    private void syncClock(boolean isHardSync) {
+        playerHandler.removeCallbacks(clockSyncTask);
+        final Status status = stateMachine.status();
+        if (status == Status.EMPTY) {
+            positionClock.reset();
+            return;
+        }
+
+        final long positionUs = musicPlayer.getCurrentPosition() * 1000L;
+        final long nowNanos = System.nanoTime();
+        //缓冲中的播放位置不会前进
+        final boolean isRunning = status == Status.PLAYING && musicPlayer.getPlaybackState() == ExoPlayer.STATE_READY;
+        if (isHardSync || !isRunning || !positionClock.isRunning()) {
+            positionClock.anchor(positionUs, nowNanos, musicPlayer.getPlaybackParameters().speed, isRunning);
+        } else {
+            positionClock.sync(positionUs, nowNanos);
+        }
+
+        if (isRunning) {
+            playerHandler.postDelayed(clockSyncTask, CLOCK_SYNC_INTERVAL_MS);
+        }
+    }
+
+    /**
+     * @return 当前播放器状态
+     */
+    @NonNull
+    @Override
+    public Status currentStatus() {
+        return stateMachine.status();
+    }
+
+    /**
+     * @return 最近的状态变化与被拒绝的命令，用于排查问题
+     */
+    @NonNull
+    public String statusTrace() {
+        return stateMachine.dumpTrace();
+    }
+
+    /**
+     * 调用此方法前需要调用 enableVisualizer() 否则无法获取到数据
+     *
+     * @return 当前音频的对数频段幅度数据（满量程为 1），无效或无法获取时返回NULL
+     */
+    @Nullable
+    @Override
+    public float[] currentSpectrum() {
+        final float[] spectrum = new float[SPECTRUM_SIZE];
+        return currentSpectrum(spectrum) ? spectrum : null;
+    }
+
+    /**
+     * 调用此方法前需要调用 enableVisualizer() 否则无法获取到数据
+     *
+     * @param output 用于存放结果的数组
+     * @return 执行结果，无效或无法获取时返回 False
+     */
+    @Override
+    public boolean currentSpectrum(@NonNull float[] output) {
+        final PcmAnalyzer pcmAnalyzer = musicPlayer.pcmAnalyzer();
+        if (pcmAnalyzer.isRunning()) {
+            return pcmAnalyzer.read(output);
+        }
+        return visualizerLoader != null && visualizerLoader.get(output);
+    }
+
+    /**
+     * 启动频谱推送模式
+     * 启动后频谱数据由捕获线程按指定频率写入缓冲区，currentSpectrum() 将直接读取最新一帧数据，不再请求频谱处理器
+     *
+     * @param captureRate 捕获频率，单位：毫赫兹（mHz），超过设备支持的最大值时使用最大值
+     * @return 命令是否已加入队列
+     */
+    @Override
+    public boolean enableSpectrumStream(final int captureRate) {
+        return commandQueue.post(new Runnable() {
+            @Override
+            public void run() {
+                doEnableSpectrumStream(captureRate);
+            }
+        });
+    }
+
+    private boolean doEnableSpectrumStream(int captureRate) {
+        enableVisualizer();
+        if (musicPlayer.pcmAnalyzer().isRunning()) {
+            //PCM频谱分析本身就以推送的方式写入数据
+            return true;
+        }
+        return visualizerLoader != null && visualizerLoader.startStream(captureRate);
+    }
+
+    /**
+     * 停止频谱推送模式，恢复为每次调用时请求频谱处理器
+     */
+    @Override
+    public void disableSpectrumStream() {
+        commandQueue.post(new Runnable() {
+            @Override
+            public void run() {
+                doDisableSpectrumStream();
+            }
+        });
+    }
+
+    private void doDisableSpectrumStream() {
+        if (visualizerLoader != null) {
+            visualizerLoader.stopStream();
+        }
+    }
 
     /**
-     * 停止状态标记：次标记为True时，setPlayWhenReady(false) 停止播放的状态将从 Pause -> Stop，此标记在每次生效后将重置为 False
+     * 启动频谱解析，只在播放器线程中调用
+     * 当不需要频谱数据的时候必须执行 disableVisualizer()
      */
-    private boolean isStopAction = false;
+    private void enableVisualizer() {
+        //PCM频谱分析已启动，不需要再使用频谱处理器
+        if (musicPlayer.pcmAnalyzer().isRunning()) return;
 
-    /**
-     * 当前播放器状态
-     */
-    private Status currentStatus = Status.EMPTY;
+        //如果SessionID小于 0 则为无效请求，直接跳出
+        if (musicPlayer.getAudioSessionId() < 0) return;
 
-    private CoreCallback callback = null;
+        if (visualizerLoader == null || visualizerLoader.sessionID != musicPlayer.getAudioSessionId() || visualizerLoader.isReleased) {
+            //以下三种状况需要重新创建频谱加载器：
+            //1.频谱加载器对象为空
+            //2.频谱加载器当前读取的SessionID与当前不符
+            //3.频谱加载器已经释放资源
+            if (visualizerLoader != null) {
+                visualizerLoader.release();
+            }
+            try {
+                visualizerLoader = new VisualizerLoader(musicPlayer.getAudioSessionId());
+            } catch (RuntimeException e) {
+                //频谱处理器不可用（没有录音权限或系统不支持），改为使用PCM频谱分析
+                Log.w(TAG, "频谱处理器不可用，使用PCM频谱分析：" + e);
+                visualizerLoader = null;
+                enablePcmAnalyzer();
+                return;
+            }
+        }
+        visualizerLoader.enable();
+    }
 
     /**
-     * 当前加载的音频资源长度，无效时为-1L
+     * 启动PCM频谱分析，直接分析播放器解码后的数据，不依赖频谱处理器
+     * 启动后 currentSpectrum() 将读取分析结果
      */
-    private long audioDuration = -1L;
-
-    public EXOCore(Context context) {
-        this.applicationContext = context.getApplicationContext();
-        this.exoCallback = new ExoCallback();
-        this.musicPlayer = ExoPlayerFactory.newSimpleInstance(applicationContext, new DefaultTrackSelector());
-        this.musicPlayer.addListener(exoCallback);
+    private void enablePcmAnalyzer() {
+        if (visualizerLoader != null) {
+            visualizerLoader.release();
+            visualizerLoader = null;
+        }
+        musicPlayer.pcmAnalyzer().start();
     }
 
     /**
-     * 设置核心消息显示回调
-     *
-     * @param callback 回调结果
+     * 停止频谱解析
      */
-    @Override
-    public void setCoreCallback(CoreCallback callback) {
-        this.callback = callback;
+    private void disableVisualizer() {
+        if (visualizerLoader != null) {
+            visualizerLoader.disable();
+        }
+        musicPlayer.pcmAnalyzer().stop();
     }
 
     /**
-     * 准备音频
+     * 设置循环播放标记
      *
-     * @param filePath 音频路径
-     * @return 执行结果
+     * @param isLoop 是否循环播放
      */
     @Override
-    public boolean prepare(@NonNull String filePath) {
-        final Uri uri = file2Uri(filePath);
-        final DataSource.Factory dataSourceFactory = new DefaultDataSourceFactory(applicationContext, Util.getUserAgent(applicationContext, applicationContext.getPackageName()));
-        final ExtractorsFactory extractorsFactory = new DefaultExtractorsFactory();
-        final MediaSource mediaSource = new ExtractorMediaSource(uri, dataSourceFactory, extractorsFactory, null, exoCallback);
-        this.musicPlayer.prepare(mediaSource);
-        return true;
+    public void setLoopFlag(final boolean isLoop) {
+        this.loopFlag = isLoop;
     }
 
     /**
-     * 直接准备并播放音频
-     *
-     * @param filePath 音频路径
-     * @return 执行结果
+     * @return 当前音量大小
      */
     @Override
-    public boolean play(@NonNull final String filePath) {
-        prepare(filePath);
-        return play();
+    public float getVolume() {
+        return musicPlayer.gainProcessor().volume();
     }
 
     /**
-     * 播放已准备好的音频
+     * 设置音量，音量在播放线程中经过很短的渐变后生效，不会产生爆音
      *
-     * @return 执行结果
+     * @param volume 音量大小，大小由0~1，0为静音
      */
     @Override
-    public boolean play() {
-        return resume();
+    public void setVolume(final float volume) {
+        musicPlayer.gainProcessor().rampVolume(volume, 0L);
     }
 
     /**
-     * 恢复播放
+     * 在指定时间内渐变到指定音量，渐变在播放线程中逐帧计算
      *
-     * @return 执行结果
+     * @param volume     音量大小，大小由0~1，0为静音
+     * @param rampMillis 渐变时间，单位：毫秒
      */
     @Override
-    public boolean resume() {
-        if (currentStatus == Status.PAUSED) {
-            //暂停状态，直接恢复播放
-            musicPlayer.setPlayWhenReady(true);
-            return true;
-        } else if (currentStatus == Status.STOPPED) {
-            //已停止状态，设置播放位置到 0，然后进行播放
-            seek2(0L);
-            musicPlayer.setPlayWhenReady(true);
-        }
-        return false;
+    public void setVolume(final float volume, final long rampMillis) {
+        musicPlayer.gainProcessor().rampVolume(volume, toInputMillis(rampMillis));
     }
 
     /**
-     * 应用音频效果
+     * 设置播放速度与音调，两者相互独立。变速由播放器输出端的时间伸缩处理，播放进度按速度换算，不受影响
+     *
+     * @param speed 播放速度，1 为原速
+     * @param pitch 音调，1 为原调
+     * @return 命令是否已加入队列，超出 {@link EffectCommand#MIN_SPEED} ~ {@link EffectCommand#MAX_SPEED} 时返回 False
      */
     @Override
-    public String applyPlaybackEffects(@NonNull String code){
-        if (TextUtils.isEmpty(code)) return null;
-
-        if (code.startsWith("VI_")){
-            return effects_visualizer(code);
-        }else if (code.startsWith("SP_")){
-            return effects_speed(code);
-        }else if (code.startsWith("VO_")){
-            return effects_volume(code);
+    public boolean setPlaybackParameters(final float speed, final float pitch) {
+        if (!(speed >= EffectCommand.MIN_SPEED && speed <= EffectCommand.MAX_SPEED) || !(pitch >= EffectCommand.MIN_SPEED && pitch <= EffectCommand.MAX_SPEED)) {
+            return false;
         }
-        return null;
+        return commandQueue.post(new Runnable() {
+            @Override
+            public void run() {
+                doSetPlaybackParameters(speed, pitch);
+            }
+        });
     }
 
-    /**
-     * 效果_音量
-     * @param code  执行代码
-     */
-    private String effects_volume(String code){
-        final String value = code.substring(2);
-        setVolume(Float.parseFloat(value));
-        return "音量大小："+value;
+    private void doSetPlaybackParameters(float speed, float pitch) {
+        playbackParameters = (speed == 1.0f && pitch == 1.0f) ? PlaybackParameters.DEFAULT : new PlaybackParameters(speed, pitch);
+        musicPlayer.setPlaybackParameters(playbackParameters);
     }
 
     /**
-     * 效果_频谱
-     * @param code  执行代码
+     * @return 当前的播放速度
      */
-    private String effects_visualizer(String code){
-        switch (code){
-            case "VI_ON":
-                //打开频谱处理器
-                enableVisualizer();
-                break;
-            case "VI_OFF":
-                disableVisualizer();
-                break;
-        }
-        return null;
+    @Override
+    public float getPlaybackSpeed() {
+        return playbackParameters.speed;
     }
 
     /**
-     * 效果_播放速度
-     * @param code  执行代码
+     * @return 当前的音调
      */
-    private String effects_speed(String code){
-        //根据音频播放模式采取不同的播放速度
-        switch (code){
-            case "SP_N":
-                //原速
-                this.musicPlayer.setPlaybackParameters(PlaybackParameters.DEFAULT);
-                break;
-            case "SP_D":
-                //双倍速度
-                this.musicPlayer.setPlaybackParameters(new PlaybackParameters(2.0f,2.0f));
-                break;
-            case "SP_S":
-                //半速
-                this.musicPlayer.setPlaybackParameters(new PlaybackParameters(0.5f,0.5f));
-                break;
-        }
-        return null;
+    @Override
+    public float getPlaybackPitch() {
+        return playbackParameters.pitch;
     }
 
     /**
-     * 停止播放
+     * 从静音开始淡入并播放，已在播放时从当前增益淡入
      *
-     * @return 执行结果
+     * @param durationMillis 淡入时间，单位：毫秒
+     * @return 命令是否已加入队列
      */
     @Override
-    public boolean pause() {
-        if (currentStatus == Status.PLAYING) {
-            musicPlayer.setPlayWhenReady(false);
+    public boolean fadeIn(final long durationMillis) {
+        return commandQueue.post(new Runnable() {
+            @Override
+            public void run() {
+                doFadeIn(durationMillis);
+            }
+        });
+    }
+
+    private boolean doFadeIn(long durationMillis) {
+        final Status status = stateMachine.status();
+        if (status == Status.EMPTY) {
+            return false;
+        }
+        fadeOutId = 0;
+        if (status == Status.PLAYING) {
+            musicPlayer.gainProcessor().fade(1f, toInputMillis(durationMillis));
             return true;
         }
-        return false;
+        musicPlayer.gainProcessor().fade(0f, 1f, toInputMillis(durationMillis));
+        metrics.playRequested();
+        if (status == Status.STOPPED) {
+            doSeek(0L);
+        }
+        musicPlayer.setPlayWhenReady(true);
+        return true;
     }
 
     /**
-     * 停止播放并重置播放进度至开头 （00:00）
+     * 淡出后暂停播放，之后调用 play() 或 resume() 会恢复原来的音量
      *
-     * @return 执行结果
+     * @param durationMillis 淡出时间，单位：毫秒
+     * @return 命令是否已加入队列
      */
     @Override
-    public boolean stop() {
-        if (currentStatus == Status.PAUSED || currentStatus == Status.PLAYING) {
-            this.isStopAction = true;
-            musicPlayer.setPlayWhenReady(false);
-            return seek2(0L);
+    public boolean fadeOut(final long durationMillis) {
+        return commandQueue.post(new Runnable() {
+            @Override
+            public void run() {
+                doFadeOut(durationMillis);
+            }
+        });
+    }
+
+    private boolean doFadeOut(long durationMillis) {
+        if (stateMachine.status() != Status.PLAYING) {
+            return false;
         }
-        return false;
+        fadeOutId = musicPlayer.gainProcessor().fade(0f, toInputMillis(durationMillis));
+        return true;
     }
 
     /**
-     * 定位音频位置
+     * 交叉淡入淡出到另一首音频
+     * 新的音频使用新的播放器对象进行准备，准备好后两个播放器同时播放，当前音频淡出、新的音频淡入，两者使用等功率曲线
+     * 淡出完成后释放上一个播放器，播放队列重置为新的音频。没有在播放时等同于淡入播放新的音频
+     * 频谱处理器绑定在播放器的音频会话上，切换后需要重新打开
      *
-     * @param ms 毫秒数，单位毫秒
-     * @return 执行结果
+     * @param filePath       音频路径
+     * @param durationMillis 交叉淡入淡出时间，单位：毫秒
+     * @return 命令是否已加入队列
      */
     @Override
-    public boolean seek2(final long ms) {
-        if (currentStatus != Status.EMPTY && ms >= 0 && ms <= audioDuration) {
-            callback.updateResultText("转跳位置："+ms);
-            musicPlayer.seekTo(ms);
+    public boolean crossfadeTo(@NonNull final String filePath, final long durationMillis) {
+        return commandQueue.post(StatusTransitions.CMD_PREPARE, new Runnable() {
+            @Override
+            public void run() {
+                doCrossfadeTo(filePath, durationMillis);
+            }
+        });
+    }
+
+    private boolean doCrossfadeTo(@NonNull String filePath, long durationMillis) {
+        if (stateMachine.status() != Status.PLAYING) {
+            doPrepare(filePath);
+            musicPlayer.gainProcessor().fade(0f, 1f, toInputMillis(durationMillis));
+            metrics.playRequested();
+            musicPlayer.setPlayWhenReady(true);
             return true;
         }
-        return false;
-    }
 
-    /**
-     * 释放资源
-     */
-    @Override
-    public void release() {
-        musicPlayer.release();
+        cancelPendingPrepare();
+        finishCrossfade();
+
+        //上一个播放器不再产生事件，继续播放直到淡出完成
+        final CoreExoPlayer previousPlayer = musicPlayer;
+        previousPlayer.removeListener(exoCallback);
+        previousPlayer.setAudioDebugListener(null);
+        previousPlayer.pcmAnalyzer().setPublishListener(null);
+        previousPlayer.gainProcessor().setListener(new GainProcessor.Listener() {
+            @Override
+            public void onFadeFinished(final int fadeId) {
+                postAfterDrain(previousPlayer, new Runnable() {
+                    @Override
+                    public void run() {
+                        //上一个播放器之前发起的淡入淡出（例如 fadeIn()）也会回调，只处理交叉淡出的请求
+                        if (crossfadePlayer == previousPlayer && fadeId == crossfadeOutId) {
+                            finishCrossfade();
+                        }
+                    }
+                });
+            }
+        });
+        crossfadePlayer = previousPlayer;
+        crossfadeMillis = durationMillis;
+
+        if (visualizerLoader != null) {
+            visualizerLoader.release();
+            visualizerLoader = null;
+        }
+        final boolean isPcmAnalyzerRunning = previousPlayer.pcmAnalyzer().isRunning();
+        previousPlayer.pcmAnalyzer().stop();
+
+        //新的播放器沿用当前的音量与播放速度
+        musicPlayer = createPlayer();
+        musicPlayer.gainProcessor().rampVolume(previousPlayer.gainProcessor().volume(), 0L);
+        musicPlayer.setPlaybackParameters(playbackParameters);
+        if (isPcmAnalyzerRunning) {
+            musicPlayer.pcmAnalyzer().start();
+        }
+        fadeOutId = 0;
+
+        //上一个播放器读取的资源在淡出结束后再交还给磁盘缓存
+        crossfadePaths.addAll(sourcePaths);
+        sourcePaths.clear();
+        metrics.prepareStarted();
+        prepareSource(filePath, resolveSourcePath(filePath));
+        musicPlayer.gainProcessor().fade(0f, 1f, toInputMillis(durationMillis));
+        metrics.playRequested();
+        musicPlayer.setPlayWhenReady(true);
+        return true;
     }
 
     /**
-     * @return 音频长度，无效长度返回 -1，单位毫秒
+     * 新的音频已准备好，上一个播放器开始淡出
      */
-    @Override
-    public long audioDuration() {
-        return audioDuration;
+    private void startCrossfadeOut() {
+        if (crossfadePlayer != null && crossfadeMillis >= 0L) {
+            final CoreExoPlayer previousPlayer = crossfadePlayer;
+            crossfadeOutId = previousPlayer.gainProcessor().fade(0f, toInputMillis(crossfadeMillis));
+            //上一首音频在淡出完成前播放结束时不会再有淡出完成回调，超时后同样释放
+            playerHandler.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    if (crossfadePlayer == previousPlayer) {
+                        finishCrossfade();
+                    }
+                }
+            }, crossfadeMillis + MAX_OUTPUT_BUFFER_MS + DRAIN_MARGIN_MS * 2);
+            //标记淡出已开始
+            crossfadeMillis = -1L;
+        }
     }
 
     /**
-     * @return 当前播放位置，无效长度返回 -1，单位毫秒
+     * 立即结束交叉淡入淡出，释放上一个播放器
      */
-    @Override
-    public long currentPosition() {
-        if (currentStatus != Status.EMPTY) {
-            return musicPlayer.getCurrentPosition();
-        } else {
-            return -1L;
+    private void finishCrossfade() {
+        final CoreExoPlayer player = crossfadePlayer;
+        if (player != null) {
+            crossfadePlayer = null;
+            crossfadeOutId = 0;
+            player.gainProcessor().setListener(null);
+            player.release();
         }
+        releaseSourcePaths(crossfadePaths);
     }
 
     /**
-     * @return 当前播放器状态
+     * 增益处理器位于变速处理之前，渐变按输入数据的帧数计算，乘以播放速度后才是实际听到的渐变时长
+     *
+     * @param durationMillis 实际听到的渐变时长，单位：毫秒
+     * @return 按输入数据计算的渐变时长，单位：毫秒
      */
-    @NonNull
-    @Override
-    public Status currentStatus() {
-        return currentStatus;
+    private long toInputMillis(long durationMillis) {
+        return Math.round(durationMillis * (double) playbackParameters.speed);
     }
 
     /**
-     * 调用此方法前需要调用 enableVisualizer() 否则无法获取到数据
+     * 淡入淡出完成回调在音频输出线程中执行，此时处理完的数据还在输出缓冲区中
+     * 回到播放器线程后，等待缓冲区中的数据播放完毕再执行任务
      *
-     * @return 当前音频的FFT，无效或无法获取时返回NULL
+     * @param player 完成淡入淡出的播放器
+     * @param task   在播放器线程中执行的任务
      */
-    @Nullable
-    @Override
-    public float[] currentSpectrum() {
-        return (visualizerLoader == null) ? null : visualizerLoader.get();
+    private void postAfterDrain(@NonNull final CoreExoPlayer player, @NonNull final Runnable task) {
+        playerHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                playerHandler.postDelayed(task, outputBufferMillis(player.gainProcessor()) + DRAIN_MARGIN_MS);
+            }
+        });
     }
 
     /**
-     * 启动频谱解析
-     * 当不需要频谱数据的时候必须执行 disableVisualizer()
+     * 估算播放器音频输出缓冲区的时长，缓冲区为最小缓冲区的 4 倍，并限制在 MIN_OUTPUT_BUFFER_MS ~ MAX_OUTPUT_BUFFER_MS 之间
+     * 变速处理不改变采样率，输出数据按增益处理器的格式计算
+     *
+     * @param gainProcessor 增益处理器
+     * @return 缓冲区时长，无法计算时返回最大值，单位：毫秒
      */
-    private void enableVisualizer() {
-        //如果SessionID小于 0 则为无效请求，直接跳出
-        if (musicPlayer.getAudioSessionId() < 0) return;
-
-        if (visualizerLoader == null || visualizerLoader.sessionID != musicPlayer.getAudioSessionId() || visualizerLoader.isReleased) {
-            //以下三种状况需要重新创建频谱加载器：
-            //1.频谱加载器对象为空
-            //2.频谱加载器当前读取的SessionID与当前不符
-            //3.频谱加载器已经释放资源
-            visualizerLoader = new VisualizerLoader(musicPlayer.getAudioSessionId());
+    private static long outputBufferMillis(@NonNull GainProcessor gainProcessor) {
+        final int sampleRate = gainProcessor.sampleRate();
+        final int channelCount = gainProcessor.channelCount();
+        if (sampleRate <= 0 || channelCount <= 0) {
+            return MAX_OUTPUT_BUFFER_MS;
         }
-        visualizerLoader.enable();
+        final boolean isMono = channelCount == 1;
+        final int minBufferBytes = AudioTrack.getMinBufferSize(sampleRate, isMono ? AudioFormat.CHANNEL_OUT_MONO : AudioFormat.CHANNEL_OUT_STEREO, AudioFormat.ENCODING_PCM_16BIT);
+        if (minBufferBytes <= 0) {
+            return MAX_OUTPUT_BUFFER_MS;
+        }
+        final long minBufferMillis = minBufferBytes / (isMono ? 2 : 4) * 1000L / sampleRate;
+        return Math.max(MIN_OUTPUT_BUFFER_MS, Math.min(minBufferMillis * 4, Math.max(minBufferMillis, MAX_OUTPUT_BUFFER_MS)));
     }
 
     /**
-     * 停止频谱解析
+     * 淡出暂停后恢复播放前，先在很短的时间内恢复淡入淡出增益
      */
-    private void disableVisualizer() {
-        if (visualizerLoader != null) {
-            visualizerLoader.disable();
+    private void restoreFade() {
+        fadeOutId = 0;
+        final GainProcessor gainProcessor = musicPlayer.gainProcessor();
+        if (gainProcessor.fadeGain() < 1f) {
+            gainProcessor.fade(1f, GainProcessor.DECLICK_MILLIS);
         }
     }
 
     /**
-     * 设置循环播放标记
+     * 将文件路径转换为Uri地址，本地文件直接使用文件地址，由 MappedFileDataSource 通过内存映射读取
+     * 带有协议的地址（http:// 等）直接解析
      *
-     * @param isLoop 是否循环播放
+     * @param filePath 文件路径
+     * @return 文件地址Uri
      */
-    @Override
-    public void setLoopFlag(final boolean isLoop) {
-        this.loopFlag = isLoop;
+    @NonNull
+    private Uri file2Uri(@NonNull String filePath) {
+        final File file = new File(filePath);
+        if (file.isFile()) {
+            return Uri.fromFile(file);
+        }
+        final Uri uri = Uri.parse(filePath);
+        if (uri.getScheme() != null) {
+            return uri;
+        }
+        try {
+            return FileProvider.getUriForFile(applicationContext, "FileProvider", file);
+        } catch (IllegalArgumentException e) {
+            //路径不在 FileProvider 配置的目录中，交给播放器读取，无法读取时由 onPlayerError() 报告
+            return Uri.fromFile(file);
+        }
     }
 
     /**
-     * @return 当前音量大小
+     * 效果指令执行对象，只在播放器线程中调用
      */
-    @Override
-    public float getVolume() {
-        return musicPlayer.getVolume();
-    }
+    private final class EffectTarget implements PlaybackEffects.Target {
 
-    /**
-     * 设置音量
-     *
-     * @param volume 音量大小，大小由0~1，0为静音
-     */
-    @Override
-    public void setVolume(final float volume) {
-        musicPlayer.setVolume(volume);
-    }
+        @Override
+        public void enableVisualizer() {
+            EXOCore.this.enableVisualizer();
+        }
+
+        @Override
+        public void disableVisualizer() {
+            EXOCore.this.disableVisualizer();
+        }
+
+        @Override
+        public void enableSpectrumStream() {
+            doEnableSpectrumStream(Visualizer.getMaxCaptureRate());
+        }
+
+        @Override
+        public void disableSpectrumStream() {
+            doDisableSpectrumStream();
+        }
+
+        @Override
+        public void enablePcmAnalyzer() {
+            EXOCore.this.enablePcmAnalyzer();
+        }
+
+        @Override
+        public void setPlaybackParameters(float speed, float pitch) {
+            doSetPlaybackParameters(speed, pitch);
+        }
+
+        @Override
+        public void setVolume(float volume, long rampMillis) {
+            EXOCore.this.setVolume(volume, rampMillis);
+        }
 
-    /**
-     * 将文件路径转换为Uri地址
-     *
-     * @param filePath 文件路径
-     * @return 文件地址Uri，若无法转换则返回NULL
-     */
-    private
-    @Nullable
-    Uri file2Uri(@Nullable String filePath) {
-        return FileProvider.getUriForFile(applicationContext, "FileProvider", new File(filePath));
     }
 
     /**
      * EXO播放器状态回调处理类
      */
-    private final class ExoCallback implements ExoPlayer.EventListener, ExtractorMediaSource.EventListener {
+    private final class ExoCallback implements ExoPlayer.EventListener, ExtractorMediaSource.EventListener, AudioRendererEventListener {
 
         @Override
         public void onLoadError(IOException error) {
             Log.e(TAG, "发生错误，无法读取音频：" + error);
+            //读取出错后 ExtractorMediaSource 会自动重试，无法恢复时由 onPlayerError() 使准备失败
+            metrics.loadError();
+            events.error(CoreEventListener.ERROR_SOURCE, error);
         }
 
         @Override
         public void onTimelineChanged(Timeline timeline, Object manifest) {
+            syncQueueIndex();
         }
 
         @Override
@@ -401,61 +1484,106 @@ public class EXOCore implements IAudioCore {
          */
         @Override
         public void onPlayerStateChanged(boolean playWhenReady, int playbackState) {
-            switch (playbackState){
-                case ExoPlayer.STATE_BUFFERING:
-                    callback.updateResultText("缓冲中");
-                    break;
-                case ExoPlayer.STATE_ENDED:
-                    callback.updateResultText("播放结束");
-                    break;
-                case ExoPlayer.STATE_IDLE:
-                    callback.updateResultText("未加载数据");
-                    break;
-                case ExoPlayer.STATE_READY:
-                    callback.updateResultText("数据已加载  Play When Ready:"+playWhenReady);
-                    break;
+            final Status status = stateMachine.syncExoState(playbackState, playWhenReady);
+            if (playbackState == ExoPlayer.STATE_READY && pendingPrepare != null) {
+                //已准备好第一段音频数据
+                final PrepareHandle handle = pendingPrepare;
+                pendingPrepare = null;
+                handle.setReady();
             }
             switch (playbackState) {
                 case ExoPlayer.STATE_READY:
-                case ExoPlayer.STATE_BUFFERING:
-                    if (isStopAction) {
-                        //停止标记生效
-                        currentStatus = Status.STOPPED;
-                        //重置标记
-                        isStopAction = false;
+                    startCrossfadeOut();
+                    metrics.ready();
+                    scrubSeeker.seekCompleted();
+                    if (playWhenReady) {
+                        metrics.firstFrameRendered();
                     } else {
-                        currentStatus = (playWhenReady) ? Status.PLAYING : Status.PAUSED;
+                        metrics.firstFrameCancelled();
                     }
                     break;
+                case ExoPlayer.STATE_BUFFERING:
+                    metrics.bufferingStarted();
+                    break;
+                case ExoPlayer.STATE_IDLE:
+                    metrics.stopped();
+                    scrubSeeker.reset();
+                    break;
                 case ExoPlayer.STATE_ENDED:
-                    currentStatus = Status.STOPPED;
+                    metrics.stopped();
+                    scrubSeeker.reset();
                     if (loopFlag) {
-                        //循环播放标记
-                        seek2(0);
-                        play();
+                        //循环播放标记，整个播放队列从第一首开始重新播放
+                        musicPlayer.seekToDefaultPosition(0);
+                        syncQueueIndex();
+                        doResume();
                     }
                     break;
-                case ExoPlayer.STATE_IDLE:
-                    currentStatus = Status.EMPTY;
-                    break;
             }
 
-            //在这里才能获取到加载的媒体长度
-            audioDuration = musicPlayer.getDuration();
-            Log.w(TAG, "播放器状态发生变化：" + currentStatus.name() + "  EXO状态：" + playbackState + "  音频长度(ms)：" + Long.toString(audioDuration));
+            //在这里才能获取到加载的媒体长度，尚未得到长度时保留索引中记录的长度
+            final long duration = musicPlayer.getDuration();
+            if (duration != C.TIME_UNSET) {
+                updateDuration(duration);
+            }
+            syncClock(false);
+
+            events.stateChanged(status, playWhenReady);
+            if (isBuffering != (playbackState == ExoPlayer.STATE_BUFFERING)) {
+                isBuffering = !isBuffering;
+                events.bufferingChanged(isBuffering);
+            }
         }
 
         @Override
         public void onPlayerError(ExoPlaybackException error) {
             Log.e(TAG, "发生错误，播放器出现异常：" + error.getMessage());
+            metrics.prepareFailed();
+            if (pendingPrepare != null) {
+                failPendingPrepare(pendingPrepare, error);
+            }
+            events.error(CoreEventListener.ERROR_PLAYER, error);
         }
 
         @Override
         public void onPositionDiscontinuity() {
+            //播放队列切换音频后，更新为当前音频的长度
+            syncQueueIndex();
+            updateDuration(musicPlayer.getDuration());
+            syncClock(true);
+            events.positionChanged(musicPlayer.getCurrentPosition(), CoreEventListener.POSITION_DISCONTINUITY);
         }
 
         @Override
         public void onPlaybackParametersChanged(PlaybackParameters playbackParameters) {
+            //速度变化后从当前位置按新的速度推算
+            EXOCore.this.playbackParameters = playbackParameters;
+            syncClock(true);
+        }
+
+        @Override
+        public void onAudioEnabled(DecoderCounters counters) {
+        }
+
+        @Override
+        public void onAudioSessionId(int audioSessionId) {
+        }
+
+        @Override
+        public void onAudioDecoderInitialized(String decoderName, long initializedTimestampMs, long initializationDurationMs) {
+            metrics.decoderInitialized(initializationDurationMs);
+        }
+
+        @Override
+        public void onAudioInputFormatChanged(Format format) {
+        }
+
+        @Override
+        public void onAudioTrackUnderrun(int bufferSize, long bufferSizeMs, long elapsedSinceLastFeedMs) {
+        }
+
+        @Override
+        public void onAudioDisabled(DecoderCounters counters) {
         }
 
     }
@@ -463,16 +1591,33 @@ public class EXOCore implements IAudioCore {
     /**
      * 频谱加载器
      */
-    private final class VisualizerLoader {
+    private final class VisualizerLoader implements Visualizer.OnDataCaptureListener {
+
+        //推送模式下缓冲区的帧数量
+        private static final int STREAM_SLOT_COUNT = 4;
 
         private final Visualizer visualizer;
         private final int sessionID;
-        private boolean isReleased = false;
+        private final SpectrumDecoder spectrumDecoder;
+        //推送模式使用的转换器，只在捕获线程中使用
+        private final SpectrumDecoder streamDecoder;
+        //FFT数据缓冲区，根据捕获大小预先分配并重复使用
+        private final byte[] captureBytes;
+        private volatile boolean isReleased = false;
+
+        //推送模式使用的捕获线程，频谱处理器的回调会在此线程中执行
+        private HandlerThread captureThread = null;
+        private Handler captureHandler = null;
+        //推送模式下的频谱帧缓冲区，不为NULL时表示推送模式已启动
+        private volatile SpectrumRing spectrumRing = null;
 
         VisualizerLoader(final int sessionID) {
             this.sessionID = sessionID;
             visualizer = new Visualizer(sessionID);
             visualizer.setCaptureSize(Visualizer.getCaptureSizeRange()[1]);
+            captureBytes = new byte[visualizer.getCaptureSize()];
+            spectrumDecoder = new SpectrumDecoder(false);
+            streamDecoder = new SpectrumDecoder(false);
         }
 
         /**
@@ -504,82 +1649,120 @@ public class EXOCore implements IAudioCore {
                 if (visualizer.getEnabled()) {
                     visualizer.setEnabled(false);
                 }
-                visualizer.release();
+                spectrumRing = null;
+                if (captureThread != null) {
+                    //频谱处理器需要在捕获线程中释放，避免与正在进行的回调冲突
+                    captureHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            visualizer.release();
+                        }
+                    });
+                    captureThread.quitSafely();
+                } else {
+                    visualizer.release();
+                }
             }
         }
 
         /**
-         * 获取FFT数据
+         * 启动推送模式
          *
-         * @return FFT数据，如果无效则返回NULL
+         * @param captureRate 捕获频率，单位：毫赫兹（mHz）
+         * @return 执行结果
          */
-        @Nullable
-        float[] get() {
-            try {
-                final byte[] bytes = new byte[1024];
-                visualizer.getFft(bytes);
-                return handleIntArray2PositionArray(handleByteArray2IntArray(bytes), 0, 128);
-            } catch (Exception ignore) {
-                return null;
+        boolean startStream(int captureRate) {
+            if (isReleased) return false;
+
+            if (captureThread == null) {
+                captureThread = new HandlerThread("SpectrumCapture");
+                captureThread.start();
+                captureHandler = new Handler(captureThread.getLooper());
+            }
+
+            final int rate = Math.min(captureRate, Visualizer.getMaxCaptureRate());
+            if (spectrumRing == null) {
+                final SpectrumRing ring = new SpectrumRing(STREAM_SLOT_COUNT, SPECTRUM_SIZE);
+                ring.setPublishListener(events);
+                spectrumRing = ring;
             }
+
+            //回调所在的线程由注册时的线程决定，所以需要在捕获线程中进行注册
+            captureHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (isReleased) return;
+                    //频谱处理器在启用状态下无法修改回调设置
+                    final boolean wasEnabled = visualizer.getEnabled();
+                    visualizer.setEnabled(false);
+                    visualizer.setDataCaptureListener(VisualizerLoader.this, rate, false, true);
+                    if (wasEnabled) {
+                        visualizer.setEnabled(true);
+                    }
+                }
+            });
+            return true;
+        }
+
+        /**
+         * 停止推送模式
+         */
+        void stopStream() {
+            if (isReleased || spectrumRing == null) return;
+            spectrumRing = null;
+            captureHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (isReleased) return;
+                    final boolean wasEnabled = visualizer.getEnabled();
+                    visualizer.setEnabled(false);
+                    visualizer.setDataCaptureListener(null, 0, false, false);
+                    if (wasEnabled) {
+                        visualizer.setEnabled(true);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void onWaveFormDataCapture(Visualizer visualizer, byte[] waveform, int samplingRate) {
         }
 
         /**
-         * 将原生FFT数据转换为IntArray的格式
+         * 推送模式下的FFT数据回调，在捕获线程中执行
          *
-         * @param byteArray 原生FFT数据
-         * @return 转换得到的数据，如果转换失败则返回NULL
+         * @param visualizer   频谱处理器
+         * @param fft          原生FFT数据
+         * @param samplingRate 采样率
          */
-        private
-        @Nullable
-        int[] handleByteArray2IntArray(@Nullable byte[] byteArray) {
-            if (byteArray == null) return null;
-            final ByteBuffer byteBuffer = ByteBuffer.wrap(byteArray);
-            final int[] numberArray = new int[byteBuffer.asIntBuffer().limit()];
-            try {
-                //得到FloatArray数据
-                byteBuffer.asIntBuffer().get(numberArray);
-            } catch (Exception e) {
-                Log.e("#$", "ByteArray → IntArray 发生异常：" + e);
-                return null;
+        @Override
+        public void onFftDataCapture(Visualizer visualizer, byte[] fft, int samplingRate) {
+            final SpectrumRing ring = spectrumRing;
+            if (ring != null && streamDecoder.decode(fft, ring.claim())) {
+                ring.publish();
             }
-            return numberArray;
         }
 
         /**
-         * 将原生FFT IntArray转换为 0 ~ 限制大小 区间内的FloatArray
+         * 获取FFT数据，使用预先分配的缓冲区，不产生对象分配
          *
-         * @param inArray          要用于转换的IntArray
-         * @param sizeLimit        限制每个Float数值的最大值 <=0 则不限制
-         * @param arrayLengthLimit 输出数组的长度 <=0 则不限制
-         * @return 转换得到的数据，如果转换失败则返回NULL
+         * @param output 用于存放结果的数组
+         * @return 执行结果，如果数据无效则返回 False
          */
-        private
-        @Nullable
-        float[] handleIntArray2PositionArray(@Nullable int[] inArray, @Nullable float sizeLimit, @Nullable int arrayLengthLimit) {
-            if (inArray == null || arrayLengthLimit >= inArray.length) return null;
-            //根据限制创建工作数组长度
-            final float[] workArray = (arrayLengthLimit <= 0) ? new float[inArray.length] : new float[arrayLengthLimit];
-            for (int i = 0; i < workArray.length; i++) {
-                float number = (float) inArray[i];
-                if (number == 0.0f) {
-                    //原本数据就是 0f 不需要重新设置
-                    continue;
-                }
-                if (number < 0f) {
-                    //数据为负数，转为正数
-                    number *= -1f;
-                }
-                //移动小数点
-                number *= 0.0000000001f;
+        boolean get(@NonNull float[] output) {
+            if (isReleased) return false;
 
-                if (sizeLimit > 0 && sizeLimit < number) {
-                    //如果大于限制数，则将数字设为最大数值
-                    number = sizeLimit;
-                }
-                workArray[i] = number;
+            final SpectrumRing ring = spectrumRing;
+            if (ring != null) {
+                //推送模式下直接读取最新一帧
+                return ring.readLatest(output) >= 0L;
+            }
+
+            try {
+                return visualizer.getFft(captureBytes) == Visualizer.SUCCESS && spectrumDecoder.decode(captureBytes, output);
+            } catch (Exception ignore) {
+                return false;
             }
-            return workArray;
         }
 
     }
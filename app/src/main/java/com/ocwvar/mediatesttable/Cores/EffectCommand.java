@@ -0,0 +1,157 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-27 上午9:30
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   已解析的效果指令
+ *
+ * 指令格式：[@延迟毫秒:]指令
+ * VI_ON / VI_OFF / VI_STREAM / VI_PULL / VI_PCM   频谱处理器的开关与模式
+ * SP_N / SP_D / SP_S                               原速 / 双倍速 / 半速，音调保持不变
+ * SP_速度[_音调]                                   任意速度与音调，两者相互独立，省略音调时保持原调，例如：SP_1.25、SP_1_1.5
+ * VO_音量[_渐变毫秒]                               音量 0~1，可在指定时间内线性渐变，例如：VO_0.5、VO_0_300
+ * CLR                                              取消尚未执行的定时指令
+ *
+ * 对象创建后不再改变，可以缓存并重复执行
+ */
+final class EffectCommand {
+
+    static final int VISUALIZER_ON = 0;
+    static final int VISUALIZER_OFF = 1;
+    static final int SPECTRUM_STREAM = 2;
+    static final int SPECTRUM_PULL = 3;
+    static final int PCM_ANALYZER = 4;
+    static final int PLAYBACK_PARAMETERS = 5;
+    static final int VOLUME = 6;
+    static final int CLEAR = 7;
+
+    /**
+     * 播放速度与音调的范围，与播放器的变速处理器一致
+     */
+    static final float MIN_SPEED = 0.1f;
+    static final float MAX_SPEED = 8.0f;
+
+    /**
+     * 指令类型
+     */
+    final int type;
+
+    /**
+     * 执行延迟，单位：毫秒，0 为立即执行
+     */
+    final long delayMillis;
+
+    /**
+     * PLAYBACK_PARAMETERS：播放速度  VOLUME：音量
+     */
+    final float value;
+
+    /**
+     * PLAYBACK_PARAMETERS：音调
+     */
+    final float pitch;
+
+    /**
+     * VOLUME：渐变时间，单位：毫秒，0 为直接设置
+     */
+    final long rampMillis;
+
+    private EffectCommand(int type, long delayMillis, float value, float pitch, long rampMillis) {
+        this.type = type;
+        this.delayMillis = delayMillis;
+        this.value = value;
+        this.pitch = pitch;
+        this.rampMillis = rampMillis;
+    }
+
+    /**
+     * 解析单条指令
+     *
+     * @param token 指令文字，不含分隔符
+     * @return 解析结果，无法解析时返回NULL
+     */
+    @Nullable
+    static EffectCommand parse(@NonNull String token) {
+        String code = token.trim();
+        long delayMillis = 0L;
+
+        if (code.startsWith("@")) {
+            //定时指令
+            final int separator = code.indexOf(':');
+            if (separator < 0) return null;
+            delayMillis = parseLong(code.substring(1, separator));
+            if (delayMillis < 0L) return null;
+            code = code.substring(separator + 1).trim();
+        }
+
+        switch (code) {
+            case "VI_ON":
+                return new EffectCommand(VISUALIZER_ON, delayMillis, 0f, 0f, 0L);
+            case "VI_OFF":
+                return new EffectCommand(VISUALIZER_OFF, delayMillis, 0f, 0f, 0L);
+            case "VI_STREAM":
+                return new EffectCommand(SPECTRUM_STREAM, delayMillis, 0f, 0f, 0L);
+            case "VI_PULL":
+                return new EffectCommand(SPECTRUM_PULL, delayMillis, 0f, 0f, 0L);
+            case "VI_PCM":
+                return new EffectCommand(PCM_ANALYZER, delayMillis, 0f, 0f, 0L);
+            case "SP_N":
+                return new EffectCommand(PLAYBACK_PARAMETERS, delayMillis, 1.0f, 1.0f, 0L);
+            case "SP_D":
+                return new EffectCommand(PLAYBACK_PARAMETERS, delayMillis, 2.0f, 1.0f, 0L);
+            case "SP_S":
+                return new EffectCommand(PLAYBACK_PARAMETERS, delayMillis, 0.5f, 1.0f, 0L);
+            case "CLR":
+                return new EffectCommand(CLEAR, delayMillis, 0f, 0f, 0L);
+        }
+
+        if (code.startsWith("SP_")) {
+            final String[] values = code.substring(3).split("_", -1);
+            if (values.length > 2) return null;
+            final float speed = parseFloat(values[0]);
+            final float pitch = (values.length == 2) ? parseFloat(values[1]) : 1.0f;
+            if (!isValidSpeed(speed) || !isValidSpeed(pitch)) return null;
+            return new EffectCommand(PLAYBACK_PARAMETERS, delayMillis, speed, pitch, 0L);
+        } else if (code.startsWith("VO_")) {
+            final String[] values = code.substring(3).split("_", -1);
+            if (values.length > 2) return null;
+            final float volume = parseFloat(values[0]);
+            final long rampMillis = (values.length == 2) ? parseLong(values[1]) : 0L;
+            if (!(volume >= 0f && volume <= 1f) || rampMillis < 0L) return null;
+            return new EffectCommand(VOLUME, delayMillis, volume, 0f, rampMillis);
+        }
+        return null;
+    }
+
+    private static boolean isValidSpeed(float speed) {
+        return speed >= MIN_SPEED && speed <= MAX_SPEED;
+    }
+
+    /**
+     * @return 解析结果，无法解析时返回 NaN
+     */
+    private static float parseFloat(@NonNull String value) {
+        try {
+            return Float.parseFloat(value);
+        } catch (NumberFormatException e) {
+            return Float.NaN;
+        }
+    }
+
+    /**
+     * @return 解析结果，无法解析时返回 -1
+     */
+    private static long parseLong(@NonNull String value) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+}
@@ -0,0 +1,174 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-27 上午10:10
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   编译后的效果指令组
+ *
+ * 多条指令使用 ; 分隔，例如：VI_ON;SP_1.25;@2000:VO_0_500
+ * 解析时按执行延迟把指令合并为若干批次，同一批次内：频谱操作按书写顺序保留，播放速度与音量只保留最后一条
+ * 每个批次在执行时一次性设置到播放器，不会出现只执行了一部分指令的中间状态
+ * 任意一条指令无法解析时整组指令无效，不执行任何操作
+ */
+final class EffectProgram {
+
+    /**
+     * 同一执行时间的指令批次，创建后不再改变
+     */
+    static final class Batch {
+
+        /**
+         * 执行延迟，单位：毫秒
+         */
+        final long delayMillis;
+
+        /**
+         * 是否先取消尚未执行的定时指令
+         */
+        final boolean isClear;
+
+        /**
+         * 按顺序执行的频谱操作：EffectCommand.VISUALIZER_ON 等
+         */
+        final int[] visualizerOps;
+
+        final boolean hasParameters;
+        final float speed;
+        final float pitch;
+
+        final boolean hasVolume;
+        final float volume;
+        final long rampMillis;
+
+        Batch(long delayMillis, boolean isClear, int[] visualizerOps, @Nullable EffectCommand parameters, @Nullable EffectCommand volume) {
+            this.delayMillis = delayMillis;
+            this.isClear = isClear;
+            this.visualizerOps = visualizerOps;
+            this.hasParameters = parameters != null;
+            this.speed = (parameters != null) ? parameters.value : 1.0f;
+            this.pitch = (parameters != null) ? parameters.pitch : 1.0f;
+            this.hasVolume = volume != null;
+            this.volume = (volume != null) ? volume.value : 1.0f;
+            this.rampMillis = (volume != null) ? volume.rampMillis : 0L;
+        }
+
+    }
+
+    private static final Batch[] NO_BATCHES = new Batch[0];
+
+    /**
+     * 按执行延迟升序排列的批次，无效时为空数组
+     */
+    final Batch[] batches;
+
+    /**
+     * 执行后返回的文字，在解析时生成
+     */
+    @Nullable
+    final String result;
+
+    private EffectProgram(@NonNull Batch[] batches, @Nullable String result) {
+        this.batches = batches;
+        this.result = result;
+    }
+
+    /**
+     * @return 是否可以执行
+     */
+    boolean isValid() {
+        return batches.length > 0;
+    }
+
+    /**
+     * 解析指令组
+     *
+     * @param code 指令文字
+     * @return 解析结果，不会为NULL，无法解析时 isValid() 返回 False
+     */
+    @NonNull
+    static EffectProgram parse(@Nullable String code) {
+        if (code == null || code.trim().isEmpty()) {
+            return new EffectProgram(NO_BATCHES, null);
+        }
+
+        final ArrayList<EffectCommand> commands = new ArrayList<>();
+        String volumeText = null;
+        for (String token : code.split(";")) {
+            if (token.trim().isEmpty()) continue;
+            final EffectCommand command = EffectCommand.parse(token);
+            if (command == null) {
+                return new EffectProgram(NO_BATCHES, "无效指令：" + token.trim());
+            }
+            commands.add(command);
+            if (command.type == EffectCommand.VOLUME) {
+                volumeText = "音量大小：" + command.value;
+            }
+        }
+        if (commands.isEmpty()) {
+            return new EffectProgram(NO_BATCHES, null);
+        }
+
+        //收集所有不同的执行延迟并升序排列
+        final ArrayList<Long> delays = new ArrayList<>();
+        for (EffectCommand command : commands) {
+            int index = 0;
+            while (index < delays.size() && delays.get(index) < command.delayMillis) {
+                index++;
+            }
+            if (index == delays.size() || delays.get(index) != command.delayMillis) {
+                delays.add(index, command.delayMillis);
+            }
+        }
+
+        final Batch[] batches = new Batch[delays.size()];
+        for (int i = 0; i < batches.length; i++) {
+            batches[i] = buildBatch(delays.get(i), commands);
+        }
+        return new EffectProgram(batches, volumeText);
+    }
+
+    /**
+     * 合并指定延迟的所有指令
+     */
+    @NonNull
+    private static Batch buildBatch(long delayMillis, @NonNull ArrayList<EffectCommand> commands) {
+        boolean isClear = false;
+        int visualizerCount = 0;
+        EffectCommand parameters = null;
+        EffectCommand volume = null;
+        for (EffectCommand command : commands) {
+            if (command.delayMillis != delayMillis) continue;
+            switch (command.type) {
+                case EffectCommand.CLEAR:
+                    isClear = true;
+                    break;
+                case EffectCommand.PLAYBACK_PARAMETERS:
+                    parameters = command;
+                    break;
+                case EffectCommand.VOLUME:
+                    volume = command;
+                    break;
+                default:
+                    visualizerCount++;
+                    break;
+            }
+        }
+
+        final int[] visualizerOps = new int[visualizerCount];
+        int index = 0;
+        for (EffectCommand command : commands) {
+            if (command.delayMillis == delayMillis && command.type <= EffectCommand.PCM_ANALYZER) {
+                visualizerOps[index++] = command.type;
+            }
+        }
+        return new Batch(delayMillis, isClear, visualizerOps, parameters, volume);
+    }
+
+}
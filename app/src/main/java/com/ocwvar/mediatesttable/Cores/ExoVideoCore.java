@@ -0,0 +1,766 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.content.FileProvider;
+import android.text.TextUtils;
+import android.util.Log;
+import android.view.Surface;
+import android.view.SurfaceHolder;
+
+import com.google.android.exoplayer2.ExoPlaybackException;
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.ExoPlayerFactory;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.PlaybackParameters;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.decoder.DecoderCounters;
+import com.google.android.exoplayer2.source.ExtractorMediaSource;
+import com.google.android.exoplayer2.source.MediaSource;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
+import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
+import com.google.android.exoplayer2.video.VideoRendererEventListener;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-14 下午2:15
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   基于 ExoPlayer 的视频核心
+ *
+ * 播放器对象在核心创建时生成，释放视频资源时只停止播放，对象会一直复用到核心不再使用
+ * 播放器对象在核心自己的播放器线程中创建，公开方法把命令加入 CommandQueue 后马上返回，命令与播放器回调都在播放器线程中执行
+ */
+public class ExoVideoCore implements IVideoCore {
+
+    private final String TAG = "视频核心EXO";
+
+    //默认使用的视频封装格式，与 VideoCoreFactory 中交给 ExoPlayer 的格式对应
+    private static final ContainerFormat[] VIDEO_FORMATS = {ContainerFormat.MP4, ContainerFormat.FRAGMENTED_MP4, ContainerFormat.MKV, ContainerFormat.TS};
+
+    private final Context appContext;
+    private final SimpleExoPlayer videoPlayer;
+    private final ExoCallback exoCallback;
+    private final SourcePipeline sourcePipeline;
+    private volatile SurfaceHolder surfaceHolder = null;
+    private volatile MediaDiskCache mediaCache = null;
+    private volatile MediaProbe mediaProbe = null;
+
+    //播放器当前读取的资源路径（命中时为缓存文件），没有时为NULL，只在播放器线程中读写
+    private String sourcePath = null;
+
+    //播放器线程，播放器回调与队列中的命令都在此线程中执行
+    private final Handler playerHandler = CoreThreads.newPlayerHandler("ExoVideoCore");
+
+    //命令队列，公开方法把命令加入队列后马上返回，不阻塞调用线程
+    private final CommandQueue commandQueue = new CommandQueue(CoreThreads.handlerExecutor(playerHandler));
+
+    //尚未完成的异步准备，只在播放器线程中读写
+    private PrepareHandle pendingPrepare = null;
+
+    //当前视频资源长度
+    private volatile long videoDuration = -1L;
+
+    //当前状态以及 准备好、停止 标记，停止标记为True时，暂停播放的状态将从 Pause -> Stop，此标记在每次生效后将重置为 False
+    private final PlayerStateMachine stateMachine = new PlayerStateMachine();
+
+    //是否循环播放
+    private volatile boolean isLoop = false;
+
+    //性能统计
+    private final CoreMetrics metrics = new CoreMetrics();
+
+    //拖动进度条时的跳转控制，只在播放器线程中使用
+    private final ScrubSeeker scrubSeeker = new ScrubSeeker(metrics, new ScrubSeeker.Target() {
+        @Override
+        public void seekTo(long ms, boolean isExact) {
+            //ExoPlayer r2 没有跳转到关键帧的选项，拖动时只依靠跳转合并减少跳转次数
+            videoPlayer.seekTo(ms);
+        }
+    });
+
+    public ExoVideoCore(Context context) {
+        this.appContext = context.getApplicationContext();
+        this.exoCallback = new ExoCallback();
+        this.sourcePipeline = new SourcePipeline(appContext, VIDEO_FORMATS);
+        //播放器回调在创建播放器的线程中执行，所以需要在播放器线程中创建
+        this.videoPlayer = CoreThreads.callOn(playerHandler, new Callable<SimpleExoPlayer>() {
+            @Override
+            public SimpleExoPlayer call() {
+                final SimpleExoPlayer player = ExoPlayerFactory.newSimpleInstance(appContext, new DefaultTrackSelector());
+                player.addListener(exoCallback);
+                player.setVideoDebugListener(exoCallback);
+                return player;
+            }
+        });
+    }
+
+    /**
+     * 设置播放显示位置
+     *
+     * @param surfaceHolder SurfaceHolder对象
+     */
+    @Override
+    public void setDisplayObject(final SurfaceHolder surfaceHolder) {
+        this.surfaceHolder = surfaceHolder;
+        //设置播放界面时播放器会等待内部线程处理完毕，同样在播放器线程中执行
+        this.commandQueue.post(new Runnable() {
+            @Override
+            public void run() {
+                videoPlayer.setVideoSurfaceHolder(surfaceHolder);
+            }
+        });
+    }
+
+    /**
+     * 设置媒体资源磁盘缓存
+     *
+     * @param mediaCache 磁盘缓存，为NULL时不使用缓存
+     */
+    @Override
+    public void setMediaCache(@Nullable MediaDiskCache mediaCache) {
+        this.mediaCache = mediaCache;
+    }
+
+    /**
+     * 设置媒体信息索引
+     *
+     * @param mediaProbe 媒体信息索引，为NULL时不使用
+     */
+    @Override
+    public void setMediaProbe(@Nullable MediaProbe mediaProbe) {
+        this.mediaProbe = mediaProbe;
+    }
+
+    /**
+     * 准备视频
+     *
+     * @param filePath        视频路径
+     * @param isPlayWhenReady 视频准备好后马上进行播放
+     * @return 命令是否已加入队列，没有播放界面时返回 False
+     */
+    @Override
+    public boolean prepare(@NonNull final String filePath, final boolean isPlayWhenReady) {
+        if (this.surfaceHolder == null) {
+            //没有播放界面
+            return false;
+        }
+        return this.commandQueue.post(StatusTransitions.CMD_PREPARE, new Runnable() {
+            @Override
+            public void run() {
+                cancelPendingPrepare();
+                metrics.prepareStarted();
+                prepareSource(resolveSourcePath(filePath), isPlayWhenReady, probedDuration(filePath));
+            }
+        });
+    }
+
+    /**
+     * 异步准备视频
+     *
+     * @param filePath        视频路径
+     * @param isPlayWhenReady 视频准备好后马上进行播放
+     * @param timeoutMillis   超时时间，单位：毫秒，小于等于 0 时不设置超时
+     * @return 准备结果
+     */
+    @NonNull
+    @Override
+    public PrepareHandle prepareAsync(@NonNull final String filePath, final boolean isPlayWhenReady, long timeoutMillis) {
+        final PrepareHandle handle = new PrepareHandle(filePath);
+        if (this.surfaceHolder == null) {
+            handle.setFailed(new IllegalStateException("没有播放界面"));
+            return handle;
+        }
+
+        handle.setAbortAction(new Runnable() {
+            @Override
+            public void run() {
+                commandQueue.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (pendingPrepare == handle) {
+                            //取消或超时，释放已加载的资源，准备中的状态可能仍为 EMPTY
+                            pendingPrepare = null;
+                            videoPlayer.stop();
+                            releaseSourcePath();
+                            stateMachine.reset();
+                            videoDuration = -1L;
+                        }
+                    }
+                });
+            }
+        });
+
+        final boolean isPosted = this.commandQueue.post(StatusTransitions.CMD_PREPARE, new Runnable() {
+            @Override
+            public void run() {
+                cancelPendingPrepare();
+                if (handle.isDone()) {
+                    //在命令执行前已被取消
+                    return;
+                }
+                metrics.prepareStarted();
+                pendingPrepare = handle;
+
+                CoreThreads.worker().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (handle.isDone()) {
+                            return;
+                        }
+
+                        //缓存查找、索引查找与路径转换在工作线程中进行
+                        final String sourcePath;
+                        final long durationMs;
+                        try {
+                            durationMs = probedDuration(filePath);
+                            sourcePath = resolveSourcePath(filePath);
+                        } catch (RuntimeException e) {
+                            failPendingPrepare(handle, e);
+                            return;
+                        }
+
+                        final boolean isPosted = commandQueue.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (pendingPrepare != handle) {
+                                    releaseSourcePath(sourcePath);
+                                } else if (!prepareSource(sourcePath, isPlayWhenReady, durationMs)) {
+                                    pendingPrepare = null;
+                                    handle.setFailed(new IllegalArgumentException("无效的视频路径：" + filePath));
+                                }
+                            }
+                        });
+                        if (!isPosted) {
+                            releaseSourcePath(sourcePath);
+                        }
+                    }
+                });
+            }
+        });
+        if (!isPosted) {
+            handle.setFailed(new IllegalStateException("视频核心已释放"));
+            return handle;
+        }
+        handle.armTimeout(timeoutMillis, CoreThreads.worker());
+        return handle;
+    }
+
+    /**
+     * 获取视频实际读取的路径，不再使用时需要交还给磁盘缓存
+     *
+     * @param filePath 视频路径
+     * @return 命中缓存时为缓存文件路径，否则为原始路径
+     */
+    @NonNull
+    private String resolveSourcePath(@NonNull String filePath) {
+        final MediaDiskCache mediaCache = this.mediaCache;
+        return (mediaCache == null) ? filePath : mediaCache.resolvePath(filePath);
+    }
+
+    /**
+     * 将资源路径交还给磁盘缓存，缓存文件可以被删除，未命中的原始资源开始写入缓存
+     *
+     * @param sourcePath resolveSourcePath() 返回的路径
+     */
+    private void releaseSourcePath(@Nullable String sourcePath) {
+        final MediaDiskCache mediaCache = this.mediaCache;
+        if (sourcePath != null && mediaCache != null) {
+            mediaCache.releasePath(sourcePath);
+        }
+    }
+
+    /**
+     * 交还播放器当前读取的资源路径，播放器需要已经停止或切换到新的资源
+     */
+    private void releaseSourcePath() {
+        final String sourcePath = this.sourcePath;
+        this.sourcePath = null;
+        releaseSourcePath(sourcePath);
+    }
+
+    /**
+     * @param filePath 视频路径
+     * @return 媒体信息索引中记录的长度，没有记录时返回 -1 并在后台探测
+     */
+    private long probedDuration(@NonNull String filePath) {
+        final MediaProbe mediaProbe = this.mediaProbe;
+        return (mediaProbe == null) ? -1L : mediaProbe.durationMs(filePath);
+    }
+
+    /**
+     * 准备播放器
+     *
+     * @param sourcePath      resolveSourcePath() 返回的资源路径，失败时同样交还给磁盘缓存
+     * @param isPlayWhenReady 视频准备好后马上进行播放
+     * @param durationMs      媒体信息索引中记录的长度，准备完成前使用，没有记录时为 -1
+     * @return 执行结果
+     */
+    private boolean prepareSource(@NonNull String sourcePath, boolean isPlayWhenReady, long durationMs) {
+        final Uri sourceUri = file2Uri(sourcePath);
+        if (sourceUri == null || sourceUri == Uri.EMPTY) {
+            releaseSourcePath(sourcePath);
+            return false;
+        }
+
+        //重置状态和标记
+        this.stateMachine.setReady(false);
+        this.stateMachine.setStopAction(false);
+        this.videoDuration = durationMs;
+
+        final MediaSource mediaSource = this.sourcePipeline.createMediaSource(sourceUri, this.playerHandler, this.exoCallback);
+        this.scrubSeeker.reset();
+        this.videoPlayer.setPlayWhenReady(isPlayWhenReady);
+        this.videoPlayer.prepare(mediaSource);
+        //之前的资源在播放器切换到新的资源后再交还给磁盘缓存
+        releaseSourcePath();
+        this.sourcePath = sourcePath;
+        return true;
+    }
+
+    /**
+     * 取消尚未完成的异步准备，已经由新的准备请求取代，不需要释放资源
+     */
+    private void cancelPendingPrepare() {
+        final PrepareHandle handle = this.pendingPrepare;
+        this.pendingPrepare = null;
+        if (handle != null) {
+            handle.cancel();
+        }
+    }
+
+    /**
+     * 异步准备失败
+     *
+     * @param handle 准备结果
+     * @param error  失败原因
+     */
+    private void failPendingPrepare(@NonNull final PrepareHandle handle, @NonNull final Throwable error) {
+        final boolean isPosted = this.commandQueue.post(new Runnable() {
+            @Override
+            public void run() {
+                if (pendingPrepare == handle) {
+                    pendingPrepare = null;
+                    handle.setFailed(error);
+                }
+            }
+        });
+        if (!isPosted) {
+            handle.setFailed(error);
+        }
+    }
+
+    /**
+     * 准备视频
+     *
+     * @param filePath 视频路径
+     * @return 命令是否已加入队列
+     */
+    @Override
+    public boolean prepare(@NonNull String filePath) {
+        return prepare(filePath, false);
+    }
+
+    /**
+     * 直接准备并播放视频
+     *
+     * @param filePath 视频路径
+     * @return 命令是否已加入队列
+     */
+    @Override
+    public boolean play(@NonNull String filePath) {
+        return prepare(filePath, true);
+    }
+
+    /**
+     * @return 视频准备状态
+     */
+    @Override
+    public boolean isReady() {
+        return this.stateMachine.isReady();
+    }
+
+    /**
+     * 播放已准备好的视频，命令在播放器线程中按状态机的规则执行，被拒绝的命令记录在 statusTrace() 中
+     *
+     * @return 命令是否已加入队列
+     */
+    @Override
+    public boolean play() {
+        return this.commandQueue.post(StatusTransitions.CMD_PLAY, new Runnable() {
+            @Override
+            public void run() {
+                doPlay();
+            }
+        });
+    }
+
+    private boolean doPlay() {
+        final Status status = this.stateMachine.command(StatusTransitions.CMD_PLAY);
+        if (status == null) {
+            return false;
+        }
+        if (status == Status.STOPPED) {
+            //停止状态需要先重置开始位置再进行播放
+            this.videoPlayer.seekTo(0L);
+        }
+        this.videoPlayer.setPlayWhenReady(true);
+        return true;
+    }
+
+    /**
+     * 恢复播放
+     *
+     * @return 命令是否已加入队列
+     */
+    @Override
+    public boolean resume() {
+        return play();
+    }
+
+    /**
+     * 停止播放
+     *
+     * @return 命令是否已加入队列
+     */
+    @Override
+    public boolean pause() {
+        return this.commandQueue.post(StatusTransitions.CMD_PAUSE, new Runnable() {
+            @Override
+            public void run() {
+                if (stateMachine.command(StatusTransitions.CMD_PAUSE) != null) {
+                    videoPlayer.setPlayWhenReady(false);
+                }
+            }
+        });
+    }
+
+    /**
+     * 停止播放并重置播放进度至开头 （00:00）
+     *
+     * @return 命令是否已加入队列
+     */
+    @Override
+    public boolean stop() {
+        return this.commandQueue.post(StatusTransitions.CMD_STOP, new Runnable() {
+            @Override
+            public void run() {
+                if (stateMachine.command(StatusTransitions.CMD_STOP) != null) {
+                    stateMachine.setStopAction(true);
+                    videoPlayer.setPlayWhenReady(false);
+                    videoPlayer.seekTo(0L);
+                }
+            }
+        });
+    }
+
+    /**
+     * 释放视频资源，播放器对象会保留用于下一次播放，播放状态变为 Status.EMPTY
+     *
+     * @return 命令是否已加入队列
+     */
+    @Override
+    public boolean releaseVideo() {
+        return this.commandQueue.post(StatusTransitions.CMD_RELEASE, new Runnable() {
+            @Override
+            public void run() {
+                if (stateMachine.command(StatusTransitions.CMD_RELEASE) != null) {
+                    videoPlayer.stop();
+                    releaseSourcePath();
+                    stateMachine.reset();
+                    videoDuration = -1L;
+                }
+            }
+        });
+    }
+
+    /**
+     * 释放视频资源以及播放器对象，在之前加入的命令执行完毕后释放，调用后此核心不能再使用
+     */
+    @Override
+    public void release() {
+        this.commandQueue.postLast(StatusTransitions.CMD_RELEASE, new Runnable() {
+            @Override
+            public void run() {
+                cancelPendingPrepare();
+                videoPlayer.removeListener(exoCallback);
+                videoPlayer.release();
+                releaseSourcePath();
+                metrics.stopped();
+                scrubSeeker.reset();
+                stateMachine.reset();
+                playerHandler.getLooper().quit();
+            }
+        });
+    }
+
+    /**
+     * @return 视频长度，准备完成前返回媒体信息索引中记录的长度，无效长度返回 -1
+     */
+    @Override
+    public long videoDuration() {
+        return this.videoDuration;
+    }
+
+    /**
+     * @param isLoop 是否循环播放
+     */
+    @Override
+    public void setLoop(boolean isLoop) {
+        this.isLoop = isLoop;
+    }
+
+    /**
+     * 定位视频位置，连续的跳转只执行最后一次
+     *
+     * @param ms 毫秒数
+     * @return 命令是否已加入队列，位置无效时返回 False
+     */
+    @Override
+    public boolean seek2(final long ms) {
+        if (ms < 0) {
+            return false;
+        }
+        return this.commandQueue.post(StatusTransitions.CMD_SEEK, new Runnable() {
+            @Override
+            public void run() {
+                if (ms <= videoDuration && stateMachine.status() != Status.STOPPED && stateMachine.command(StatusTransitions.CMD_SEEK) != null) {
+                    scrubSeeker.seekTo(ms);
+                }
+            }
+        });
+    }
+
+    /**
+     * 拖动进度条时定位视频位置，上一次跳转未完成时只保留最后一个位置，松开进度条时使用 seek2()
+     *
+     * @param ms 毫秒数
+     * @return 命令是否已加入队列，位置无效时返回 False
+     */
+    @Override
+    public boolean scrubTo(final long ms) {
+        if (ms < 0) {
+            return false;
+        }
+        return this.commandQueue.post(StatusTransitions.CMD_SEEK, new Runnable() {
+            @Override
+            public void run() {
+                if (ms <= videoDuration && stateMachine.status() != Status.STOPPED && stateMachine.command(StatusTransitions.CMD_SEEK) != null) {
+                    scrubSeeker.scrubTo(ms);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return 当前播放位置，无效长度返回 -1
+     */
+    @Override
+    public long currentPosition() {
+        final Status status = this.stateMachine.status();
+        if (status == Status.PLAYING || status == Status.PAUSED) {
+            return this.videoPlayer.getCurrentPosition();
+        } else if (status == Status.STOPPED) {
+            return 0L;
+        }
+        return -1L;
+    }
+
+    /**
+     * @return 当前播放器状态
+     */
+    @NonNull
+    @Override
+    public Status currentStatus() {
+        return this.stateMachine.status();
+    }
+
+    /**
+     * @return 最近的状态变化与被拒绝的命令，用于排查问题
+     */
+    @NonNull
+    public String statusTrace() {
+        return this.stateMachine.dumpTrace();
+    }
+
+    /**
+     * @return 当前使用的引擎
+     */
+    @NonNull
+    @Override
+    public VideoEngine engine() {
+        return VideoEngine.EXO;
+    }
+
+    /**
+     * @return 性能统计
+     */
+    @NonNull
+    @Override
+    public CoreMetrics metrics() {
+        return this.metrics;
+    }
+
+    /**
+     * @return 资源生成管线，可用于设置支持的封装格式
+     */
+    @NonNull
+    public SourcePipeline sourcePipeline() {
+        return this.sourcePipeline;
+    }
+
+    /**
+     * 将文件路径转换为Uri地址，本地文件直接使用文件地址，由 MappedFileDataSource 通过内存映射读取
+     * 带有协议的地址（rtsp://、http:// 等）直接解析
+     *
+     * @param filePath 文件路径
+     * @return 文件地址Uri，若无法转换则返回NULL
+     */
+    private
+    @Nullable
+    Uri file2Uri(@Nullable String filePath) {
+        if (TextUtils.isEmpty(filePath)) {
+            //路径为空，返回NULL
+            return null;
+        }
+
+        final File file = new File(filePath);
+        if (file.isFile()) {
+            return Uri.fromFile(file);
+        }
+        final Uri uri = Uri.parse(filePath);
+        if (uri.getScheme() != null) {
+            return uri;
+        }
+        try {
+            return FileProvider.getUriForFile(this.appContext, "FileProvider", file);
+        } catch (IllegalArgumentException e) {
+            //路径不在 FileProvider 配置的目录中
+            return null;
+        }
+    }
+
+    /**
+     * EXO播放器状态回调处理类
+     */
+    private final class ExoCallback implements ExoPlayer.EventListener, ExtractorMediaSource.EventListener, VideoRendererEventListener {
+
+        @Override
+        public void onLoadError(IOException error) {
+            Log.e(TAG, "发生错误，无法读取视频：" + error);
+            //读取出错后 ExtractorMediaSource 会自动重试，无法恢复时由 onPlayerError() 使准备失败
+            metrics.loadError();
+        }
+
+        @Override
+        public void onTimelineChanged(Timeline timeline, Object manifest) {
+        }
+
+        @Override
+        public void onTracksChanged(TrackGroupArray trackGroups, TrackSelectionArray trackSelections) {
+        }
+
+        @Override
+        public void onLoadingChanged(boolean isLoading) {
+        }
+
+        /**
+         * 播放器状态变化回调
+         *
+         * @param playWhenReady 是否当状态为READY时马上播放
+         * @param playbackState 当前状态
+         */
+        @Override
+        public void onPlayerStateChanged(boolean playWhenReady, int playbackState) {
+            stateMachine.syncExoState(playbackState, playWhenReady);
+            switch (playbackState) {
+                case ExoPlayer.STATE_READY:
+                    metrics.ready();
+                    scrubSeeker.seekCompleted();
+                    videoDuration = videoPlayer.getDuration();
+                    if (pendingPrepare != null) {
+                        //已准备好第一帧数据
+                        final PrepareHandle handle = pendingPrepare;
+                        pendingPrepare = null;
+                        handle.setReady();
+                    }
+                    break;
+                case ExoPlayer.STATE_BUFFERING:
+                    metrics.bufferingStarted();
+                    break;
+                case ExoPlayer.STATE_ENDED:
+                    metrics.stopped();
+                    scrubSeeker.reset();
+                    if (isLoop) {
+                        //循环播放标记
+                        doPlay();
+                    }
+                    break;
+                case ExoPlayer.STATE_IDLE:
+                    metrics.stopped();
+                    scrubSeeker.reset();
+                    break;
+            }
+        }
+
+        @Override
+        public void onPlayerError(ExoPlaybackException error) {
+            Log.e(TAG, "发生错误，播放器出现异常：" + error.getMessage());
+            metrics.prepareFailed();
+            stateMachine.reset();
+            if (pendingPrepare != null) {
+                failPendingPrepare(pendingPrepare, error);
+            }
+        }
+
+        @Override
+        public void onPositionDiscontinuity() {
+        }
+
+        @Override
+        public void onPlaybackParametersChanged(PlaybackParameters playbackParameters) {
+        }
+
+        @Override
+        public void onVideoEnabled(DecoderCounters counters) {
+        }
+
+        @Override
+        public void onVideoDecoderInitialized(String decoderName, long initializedTimestampMs, long initializationDurationMs) {
+            metrics.decoderInitialized(initializationDurationMs);
+        }
+
+        @Override
+        public void onVideoInputFormatChanged(Format format) {
+        }
+
+        @Override
+        public void onDroppedFrames(int count, long elapsedMs) {
+            metrics.framesDropped(count);
+        }
+
+        @Override
+        public void onVideoSizeChanged(int width, int height, int unappliedRotationDegrees, float pixelWidthHeightRatio) {
+        }
+
+        @Override
+        public void onRenderedFirstFrame(Surface surface) {
+            metrics.firstFrameRendered();
+        }
+
+        @Override
+        public void onVideoDisabled(DecoderCounters counters) {
+        }
+
+    }
+
+}
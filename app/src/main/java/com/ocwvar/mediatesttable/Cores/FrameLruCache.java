@@ -0,0 +1,195 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-8-7 上午10:15
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   按字节数限制大小的最近最少使用缓存，用于预览画面
+ *
+ * 与 PcmCache 相同使用按访问顺序排列的 LinkedHashMap，总大小超过上限时移除最久没有使用的记录
+ * 被移除的数据只是不再被缓存引用，可能仍被调用方使用，缓存不会回收或重复使用
+ * 所有方法都是线程安全的
+ */
+final class FrameLruCache<V> {
+
+    /**
+     * 计算记录占用的字节数
+     */
+    interface Weigher<V> {
+
+        /**
+         * @param value 缓存的数据
+         * @return 占用的字节数，加入缓存后不能改变
+         */
+        int sizeOf(@NonNull V value);
+
+    }
+
+    private final long maxBytes;
+    private final Weigher<V> weigher;
+
+    //缓存键 → 缓存记录，按访问顺序排列，最久没有使用的在最前面
+    private final LinkedHashMap<String, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long currentBytes = 0L;
+
+    //统计数据
+    private long hitCount = 0L;
+    private long missCount = 0L;
+    private long evictionCount = 0L;
+
+    /**
+     * @param maxBytes 缓存总大小上限，单位：字节
+     * @param weigher  计算记录大小
+     */
+    FrameLruCache(long maxBytes, @NonNull Weigher<V> weigher) {
+        if (maxBytes <= 0L) {
+            throw new IllegalArgumentException("缓存大小上限必须大于 0");
+        }
+        this.maxBytes = maxBytes;
+        this.weigher = weigher;
+    }
+
+    /**
+     * @param key 缓存键
+     * @return 缓存的数据，未命中时返回NULL
+     */
+    @Nullable
+    synchronized V get(@NonNull String key) {
+        final Entry<V> entry = entries.get(key);
+        if (entry != null) {
+            hitCount++;
+            return entry.value;
+        }
+        missCount++;
+        return null;
+    }
+
+    /**
+     * 加入缓存，大小超过上限的数据不会被缓存
+     *
+     * @param key   缓存键
+     * @param value 数据
+     */
+    void put(@NonNull String key, @NonNull V value) {
+        final int sizeBytes = weigher.sizeOf(value);
+        synchronized (this) {
+            final Entry<V> previous = entries.remove(key);
+            if (previous != null) {
+                currentBytes -= previous.sizeBytes;
+            }
+            if (sizeBytes <= maxBytes) {
+                entries.put(key, new Entry<>(value, sizeBytes));
+                currentBytes += sizeBytes;
+                trimToSize();
+            }
+        }
+    }
+
+    /**
+     * 移除缓存
+     *
+     * @param key 缓存键
+     */
+    synchronized void remove(@NonNull String key) {
+        final Entry<V> entry = entries.remove(key);
+        if (entry != null) {
+            currentBytes -= entry.sizeBytes;
+        }
+    }
+
+    /**
+     * 清空缓存，统计数据保持不变
+     */
+    synchronized void clear() {
+        entries.clear();
+        currentBytes = 0L;
+    }
+
+    /**
+     * @return 命中次数
+     */
+    synchronized long hitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return 未命中次数
+     */
+    synchronized long missCount() {
+        return missCount;
+    }
+
+    /**
+     * @return 命中率 0 ~ 1，尚未获取过缓存时返回 0
+     */
+    synchronized float hitRate() {
+        final long total = hitCount + missCount;
+        return (total == 0L) ? 0f : (float) hitCount / total;
+    }
+
+    /**
+     * @return 因超过大小上限被移除的记录数量
+     */
+    synchronized long evictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return 缓存占用的大小，单位：字节
+     */
+    synchronized long size() {
+        return currentBytes;
+    }
+
+    /**
+     * @return 缓存总大小上限，单位：字节
+     */
+    long maxSize() {
+        return maxBytes;
+    }
+
+    /**
+     * @return 当前缓存的记录数量
+     */
+    synchronized int entryCount() {
+        return entries.size();
+    }
+
+    /**
+     * 移除最久没有使用的记录，直到总大小不超过上限，只在持有锁时调用
+     */
+    private void trimToSize() {
+        final Iterator<Map.Entry<String, Entry<V>>> iterator = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && iterator.hasNext()) {
+            final Entry<V> entry = iterator.next().getValue();
+            iterator.remove();
+            currentBytes -= entry.sizeBytes;
+            evictionCount++;
+        }
+    }
+
+    /**
+     * 缓存记录
+     */
+    private static final class Entry<V> {
+
+        private final V value;
+        private final int sizeBytes;
+
+        Entry(V value, int sizeBytes) {
+            this.value = value;
+            this.sizeBytes = sizeBytes;
+        }
+
+    }
+
+}
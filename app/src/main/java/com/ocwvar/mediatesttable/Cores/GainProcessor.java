@@ -0,0 +1,247 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.audio.AudioProcessor;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-28 上午11:00
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   增益处理器
+ *
+ * 挂载在EXO播放器音频处理链的末端，按帧对PCM数据应用两级增益：音量 × 淡入淡出
+ * 音量与淡入淡出分别由一个 GainRamp 控制，可在任意线程中发起渐变，渐变在播放线程中逐帧计算，调用线程不需要定时更新
+ * 两级增益都没有渐变且乘积为 1 时数据原样输出
+ */
+final class GainProcessor implements AudioProcessor {
+
+    /**
+     * 淡入淡出完成回调，在播放线程中执行，不能进行耗时操作
+     */
+    interface Listener {
+
+        /**
+         * @param fadeId fade() 返回的请求编号
+         */
+        void onFadeFinished(int fadeId);
+
+    }
+
+    /**
+     * 直接设置音量时使用的渐变时间，避免音量跳变产生爆音，单位：毫秒
+     */
+    static final long DECLICK_MILLIS = 10L;
+
+    private final GainRamp volume = new GainRamp(1f);
+    private final GainRamp fade = new GainRamp(1f);
+
+    private volatile Listener listener = null;
+
+    //在播放线程中配置，可在其他线程中读取
+    private volatile int sampleRateHz = -1;
+    private volatile int channelCount = -1;
+
+    private ByteBuffer buffer = EMPTY_BUFFER;
+    private ByteBuffer outputBuffer = EMPTY_BUFFER;
+    private boolean inputEnded = false;
+
+    /**
+     * @param listener 淡入淡出完成回调，为NULL时取消
+     */
+    void setListener(@Nullable Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 渐变到指定音量
+     *
+     * @param gain           音量大小，大小由0~1
+     * @param durationMillis 渐变时间，单位：毫秒
+     */
+    void rampVolume(float gain, long durationMillis) {
+        volume.rampTo(gain, Math.max(DECLICK_MILLIS, durationMillis), GainRamp.CURVE_LINEAR);
+    }
+
+    /**
+     * @return 目标音量
+     */
+    float volume() {
+        return volume.targetGain();
+    }
+
+    /**
+     * 使用等功率曲线渐变淡入淡出增益
+     *
+     * @param gain           目标增益，0 为静音，1 为原始音量
+     * @param durationMillis 渐变时间，单位：毫秒
+     * @return 请求编号，渐变完成时通过 Listener 返回
+     */
+    int fade(float gain, long durationMillis) {
+        return fade.rampTo(gain, durationMillis, GainRamp.CURVE_EQUAL_POWER);
+    }
+
+    /**
+     * 使用等功率曲线从指定增益开始渐变淡入淡出增益
+     *
+     * @param fromGain       开始增益
+     * @param gain           目标增益
+     * @param durationMillis 渐变时间，单位：毫秒
+     * @return 请求编号，渐变完成时通过 Listener 返回
+     */
+    int fade(float fromGain, float gain, long durationMillis) {
+        return fade.rampTo(fromGain, gain, durationMillis, GainRamp.CURVE_EQUAL_POWER);
+    }
+
+    /**
+     * @return 淡入淡出的目标增益
+     */
+    float fadeGain() {
+        return fade.targetGain();
+    }
+
+    /**
+     * @return 当前的采样率，未配置时为 -1
+     */
+    int sampleRate() {
+        return sampleRateHz;
+    }
+
+    /**
+     * @return 当前的声道数，未配置时为 -1
+     */
+    int channelCount() {
+        return channelCount;
+    }
+
+    @Override
+    public boolean configure(int sampleRateHz, int channelCount, int encoding) throws UnhandledFormatException {
+        if (encoding != C.ENCODING_PCM_16BIT) {
+            throw new UnhandledFormatException(sampleRateHz, channelCount, encoding);
+        }
+        if (this.sampleRateHz == sampleRateHz && this.channelCount == channelCount) {
+            return false;
+        }
+        this.sampleRateHz = sampleRateHz;
+        this.channelCount = channelCount;
+        return true;
+    }
+
+    @Override
+    public boolean isActive() {
+        return true;
+    }
+
+    @Override
+    public int getOutputChannelCount() {
+        return channelCount;
+    }
+
+    @Override
+    public int getOutputEncoding() {
+        return C.ENCODING_PCM_16BIT;
+    }
+
+    @Override
+    public void queueInput(ByteBuffer inputBuffer) {
+        final int size = inputBuffer.remaining();
+        if (size == 0) return;
+
+        //输出缓冲区只在容量不足时重新分配
+        if (buffer.capacity() < size) {
+            buffer = ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+        } else {
+            buffer.clear();
+        }
+        process(inputBuffer, buffer);
+        buffer.flip();
+        outputBuffer = buffer;
+    }
+
+    /**
+     * 对输入数据应用增益并写入输出缓冲区，输入缓冲区的位置移动到末尾
+     *
+     * @param input  16 位PCM数据，多声道交错排列
+     * @param output 输出缓冲区，剩余空间不小于输入数据长度
+     */
+    void process(@NonNull ByteBuffer input, @NonNull ByteBuffer output) {
+        final int sampleRateHz = this.sampleRateHz;
+        final int channelCount = this.channelCount;
+        volume.begin(sampleRateHz);
+        fade.begin(sampleRateHz);
+
+        if (volume.isSteady() && fade.isSteady()) {
+            final float gain = volume.next() * fade.next();
+            if (gain == 1f) {
+                output.put(input);
+            } else {
+                final int end = input.limit();
+                for (int offset = input.position(); offset + 1 < end; offset += 2) {
+                    output.putShort(scale(input.getShort(offset), gain));
+                }
+                input.position(end);
+            }
+        } else {
+            //渐变过程中逐帧计算增益
+            final int end = input.limit();
+            final int frameBytes = channelCount << 1;
+            for (int offset = input.position(); offset + frameBytes <= end; offset += frameBytes) {
+                final float gain = volume.next() * fade.next();
+                for (int channel = 0; channel < channelCount; channel++) {
+                    output.putShort(scale(input.getShort(offset + (channel << 1)), gain));
+                }
+            }
+            input.position(end);
+        }
+
+        volume.end();
+        final int finishedFade = fade.end();
+        final Listener listener = this.listener;
+        if (finishedFade != 0 && listener != null) {
+            listener.onFadeFinished(finishedFade);
+        }
+    }
+
+    private static short scale(short sample, float gain) {
+        final int value = Math.round(sample * gain);
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+    }
+
+    @Override
+    public void queueEndOfStream() {
+        inputEnded = true;
+    }
+
+    @Override
+    public ByteBuffer getOutput() {
+        final ByteBuffer output = outputBuffer;
+        outputBuffer = EMPTY_BUFFER;
+        return output;
+    }
+
+    @Override
+    public boolean isEnded() {
+        return inputEnded && outputBuffer == EMPTY_BUFFER;
+    }
+
+    @Override
+    public void flush() {
+        outputBuffer = EMPTY_BUFFER;
+        inputEnded = false;
+    }
+
+    @Override
+    public void release() {
+        flush();
+        buffer = EMPTY_BUFFER;
+        sampleRateHz = -1;
+        channelCount = -1;
+    }
+
+}
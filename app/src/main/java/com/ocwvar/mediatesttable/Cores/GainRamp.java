@@ -0,0 +1,217 @@
+package com.ocwvar.mediatesttable.Cores;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-28 上午10:20
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   逐帧增益渐变
+ *
+ * 控制线程：rampTo() 发布新的渐变请求，请求对象创建后不再改变，通过 volatile 引用传递，不加锁
+ * 音频线程：每个缓冲区开始时调用 begin() 接收最新的请求，之后每一帧调用 next() 取得该帧的增益
+ * 渐变时间在音频线程中按采样率换算为帧数，增益按帧计算，不受缓冲区大小影响，渐变过程没有台阶所以不会产生爆音
+ * 新的请求从当前增益开始渐变，不会产生跳变
+ */
+final class GainRamp {
+
+    /**
+     * 线性渐变，用于音量调整
+     */
+    static final int CURVE_LINEAR = 0;
+
+    /**
+     * 等功率渐变：渐强为 sin 曲线，渐弱为 cos 曲线，两者同时进行时总功率不变，用于淡入淡出与交叉淡入淡出
+     */
+    static final int CURVE_EQUAL_POWER = 1;
+
+    //四分之一正弦表的精度
+    private static final int SINE_TABLE_SIZE = 1024;
+    private static final float[] QUARTER_SINE = new float[SINE_TABLE_SIZE + 1];
+
+    static {
+        for (int i = 0; i <= SINE_TABLE_SIZE; i++) {
+            QUARTER_SINE[i] = (float) Math.sin(Math.PI * 0.5 * i / SINE_TABLE_SIZE);
+        }
+    }
+
+    //最新的渐变请求，由控制线程写入
+    private volatile Request pending;
+
+    //最后一次请求的目标增益
+    private volatile float targetGain;
+
+    //音频线程最后输出的增益
+    private volatile float currentGain;
+
+    //以下字段只在音频线程中访问
+    private Request active;
+    private float gain;
+    private float startGain;
+    private float deltaGain;
+    private long totalFrames = 0L;
+    private long frameIndex = 0L;
+    private int finishedId = 0;
+
+    //请求编号，只在控制线程中访问
+    private int nextId = 0;
+
+    /**
+     * @param initialGain 初始增益
+     */
+    GainRamp(float initialGain) {
+        this.pending = new Request(0, Float.NaN, initialGain, 0L, CURVE_LINEAR);
+        this.active = pending;
+        this.targetGain = initialGain;
+        this.currentGain = initialGain;
+        this.gain = initialGain;
+    }
+
+    /**
+     * 从当前增益渐变到目标增益，在控制线程中调用
+     *
+     * @param gain           目标增益
+     * @param durationMillis 渐变时间，单位：毫秒，0 为从下一个缓冲区开始直接使用目标增益
+     * @param curve          渐变曲线：CURVE_LINEAR、CURVE_EQUAL_POWER
+     * @return 请求编号，渐变完成后由 end() 返回
+     */
+    int rampTo(float gain, long durationMillis, int curve) {
+        return rampTo(Float.NaN, gain, durationMillis, curve);
+    }
+
+    /**
+     * 从指定增益渐变到目标增益，在控制线程中调用
+     *
+     * @param fromGain       开始增益，为 NaN 时从当前增益开始
+     * @param gain           目标增益
+     * @param durationMillis 渐变时间，单位：毫秒
+     * @param curve          渐变曲线：CURVE_LINEAR、CURVE_EQUAL_POWER
+     * @return 请求编号，渐变完成后由 end() 返回
+     */
+    int rampTo(float fromGain, float gain, long durationMillis, int curve) {
+        final int id = ++nextId;
+        this.targetGain = gain;
+        this.pending = new Request(id, fromGain, gain, Math.max(0L, durationMillis), curve);
+        return id;
+    }
+
+    /**
+     * @return 最后一次请求的目标增益
+     */
+    float targetGain() {
+        return targetGain;
+    }
+
+    /**
+     * @return 音频线程最后输出的增益
+     */
+    float currentGain() {
+        return currentGain;
+    }
+
+    /**
+     * 接收最新的请求，在音频线程中每个缓冲区开始时调用
+     *
+     * @param sampleRateHz 当前采样率
+     */
+    void begin(int sampleRateHz) {
+        final Request request = pending;
+        if (request == active) {
+            return;
+        }
+        active = request;
+        if (!Float.isNaN(request.fromGain)) {
+            gain = request.fromGain;
+        }
+        startGain = gain;
+        deltaGain = request.gain - gain;
+        frameIndex = 0L;
+        totalFrames = request.durationMillis * sampleRateHz / 1000L;
+        if (totalFrames <= 0L) {
+            finish();
+        }
+    }
+
+    /**
+     * @return 当前是否没有进行中的渐变，此时 next() 会一直返回相同的增益
+     */
+    boolean isSteady() {
+        return frameIndex >= totalFrames;
+    }
+
+    /**
+     * @return 下一帧的增益，在音频线程中调用
+     */
+    float next() {
+        if (frameIndex >= totalFrames) {
+            return gain;
+        }
+
+        frameIndex++;
+        if (frameIndex >= totalFrames) {
+            finish();
+            return gain;
+        }
+
+        final float progress = (float) frameIndex / totalFrames;
+        final float shape;
+        if (active.curve == CURVE_EQUAL_POWER) {
+            //渐强使用 sin，渐弱使用 1 - cos，两者的增益平方和为常数
+            shape = (deltaGain >= 0f) ? quarterSine(progress) : 1f - quarterSine(1f - progress);
+        } else {
+            shape = progress;
+        }
+        gain = startGain + deltaGain * shape;
+        return gain;
+    }
+
+    /**
+     * 在音频线程中每个缓冲区结束时调用，更新对外可见的增益
+     *
+     * @return 在此之前完成的渐变请求编号，没有时返回 0
+     */
+    int end() {
+        currentGain = gain;
+        final int id = finishedId;
+        finishedId = 0;
+        return id;
+    }
+
+    private void finish() {
+        gain = active.gain;
+        frameIndex = totalFrames;
+        finishedId = active.id;
+    }
+
+    /**
+     * @param x 0 ~ 1
+     * @return sin(x * PI / 2)，使用查表与线性插值
+     */
+    private static float quarterSine(float x) {
+        final float position = x * SINE_TABLE_SIZE;
+        final int index = Math.min((int) position, SINE_TABLE_SIZE - 1);
+        final float fraction = position - index;
+        return QUARTER_SINE[index] + (QUARTER_SINE[index + 1] - QUARTER_SINE[index]) * fraction;
+    }
+
+    /**
+     * 渐变请求，创建后不再改变
+     */
+    private static final class Request {
+
+        private final int id;
+        private final float fromGain;
+        private final float gain;
+        private final long durationMillis;
+        private final int curve;
+
+        Request(int id, float fromGain, float gain, long durationMillis, int curve) {
+            this.id = id;
+            this.fromGain = fromGain;
+            this.gain = gain;
+            this.durationMillis = durationMillis;
+            this.curve = curve;
+        }
+
+    }
+
+}
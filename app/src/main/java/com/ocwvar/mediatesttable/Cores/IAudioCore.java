@@ -3,40 +3,91 @@ package com.ocwvar.mediatesttable.Cores;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import java.util.concurrent.Executor;
+
 /**
  * Project osu-plus
  * Created by OCWVAR
  * On 17-6-14 下午10:09
  * File Location ru.nsu.ccfit.zuev.audio.serviceAudio
  * This file use to :   音频功能接口
+ *
+ * 控制播放的方法只把命令加入核心的命令队列后马上返回，命令按调用的顺序在核心的播放器线程中执行
+ * 这些方法的返回值表示命令是否已加入队列，命令是否被执行由之后的 onStateChanged() 等事件得知
  */
 public interface IAudioCore {
 
+    /**
+     * 默认的频谱数据长度，即对数频段的数量
+     */
+    int SPECTRUM_SIZE = 128;
+
     /**
      * 准备音频
      *
      * @param filePath 音频路径
-     * @return 执行结果
+     * @return 命令是否已加入队列
      */
     boolean prepare(@NonNull final String filePath);
 
     /**
-     * 设置核心消息显示回调
+     * 异步准备音频，不阻塞调用线程，缓存查找等耗时操作在工作线程中进行
+     * 返回结果在播放器准备好第一段音频数据时完成，也可以用于取消准备
+     * 调用 prepare() 或再次调用此方法会取消尚未完成的异步准备
+     *
+     * @param filePath      音频路径
+     * @param timeoutMillis 超时时间，单位：毫秒，小于等于 0 时不设置超时
+     * @return 准备结果
+     */
+    @NonNull
+    PrepareHandle prepareAsync(@NonNull final String filePath, final long timeoutMillis);
+
+    /**
+     * 添加事件回调，回调直接在产生事件的线程中执行，不能进行耗时操作
+     *
+     * @param listener 事件回调
+     */
+    void addEventListener(@NonNull final CoreEventListener listener);
+
+    /**
+     * 添加事件回调，事件按产生的顺序在指定的 Executor 中执行
+     *
+     * @param listener 事件回调
+     * @param executor 执行回调的 Executor，例如 CoreThreads.mainExecutor()
+     */
+    void addEventListener(@NonNull final CoreEventListener listener, @NonNull final Executor executor);
+
+    /**
+     * 移除事件回调
+     *
+     * @param listener 事件回调
+     */
+    void removeEventListener(@NonNull final CoreEventListener listener);
+
+    /**
+     * 设置媒体资源磁盘缓存，之后准备的本地音频会优先使用缓存文件
      *
-     * @param callback 回调结果
+     * @param mediaCache 磁盘缓存，为NULL时不使用缓存
      */
-    void setCoreCallback(CoreCallback callback);
+    void setMediaCache(@Nullable final MediaDiskCache mediaCache);
+
+    /**
+     * 设置媒体信息索引，之后准备的音频如果已有记录，准备完成前即可获取长度
+     *
+     * @param mediaProbe 媒体信息索引，为NULL时不使用
+     */
+    void setMediaProbe(@Nullable final MediaProbe mediaProbe);
 
     /**
      * 直接准备并播放音频
      *
      * @param filePath 音频路径
-     * @return 执行结果
+     * @return 命令是否已加入队列
      */
     boolean play(@NonNull final String filePath);
 
     /**
-     * 测试播放效果
+     * 测试播放效果，多条指令使用 ; 分隔，以 @延迟毫秒: 开头的指令定时执行，例如：SP_1.25;@2000:VO_0_500
      *
      * @param code 指令
      * @return 返回结果，没有结果返回NULL
@@ -47,28 +98,28 @@ public interface IAudioCore {
     /**
      * 播放已准备好的音频
      *
-     * @return 执行结果
+     * @return 命令是否已加入队列
      */
     boolean play();
 
     /**
      * 恢复播放
      *
-     * @return 执行结果
+     * @return 命令是否已加入队列
      */
     boolean resume();
 
     /**
      * 停止播放
      *
-     * @return 执行结果
+     * @return 命令是否已加入队列
      */
     boolean pause();
 
     /**
      * 停止播放并重置播放进度至开头 （00:00）
      *
-     * @return 执行结果
+     * @return 命令是否已加入队列
      */
     boolean stop();
 
@@ -76,17 +127,26 @@ public interface IAudioCore {
      * 定位音频位置
      *
      * @param ms 毫秒数
-     * @return 执行结果
+     * @return 命令是否已加入队列
      */
     boolean seek2(final long ms);
 
+    /**
+     * 拖动进度条时跳转，跳转到附近的关键帧，上一次跳转未完成时只保留最后一个位置
+     * 松开进度条时使用 seek2() 跳转到精确的位置
+     *
+     * @param ms 毫秒数
+     * @return 命令是否已加入队列
+     */
+    boolean scrubTo(final long ms);
+
     /**
      * 释放资源
      */
     void release();
 
     /**
-     * @return 音频长度，无效长度返回 -1
+     * @return 音频长度，准备完成前返回媒体信息索引中记录的长度，无效长度返回 -1
      */
     long audioDuration();
 
@@ -95,6 +155,17 @@ public interface IAudioCore {
      */
     long currentPosition();
 
+    /**
+     * @return 当前播放位置，无效长度返回 -1，单位微秒，可在任意线程中读取
+     */
+    long currentPositionUs();
+
+    /**
+     * @return 性能统计
+     */
+    @NonNull
+    CoreMetrics metrics();
+
     /**
      * @return 当前播放器状态
      */
@@ -104,23 +175,98 @@ public interface IAudioCore {
     /**
      * 调用此方法前需要调用 enableVisualizer() 否则无法获取到数据
      *
-     * @return 当前音频的FFT，无效或无法获取时返回NULL
+     * @return 当前音频的对数频段幅度数据（满量程为 1），无效或无法获取时返回NULL
      */
     @Nullable
     float[] currentSpectrum();
 
+    /**
+     * 获取当前音频的对数频段幅度数据（满量程为 1），结果直接写入调用者提供的数组，用于需要每帧获取数据的场合，调用过程不产生对象分配
+     * 调用此方法前需要调用 enableVisualizer() 否则无法获取到数据
+     *
+     * @param output 用于存放结果的数组，数组可重复使用，数组长度即为频段数量
+     * @return 执行结果，无效或无法获取时返回 False
+     */
+    boolean currentSpectrum(@NonNull final float[] output);
+
+    /**
+     * 启动频谱推送模式，频谱数据由捕获线程按指定频率写入缓冲区，之后 currentSpectrum() 只读取最新一帧数据
+     *
+     * @param captureRate 捕获频率，单位：毫赫兹（mHz）
+     * @return 命令是否已加入队列
+     */
+    boolean enableSpectrumStream(final int captureRate);
+
+    /**
+     * 停止频谱推送模式
+     */
+    void disableSpectrumStream();
+
     /**
      * @return 当前音量大小
      */
     float getVolume();
 
     /**
-     * 设置音量
+     * 设置音量，音量经过很短的渐变后生效，不会产生爆音
      *
      * @param volume 音量大小，大小由0~1，0为静音
      */
     void setVolume(final float volume);
 
+    /**
+     * 在指定时间内渐变到指定音量
+     *
+     * @param volume     音量大小，大小由0~1，0为静音
+     * @param rampMillis 渐变时间，单位：毫秒
+     */
+    void setVolume(final float volume, final long rampMillis);
+
+    /**
+     * 设置播放速度与音调，两者相互独立，变速时保持原调、变调时保持原速
+     *
+     * @param speed 播放速度，1 为原速
+     * @param pitch 音调，1 为原调
+     * @return 命令是否已加入队列
+     */
+    boolean setPlaybackParameters(final float speed, final float pitch);
+
+    /**
+     * @return 当前的播放速度
+     */
+    float getPlaybackSpeed();
+
+    /**
+     * @return 当前的音调
+     */
+    float getPlaybackPitch();
+
+    /**
+     * 从静音开始淡入并播放，已在播放时从当前增益淡入
+     *
+     * @param durationMillis 淡入时间，单位：毫秒
+     * @return 命令是否已加入队列
+     */
+    boolean fadeIn(final long durationMillis);
+
+    /**
+     * 淡出后暂停播放，之后调用 play() 或 resume() 会恢复原来的音量
+     *
+     * @param durationMillis 淡出时间，单位：毫秒
+     * @return 命令是否已加入队列
+     */
+    boolean fadeOut(final long durationMillis);
+
+    /**
+     * 交叉淡入淡出到另一首音频，当前音频淡出的同时新的音频淡入，没有在播放时等同于淡入播放新的音频
+     * 播放队列会重置为新的音频
+     *
+     * @param filePath       音频路径
+     * @param durationMillis 交叉淡入淡出时间，单位：毫秒
+     * @return 命令是否已加入队列
+     */
+    boolean crossfadeTo(@NonNull final String filePath, final long durationMillis);
+
     /**
      * 设置循环播放标记
      *
@@ -128,4 +274,37 @@ public interface IAudioCore {
      */
     void setLoopFlag(final boolean isLoop);
 
+    /**
+     * 将音频添加到播放队列末尾，队列中的下一首音频会在当前音频播放时预先缓冲，切换时没有间隙
+     * 调用 prepare() 或 play(String) 会清空播放队列，并以该音频作为队列的第一首
+     *
+     * @param filePath 音频路径
+     * @return 命令是否已加入队列
+     */
+    boolean enqueue(@NonNull final String filePath);
+
+    /**
+     * 切换到播放队列中的下一首音频
+     *
+     * @return 命令是否已加入队列，已经是最后一首时返回 False
+     */
+    boolean next();
+
+    /**
+     * 切换到播放队列中的上一首音频
+     *
+     * @return 命令是否已加入队列，已经是第一首时返回 False
+     */
+    boolean previous();
+
+    /**
+     * @return 当前音频在播放队列中的位置，无效时返回 -1
+     */
+    int queueIndex();
+
+    /**
+     * @return 播放队列中的音频数量
+     */
+    int queueSize();
+
 }
@@ -1,6 +1,7 @@
 package com.ocwvar.mediatesttable.Cores;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.view.SurfaceHolder;
 
 /**
@@ -8,7 +9,10 @@ import android.view.SurfaceHolder;
  * Created by OCWVAR
  * On 17-7-5 下午4:31
  * File Location com.ocwvar.mediatesttable.Cores
- * This file use to :
+ * This file use to :   视频功能接口
+ *
+ * 控制播放的方法只把命令加入核心的命令队列后马上返回，命令按调用的顺序在核心的播放器线程中执行
+ * 这些方法的返回值表示命令是否已加入队列
  */
 public interface IVideoCore {
 
@@ -19,20 +23,47 @@ public interface IVideoCore {
      */
     void setDisplayObject(SurfaceHolder surfaceHolder);
 
+    /**
+     * 设置媒体资源磁盘缓存，之后准备的本地视频会优先使用缓存文件
+     *
+     * @param mediaCache 磁盘缓存，为NULL时不使用缓存
+     */
+    void setMediaCache(@Nullable MediaDiskCache mediaCache);
+
+    /**
+     * 设置媒体信息索引，之后准备的视频如果已有记录，准备完成前即可获取长度
+     *
+     * @param mediaProbe 媒体信息索引，为NULL时不使用
+     */
+    void setMediaProbe(@Nullable MediaProbe mediaProbe);
+
     /**
      * 准备视频 (异步)
      *
      * @param filePath 视频路径
      * @param isPlayWhenReady 视频准备好后马上进行播放
-     * @return 执行结果
+     * @return 命令是否已加入队列
      */
     boolean prepare(@NonNull final String filePath,final boolean isPlayWhenReady);
 
+    /**
+     * 异步准备视频，不阻塞调用线程，缓存查找等耗时操作在工作线程中进行
+     * 返回结果在播放器准备好第一帧数据时完成，也可以用于取消准备
+     * 调用 prepare() 或再次调用此方法会取消尚未完成的异步准备
+     *
+     * @param filePath        视频路径
+     * @param isPlayWhenReady 视频准备好后马上进行播放
+     * @param timeoutMillis   超时时间，单位：毫秒，小于等于 0 时不设置超时
+     * @return 准备结果
+     */
+    @NonNull
+    PrepareHandle prepareAsync(@NonNull final String filePath, final boolean isPlayWhenReady, final long timeoutMillis);
+
     /**
      * 准备视频 (异步)
      *
      * @param filePath 视频路径
-     * @return 执行结果
+     * @return 命令是否已加入队列
      */
     boolean prepare(@NonNull final String filePath);
 
@@ -40,7 +71,7 @@ public interface IVideoCore {
      * 直接准备(异步)并播放视频
      *
      * @param filePath 视频路径
-     * @return 执行结果
+     * @return 命令是否已加入队列
      */
     boolean play(@NonNull final String filePath);
 
@@ -52,28 +83,28 @@ public interface IVideoCore {
     /**
      * 播放已准备好的视频
      *
-     * @return 执行结果
+     * @return 命令是否已加入队列
      */
     boolean play();
 
     /**
      * 恢复播放
      *
-     * @return 执行结果
+     * @return 命令是否已加入队列
      */
     boolean resume();
 
     /**
      * 停止播放
      *
-     * @return 执行结果
+     * @return 命令是否已加入队列
      */
     boolean pause();
 
     /**
      * 停止播放并重置播放进度至开头 （00:00）
      *
-     * @return 执行结果
+     * @return 命令是否已加入队列
      */
     boolean stop();
 
@@ -81,18 +112,32 @@ public interface IVideoCore {
      * 定位音频位置
      *
      * @param ms 毫秒数
-     * @return 执行结果
+     * @return 命令是否已加入队列
      */
     boolean seek2(final long ms);
 
+    /**
+     * 拖动进度条时跳转，跳转到附近的关键帧，上一次跳转未完成时只保留最后一个位置
+     * 松开进度条时使用 seek2() 跳转到精确的位置
+     *
+     * @param ms 毫秒数
+     * @return 命令是否已加入队列
+     */
+    boolean scrubTo(final long ms);
+
     /**
      * 释放视频资源
-     * @return  执行结果
+     * @return  命令是否已加入队列
      */
     boolean releaseVideo();
 
     /**
-     * @return 视频长度，无效长度返回 -1
+     * 释放视频资源以及播放器对象，调用后此核心不能再使用
+     */
+    void release();
+
+    /**
+     * @return 视频长度，准备完成前返回媒体信息索引中记录的长度，无效长度返回 -1
      */
     long videoDuration();
 
@@ -112,4 +157,16 @@ public interface IVideoCore {
     @NonNull
     Status currentStatus();
 
+    /**
+     * @return 当前使用的引擎
+     */
+    @NonNull
+    VideoEngine engine();
+
+    /**
+     * @return 性能统计
+     */
+    @NonNull
+    CoreMetrics metrics();
+
 }
@@ -0,0 +1,186 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-25 上午10:20
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   无锁延迟直方图
+ *
+ * 数值单位为微秒，按对数线性方式分桶：小于 8 的数值每个数值一个桶，之后每个 2 的幂区间平均分为 8 个桶，相对误差不超过 12.5%
+ * 记录只使用原子操作，不加锁也不产生对象分配，可在任意线程中同时记录
+ * 读取统计数据时各个桶分别读取，与正在进行的记录之间可能有轻微的不一致
+ */
+final class LatencyHistogram {
+
+    //每个 2 的幂区间的分桶数量 = 2 ^ SUB_BUCKET_BITS
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    //最大可记录的数值 = 2 ^ MAX_EXPONENT 微秒（约 19 小时），更大的数值记录在最后一个桶中
+    private static final int MAX_EXPONENT = 36;
+
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong(0L);
+    private final AtomicLong sum = new AtomicLong(0L);
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong(0L);
+
+    /**
+     * 记录一个数值
+     *
+     * @param valueUs 数值，单位：微秒，负数按 0 记录
+     */
+    void record(long valueUs) {
+        final long value = Math.max(0L, valueUs);
+        buckets.incrementAndGet(bucketIndex(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+
+        long current;
+        while (value < (current = min.get()) && !min.compareAndSet(current, value)) {
+            //重试
+        }
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            //重试
+        }
+    }
+
+    /**
+     * 清空所有数据
+     */
+    void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0L);
+        }
+        count.set(0L);
+        sum.set(0L);
+        min.set(Long.MAX_VALUE);
+        max.set(0L);
+    }
+
+    /**
+     * @return 记录的数量
+     */
+    long count() {
+        return count.get();
+    }
+
+    /**
+     * @return 最小值，没有记录时返回 0
+     */
+    long min() {
+        final long min = this.min.get();
+        return (min == Long.MAX_VALUE) ? 0L : min;
+    }
+
+    /**
+     * @return 最大值，没有记录时返回 0
+     */
+    long max() {
+        return max.get();
+    }
+
+    /**
+     * @return 平均值，没有记录时返回 0
+     */
+    long mean() {
+        final long count = this.count.get();
+        return (count == 0L) ? 0L : sum.get() / count;
+    }
+
+    /**
+     * @param percentile 百分位，0 ~ 100
+     * @return 百分位对应的数值（所在桶的上限，不超过最大值），没有记录时返回 0
+     */
+    long percentile(double percentile) {
+        final long count = this.count.get();
+        if (count == 0L) {
+            return 0L;
+        }
+
+        final long rank = Math.max(1L, (long) Math.ceil(count * percentile / 100.0));
+        long seen = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), max());
+            }
+        }
+        return max();
+    }
+
+    /**
+     * 将统计数据以JSON对象的格式写入
+     *
+     * @param json 输出位置
+     */
+    void appendJson(@NonNull StringBuilder json) {
+        json.append("{\"count\":").append(count())
+                .append(",\"min\":").append(min())
+                .append(",\"max\":").append(max())
+                .append(",\"mean\":").append(mean())
+                .append(",\"p50\":").append(percentile(50.0))
+                .append(",\"p90\":").append(percentile(90.0))
+                .append(",\"p99\":").append(percentile(99.0))
+                .append(",\"buckets\":[");
+        //只输出有数据的桶：[下限, 上限, 数量]
+        boolean isFirst = true;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            final long bucketCount = buckets.get(i);
+            if (bucketCount == 0L) continue;
+            if (!isFirst) json.append(',');
+            isFirst = false;
+            json.append('[').append(bucketLowerBound(i)).append(',').append(bucketUpperBound(i)).append(',').append(bucketCount).append(']');
+        }
+        json.append("]}");
+    }
+
+    /**
+     * @param value 数值，不小于 0
+     * @return 所在的桶
+     */
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent >= MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * @param index 桶
+     * @return 桶包含的最小数值
+     */
+    static long bucketLowerBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        final int exponent = index / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+        final int subBucket = index % SUB_BUCKET_COUNT;
+        return (long) (SUB_BUCKET_COUNT + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * @param index 桶
+     * @return 桶包含的最大数值
+     */
+    static long bucketUpperBound(int index) {
+        if (index >= BUCKET_COUNT - 1) {
+            return Long.MAX_VALUE;
+        }
+        return bucketLowerBound(index + 1) - 1L;
+    }
+
+}
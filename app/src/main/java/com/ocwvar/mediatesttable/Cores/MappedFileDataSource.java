@@ -0,0 +1,141 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-19 上午11:00
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   使用内存映射读取本地文件的 ExoPlayer 数据源
+ *
+ * 本地文件地址（file:// 或没有协议的路径）直接通过 MappedFileReader 读取，不经过 ContentResolver
+ * 其他地址交给上游数据源处理
+ */
+final class MappedFileDataSource implements DataSource {
+
+    private final DataSource upstream;
+
+    //当前使用的读取器，读取上游数据源时为NULL
+    private MappedFileReader reader = null;
+    private DataSource openedUpstream = null;
+    private Uri uri = null;
+    private long position = 0L;
+    private long bytesRemaining = 0L;
+
+    /**
+     * @param upstream 处理非本地文件地址的数据源
+     */
+    MappedFileDataSource(@NonNull DataSource upstream) {
+        this.upstream = upstream;
+    }
+
+    /**
+     * @param uri 资源地址
+     * @return 是否为本地文件地址
+     */
+    static boolean isLocalFile(@Nullable Uri uri) {
+        if (uri == null) {
+            return false;
+        }
+        final String scheme = uri.getScheme();
+        return scheme == null || "file".equals(scheme);
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+        this.uri = dataSpec.uri;
+        if (!isLocalFile(dataSpec.uri)) {
+            this.openedUpstream = this.upstream;
+            return this.upstream.open(dataSpec);
+        }
+
+        this.reader = new MappedFileReader(new File(dataSpec.uri.getPath()));
+        if (dataSpec.position > this.reader.length()) {
+            close();
+            throw new EOFException();
+        }
+        this.position = dataSpec.position;
+        this.bytesRemaining = (dataSpec.length == C.LENGTH_UNSET) ? this.reader.length() - dataSpec.position : dataSpec.length;
+        if (this.bytesRemaining < 0L || this.position + this.bytesRemaining > this.reader.length()) {
+            close();
+            throw new EOFException();
+        }
+        return this.bytesRemaining;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) throws IOException {
+        if (this.openedUpstream != null) {
+            return this.openedUpstream.read(buffer, offset, readLength);
+        }
+        if (readLength == 0) {
+            return 0;
+        }
+        if (this.bytesRemaining == 0L) {
+            return C.RESULT_END_OF_INPUT;
+        }
+
+        final int count = this.reader.read(this.position, buffer, offset, (int) Math.min(this.bytesRemaining, readLength));
+        if (count < 0) {
+            throw new EOFException();
+        }
+        this.position += count;
+        this.bytesRemaining -= count;
+        return count;
+    }
+
+    @Override
+    public Uri getUri() {
+        return this.uri;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.uri = null;
+        try {
+            if (this.openedUpstream != null) {
+                this.openedUpstream.close();
+            }
+            if (this.reader != null) {
+                this.reader.close();
+            }
+        } finally {
+            this.openedUpstream = null;
+            this.reader = null;
+            this.bytesRemaining = 0L;
+        }
+    }
+
+    /**
+     * 生成使用内存映射读取本地文件的数据源工厂
+     */
+    static final class Factory implements DataSource.Factory {
+
+        private final DataSource.Factory upstreamFactory;
+
+        /**
+         * @param upstreamFactory 处理非本地文件地址的数据源工厂
+         */
+        Factory(@NonNull DataSource.Factory upstreamFactory) {
+            this.upstreamFactory = upstreamFactory;
+        }
+
+        @Override
+        public DataSource createDataSource() {
+            return new MappedFileDataSource(this.upstreamFactory.createDataSource());
+        }
+
+    }
+
+}
@@ -0,0 +1,141 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.support.annotation.NonNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-19 上午10:20
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   内存映射的本地文件读取器
+ *
+ * 只把读取位置附近的一段区域（窗口）映射到内存，读取时直接从映射内存复制到目标数组，没有 read() 系统调用，也没有中间缓冲区
+ * 读取位置移出窗口时重新映射新的位置，同时只保留一个窗口，不会因为文件很大占用大量虚拟地址空间
+ * 此类不是线程安全的，同一个对象只能在一个线程中读取
+ */
+final class MappedFileReader implements Closeable {
+
+    /**
+     * 映射窗口的大小
+     */
+    static final int WINDOW_SIZE = 8 * 1024 * 1024;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long length;
+    private final int windowSize;
+
+    //当前映射的窗口与其在文件中的开始位置，尚未读取或已关闭时为NULL
+    private MappedByteBuffer window = null;
+    private long windowStart = 0L;
+
+    /**
+     * @param file 本地文件
+     * @throws IOException 无法打开文件
+     */
+    MappedFileReader(@NonNull File file) throws IOException {
+        this(file, WINDOW_SIZE);
+    }
+
+    /**
+     * @param file       本地文件
+     * @param windowSize 映射窗口的大小
+     * @throws IOException 无法打开文件
+     */
+    MappedFileReader(@NonNull File file, int windowSize) throws IOException {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("映射窗口大小必须大于 0");
+        }
+        this.windowSize = windowSize;
+        this.file = new RandomAccessFile(file, "r");
+        try {
+            this.channel = this.file.getChannel();
+            this.length = channel.size();
+        } catch (IOException e) {
+            this.file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return 文件长度，单位：字节
+     */
+    long length() {
+        return length;
+    }
+
+    /**
+     * 从指定位置读取数据
+     *
+     * @param position 文件中的位置
+     * @param target   存放数据的数组
+     * @param offset   数组中的开始位置
+     * @param count    最多读取的长度
+     * @return 实际读取的长度，已到达文件末尾时返回 -1
+     * @throws IOException 无法映射文件
+     */
+    int read(long position, @NonNull byte[] target, int offset, int count) throws IOException {
+        if (position < 0L || offset < 0 || count < 0 || offset + count > target.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (count == 0) {
+            return 0;
+        }
+        if (position >= length) {
+            return -1;
+        }
+
+        final int total = (int) Math.min(count, length - position);
+        int done = 0;
+        while (done < total) {
+            //可能跨越窗口边界
+            final long current = position + done;
+            final MappedByteBuffer region = windowAt(current);
+            final int regionOffset = (int) (current - windowStart);
+            final int part = Math.min(total - done, region.capacity() - regionOffset);
+            region.position(regionOffset);
+            region.get(target, offset + done, part);
+            done += part;
+        }
+        return total;
+    }
+
+    /**
+     * 关闭文件并放弃当前窗口，映射的内存在窗口对象被回收后释放
+     *
+     * @throws IOException 无法关闭文件
+     */
+    @Override
+    public void close() throws IOException {
+        window = null;
+        file.close();
+    }
+
+    /**
+     * 获取包含指定位置的窗口，不在当前窗口内时按窗口大小对齐后重新映射
+     *
+     * @param position 文件中的位置，小于文件长度
+     * @return 映射窗口
+     * @throws IOException 无法映射文件
+     */
+    @NonNull
+    private MappedByteBuffer windowAt(long position) throws IOException {
+        if (window != null && position >= windowStart && position < windowStart + window.capacity()) {
+            return window;
+        }
+        //先放弃旧窗口，同时只保留一个映射
+        window = null;
+        final long start = position - position % windowSize;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(windowSize, length - start));
+        windowStart = start;
+        return window;
+    }
+
+}
@@ -0,0 +1,645 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-18 上午10:00
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   媒体资源磁盘缓存
+ *
+ * 缓存以内容标识（路径 + 长度 + 修改时间）为键，资源内容变化后会使用新的缓存文件
+ * 缓存总大小超过上限时，按最近最少使用的顺序删除缓存文件
+ * 缓存索引保存在缓存目录的 index 文件中，创建缓存对象后在后台线程中读取（之前调用的方法会等待读取完成）
+ *
+ * 核心在准备资源时调用 resolvePath()：命中时直接使用缓存文件，未命中时仍使用原始资源
+ * 不再使用资源时必须调用 releasePath()：使用中的缓存文件不会因超过大小上限被删除，
+ * 未命中的资源在释放后才在后台线程写入缓存，写入不会与播放同时读取同一个文件
+ */
+public final class MediaDiskCache {
+
+    /**
+     * 缓存数据来源，可以是本地文件，也可以是之后加入的网络资源
+     */
+    public interface Source {
+
+        /**
+         * @return 资源数据流，由调用方关闭
+         * @throws IOException 无法读取资源
+         */
+        @NonNull
+        InputStream open() throws IOException;
+
+    }
+
+    /**
+     * 本地文件数据来源
+     */
+    public static final class FileSource implements Source {
+
+        private final File file;
+
+        public FileSource(@NonNull File file) {
+            this.file = file;
+        }
+
+        @NonNull
+        @Override
+        public InputStream open() throws IOException {
+            return new FileInputStream(file);
+        }
+
+    }
+
+    private static final String INDEX_FILE_NAME = "index";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File directory;
+    private final long maxBytes;
+    private final Executor fillExecutor;
+
+    //缓存键 → 缓存记录，按访问顺序排列，最久没有使用的在最前面
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    //正在后台写入的缓存键
+    private final Set<String> pendingKeys = new HashSet<>();
+
+    //正在使用的缓存文件名 → 使用次数
+    private final HashMap<String, Integer> pinCounts = new HashMap<>();
+
+    //正在使用的原始资源路径 → 释放后写入缓存的任务
+    private final HashMap<String, DeferredFill> deferredFills = new HashMap<>();
+
+    private long currentBytes = 0L;
+
+    //是否已读取缓存索引，只在持有锁时访问
+    private boolean isLoaded = false;
+
+    //统计数据
+    private long hitCount = 0L;
+    private long missCount = 0L;
+    private long evictionCount = 0L;
+
+    /**
+     * @param directory 缓存目录，不存在时自动创建
+     * @param maxBytes  缓存总大小上限，单位：字节
+     */
+    public MediaDiskCache(@NonNull File directory, long maxBytes) {
+        this(directory, maxBytes, Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(@NonNull Runnable runnable) {
+                final Thread thread = new Thread(runnable, "MediaDiskCache");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        }));
+    }
+
+    /**
+     * @param directory    缓存目录，不存在时自动创建
+     * @param maxBytes     缓存总大小上限，单位：字节
+     * @param fillExecutor 后台写入缓存使用的执行器
+     */
+    MediaDiskCache(@NonNull File directory, long maxBytes, @NonNull Executor fillExecutor) {
+        if (maxBytes <= 0L) {
+            throw new IllegalArgumentException("缓存大小上限必须大于 0");
+        }
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.fillExecutor = fillExecutor;
+        //缓存索引不在创建对象的线程（通常是主线程）中读取
+        fillExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (MediaDiskCache.this) {
+                    ensureLoaded();
+                }
+            }
+        });
+    }
+
+    /**
+     * 生成本地文件的内容标识，文件被修改后标识也会改变
+     *
+     * @param file 本地文件
+     * @return 内容标识
+     */
+    @NonNull
+    public static String contentKey(@NonNull File file) {
+        return file.getAbsolutePath() + '|' + file.length() + '|' + file.lastModified();
+    }
+
+    /**
+     * 获取可用于播放的资源路径，只处理存在的本地文件，其余路径直接返回
+     * 返回的路径在调用 releasePath() 前一直有效：命中的缓存文件不会被删除，未命中的资源在释放后才写入缓存
+     *
+     * @param filePath 原始资源路径
+     * @return 命中时返回缓存文件路径，否则返回原始路径
+     */
+    @NonNull
+    public String resolvePath(@NonNull String filePath) {
+        final File file = new File(filePath);
+        if (!file.isFile() || isInCache(file)) {
+            return filePath;
+        }
+
+        final String key = contentKey(file);
+        synchronized (this) {
+            final File cachedFile = get(key);
+            if (cachedFile != null) {
+                final Integer count = pinCounts.get(cachedFile.getName());
+                pinCounts.put(cachedFile.getName(), (count == null) ? 1 : count + 1);
+                return cachedFile.getPath();
+            }
+
+            final DeferredFill fill = deferredFills.get(filePath);
+            if (fill != null) {
+                fill.users++;
+            } else if (!pendingKeys.contains(key)) {
+                deferredFills.put(filePath, new DeferredFill(key, new FileSource(file), extensionOf(filePath)));
+            }
+        }
+        return filePath;
+    }
+
+    /**
+     * 不再使用 resolvePath() 返回的路径，每次 resolvePath() 都需要对应一次释放
+     * 缓存文件不再使用后可以被删除，原始资源不再使用后开始在后台写入缓存
+     *
+     * @param resolvedPath resolvePath() 返回的路径
+     */
+    public void releasePath(@NonNull String resolvedPath) {
+        final DeferredFill fill;
+        synchronized (this) {
+            ensureLoaded();
+            final File file = new File(resolvedPath);
+            if (isInCache(file)) {
+                final Integer count = pinCounts.get(file.getName());
+                if (count == null) {
+                    return;
+                }
+                if (count > 1) {
+                    pinCounts.put(file.getName(), count - 1);
+                    return;
+                }
+                pinCounts.remove(file.getName());
+                //使用中时跳过的缓存，现在可以删除
+                if (currentBytes > maxBytes) {
+                    trimToSize();
+                    writeIndex();
+                }
+                return;
+            }
+
+            fill = deferredFills.get(resolvedPath);
+            if (fill == null || --fill.users > 0) {
+                return;
+            }
+            deferredFills.remove(resolvedPath);
+            if (entries.containsKey(fill.key) || !pendingKeys.add(fill.key)) {
+                return;
+            }
+        }
+        fillLater(fill.key, fill.source, fill.extension);
+    }
+
+    /**
+     * 获取缓存文件，未命中时在后台线程写入缓存，下一次获取时即可命中
+     *
+     * @param key       内容标识
+     * @param source    数据来源
+     * @param extension 缓存文件扩展名，不包括 "."，为NULL时没有扩展名
+     * @return 缓存文件，未命中时返回NULL
+     */
+    @Nullable
+    public File resolve(@NonNull final String key, @NonNull final Source source, @Nullable final String extension) {
+        final File cachedFile = get(key);
+        if (cachedFile != null) {
+            return cachedFile;
+        }
+
+        synchronized (this) {
+            if (!pendingKeys.add(key)) {
+                //已经在写入中
+                return null;
+            }
+        }
+        fillLater(key, source, extension);
+        return null;
+    }
+
+    /**
+     * 在后台线程写入缓存，调用前需要将缓存键加入 pendingKeys
+     */
+    private void fillLater(@NonNull final String key, @NonNull final Source source, @Nullable final String extension) {
+        fillExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    put(key, source, extension);
+                } catch (IOException ignored) {
+                    //无法写入缓存时仍然使用原始资源
+                } finally {
+                    synchronized (MediaDiskCache.this) {
+                        pendingKeys.remove(key);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * 获取缓存文件
+     *
+     * @param key 内容标识
+     * @return 缓存文件，未命中时返回NULL
+     */
+    @Nullable
+    public synchronized File get(@NonNull String key) {
+        ensureLoaded();
+        final Entry entry = entries.get(key);
+        if (entry != null) {
+            final File file = new File(directory, entry.fileName);
+            if (file.length() == entry.length) {
+                hitCount++;
+                return file;
+            }
+
+            //缓存文件已被外部删除或修改
+            entries.remove(key);
+            currentBytes -= entry.length;
+            deleteFile(file);
+            writeIndex();
+        }
+        missCount++;
+        return null;
+    }
+
+    /**
+     * 读取数据来源并写入缓存，在调用线程中执行
+     *
+     * @param key       内容标识
+     * @param source    数据来源
+     * @param extension 缓存文件扩展名，不包括 "."，为NULL时没有扩展名
+     * @return 缓存文件，资源大于缓存上限时不进行缓存，返回NULL
+     * @throws IOException 无法读取资源或写入缓存
+     */
+    @Nullable
+    public File put(@NonNull String key, @NonNull Source source, @Nullable String extension) throws IOException {
+        if (key.indexOf('\t') >= 0 || key.indexOf('\n') >= 0) {
+            throw new IllegalArgumentException("内容标识不能包含制表符或换行符");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("无法创建缓存目录：" + directory);
+        }
+
+        final String fileName = (extension == null || extension.isEmpty()) ? hash(key) : hash(key) + '.' + extension;
+        final File tempFile = new File(directory, fileName + TEMP_SUFFIX);
+
+        //数据写入临时文件，写入期间不占用锁
+        long length = 0L;
+        final InputStream inputStream = source.open();
+        try {
+            final OutputStream outputStream = new FileOutputStream(tempFile);
+            try {
+                final byte[] buffer = new byte[64 * 1024];
+                int count;
+                while ((count = inputStream.read(buffer)) != -1) {
+                    length += count;
+                    if (length > maxBytes) {
+                        break;
+                    }
+                    outputStream.write(buffer, 0, count);
+                }
+            } finally {
+                outputStream.close();
+            }
+        } catch (IOException e) {
+            deleteFile(tempFile);
+            throw e;
+        } finally {
+            inputStream.close();
+        }
+
+        if (length > maxBytes) {
+            deleteFile(tempFile);
+            return null;
+        }
+
+        synchronized (this) {
+            ensureLoaded();
+            final File file = new File(directory, fileName);
+            if (!tempFile.renameTo(file)) {
+                deleteFile(tempFile);
+                throw new IOException("无法写入缓存文件：" + file);
+            }
+
+            final Entry previous = entries.put(key, new Entry(fileName, length));
+            if (previous != null) {
+                currentBytes -= previous.length;
+            }
+            currentBytes += length;
+            trimToSize();
+            writeIndex();
+            return file;
+        }
+    }
+
+    /**
+     * 删除缓存，正在使用的缓存不会被删除
+     *
+     * @param key 内容标识
+     */
+    public synchronized void remove(@NonNull String key) {
+        ensureLoaded();
+        final Entry entry = entries.get(key);
+        if (entry != null && !pinCounts.containsKey(entry.fileName)) {
+            entries.remove(key);
+            currentBytes -= entry.length;
+            deleteFile(new File(directory, entry.fileName));
+            writeIndex();
+        }
+    }
+
+    /**
+     * 删除所有缓存，统计数据同时重置，正在使用的缓存不会被删除
+     */
+    public synchronized void clear() {
+        ensureLoaded();
+        final Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            final Entry entry = iterator.next();
+            if (!pinCounts.containsKey(entry.fileName)) {
+                iterator.remove();
+                currentBytes -= entry.length;
+                deleteFile(new File(directory, entry.fileName));
+            }
+        }
+        hitCount = 0L;
+        missCount = 0L;
+        evictionCount = 0L;
+        writeIndex();
+    }
+
+    /**
+     * @return 命中次数
+     */
+    public synchronized long hitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return 未命中次数
+     */
+    public synchronized long missCount() {
+        return missCount;
+    }
+
+    /**
+     * @return 命中率 0 ~ 1，尚未获取过缓存时返回 0
+     */
+    public synchronized float hitRate() {
+        final long total = hitCount + missCount;
+        return (total == 0L) ? 0f : (float) hitCount / total;
+    }
+
+    /**
+     * @return 因超过大小上限被删除的缓存数量
+     */
+    public synchronized long evictionCount() {
+        ensureLoaded();
+        return evictionCount;
+    }
+
+    /**
+     * @return 当前缓存总大小，单位：字节
+     */
+    public synchronized long size() {
+        ensureLoaded();
+        return currentBytes;
+    }
+
+    /**
+     * @return 缓存总大小上限，单位：字节
+     */
+    public long maxSize() {
+        return maxBytes;
+    }
+
+    /**
+     * @return 当前缓存的资源数量
+     */
+    public synchronized int entryCount() {
+        ensureLoaded();
+        return entries.size();
+    }
+
+    /**
+     * 删除最久没有使用的缓存，直到总大小不超过上限，正在使用的缓存会被跳过
+     */
+    private void trimToSize() {
+        final Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && iterator.hasNext()) {
+            final Entry entry = iterator.next().getValue();
+            if (pinCounts.containsKey(entry.fileName)) {
+                continue;
+            }
+            iterator.remove();
+            currentBytes -= entry.length;
+            evictionCount++;
+            deleteFile(new File(directory, entry.fileName));
+        }
+    }
+
+    /**
+     * 第一次使用缓存记录前读取缓存索引，只在持有锁时调用
+     */
+    private void ensureLoaded() {
+        if (!isLoaded) {
+            isLoaded = true;
+            readIndex();
+        }
+    }
+
+    /**
+     * 读取缓存索引，丢弃缓存文件已经不存在的记录
+     */
+    private void readIndex() {
+        final File indexFile = new File(directory, INDEX_FILE_NAME);
+        if (!indexFile.isFile()) {
+            return;
+        }
+
+        try {
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(indexFile), UTF_8));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    //格式：内容标识 \t 缓存文件名 \t 文件长度
+                    final String[] fields = line.split("\t");
+                    if (fields.length != 3) {
+                        continue;
+                    }
+                    final long length;
+                    try {
+                        length = Long.parseLong(fields[2]);
+                    } catch (NumberFormatException e) {
+                        continue;
+                    }
+                    if (new File(directory, fields[1]).length() == length) {
+                        entries.put(fields[0], new Entry(fields[1], length));
+                        currentBytes += length;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException ignored) {
+            //索引损坏，之后会重新写入
+        }
+        trimToSize();
+    }
+
+    /**
+     * 写入缓存索引，先写入临时文件再替换，避免写入中断导致索引损坏
+     */
+    private void writeIndex() {
+        if (!directory.isDirectory()) {
+            return;
+        }
+
+        final File tempFile = new File(directory, INDEX_FILE_NAME + TEMP_SUFFIX);
+        try {
+            final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile), UTF_8));
+            try {
+                for (Map.Entry<String, Entry> item : entries.entrySet()) {
+                    writer.write(item.getKey());
+                    writer.write('\t');
+                    writer.write(item.getValue().fileName);
+                    writer.write('\t');
+                    writer.write(Long.toString(item.getValue().length));
+                    writer.write('\n');
+                }
+            } finally {
+                writer.close();
+            }
+            if (!tempFile.renameTo(new File(directory, INDEX_FILE_NAME))) {
+                deleteFile(tempFile);
+            }
+        } catch (IOException ignored) {
+            deleteFile(tempFile);
+        }
+    }
+
+    /**
+     * @param file 文件
+     * @return 文件是否位于缓存目录中
+     */
+    private boolean isInCache(@NonNull File file) {
+        return directory.getAbsolutePath().equals(file.getAbsoluteFile().getParent());
+    }
+
+    /**
+     * @param filePath 文件路径
+     * @return 小写的扩展名，没有扩展名时返回NULL
+     */
+    @Nullable
+    private static String extensionOf(@NonNull String filePath) {
+        final int dot = filePath.lastIndexOf('.');
+        if (dot < 0 || dot < filePath.lastIndexOf('/') || dot == filePath.length() - 1) {
+            return null;
+        }
+        return filePath.substring(dot + 1).toLowerCase(Locale.US);
+    }
+
+    /**
+     * @param key 内容标识
+     * @return 内容标识的 SHA-1 十六进制字符串，用作缓存文件名
+     */
+    @NonNull
+    private static String hash(@NonNull String key) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(UTF_8));
+            final StringBuilder builder = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+                builder.append(Character.forDigit(b & 0xF, 16));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void deleteFile(@NonNull File file) {
+        if (file.exists() && !file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    /**
+     * 等待原始资源释放后写入缓存的任务
+     */
+    private static final class DeferredFill {
+
+        private final String key;
+        private final Source source;
+        private final String extension;
+
+        //仍在使用原始资源的次数，只在持有锁时访问
+        private int users = 1;
+
+        DeferredFill(String key, Source source, String extension) {
+            this.key = key;
+            this.source = source;
+            this.extension = extension;
+        }
+
+    }
+
+    /**
+     * 缓存记录
+     */
+    private static final class Entry {
+
+        private final String fileName;
+        private final long length;
+
+        Entry(String fileName, long length) {
+            this.fileName = fileName;
+            this.length = length;
+        }
+
+    }
+
+}
@@ -0,0 +1,133 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-8-9 上午10:30
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   媒体文件的基本信息
+ *
+ * 由 MediaProbe 读取封装格式的文件头得到，不需要准备播放器，对象不可修改
+ */
+public final class MediaInfo {
+
+    /**
+     * 没有对应的轨道或无法读取
+     */
+    public static final int UNKNOWN = -1;
+
+    private final long durationMs;
+    private final String audioMime;
+    private final String videoMime;
+    private final int width;
+    private final int height;
+    private final int bitrate;
+
+    /**
+     * @param durationMs 长度，单位：毫秒，未知时为 UNKNOWN
+     * @param audioMime  音频编码，例如 audio/mp4a-latm，没有音频轨道时为NULL
+     * @param videoMime  视频编码，例如 video/avc，没有视频轨道时为NULL
+     * @param width      画面宽度，未知时为 UNKNOWN
+     * @param height     画面高度，未知时为 UNKNOWN
+     * @param bitrate    码率，单位：bit/s，未知时为 UNKNOWN
+     */
+    public MediaInfo(long durationMs, @Nullable String audioMime, @Nullable String videoMime, int width, int height, int bitrate) {
+        this.durationMs = durationMs;
+        this.audioMime = audioMime;
+        this.videoMime = videoMime;
+        this.width = width;
+        this.height = height;
+        this.bitrate = bitrate;
+    }
+
+    /**
+     * @return 长度，单位：毫秒，未知时为 UNKNOWN
+     */
+    public long durationMs() {
+        return durationMs;
+    }
+
+    /**
+     * @return 音频编码，没有音频轨道时为NULL
+     */
+    @Nullable
+    public String audioMime() {
+        return audioMime;
+    }
+
+    /**
+     * @return 视频编码，没有视频轨道时为NULL
+     */
+    @Nullable
+    public String videoMime() {
+        return videoMime;
+    }
+
+    /**
+     * @return 画面宽度，未知时为 UNKNOWN
+     */
+    public int width() {
+        return width;
+    }
+
+    /**
+     * @return 画面高度，未知时为 UNKNOWN
+     */
+    public int height() {
+        return height;
+    }
+
+    /**
+     * @return 码率，单位：bit/s，未知时为 UNKNOWN
+     */
+    public int bitrate() {
+        return bitrate;
+    }
+
+    /**
+     * @return 是否有视频轨道
+     */
+    public boolean hasVideo() {
+        return videoMime != null;
+    }
+
+    /**
+     * 写入索引文件
+     */
+    void writeTo(@NonNull DataOutput output) throws IOException {
+        output.writeLong(durationMs);
+        output.writeUTF((audioMime == null) ? "" : audioMime);
+        output.writeUTF((videoMime == null) ? "" : videoMime);
+        output.writeInt(width);
+        output.writeInt(height);
+        output.writeInt(bitrate);
+    }
+
+    /**
+     * 从索引文件读取
+     */
+    @NonNull
+    static MediaInfo readFrom(@NonNull DataInput input) throws IOException {
+        final long durationMs = input.readLong();
+        final String audioMime = input.readUTF();
+        final String videoMime = input.readUTF();
+        return new MediaInfo(durationMs,
+                audioMime.isEmpty() ? null : audioMime,
+                videoMime.isEmpty() ? null : videoMime,
+                input.readInt(), input.readInt(), input.readInt());
+    }
+
+    @Override
+    public String toString() {
+        return "MediaInfo{durationMs=" + durationMs + ", audio=" + audioMime + ", video=" + videoMime
+                + ", " + width + "x" + height + ", bitrate=" + bitrate + "}";
+    }
+
+}
@@ -0,0 +1,224 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+import tv.danmaku.ijk.media.player.IMediaPlayer;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-13 上午10:20
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   视频播放器对象池
+ *
+ * 播放器对象在使用完毕后执行 reset() 放回池中，下次准备视频时直接复用，省去对象创建与底层初始化的时间
+ * 池中对象数量有上限，超过闲置时间的对象会被释放
+ * 所有方法需要在同一个线程（核心的播放器线程）中调用
+ */
+public final class MediaPlayerPool {
+
+    /**
+     * 播放器对象生成接口
+     */
+    interface Factory {
+
+        /**
+         * @return 新的播放器对象
+         */
+        @NonNull
+        IMediaPlayer create();
+
+    }
+
+    /**
+     * 默认池大小
+     */
+    public static final int DEFAULT_SIZE = 2;
+
+    /**
+     * 默认最长闲置时间，单位：毫秒
+     */
+    public static final long DEFAULT_IDLE_MILLIS = 60_000L;
+
+    private final Factory factory;
+    private final int maxSize;
+    private final long idleMillis;
+    private final Handler handler;
+
+    //闲置的播放器对象，最近放回的在队列头部
+    private final ArrayDeque<PooledPlayer> idlePlayers = new ArrayDeque<>();
+
+    //统计数据
+    private long hitCount = 0L;
+    private long missCount = 0L;
+    private long createNanos = 0L;
+
+    private final Runnable evictRunnable = new Runnable() {
+        @Override
+        public void run() {
+            evictIdle();
+        }
+    };
+
+    /**
+     * @param factory    播放器对象生成接口
+     * @param maxSize    池中最多保留的闲置对象数量，为 0 时不进行复用
+     * @param idleMillis 闲置对象的最长保留时间，单位：毫秒
+     * @param looper     调用所在线程的 Looper，闲置对象在此线程中释放
+     */
+    MediaPlayerPool(@NonNull Factory factory, int maxSize, long idleMillis, @NonNull Looper looper) {
+        this.factory = factory;
+        this.maxSize = Math.max(0, maxSize);
+        this.idleMillis = idleMillis;
+        this.handler = new Handler(looper);
+    }
+
+    /**
+     * 获取播放器对象，池中有闲置对象时直接复用，否则创建新的对象
+     *
+     * @return 处于 Idle 状态的播放器对象
+     */
+    @NonNull
+    IMediaPlayer acquire() {
+        evictIdle();
+
+        final PooledPlayer pooledPlayer = idlePlayers.pollFirst();
+        if (pooledPlayer != null) {
+            hitCount++;
+            return pooledPlayer.player;
+        }
+
+        //记录对象创建的耗时，用于计算复用节省的时间
+        final long startTime = System.nanoTime();
+        final IMediaPlayer player = factory.create();
+        createNanos += System.nanoTime() - startTime;
+        missCount++;
+        return player;
+    }
+
+    /**
+     * 回收播放器对象，对象会被重置为 Idle 状态，池已满时直接释放
+     *
+     * @param player 使用完毕的播放器对象，调用后外部不能再使用此对象
+     */
+    void recycle(@Nullable IMediaPlayer player) {
+        if (player == null) return;
+
+        if (idlePlayers.size() >= maxSize) {
+            player.release();
+            return;
+        }
+
+        try {
+            player.reset();
+            //解除与播放界面的关联，界面可能在对象闲置期间被销毁
+            player.setDisplay(null);
+        } catch (IllegalStateException e) {
+            player.release();
+            return;
+        }
+
+        idlePlayers.offerFirst(new PooledPlayer(player, SystemClock.elapsedRealtime()));
+        handler.removeCallbacks(evictRunnable);
+        handler.postDelayed(evictRunnable, idleMillis);
+    }
+
+    /**
+     * 释放所有闲置对象
+     */
+    void clear() {
+        handler.removeCallbacks(evictRunnable);
+        for (PooledPlayer pooledPlayer : idlePlayers) {
+            pooledPlayer.player.release();
+        }
+        idlePlayers.clear();
+    }
+
+    /**
+     * 释放超过闲置时间的对象
+     */
+    private void evictIdle() {
+        final long now = SystemClock.elapsedRealtime();
+        final Iterator<PooledPlayer> iterator = idlePlayers.descendingIterator();
+        while (iterator.hasNext()) {
+            final PooledPlayer pooledPlayer = iterator.next();
+            if (now - pooledPlayer.idleSince < idleMillis) {
+                //之后的对象闲置时间更短
+                break;
+            }
+            iterator.remove();
+            pooledPlayer.player.release();
+        }
+
+        if (!idlePlayers.isEmpty()) {
+            handler.removeCallbacks(evictRunnable);
+            handler.postDelayed(evictRunnable, idlePlayers.peekLast().idleSince + idleMillis - now);
+        }
+    }
+
+    /**
+     * @return 复用成功次数
+     */
+    public long hitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return 创建新对象的次数
+     */
+    public long missCount() {
+        return missCount;
+    }
+
+    /**
+     * @return 复用成功率 0 ~ 1，尚未获取过对象时返回 0
+     */
+    public float hitRate() {
+        final long total = hitCount + missCount;
+        return (total == 0L) ? 0f : (float) hitCount / total;
+    }
+
+    /**
+     * @return 平均每次创建对象的耗时，单位：纳秒
+     */
+    public long averageCreateNanos() {
+        return (missCount == 0L) ? 0L : createNanos / missCount;
+    }
+
+    /**
+     * @return 复用对象节省的准备时间估算值（复用次数 × 平均创建耗时），单位：毫秒
+     */
+    public long savedPrepareMillis() {
+        return hitCount * averageCreateNanos() / 1_000_000L;
+    }
+
+    /**
+     * @return 当前闲置的对象数量
+     */
+    public int idleCount() {
+        return idlePlayers.size();
+    }
+
+    /**
+     * 闲置中的播放器对象
+     */
+    private static final class PooledPlayer {
+
+        private final IMediaPlayer player;
+        private final long idleSince;
+
+        PooledPlayer(IMediaPlayer player, long idleSince) {
+            this.player = player;
+            this.idleSince = idleSince;
+        }
+
+    }
+
+}
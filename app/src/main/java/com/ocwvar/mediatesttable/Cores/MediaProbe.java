@@ -0,0 +1,525 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-8-9 上午11:00
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   媒体信息探测与持久化索引
+ *
+ * 使用 MediaExtractor 只读取封装格式的文件头，得到长度、编码、分辨率与码率，不需要准备播放器
+ * 结果以文件路径为键，同时记录探测时文件的长度与修改时间，文件被修改后原有的记录失效并重新探测
+ * 索引以二进制格式保存在 indexFile 中，创建对象后在探测线程中读取（之前调用的方法会等待读取完成），每批探测完成后或调用 flush() 时写入
+ *
+ * 核心通过 setMediaProbe() 使用：准备资源时如果已有记录，准备完成前 audioDuration() / videoDuration() 即可返回长度
+ * 所有方法都是线程安全的
+ */
+public final class MediaProbe {
+
+    /**
+     * 默认的最大记录数量
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 4096;
+
+    //索引文件格式标识与版本
+    private static final int INDEX_MAGIC = 0x4D505258;
+    private static final int INDEX_VERSION = 1;
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    //并行探测的线程数量，探测主要是读取文件头的IO操作
+    private static final int PROBE_THREADS = 3;
+
+    /**
+     * 探测结果回调，在主线程中执行
+     */
+    public interface Callback {
+
+        /**
+         * @param path 文件路径
+         * @param info 媒体信息
+         */
+        void onProbed(@NonNull String path, @NonNull MediaInfo info);
+
+        /**
+         * @param path 文件路径
+         * @param e    无法探测的原因
+         */
+        void onFailed(@NonNull String path, @NonNull IOException e);
+
+    }
+
+    /**
+     * 缓存未命中时使用的探测器
+     */
+    interface Prober {
+
+        /**
+         * @param path 文件路径
+         * @return 媒体信息
+         * @throws IOException 无法读取文件头
+         */
+        @NonNull
+        MediaInfo probe(@NonNull String path) throws IOException;
+
+    }
+
+    private static final Prober EXTRACTOR_PROBER = new Prober() {
+        @NonNull
+        @Override
+        public MediaInfo probe(@NonNull String path) throws IOException {
+            return probeWithExtractor(path);
+        }
+    };
+
+    private final File indexFile;
+    private final int maxEntries;
+    private final Prober prober;
+    private final Executor probeExecutor;
+    private final Executor callbackExecutor;
+
+    //写入索引文件时持有，避免同时写入同一个临时文件
+    private final Object saveLock = new Object();
+
+    //文件路径 → 探测记录，按访问顺序排列，最久没有使用的在最前面
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    //是否有尚未写入索引文件的修改
+    private boolean isDirty = false;
+
+    //是否已读取索引文件，只在持有锁时访问
+    private boolean isLoaded = false;
+
+    //统计数据
+    private long hitCount = 0L;
+    private long missCount = 0L;
+
+    /**
+     * @param indexFile 索引文件，所在目录不存在时自动创建
+     */
+    public MediaProbe(@NonNull File indexFile) {
+        this(indexFile, DEFAULT_MAX_ENTRIES, EXTRACTOR_PROBER, Executors.newFixedThreadPool(PROBE_THREADS, new ThreadFactory() {
+            @Override
+            public Thread newThread(@NonNull Runnable runnable) {
+                final Thread thread = new Thread(runnable, "MediaProbe");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        }), CoreThreads.mainExecutor());
+    }
+
+    /**
+     * @param indexFile        索引文件
+     * @param maxEntries       最大记录数量，超过时移除最久没有使用的记录
+     * @param prober           探测器
+     * @param probeExecutor    并行探测使用的执行器
+     * @param callbackExecutor 执行回调的执行器
+     */
+    MediaProbe(@NonNull File indexFile, int maxEntries, @NonNull Prober prober, @NonNull Executor probeExecutor, @NonNull Executor callbackExecutor) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("最大记录数量必须大于 0");
+        }
+        this.indexFile = indexFile;
+        this.maxEntries = maxEntries;
+        this.prober = prober;
+        this.probeExecutor = probeExecutor;
+        this.callbackExecutor = callbackExecutor;
+        //索引文件可能很大，不在创建对象的线程（通常是主线程）中读取
+        probeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (MediaProbe.this) {
+                    ensureLoaded();
+                }
+            }
+        });
+    }
+
+    /**
+     * 获取已有的记录，不进行探测。只读取文件的长度与修改时间，可以在任意线程中调用
+     *
+     * @param path 文件路径
+     * @return 媒体信息，没有记录或文件已被修改时返回NULL
+     */
+    @Nullable
+    public MediaInfo cached(@NonNull String path) {
+        final File file = new File(path);
+        final long length = file.length();
+        final long lastModified = file.lastModified();
+
+        synchronized (this) {
+            ensureLoaded();
+            final Entry entry = entries.get(path);
+            if (entry != null && entry.length == length && entry.lastModified == lastModified) {
+                hitCount++;
+                return entry.info;
+            }
+            if (entry != null) {
+                entries.remove(path);
+                isDirty = true;
+            }
+            missCount++;
+            return null;
+        }
+    }
+
+    /**
+     * 获取媒体信息，没有记录时在调用线程中探测并加入索引。探测需要读取文件，不能在主线程中调用
+     *
+     * @param path 文件路径
+     * @return 媒体信息
+     * @throws IOException 文件不存在或无法读取文件头
+     */
+    @NonNull
+    public MediaInfo probe(@NonNull String path) throws IOException {
+        final MediaInfo cached = cached(path);
+        if (cached != null) {
+            return cached;
+        }
+        return probeUncached(path);
+    }
+
+    /**
+     * 探测媒体信息并加入索引，调用前已确认没有可用的记录
+     *
+     * @param path 文件路径
+     * @return 媒体信息
+     * @throws IOException 文件不存在或无法读取文件头
+     */
+    @NonNull
+    private MediaInfo probeUncached(@NonNull String path) throws IOException {
+        //在探测前读取文件信息，探测期间文件被修改时下一次获取会重新探测
+        final File file = new File(path);
+        if (!file.isFile()) {
+            throw new IOException("文件不存在：" + path);
+        }
+        final long length = file.length();
+        final long lastModified = file.lastModified();
+        final MediaInfo info = prober.probe(path);
+
+        synchronized (this) {
+            ensureLoaded();
+            entries.put(path, new Entry(length, lastModified, info));
+            isDirty = true;
+            trimToSize();
+        }
+        return info;
+    }
+
+    /**
+     * 并行探测多个文件，已有记录的文件直接返回。全部完成后写入索引文件
+     *
+     * @param paths    文件路径
+     * @param callback 探测结果回调，在主线程中执行，为NULL时只更新索引
+     */
+    public void probeAll(@NonNull List<String> paths, @Nullable Callback callback) {
+        probeAll(paths, callback, true);
+    }
+
+    /**
+     * @param paths       文件路径
+     * @param callback    探测结果回调，在主线程中执行，为NULL时只更新索引
+     * @param lookupCache 是否先查找记录，调用方已经查找过时不再重复查找，避免重复统计未命中次数
+     */
+    private void probeAll(@NonNull List<String> paths, @Nullable final Callback callback, final boolean lookupCache) {
+        if (paths.isEmpty()) {
+            return;
+        }
+        final AtomicInteger remaining = new AtomicInteger(paths.size());
+        for (final String path : paths) {
+            probeExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        final MediaInfo info = lookupCache ? probe(path) : probeUncached(path);
+                        if (callback != null) {
+                            callbackExecutor.execute(new Runnable() {
+                                @Override
+                                public void run() {
+                                    callback.onProbed(path, info);
+                                }
+                            });
+                        }
+                    } catch (final IOException e) {
+                        if (callback != null) {
+                            callbackExecutor.execute(new Runnable() {
+                                @Override
+                                public void run() {
+                                    callback.onFailed(path, e);
+                                }
+                            });
+                        }
+                    } finally {
+                        if (remaining.decrementAndGet() == 0) {
+                            flush();
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * 获取记录中的长度，供核心在准备资源时使用。没有记录时在后台探测，下一次准备同一文件时即可命中
+     *
+     * @param path 文件路径
+     * @return 长度，单位：毫秒，没有记录或长度未知时返回 -1
+     */
+    long durationMs(@NonNull String path) {
+        final MediaInfo info = cached(path);
+        if (info != null) {
+            return info.durationMs();
+        }
+        final List<String> paths = new ArrayList<>(1);
+        paths.add(path);
+        probeAll(paths, null, false);
+        return -1L;
+    }
+
+    /**
+     * 有修改时写入索引文件，先写入临时文件再替换，避免写入中断导致索引损坏
+     */
+    public void flush() {
+        synchronized (saveLock) {
+            final List<Map.Entry<String, Entry>> snapshot;
+            synchronized (this) {
+                ensureLoaded();
+                if (!isDirty) {
+                    return;
+                }
+                isDirty = false;
+                snapshot = new ArrayList<>(entries.entrySet());
+            }
+
+            final File directory = indexFile.getAbsoluteFile().getParentFile();
+            if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+                markDirty();
+                return;
+            }
+            final File tempFile = new File(indexFile.getPath() + TEMP_SUFFIX);
+            try {
+                final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+                try {
+                    output.writeInt(INDEX_MAGIC);
+                    output.writeInt(INDEX_VERSION);
+                    output.writeInt(snapshot.size());
+                    for (Map.Entry<String, Entry> item : snapshot) {
+                        final Entry entry = item.getValue();
+                        output.writeUTF(item.getKey());
+                        output.writeLong(entry.length);
+                        output.writeLong(entry.lastModified);
+                        entry.info.writeTo(output);
+                    }
+                } finally {
+                    output.close();
+                }
+                if (!tempFile.renameTo(indexFile)) {
+                    deleteFile(tempFile);
+                    markDirty();
+                }
+            } catch (IOException e) {
+                deleteFile(tempFile);
+                markDirty();
+            }
+        }
+    }
+
+    /**
+     * 清空所有记录与索引文件，统计数据保持不变
+     */
+    public void clear() {
+        synchronized (saveLock) {
+            synchronized (this) {
+                //之后不再需要读取索引文件
+                isLoaded = true;
+                entries.clear();
+                isDirty = false;
+            }
+            deleteFile(indexFile);
+        }
+    }
+
+    /**
+     * @return 命中次数
+     */
+    public synchronized long hitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return 未命中次数
+     */
+    public synchronized long missCount() {
+        return missCount;
+    }
+
+    /**
+     * @return 当前的记录数量
+     */
+    public synchronized int entryCount() {
+        ensureLoaded();
+        return entries.size();
+    }
+
+    /**
+     * 读取封装格式的文件头，不解码任何数据
+     *
+     * @param path 文件路径
+     * @return 媒体信息
+     * @throws IOException 无法读取文件头或没有音视频轨道
+     */
+    @NonNull
+    static MediaInfo probeWithExtractor(@NonNull String path) throws IOException {
+        final MediaExtractor extractor = new MediaExtractor();
+        try {
+            extractor.setDataSource(path);
+
+            long durationUs = -1L;
+            String audioMime = null;
+            String videoMime = null;
+            int width = MediaInfo.UNKNOWN;
+            int height = MediaInfo.UNKNOWN;
+            long bitrate = 0L;
+            for (int i = 0; i < extractor.getTrackCount(); i++) {
+                final MediaFormat format = extractor.getTrackFormat(i);
+                final String mime = format.getString(MediaFormat.KEY_MIME);
+                if (mime == null) {
+                    continue;
+                }
+                if (format.containsKey(MediaFormat.KEY_DURATION)) {
+                    durationUs = Math.max(durationUs, format.getLong(MediaFormat.KEY_DURATION));
+                }
+                if (format.containsKey(MediaFormat.KEY_BIT_RATE)) {
+                    bitrate += format.getInteger(MediaFormat.KEY_BIT_RATE);
+                }
+                if (audioMime == null && mime.startsWith("audio/")) {
+                    audioMime = mime;
+                } else if (videoMime == null && mime.startsWith("video/")) {
+                    videoMime = mime;
+                    if (format.containsKey(MediaFormat.KEY_WIDTH) && format.containsKey(MediaFormat.KEY_HEIGHT)) {
+                        width = format.getInteger(MediaFormat.KEY_WIDTH);
+                        height = format.getInteger(MediaFormat.KEY_HEIGHT);
+                    }
+                }
+            }
+            if (audioMime == null && videoMime == null) {
+                throw new IOException("没有可用的音视频轨道：" + path);
+            }
+
+            final long durationMs = (durationUs < 0L) ? MediaInfo.UNKNOWN : durationUs / 1000L;
+            if (bitrate <= 0L && durationMs > 0L) {
+                //文件头中没有码率时按文件大小估算平均码率
+                bitrate = new File(path).length() * 8L * 1000L / durationMs;
+            }
+            return new MediaInfo(durationMs, audioMime, videoMime, width, height,
+                    (bitrate > 0L) ? (int) Math.min(bitrate, Integer.MAX_VALUE) : MediaInfo.UNKNOWN);
+        } catch (RuntimeException e) {
+            throw new IOException("无法读取文件头：" + path, e);
+        } finally {
+            extractor.release();
+        }
+    }
+
+    private synchronized void markDirty() {
+        isDirty = true;
+    }
+
+    /**
+     * 移除最久没有使用的记录，直到数量不超过上限，只在持有锁时调用
+     */
+    private void trimToSize() {
+        final Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * 第一次使用记录前读取索引文件，只在持有锁时调用
+     */
+    private void ensureLoaded() {
+        if (!isLoaded) {
+            isLoaded = true;
+            readIndex();
+        }
+    }
+
+    /**
+     * 读取索引文件，格式或版本不符时丢弃。记录在获取时才检查文件是否被修改
+     */
+    private void readIndex() {
+        if (!indexFile.isFile()) {
+            return;
+        }
+
+        try {
+            final DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+            try {
+                if (input.readInt() != INDEX_MAGIC || input.readInt() != INDEX_VERSION) {
+                    return;
+                }
+                final int count = input.readInt();
+                for (int i = 0; i < count; i++) {
+                    final String path = input.readUTF();
+                    final long length = input.readLong();
+                    final long lastModified = input.readLong();
+                    entries.put(path, new Entry(length, lastModified, MediaInfo.readFrom(input)));
+                }
+            } finally {
+                input.close();
+            }
+        } catch (IOException ignored) {
+            //索引损坏，保留已读取的记录，之后会重新写入
+            isDirty = true;
+        }
+        trimToSize();
+    }
+
+    private static void deleteFile(@NonNull File file) {
+        if (file.exists() && !file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    /**
+     * 探测记录
+     */
+    private static final class Entry {
+
+        private final long length;
+        private final long lastModified;
+        private final MediaInfo info;
+
+        Entry(long length, long lastModified, MediaInfo info) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.info = info;
+        }
+
+    }
+
+}
@@ -0,0 +1,218 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-10 下午2:20
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   PCM频谱分析器
+ *
+ * 在进程内直接分析解码后的PCM数据，作为 Visualizer 不可用时的频谱数据来源
+ * 音频线程：write() 将PCM数据混合为单声道后写入无锁的采样缓冲区，不会阻塞
+ * 分析线程：每积累 hopSize 个采样，取最新的 fftSize 个采样加窗后进行实数FFT，折叠为对数频段后写入 SpectrumRing
+ * 所有缓冲区在创建时预先分配
+ */
+final class PcmAnalyzer implements Runnable {
+
+    /**
+     * 默认FFT长度
+     */
+    static final int DEFAULT_FFT_SIZE = 2048;
+
+    //采样缓冲区长度与FFT长度的倍数
+    private static final int SAMPLE_BUFFER_FACTOR = 4;
+
+    //分析线程在没有新数据时的等待时间
+    private static final long IDLE_PARK_NANOS = 5_000_000L;
+
+    private final int fftSize;
+    private final int hopSize;
+    private final RealFft fft;
+    private final SpectrumBands bands;
+    private final SpectrumRing spectrumRing;
+
+    //单声道采样缓冲区，只由音频线程写入
+    private final float[] samples;
+    private final int sampleMask;
+    //已写入的采样总数
+    private final AtomicLong writtenSamples = new AtomicLong(0L);
+
+    //以下数组只在分析线程中使用
+    private final float[] window;
+    private final float[] frame;
+    private final float[] power;
+    private final float[] scratch;
+    //幅度归一化系数：满量程正弦波的输出为 1
+    private final float normalize;
+
+    private volatile Thread analysisThread = null;
+
+    /**
+     * @param fftSize   FFT长度，必须为 2 的幂
+     * @param bandCount 输出的频段数量
+     */
+    PcmAnalyzer(int fftSize, int bandCount) {
+        this.fftSize = fftSize;
+        this.hopSize = fftSize >> 1;
+        this.fft = new RealFft(fftSize);
+        this.bands = new SpectrumBands(fftSize >> 1, bandCount);
+        this.spectrumRing = new SpectrumRing(4, bandCount);
+
+        this.samples = new float[fftSize * SAMPLE_BUFFER_FACTOR];
+        this.sampleMask = samples.length - 1;
+
+        this.window = new float[fftSize];
+        double windowSum = 0.0;
+        for (int i = 0; i < fftSize; i++) {
+            //Hann 窗
+            window[i] = (float) (0.5 - 0.5 * Math.cos(2.0 * Math.PI * i / (fftSize - 1)));
+            windowSum += window[i];
+        }
+        this.normalize = (float) (2.0 / windowSum);
+
+        this.frame = new float[fftSize];
+        this.power = new float[(fftSize >> 1) + 1];
+        this.scratch = new float[(fftSize >> 1) + 1];
+    }
+
+    /**
+     * 写入PCM数据，在音频线程中调用，不修改缓冲区的位置
+     *
+     * @param pcm          16 位PCM数据，多声道交错排列
+     * @param channelCount 声道数量
+     */
+    void write(@NonNull ByteBuffer pcm, int channelCount) {
+        if (analysisThread == null || channelCount <= 0) return;
+
+        final int end = pcm.limit();
+        final int frameBytes = channelCount << 1;
+        final float scale = 1f / (32768f * channelCount);
+        long written = writtenSamples.get();
+        for (int offset = pcm.position(); offset + frameBytes <= end; offset += frameBytes) {
+            int sum = 0;
+            for (int channel = 0; channel < channelCount; channel++) {
+                sum += pcm.getShort(offset + (channel << 1));
+            }
+            samples[(int) (written & sampleMask)] = sum * scale;
+            written++;
+        }
+        writtenSamples.lazySet(written);
+    }
+
+    /**
+     * 清除已写入的采样，在播放位置发生跳转时调用
+     */
+    void flush() {
+        writtenSamples.lazySet(0L);
+    }
+
+    /**
+     * @param listener 频谱帧发布回调，在分析线程中执行，为NULL时取消
+     */
+    void setPublishListener(@Nullable SpectrumRing.PublishListener listener) {
+        spectrumRing.setPublishListener(listener);
+    }
+
+    /**
+     * 启动分析线程
+     */
+    synchronized void start() {
+        if (analysisThread == null) {
+            final Thread thread = new Thread(this, "PcmAnalyzer");
+            thread.setDaemon(true);
+            analysisThread = thread;
+            thread.start();
+        }
+    }
+
+    /**
+     * 停止分析线程，之后写入的数据会被忽略
+     */
+    synchronized void stop() {
+        final Thread thread = analysisThread;
+        if (thread != null) {
+            analysisThread = null;
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * @return 分析线程是否在运行
+     */
+    boolean isRunning() {
+        return analysisThread != null;
+    }
+
+    /**
+     * 读取最新的一帧频谱数据
+     *
+     * @param output 用于存放结果的数组
+     * @return 执行结果，尚无数据时返回 False
+     */
+    boolean read(@NonNull float[] output) {
+        return spectrumRing.readLatest(output) >= 0L;
+    }
+
+    @Override
+    public void run() {
+        long analyzed = 0L;
+        while (analysisThread == Thread.currentThread()) {
+            final long written = writtenSamples.get();
+            if (written < analyzed) {
+                //缓冲区已被清除
+                analyzed = 0L;
+            }
+            if (written < fftSize || written - analyzed < hopSize) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                continue;
+            }
+
+            if (copyFrame(written)) {
+                analyze();
+            }
+            analyzed = written;
+        }
+    }
+
+    /**
+     * 复制最新的 fftSize 个采样并加窗
+     *
+     * @param written 当前已写入的采样总数
+     * @return 复制结果，复制期间数据被覆盖时返回 False
+     */
+    private boolean copyFrame(long written) {
+        final long start = written - fftSize;
+        for (int i = 0; i < fftSize; i++) {
+            frame[i] = samples[(int) ((start + i) & sampleMask)] * window[i];
+        }
+        //音频线程在复制期间写入的数据超过缓冲区剩余空间，则本帧数据无效
+        return writtenSamples.get() - start <= samples.length;
+    }
+
+    /**
+     * 对 frame 进行变换并写入频谱缓冲区
+     */
+    private void analyze() {
+        fft.power(frame, power, scratch);
+
+        final float[] output = spectrumRing.claim();
+        final int[] bandStart = bands.bandStart;
+        final int[] bandEnd = bands.bandEnd;
+        for (int band = 0; band < bands.bandCount; band++) {
+            float peak = 0f;
+            for (int bin = bandStart[band], end = bandEnd[band]; bin < end; bin++) {
+                peak = Math.max(peak, power[bin]);
+            }
+            output[band] = (float) Math.sqrt(peak) * normalize;
+        }
+        spectrumRing.publish();
+    }
+
+}
@@ -0,0 +1,242 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-24 上午9:40
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   已解码PCM数据缓存
+ *
+ * 以文件路径为键，同时记录解码时文件的修改时间与长度，文件被修改后原有的缓存失效并重新解码
+ * PCM数据保存在堆外内存中（见 SfxClip），总大小超过上限时按最近最少使用的顺序移除
+ * 被移除的片段如果仍在播放，会在播放完毕后随片段对象一起释放
+ *
+ * 可以在多个 SfxEngine 之间共用，所有方法都是线程安全的
+ */
+public final class PcmCache {
+
+    /**
+     * 默认的缓存大小，单位：字节
+     */
+    public static final long DEFAULT_MAX_BYTES = 16L * 1024L * 1024L;
+
+    /**
+     * 缓存未命中时使用的解码器
+     */
+    interface Decoder {
+
+        /**
+         * @param path 文件路径
+         * @return 解码得到的音效片段
+         * @throws IOException 文件无法解码
+         */
+        @NonNull
+        SfxClip decode(@NonNull String path) throws IOException;
+
+    }
+
+    private final long maxBytes;
+
+    //文件路径 → 缓存记录，按访问顺序排列，最久没有使用的在最前面
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long currentBytes = 0L;
+
+    //统计数据
+    private long hitCount = 0L;
+    private long missCount = 0L;
+    private long evictionCount = 0L;
+
+    public PcmCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param maxBytes 缓存总大小上限，单位：字节
+     */
+    public PcmCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 获取已缓存的片段，文件在解码后被修改或删除时视为未命中并移除缓存
+     *
+     * @param path 文件路径
+     * @return 音效片段，未命中时返回NULL
+     */
+    @Nullable
+    public SfxClip get(@NonNull String path) {
+        final File file = new File(path);
+        final long lastModified = file.lastModified();
+        final long length = file.length();
+
+        synchronized (this) {
+            final Entry entry = entries.get(path);
+            if (entry != null && entry.lastModified == lastModified && entry.length == length) {
+                hitCount++;
+                return entry.clip;
+            }
+            if (entry != null) {
+                removeEntry(path);
+            }
+            missCount++;
+            return null;
+        }
+    }
+
+    /**
+     * 获取片段，未命中时解码并加入缓存。解码在调用线程中进行
+     *
+     * @param path    文件路径
+     * @param decoder 解码器
+     * @return 音效片段
+     * @throws IOException 文件无法解码
+     */
+    @NonNull
+    SfxClip load(@NonNull String path, @NonNull Decoder decoder) throws IOException {
+        final SfxClip cached = get(path);
+        if (cached != null) {
+            return cached;
+        }
+
+        //在解码前读取文件信息，解码期间文件被修改时下一次获取会重新解码
+        final File file = new File(path);
+        final long lastModified = file.lastModified();
+        final long length = file.length();
+        final SfxClip clip = decoder.decode(path);
+        put(path, lastModified, length, clip);
+        return clip;
+    }
+
+    /**
+     * 加入缓存，大小超过上限的片段不会被缓存
+     *
+     * @param path         文件路径
+     * @param lastModified 解码时文件的修改时间
+     * @param length       解码时文件的长度
+     * @param clip         音效片段
+     */
+    synchronized void put(@NonNull String path, long lastModified, long length, @NonNull SfxClip clip) {
+        removeEntry(path);
+        if (clip.sizeBytes() > maxBytes) {
+            return;
+        }
+        entries.put(path, new Entry(clip, lastModified, length));
+        currentBytes += clip.sizeBytes();
+        trimToSize();
+    }
+
+    /**
+     * 移除缓存
+     *
+     * @param path 文件路径
+     */
+    public synchronized void remove(@NonNull String path) {
+        removeEntry(path);
+    }
+
+    /**
+     * 清空缓存，统计数据保持不变
+     */
+    public synchronized void clear() {
+        entries.clear();
+        currentBytes = 0L;
+    }
+
+    /**
+     * @return 命中次数
+     */
+    public synchronized long hitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return 未命中次数
+     */
+    public synchronized long missCount() {
+        return missCount;
+    }
+
+    /**
+     * @return 命中率 0 ~ 1，尚未获取过缓存时返回 0
+     */
+    public synchronized float hitRate() {
+        final long total = hitCount + missCount;
+        return (total == 0L) ? 0f : (float) hitCount / total;
+    }
+
+    /**
+     * @return 因超过大小上限被移除的片段数量
+     */
+    public synchronized long evictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return 缓存占用的堆外内存大小，单位：字节
+     */
+    public synchronized long size() {
+        return currentBytes;
+    }
+
+    /**
+     * @return 缓存总大小上限，单位：字节
+     */
+    public long maxSize() {
+        return maxBytes;
+    }
+
+    /**
+     * @return 当前缓存的片段数量
+     */
+    public synchronized int entryCount() {
+        return entries.size();
+    }
+
+    private void removeEntry(@NonNull String path) {
+        final Entry entry = entries.remove(path);
+        if (entry != null) {
+            currentBytes -= entry.clip.sizeBytes();
+        }
+    }
+
+    /**
+     * 移除最久没有使用的片段，直到总大小不超过上限
+     */
+    private void trimToSize() {
+        final Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && iterator.hasNext()) {
+            final Entry entry = iterator.next().getValue();
+            iterator.remove();
+            currentBytes -= entry.clip.sizeBytes();
+            evictionCount++;
+        }
+    }
+
+    /**
+     * 缓存记录
+     */
+    private static final class Entry {
+
+        private final SfxClip clip;
+        private final long lastModified;
+        private final long length;
+
+        Entry(SfxClip clip, long lastModified, long length) {
+            this.clip = clip;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+    }
+
+}
@@ -0,0 +1,114 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.support.annotation.NonNull;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.audio.AudioProcessor;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-10 下午4:05
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   PCM数据截取处理器
+ *
+ * 挂载在EXO播放器的音频处理链中，数据原样输出，同时将解码后的PCM数据交给 PcmAnalyzer 进行频谱分析
+ * 所有方法都在EXO的播放线程中调用
+ */
+final class PcmSpectrumTap implements AudioProcessor {
+
+    private final PcmAnalyzer analyzer;
+
+    private int sampleRateHz = -1;
+    private int channelCount = -1;
+
+    private ByteBuffer buffer = EMPTY_BUFFER;
+    private ByteBuffer outputBuffer = EMPTY_BUFFER;
+    private boolean inputEnded = false;
+
+    PcmSpectrumTap(@NonNull PcmAnalyzer analyzer) {
+        this.analyzer = analyzer;
+    }
+
+    @Override
+    public boolean configure(int sampleRateHz, int channelCount, int encoding) throws UnhandledFormatException {
+        if (encoding != C.ENCODING_PCM_16BIT) {
+            throw new UnhandledFormatException(sampleRateHz, channelCount, encoding);
+        }
+        if (this.sampleRateHz == sampleRateHz && this.channelCount == channelCount) {
+            return false;
+        }
+        this.sampleRateHz = sampleRateHz;
+        this.channelCount = channelCount;
+        return true;
+    }
+
+    @Override
+    public boolean isActive() {
+        return true;
+    }
+
+    @Override
+    public int getOutputChannelCount() {
+        return channelCount;
+    }
+
+    @Override
+    public int getOutputEncoding() {
+        return C.ENCODING_PCM_16BIT;
+    }
+
+    @Override
+    public void queueInput(ByteBuffer inputBuffer) {
+        final int size = inputBuffer.remaining();
+        if (size == 0) return;
+
+        analyzer.write(inputBuffer, channelCount);
+
+        //数据原样输出，输出缓冲区只在容量不足时重新分配
+        if (buffer.capacity() < size) {
+            buffer = ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+        } else {
+            buffer.clear();
+        }
+        buffer.put(inputBuffer);
+        buffer.flip();
+        outputBuffer = buffer;
+    }
+
+    @Override
+    public void queueEndOfStream() {
+        inputEnded = true;
+    }
+
+    @Override
+    public ByteBuffer getOutput() {
+        final ByteBuffer output = outputBuffer;
+        outputBuffer = EMPTY_BUFFER;
+        return output;
+    }
+
+    @Override
+    public boolean isEnded() {
+        return inputEnded && outputBuffer == EMPTY_BUFFER;
+    }
+
+    @Override
+    public void flush() {
+        outputBuffer = EMPTY_BUFFER;
+        inputEnded = false;
+        analyzer.flush();
+    }
+
+    @Override
+    public void release() {
+        flush();
+        buffer = EMPTY_BUFFER;
+        sampleRateHz = -1;
+        channelCount = -1;
+    }
+
+}
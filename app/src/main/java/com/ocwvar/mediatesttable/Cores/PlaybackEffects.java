@@ -0,0 +1,231 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-12 上午9:40
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   播放效果指令执行
+ *
+ * 效果指令解析为 EffectProgram 后缓存，相同的指令再次执行时不需要重新解析，指令格式见 EffectCommand
+ * 立即执行的批次在 apply() 中直接执行，定时批次通过 Scheduler 在之后执行，音量渐变交给执行对象在播放线程中逐帧计算
+ * compile() 可在任意线程中调用，其它方法与回调都在播放器所在的线程中执行，与播放器实现分离，可以在JVM上单独测试
+ */
+final class PlaybackEffects {
+
+    /**
+     * 效果指令的执行对象
+     */
+    interface Target {
+
+        /**
+         * 打开频谱处理器
+         */
+        void enableVisualizer();
+
+        /**
+         * 关闭频谱处理器
+         */
+        void disableVisualizer();
+
+        /**
+         * 以设备支持的最大频率启动频谱推送模式
+         */
+        void enableSpectrumStream();
+
+        /**
+         * 停止频谱推送模式
+         */
+        void disableSpectrumStream();
+
+        /**
+         * 启动PCM频谱分析
+         */
+        void enablePcmAnalyzer();
+
+        /**
+         * @param speed 播放速度
+         * @param pitch 音调
+         */
+        void setPlaybackParameters(float speed, float pitch);
+
+        /**
+         * @param volume     音量大小，大小由0~1
+         * @param rampMillis 从当前音量渐变到目标音量的时间，单位：毫秒
+         */
+        void setVolume(float volume, long rampMillis);
+
+    }
+
+    /**
+     * 定时任务的执行方式，通常由播放器线程的 Handler 实现
+     */
+    interface Scheduler {
+
+        /**
+         * @param task        任务
+         * @param delayMillis 延迟，单位：毫秒
+         */
+        void postDelayed(@NonNull Runnable task, long delayMillis);
+
+        /**
+         * @param task 需要取消的任务
+         */
+        void removeCallbacks(@NonNull Runnable task);
+
+    }
+
+    //已解析指令的缓存数量
+    private static final int PROGRAM_CACHE_SIZE = 32;
+
+    private final Target target;
+    private final Scheduler scheduler;
+
+    //尚未执行的定时批次
+    private final ArrayList<ScheduledBatch> scheduledBatches = new ArrayList<>();
+
+    //已解析的指令，按最近使用排序
+    private final LinkedHashMap<String, EffectProgram> programs = new LinkedHashMap<String, EffectProgram>(PROGRAM_CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, EffectProgram> eldest) {
+            return size() > PROGRAM_CACHE_SIZE;
+        }
+    };
+
+    PlaybackEffects(@NonNull Target target, @NonNull Scheduler scheduler) {
+        this.target = target;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * 执行效果指令
+     *
+     * @param code 效果指令，多条指令使用 ; 分隔
+     * @return 返回结果，没有结果返回NULL
+     */
+    @Nullable
+    String apply(@Nullable String code) {
+        if (code == null || code.isEmpty()) return null;
+
+        final EffectProgram program = compile(code);
+        run(program);
+        return program.result;
+    }
+
+    /**
+     * 获取已解析的指令，没有缓存时进行解析，可在任意线程中调用
+     *
+     * @param code 效果指令
+     * @return 解析结果
+     */
+    @NonNull
+    EffectProgram compile(@NonNull String code) {
+        synchronized (programs) {
+            EffectProgram program = programs.get(code);
+            if (program == null) {
+                program = EffectProgram.parse(code);
+                programs.put(code, program);
+            }
+            return program;
+        }
+    }
+
+    /**
+     * 执行已解析的指令
+     *
+     * @param program 解析结果，无效时不执行任何操作
+     */
+    void run(@NonNull EffectProgram program) {
+        for (EffectProgram.Batch batch : program.batches) {
+            if (batch.delayMillis <= 0L) {
+                applyBatch(batch);
+            } else {
+                final ScheduledBatch scheduledBatch = new ScheduledBatch(batch);
+                scheduledBatches.add(scheduledBatch);
+                scheduler.postDelayed(scheduledBatch, batch.delayMillis);
+            }
+        }
+    }
+
+    /**
+     * 取消所有尚未执行的定时指令
+     */
+    void cancel() {
+        for (ScheduledBatch scheduledBatch : scheduledBatches) {
+            scheduler.removeCallbacks(scheduledBatch);
+        }
+        scheduledBatches.clear();
+    }
+
+    /**
+     * @return 尚未执行的定时批次数量
+     */
+    int scheduledCount() {
+        return scheduledBatches.size();
+    }
+
+    /**
+     * 一次性执行批次中的所有操作
+     */
+    private void applyBatch(@NonNull EffectProgram.Batch batch) {
+        if (batch.isClear) {
+            cancel();
+        }
+
+        for (int op : batch.visualizerOps) {
+            switch (op) {
+                case EffectCommand.VISUALIZER_ON:
+                    target.enableVisualizer();
+                    break;
+                case EffectCommand.VISUALIZER_OFF:
+                    target.disableVisualizer();
+                    break;
+                case EffectCommand.SPECTRUM_STREAM:
+                    target.enableSpectrumStream();
+                    break;
+                case EffectCommand.SPECTRUM_PULL:
+                    target.disableSpectrumStream();
+                    break;
+                case EffectCommand.PCM_ANALYZER:
+                    target.enablePcmAnalyzer();
+                    break;
+            }
+        }
+
+        if (batch.hasParameters) {
+            target.setPlaybackParameters(batch.speed, batch.pitch);
+        }
+
+        if (batch.hasVolume) {
+            target.setVolume(batch.volume, batch.rampMillis);
+        }
+    }
+
+    /**
+     * 定时执行的批次
+     */
+    private final class ScheduledBatch implements Runnable {
+
+        private final EffectProgram.Batch batch;
+
+        ScheduledBatch(EffectProgram.Batch batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public void run() {
+            if (scheduledBatches.remove(this)) {
+                applyBatch(batch);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,311 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.android.exoplayer2.ExoPlayer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-8-1 上午10:00
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   播放器状态机
+ *
+ * 播放状态与 准备好 / 准备好后播放 / 停止 三个标记保存在同一个 AtomicInteger 中，所有修改都通过 CAS 完成，读取不加锁
+ * 两种状态变化：
+ * 1.命令：command() 按 StatusTransitions 的规则表检查，不允许的命令被拒绝并返回NULL
+ * 2.播放器回调：observe() 与 syncExoState() 以播放器报告的状态为准，超出规则表的转换仍然执行，在记录中标出
+ * 每次状态变化与被拒绝的命令都写入固定大小的环形记录，用于排查问题，写入不加锁也不产生对象分配
+ * 不依赖 Android 的线程与消息机制，可以在JVM上单独测试
+ */
+final class PlayerStateMachine {
+
+    /**
+     * 状态变化的来源，与 StatusTransitions.CMD_* 共用记录中的同一字段
+     */
+    static final int CAUSE_PLAYER = 6;
+    static final int CAUSE_RESET = 7;
+
+    /**
+     * 环形记录的长度，必须为 2 的幂
+     */
+    static final int TRACE_SIZE = 64;
+
+    //状态字：低 2 位为 Status 的序号，其余为标记
+    private static final int STATUS_MASK = 0x3;
+    private static final int FLAG_READY = 1 << 2;
+    private static final int FLAG_PLAY_WHEN_READY = 1 << 3;
+    private static final int FLAG_STOP_ACTION = 1 << 4;
+
+    //记录：0~1 位原状态，2~3 位新状态，4 位命令被拒绝，5 位超出规则表，8~15 位来源，32~63 位创建后经过的毫秒数
+    private static final long TRACE_REJECTED = 1L << 4;
+    private static final long TRACE_OUTSIDE_TABLE = 1L << 5;
+
+    private static final Status[] STATUSES = Status.values();
+
+    private final AtomicInteger state = new AtomicInteger(Status.EMPTY.ordinal());
+    private final AtomicLong traceSequence = new AtomicLong(0L);
+    private final AtomicLongArray trace = new AtomicLongArray(TRACE_SIZE);
+    private final long createdNanos = System.nanoTime();
+
+    /**
+     * @return 当前状态
+     */
+    @NonNull
+    Status status() {
+        return STATUSES[state.get() & STATUS_MASK];
+    }
+
+    /**
+     * @return 是否已准备好
+     */
+    boolean isReady() {
+        return (state.get() & FLAG_READY) != 0;
+    }
+
+    /**
+     * @return 是否准备好后马上播放
+     */
+    boolean isPlayWhenReady() {
+        return (state.get() & FLAG_PLAY_WHEN_READY) != 0;
+    }
+
+    /**
+     * @return 停止标记：为True时，下一次播放器暂停的状态将从 Pause -> Stop
+     */
+    boolean isStopAction() {
+        return (state.get() & FLAG_STOP_ACTION) != 0;
+    }
+
+    /**
+     * 检查命令是否可以执行，状态由之后的播放器回调改变
+     *
+     * @param command 命令：StatusTransitions.CMD_PLAY 等
+     * @return 执行命令时的状态，命令被拒绝时返回NULL
+     */
+    @Nullable
+    Status command(int command) {
+        return command(command, null);
+    }
+
+    /**
+     * 检查命令是否可以执行，可以执行时原子地转换到目标状态
+     *
+     * @param command 命令：StatusTransitions.CMD_PLAY 等
+     * @param target  目标状态，为NULL或与当前状态相同时不改变状态
+     * @return 执行命令前的状态，命令被拒绝时返回NULL
+     */
+    @Nullable
+    Status command(int command, @Nullable Status target) {
+        while (true) {
+            final int word = state.get();
+            final Status from = STATUSES[word & STATUS_MASK];
+            if (!StatusTransitions.accepts(from, command) || (target != null && target != from && !StatusTransitions.canMove(from, target))) {
+                record(from, (target != null) ? target : from, command, TRACE_REJECTED);
+                return null;
+            }
+            if (target == null || target == from) {
+                return from;
+            }
+            if (state.compareAndSet(word, withStatus(word, target))) {
+                record(from, target, command, 0L);
+                return from;
+            }
+        }
+    }
+
+    /**
+     * 应用播放器报告的状态
+     *
+     * @param to 播放器当前的状态
+     * @return 变化前的状态
+     */
+    @NonNull
+    Status observe(@NonNull Status to) {
+        while (true) {
+            final int word = state.get();
+            final Status from = STATUSES[word & STATUS_MASK];
+            if (from == to) {
+                return from;
+            }
+            if (state.compareAndSet(word, withStatus(word, to))) {
+                record(from, to, CAUSE_PLAYER, StatusTransitions.canMove(from, to) ? 0L : TRACE_OUTSIDE_TABLE);
+                return from;
+            }
+        }
+    }
+
+    /**
+     * 按EXO播放器的状态回调更新状态与标记，停止标记在 READY 或 BUFFERING 后失效，准备好标记在 READY 时设置、IDLE 时清除
+     *
+     * @param playbackState EXO播放器状态
+     * @param playWhenReady 是否当状态为READY时马上播放
+     * @return 更新后的状态
+     */
+    @NonNull
+    Status syncExoState(int playbackState, boolean playWhenReady) {
+        while (true) {
+            final int word = state.get();
+            final Status from = STATUSES[word & STATUS_MASK];
+            final Status to = StatusTransitions.fromExoState(playbackState, playWhenReady, (word & FLAG_STOP_ACTION) != 0);
+
+            int next = withStatus(word, to);
+            switch (playbackState) {
+                case ExoPlayer.STATE_READY:
+                    next = (next | FLAG_READY) & ~FLAG_STOP_ACTION;
+                    break;
+                case ExoPlayer.STATE_BUFFERING:
+                    next &= ~FLAG_STOP_ACTION;
+                    break;
+                case ExoPlayer.STATE_IDLE:
+                    next &= ~FLAG_READY;
+                    break;
+            }
+
+            if (next == word) {
+                return to;
+            }
+            if (state.compareAndSet(word, next)) {
+                if (from != to) {
+                    record(from, to, CAUSE_PLAYER, StatusTransitions.canMove(from, to) ? 0L : TRACE_OUTSIDE_TABLE);
+                }
+                return to;
+            }
+        }
+    }
+
+    /**
+     * 重置为 EMPTY 并清除所有标记
+     */
+    void reset() {
+        final int word = state.getAndSet(Status.EMPTY.ordinal());
+        final Status from = STATUSES[word & STATUS_MASK];
+        if (from != Status.EMPTY) {
+            record(from, Status.EMPTY, CAUSE_RESET, 0L);
+        }
+    }
+
+    void setReady(boolean isReady) {
+        setFlag(FLAG_READY, isReady);
+    }
+
+    void setPlayWhenReady(boolean isPlayWhenReady) {
+        setFlag(FLAG_PLAY_WHEN_READY, isPlayWhenReady);
+    }
+
+    void setStopAction(boolean isStopAction) {
+        setFlag(FLAG_STOP_ACTION, isStopAction);
+    }
+
+    /**
+     * 读取并清除准备好后播放标记，多个线程同时调用时只有一个会得到True
+     *
+     * @return 清除前的标记
+     */
+    boolean takePlayWhenReady() {
+        while (true) {
+            final int word = state.get();
+            if ((word & FLAG_PLAY_WHEN_READY) == 0) {
+                return false;
+            }
+            if (state.compareAndSet(word, word & ~FLAG_PLAY_WHEN_READY)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return 环形记录中的条目，从旧到新排列。与写入同时进行时，正在写入的位置可能还是旧的条目
+     */
+    @NonNull
+    long[] trace() {
+        final long end = traceSequence.get();
+        final long start = Math.max(0L, end - TRACE_SIZE);
+        final long[] entries = new long[(int) (end - start)];
+        for (long i = start; i < end; i++) {
+            entries[(int) (i - start)] = trace.get((int) (i & (TRACE_SIZE - 1)));
+        }
+        return entries;
+    }
+
+    /**
+     * @return 可读的状态记录，每行一条
+     */
+    @NonNull
+    String dumpTrace() {
+        final StringBuilder builder = new StringBuilder();
+        for (long entry : trace()) {
+            builder.append('+').append(traceMillis(entry)).append("ms ")
+                    .append(traceFrom(entry)).append(" -> ").append(traceTo(entry))
+                    .append(" (").append(causeName(traceCause(entry))).append(')');
+            if (isRejected(entry)) {
+                builder.append(" 已拒绝");
+            } else if ((entry & TRACE_OUTSIDE_TABLE) != 0L) {
+                builder.append(" 超出规则表");
+            }
+            builder.append('\n');
+        }
+        return builder.toString();
+    }
+
+    @NonNull
+    static Status traceFrom(long entry) {
+        return STATUSES[(int) (entry & STATUS_MASK)];
+    }
+
+    @NonNull
+    static Status traceTo(long entry) {
+        return STATUSES[(int) ((entry >>> 2) & STATUS_MASK)];
+    }
+
+    static int traceCause(long entry) {
+        return (int) ((entry >>> 8) & 0xFF);
+    }
+
+    static boolean isRejected(long entry) {
+        return (entry & TRACE_REJECTED) != 0L;
+    }
+
+    static long traceMillis(long entry) {
+        return entry >>> 32;
+    }
+
+    private void setFlag(int flag, boolean isSet) {
+        while (true) {
+            final int word = state.get();
+            final int next = isSet ? (word | flag) : (word & ~flag);
+            if (next == word || state.compareAndSet(word, next)) {
+                return;
+            }
+        }
+    }
+
+    private void record(@NonNull Status from, @NonNull Status to, int cause, long flags) {
+        final long millis = (System.nanoTime() - createdNanos) / 1000000L;
+        final long entry = (millis << 32) | ((long) (cause & 0xFF) << 8) | flags | (to.ordinal() << 2) | from.ordinal();
+        final long sequence = traceSequence.getAndIncrement();
+        trace.set((int) (sequence & (TRACE_SIZE - 1)), entry);
+    }
+
+    private static int withStatus(int word, @NonNull Status status) {
+        return (word & ~STATUS_MASK) | status.ordinal();
+    }
+
+    @NonNull
+    private static String causeName(int cause) {
+        switch (cause) {
+            case CAUSE_PLAYER:
+                return "PLAYER";
+            case CAUSE_RESET:
+                return "RESET";
+            default:
+                return (cause < StatusTransitions.COMMAND_NAMES.length) ? StatusTransitions.COMMAND_NAMES[cause] : String.valueOf(cause);
+        }
+    }
+
+}
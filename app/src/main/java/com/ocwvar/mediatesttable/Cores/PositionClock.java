@@ -0,0 +1,169 @@
+package com.ocwvar.mediatesttable.Cores;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-24 下午2:30
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   播放位置时钟
+ *
+ * 以播放器报告的位置与 System.nanoTime() 作为锚点，两次同步之间按播放速度线性推算位置，得到连续且精确到微秒的播放位置
+ * 同步时比较推算位置与报告位置：误差较小时微调推算速率，让误差在 CORRECTION_WINDOW_US 内逐渐消除，位置保持连续且不会倒退
+ * 误差超过 RESYNC_THRESHOLD_US（例如跳转、切换音频）时直接使用报告位置作为新的锚点
+ *
+ * 锚点保存在不可变的快照对象中，通过 volatile 引用整体替换，任意线程都可以无锁读取
+ * 写入（anchor、sync 等）只在播放器线程中进行
+ */
+final class PositionClock {
+
+    /**
+     * 没有加载音频时的位置
+     */
+    static final long UNSET = -1L;
+
+    //误差超过此值时直接重新锚定，单位：微秒
+    static final long RESYNC_THRESHOLD_US = 100_000L;
+
+    //小误差的消除时间，单位：微秒
+    private static final double CORRECTION_WINDOW_US = 500_000.0;
+
+    //推算速率相对播放速度的最大调整比例
+    private static final double MAX_CORRECTION = 0.05;
+
+    private static final Snapshot EMPTY = new Snapshot(UNSET, 0L, 0.0, 1f, false, UNSET);
+
+    private volatile Snapshot snapshot = EMPTY;
+
+    /**
+     * 清除锚点，之后的位置为 {@link #UNSET}
+     */
+    void reset() {
+        snapshot = EMPTY;
+    }
+
+    /**
+     * 直接设置锚点，不进行误差修正
+     *
+     * @param positionUs 播放器报告的位置，单位：微秒
+     * @param nowNanos   报告位置时的 System.nanoTime()
+     * @param speed      播放速度
+     * @param isRunning  位置是否在前进，即播放器正在输出音频
+     */
+    void anchor(long positionUs, long nowNanos, float speed, boolean isRunning) {
+        final Snapshot current = snapshot;
+        snapshot = new Snapshot(positionUs, nowNanos, isRunning ? speed : 0.0, speed, isRunning, current.durationUs);
+    }
+
+    /**
+     * 使用播放器报告的位置修正误差，只在时钟运行时有效
+     *
+     * @param reportedUs 播放器报告的位置，单位：微秒
+     * @param nowNanos   报告位置时的 System.nanoTime()
+     */
+    void sync(long reportedUs, long nowNanos) {
+        final Snapshot current = snapshot;
+        if (!current.isRunning || current.positionUs == UNSET) {
+            return;
+        }
+
+        final long predictedUs = current.positionAt(nowNanos);
+        final long errorUs = reportedUs - predictedUs;
+        if (Math.abs(errorUs) > RESYNC_THRESHOLD_US) {
+            anchor(reportedUs, nowNanos, current.speed, true);
+            return;
+        }
+
+        //从推算位置继续前进，只调整速率，保证位置连续
+        final double correction = Math.max(-MAX_CORRECTION, Math.min(MAX_CORRECTION, errorUs / CORRECTION_WINDOW_US));
+        snapshot = new Snapshot(predictedUs, nowNanos, current.speed * (1.0 + correction), current.speed, true, current.durationUs);
+    }
+
+    /**
+     * 设置播放速度，从当前推算位置开始生效
+     *
+     * @param speed    播放速度
+     * @param nowNanos System.nanoTime()
+     */
+    void setSpeed(float speed, long nowNanos) {
+        final Snapshot current = snapshot;
+        if (current.positionUs == UNSET) {
+            snapshot = new Snapshot(UNSET, 0L, 0.0, speed, false, current.durationUs);
+            return;
+        }
+        anchor(current.positionAt(nowNanos), nowNanos, speed, current.isRunning);
+    }
+
+    /**
+     * @param durationUs 音频长度，推算位置不会超过此值，单位：微秒，未知时为 {@link #UNSET}
+     */
+    void setDurationUs(long durationUs) {
+        final Snapshot current = snapshot;
+        snapshot = new Snapshot(current.positionUs, current.anchorNanos, current.rate, current.speed, current.isRunning, durationUs);
+    }
+
+    /**
+     * @return 当前播放位置，单位：微秒，没有锚点时返回 {@link #UNSET}
+     */
+    long positionUs() {
+        return positionUs(System.nanoTime());
+    }
+
+    /**
+     * @param nowNanos System.nanoTime()
+     * @return 指定时刻的播放位置，单位：微秒，没有锚点时返回 {@link #UNSET}
+     */
+    long positionUs(long nowNanos) {
+        return snapshot.positionAt(nowNanos);
+    }
+
+    /**
+     * @return 位置是否在前进
+     */
+    boolean isRunning() {
+        return snapshot.isRunning;
+    }
+
+    /**
+     * @return 当前的播放速度
+     */
+    float speed() {
+        return snapshot.speed;
+    }
+
+    /**
+     * 锚点快照，创建后不再改变
+     */
+    private static final class Snapshot {
+
+        private final long positionUs;
+        private final long anchorNanos;
+        //推算速率：每经过 1 微秒位置前进的微秒数，即播放速度乘以误差修正系数，暂停时为 0
+        private final double rate;
+        private final float speed;
+        private final boolean isRunning;
+        private final long durationUs;
+
+        Snapshot(long positionUs, long anchorNanos, double rate, float speed, boolean isRunning, long durationUs) {
+            this.positionUs = positionUs;
+            this.anchorNanos = anchorNanos;
+            this.rate = rate;
+            this.speed = speed;
+            this.isRunning = isRunning;
+            this.durationUs = durationUs;
+        }
+
+        long positionAt(long nowNanos) {
+            if (positionUs == UNSET) {
+                return UNSET;
+            }
+            if (!isRunning) {
+                return positionUs;
+            }
+            final long elapsedNanos = Math.max(0L, nowNanos - anchorNanos);
+            final long position = positionUs + (long) (elapsedNanos * rate / 1000.0);
+            return (durationUs > 0L) ? Math.min(position, durationUs) : position;
+        }
+
+    }
+
+}
@@ -0,0 +1,275 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-20 上午10:15
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   异步准备的结果
+ *
+ * 由核心的 prepareAsync() 返回，在播放器准备好第一段数据、出现错误、被取消或超时时完成，之后状态不再改变
+ * 完成通知通过 addListener() 指定的 Executor 发送，也可以在非主线程中调用 await() 等待结果
+ */
+public final class PrepareHandle {
+
+    /**
+     * 准备状态
+     */
+    public enum State {
+
+        /**
+         * 准备中
+         */
+        PENDING,
+
+        /**
+         * 已准备好第一段数据
+         */
+        READY,
+
+        /**
+         * 准备失败，原因通过 error() 获取
+         */
+        FAILED,
+
+        /**
+         * 已取消，包括被之后的准备请求取代
+         */
+        CANCELLED,
+
+        /**
+         * 超时
+         */
+        TIMEOUT
+
+    }
+
+    /**
+     * 准备完成回调
+     */
+    public interface Listener {
+
+        /**
+         * @param handle 已完成的准备结果
+         */
+        void onPrepareFinished(@NonNull PrepareHandle handle);
+
+    }
+
+    private final String filePath;
+    private final long startNanos = System.nanoTime();
+    private final CountDownLatch finishLatch = new CountDownLatch(1);
+    private final CopyOnWriteArrayList<ListenerEntry> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile State state = State.PENDING;
+    private volatile Throwable error = null;
+    private volatile long finishNanos = 0L;
+
+    //取消或超时时释放资源的操作，由核心设置
+    private volatile Runnable abortAction = null;
+    private volatile ScheduledFuture<?> timeoutFuture = null;
+
+    PrepareHandle(@NonNull String filePath) {
+        this.filePath = filePath;
+    }
+
+    /**
+     * @return 准备的资源路径
+     */
+    @NonNull
+    public String filePath() {
+        return filePath;
+    }
+
+    /**
+     * @return 当前状态
+     */
+    @NonNull
+    public State state() {
+        return state;
+    }
+
+    /**
+     * @return 是否已完成
+     */
+    public boolean isDone() {
+        return state != State.PENDING;
+    }
+
+    /**
+     * @return 失败或超时的原因，其余状态返回NULL
+     */
+    @Nullable
+    public Throwable error() {
+        return error;
+    }
+
+    /**
+     * @return 从开始准备到完成的耗时，尚未完成时为到目前为止的耗时，单位：毫秒
+     */
+    public long elapsedMillis() {
+        final long end = isDone() ? finishNanos : System.nanoTime();
+        return TimeUnit.NANOSECONDS.toMillis(end - startNanos);
+    }
+
+    /**
+     * 取消准备，已加载的资源会被释放
+     *
+     * @return 执行结果，已完成时返回 False
+     */
+    public boolean cancel() {
+        if (finish(State.CANCELLED, null)) {
+            abort();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 等待准备完成，不能在主线程中调用
+     *
+     * @param timeout 最长等待时间
+     * @param unit    时间单位
+     * @return 当前状态，等待超时时返回 State.PENDING，准备仍会继续
+     * @throws InterruptedException 等待被中断
+     */
+    @NonNull
+    public State await(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        finishLatch.await(timeout, unit);
+        return state;
+    }
+
+    /**
+     * 添加完成回调，已完成时马上发送
+     *
+     * @param listener 回调
+     * @param executor 执行回调的 Executor，例如 CoreThreads.mainExecutor()
+     */
+    public void addListener(@NonNull Listener listener, @NonNull Executor executor) {
+        final ListenerEntry entry = new ListenerEntry(listener, executor);
+        listeners.add(entry);
+        if (isDone() && listeners.remove(entry)) {
+            //完成通知已经发送过，由这里发送
+            entry.dispatch(this);
+        }
+    }
+
+    /**
+     * 设置取消或超时时执行的操作，操作可能在任意线程中执行
+     *
+     * @param abortAction 释放资源的操作
+     */
+    void setAbortAction(@Nullable Runnable abortAction) {
+        this.abortAction = abortAction;
+    }
+
+    /**
+     * 设置超时
+     *
+     * @param timeoutMillis 超时时间，单位：毫秒，小于等于 0 时不设置
+     * @param scheduler     计时使用的线程
+     */
+    void armTimeout(long timeoutMillis, @NonNull ScheduledExecutorService scheduler) {
+        if (timeoutMillis <= 0L || isDone()) {
+            return;
+        }
+        timeoutFuture = scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (finish(State.TIMEOUT, new TimeoutException("准备超时：" + filePath))) {
+                    abort();
+                }
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+        if (isDone()) {
+            //设置计时期间已完成
+            timeoutFuture.cancel(false);
+        }
+    }
+
+    /**
+     * @return 执行结果，已完成时返回 False
+     */
+    boolean setReady() {
+        return finish(State.READY, null);
+    }
+
+    /**
+     * @param error 失败原因
+     * @return 执行结果，已完成时返回 False
+     */
+    boolean setFailed(@NonNull Throwable error) {
+        return finish(State.FAILED, error);
+    }
+
+    /**
+     * 设置完成状态并发送通知，只有第一次调用有效
+     */
+    private boolean finish(@NonNull State state, @Nullable Throwable error) {
+        synchronized (this) {
+            if (this.state != State.PENDING) {
+                return false;
+            }
+            this.error = error;
+            this.finishNanos = System.nanoTime();
+            this.state = state;
+        }
+
+        final ScheduledFuture<?> timeoutFuture = this.timeoutFuture;
+        if (timeoutFuture != null) {
+            timeoutFuture.cancel(false);
+        }
+        finishLatch.countDown();
+
+        for (ListenerEntry entry : listeners) {
+            if (listeners.remove(entry)) {
+                entry.dispatch(this);
+            }
+        }
+        return true;
+    }
+
+    private void abort() {
+        final Runnable abortAction = this.abortAction;
+        this.abortAction = null;
+        if (abortAction != null) {
+            abortAction.run();
+        }
+    }
+
+    /**
+     * 回调与执行回调的 Executor
+     */
+    private static final class ListenerEntry {
+
+        private final Listener listener;
+        private final Executor executor;
+
+        ListenerEntry(Listener listener, Executor executor) {
+            this.listener = listener;
+            this.executor = executor;
+        }
+
+        void dispatch(@NonNull final PrepareHandle handle) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    listener.onPrepareFinished(handle);
+                }
+            });
+        }
+
+    }
+
+}
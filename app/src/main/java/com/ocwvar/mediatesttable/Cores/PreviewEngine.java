@@ -0,0 +1,597 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.media.MediaMetadataRetriever;
+import android.os.Process;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-8-7 下午2:00
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   视频预览画面引擎
+ *
+ * 不需要播放视频，在后台线程中用 MediaMetadataRetriever 截取指定位置附近关键帧的画面，用于进度条预览等场景
+ * 请求的位置按 intervalMs 取整，拖动进度条时相近的位置使用同一张画面，第一次截取后再次请求可以直接从缓存获取
+ * 画面缩放到固定宽度并转为 RGB_565，保存在按字节数限制大小的内存缓存中
+ * 可选的磁盘缓存（MediaDiskCache）以 JPEG 格式保存画面，重新打开页面或内存缓存移除后不需要重新截取
+ * 磁盘缓存中的画面解码到引擎内部重复使用的 Bitmap 中，再复制为不可修改的画面交给调用方
+ *
+ * 工作线程按后进先出的顺序处理请求，拖动进度条时最新的位置最先得到画面
+ * 交给调用方的 Bitmap 不会被修改、重复使用或回收，移出缓存后在界面不再引用时由 GC 回收，调用方也不能自行回收
+ */
+public final class PreviewEngine {
+
+    /**
+     * 默认的画面宽度，单位：像素
+     */
+    public static final int DEFAULT_FRAME_WIDTH = 240;
+
+    /**
+     * 默认的位置间隔，单位：毫秒
+     */
+    public static final long DEFAULT_INTERVAL_MS = 1000L;
+
+    /**
+     * 默认的内存缓存大小，单位：字节
+     */
+    public static final long DEFAULT_MAX_BYTES = 8L * 1024L * 1024L;
+
+    //工作线程数量，每个线程同时只使用一个 MediaMetadataRetriever
+    private static final int WORKER_COUNT = 2;
+
+    //磁盘缓存的 JPEG 压缩质量
+    private static final int JPEG_QUALITY = 80;
+
+    //画面不需要透明度，使用 RGB_565 占用的内存减半
+    private static final Bitmap.Config FRAME_CONFIG = Bitmap.Config.RGB_565;
+
+    /**
+     * 画面回调，在主线程中执行
+     */
+    public interface Callback {
+
+        /**
+         * @param path   视频路径
+         * @param timeMs 画面对应的位置，已按间隔取整，单位：毫秒
+         * @param frame  画面
+         */
+        void onFrame(@NonNull String path, long timeMs, @NonNull Bitmap frame);
+
+        /**
+         * @param path   视频路径
+         * @param timeMs 画面对应的位置，已按间隔取整，单位：毫秒
+         * @param e      无法截取画面的原因
+         */
+        void onFailed(@NonNull String path, long timeMs, @NonNull Exception e);
+
+    }
+
+    private final int frameWidth;
+    private final long intervalMs;
+    private final FrameLruCache<Bitmap> memoryCache;
+    private final MediaDiskCache diskCache;
+    private final ThreadPoolExecutor workers;
+    private final Executor callbackExecutor;
+
+    //缓存键 → 等待结果的回调，只在持有 pendingRequests 锁时访问
+    private final HashMap<String, List<Callback>> pendingRequests = new HashMap<>();
+
+    //闲置的 MediaMetadataRetriever，再次请求同一视频时不需要重新解析文件，只在持有 idleRetrievers 锁时访问
+    private final ArrayDeque<Retriever> idleRetrievers = new ArrayDeque<>();
+
+    //闲置的磁盘缓存解码目标，只在工作线程内部使用，不会交给调用方，只在持有 idleDecodeTargets 锁时访问
+    private final ArrayDeque<Bitmap> idleDecodeTargets = new ArrayDeque<>();
+
+    //视频路径 → 文件内容标识，请求时不需要在主线程中读取文件信息，工作线程处理请求时更新，只在持有 contentKeys 锁时访问
+    private final HashMap<String, String> contentKeys = new HashMap<>();
+
+    private volatile boolean isReleased = false;
+
+    public PreviewEngine() {
+        this(DEFAULT_FRAME_WIDTH, DEFAULT_INTERVAL_MS, DEFAULT_MAX_BYTES, null);
+    }
+
+    /**
+     * @param frameWidth 画面宽度，高度按视频比例计算，单位：像素
+     * @param intervalMs 位置间隔，请求的位置按此间隔取整，单位：毫秒
+     * @param maxBytes   内存缓存大小，单位：字节
+     * @param diskCache  磁盘缓存，为NULL时只使用内存缓存
+     */
+    public PreviewEngine(int frameWidth, long intervalMs, long maxBytes, @Nullable MediaDiskCache diskCache) {
+        if (frameWidth <= 0 || intervalMs <= 0L) {
+            throw new IllegalArgumentException("画面宽度与位置间隔必须大于 0");
+        }
+        this.frameWidth = frameWidth;
+        this.intervalMs = intervalMs;
+        this.diskCache = diskCache;
+        this.callbackExecutor = CoreThreads.mainExecutor();
+        this.memoryCache = new FrameLruCache<>(maxBytes, new FrameLruCache.Weigher<Bitmap>() {
+            @Override
+            public int sizeOf(@NonNull Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+        });
+        this.workers = new ThreadPoolExecutor(WORKER_COUNT, WORKER_COUNT, 0L, TimeUnit.MILLISECONDS, new LifoQueue(), new ThreadFactory() {
+            @Override
+            public Thread newThread(@NonNull final Runnable runnable) {
+                final Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, "PreviewWorker");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * 从内存缓存获取画面，不进行截取，可以在主线程中调用
+     *
+     * @param path   视频路径
+     * @param timeMs 位置，单位：毫秒
+     * @return 画面，未缓存时返回NULL
+     */
+    @Nullable
+    public Bitmap cachedFrame(@NonNull String path, long timeMs) {
+        return memoryCache.get(cacheKey(path, alignTime(timeMs)));
+    }
+
+    /**
+     * 获取画面，内存缓存命中时直接返回且不执行回调，否则在工作线程中读取磁盘缓存或截取画面后执行回调
+     * 同一画面正在截取时不会重复截取，结果同时交给所有回调
+     *
+     * @param path     视频路径
+     * @param timeMs   位置，单位：毫秒
+     * @param callback 画面回调，在主线程中执行
+     * @return 缓存的画面，未命中时返回NULL
+     */
+    @Nullable
+    public Bitmap requestFrame(@NonNull String path, long timeMs, @NonNull Callback callback) {
+        final long alignedMs = alignTime(timeMs);
+        final String key = cacheKey(path, alignedMs);
+        final Bitmap cached = memoryCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        submit(path, alignedMs, key, callback);
+        return null;
+    }
+
+    /**
+     * 在工作线程中预先截取均匀分布的画面，之后拖动进度条时可以直接从缓存获取
+     *
+     * @param path       视频路径
+     * @param durationMs 视频长度，单位：毫秒
+     * @param count      画面数量
+     */
+    public void prefetch(@NonNull String path, long durationMs, int count) {
+        if (durationMs <= 0L || count <= 0) {
+            return;
+        }
+        //请求按后进先出处理，从后往前加入，视频开头的画面最先截取
+        for (int i = count - 1; i >= 0; i--) {
+            final long alignedMs = alignTime(durationMs * i / count);
+            final String key = cacheKey(path, alignedMs);
+            if (memoryCache.get(key) == null) {
+                submit(path, alignedMs, key, null);
+            }
+        }
+    }
+
+    /**
+     * 清空内存缓存，磁盘缓存保持不变。已交给调用方的画面仍然有效
+     */
+    public void clearMemory() {
+        memoryCache.clear();
+    }
+
+    /**
+     * @return 内存缓存命中率 0 ~ 1
+     */
+    public float hitRate() {
+        return memoryCache.hitRate();
+    }
+
+    /**
+     * @return 内存缓存占用的大小，单位：字节
+     */
+    public long cacheSize() {
+        return memoryCache.size();
+    }
+
+    /**
+     * 停止所有截取并释放资源，调用后不能再使用
+     */
+    public void release() {
+        isReleased = true;
+        workers.shutdownNow();
+        synchronized (pendingRequests) {
+            pendingRequests.clear();
+        }
+        synchronized (idleRetrievers) {
+            for (Retriever retriever : idleRetrievers) {
+                retriever.release();
+            }
+            idleRetrievers.clear();
+        }
+        synchronized (idleDecodeTargets) {
+            for (Bitmap target : idleDecodeTargets) {
+                target.recycle();
+            }
+            idleDecodeTargets.clear();
+        }
+        synchronized (contentKeys) {
+            contentKeys.clear();
+        }
+        clearMemory();
+    }
+
+    /**
+     * @param timeMs 位置，单位：毫秒
+     * @return 按间隔取整后的位置
+     */
+    private long alignTime(long timeMs) {
+        return (timeMs <= 0L) ? 0L : timeMs - timeMs % intervalMs;
+    }
+
+    /**
+     * 缓存键使用文件的内容标识，文件被修改后不会使用旧的画面
+     */
+    @NonNull
+    private String cacheKey(@NonNull String path, long alignedMs) {
+        return contentKey(path) + '#' + alignedMs + '@' + frameWidth;
+    }
+
+    /**
+     * 每个路径只在第一次请求时读取文件信息，之后使用记录的内容标识
+     */
+    @NonNull
+    private String contentKey(@NonNull String path) {
+        synchronized (contentKeys) {
+            String contentKey = contentKeys.get(path);
+            if (contentKey == null) {
+                contentKey = MediaDiskCache.contentKey(new File(path));
+                contentKeys.put(path, contentKey);
+            }
+            return contentKey;
+        }
+    }
+
+    /**
+     * 在工作线程中重新读取文件信息，文件被修改后之后的请求使用新的内容标识
+     */
+    private void refreshContentKey(@NonNull String path) {
+        final String contentKey = MediaDiskCache.contentKey(new File(path));
+        synchronized (contentKeys) {
+            if (!isReleased) {
+                contentKeys.put(path, contentKey);
+            }
+        }
+    }
+
+    /**
+     * @param callback 画面回调，预先截取时为NULL
+     */
+    private void submit(@NonNull final String path, final long alignedMs, @NonNull final String key, @Nullable Callback callback) {
+        if (isReleased) {
+            return;
+        }
+        synchronized (pendingRequests) {
+            final List<Callback> callbacks = pendingRequests.get(key);
+            if (callbacks != null) {
+                //已经在截取中
+                if (callback != null) {
+                    callbacks.add(callback);
+                }
+                return;
+            }
+            final List<Callback> newCallbacks = new ArrayList<>(1);
+            if (callback != null) {
+                newCallbacks.add(callback);
+            }
+            pendingRequests.put(key, newCallbacks);
+        }
+
+        workers.execute(new Runnable() {
+            @Override
+            public void run() {
+                Bitmap frame = null;
+                Exception error = null;
+                try {
+                    frame = loadFrame(path, alignedMs, key);
+                } catch (Exception e) {
+                    error = e;
+                }
+                deliver(path, alignedMs, key, frame, error);
+            }
+        });
+    }
+
+    /**
+     * 读取磁盘缓存或截取画面并加入缓存，在工作线程中执行
+     */
+    @NonNull
+    private Bitmap loadFrame(@NonNull String path, long alignedMs, @NonNull String key) throws IOException {
+        refreshContentKey(path);
+        final Bitmap cached = memoryCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        if (diskCache != null) {
+            final File file = diskCache.get(key);
+            if (file != null) {
+                final Bitmap decoded = decodeFile(file);
+                if (decoded != null) {
+                    memoryCache.put(key, decoded);
+                    return decoded;
+                }
+            }
+        }
+
+        final Bitmap frame = extractFrame(path, alignedMs);
+        memoryCache.put(key, frame);
+        if (diskCache != null) {
+            writeDiskCache(key, frame);
+        }
+        return frame;
+    }
+
+    /**
+     * 截取位置之前最近的关键帧并缩放，只需要解码一帧，比精确截取快得多
+     */
+    @NonNull
+    private Bitmap extractFrame(@NonNull String path, long alignedMs) throws IOException {
+        final Retriever retriever = acquireRetriever(path);
+        final Bitmap source;
+        try {
+            source = retriever.retriever.getFrameAtTime(alignedMs * 1000L, MediaMetadataRetriever.OPTION_PREVIOUS_SYNC);
+        } catch (RuntimeException e) {
+            retriever.release();
+            throw new IOException("无法截取画面：" + path, e);
+        }
+        recycleRetriever(retriever);
+        if (source == null) {
+            throw new IOException("没有可用的画面：" + path + " @ " + alignedMs);
+        }
+
+        try {
+            final int frameHeight = Math.max(1, Math.round((float) source.getHeight() * frameWidth / source.getWidth()));
+            final Bitmap frame = Bitmap.createBitmap(frameWidth, frameHeight, FRAME_CONFIG);
+            final Canvas canvas = new Canvas(frame);
+            canvas.drawBitmap(source, null, new Rect(0, 0, frameWidth, frameHeight), new Paint(Paint.FILTER_BITMAP_FLAG));
+            return frame;
+        } finally {
+            source.recycle();
+        }
+    }
+
+    /**
+     * 解码磁盘缓存中的画面，解码目标重复使用，交给调用方的是复制后的新对象
+     *
+     * @return 画面，无法解码时返回NULL
+     */
+    @Nullable
+    private Bitmap decodeFile(@NonNull File file) {
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inMutable = true;
+        options.inPreferredConfig = FRAME_CONFIG;
+        final Bitmap target = acquireDecodeTarget(options.outWidth * options.outHeight * 2);
+        options.inBitmap = target;
+        Bitmap decoded;
+        try {
+            decoded = BitmapFactory.decodeFile(file.getPath(), options);
+        } catch (IllegalArgumentException e) {
+            //闲置对象无法用于解码，重新分配
+            options.inBitmap = null;
+            decoded = BitmapFactory.decodeFile(file.getPath(), options);
+        }
+        if (target != null && decoded != target) {
+            recycleDecodeTarget(target);
+        }
+        if (decoded == null) {
+            return null;
+        }
+
+        final Bitmap frame = decoded.copy(FRAME_CONFIG, false);
+        recycleDecodeTarget(decoded);
+        return frame;
+    }
+
+    /**
+     * @param byteCount 需要的大小，单位：字节
+     * @return 占用的内存不小于需要的大小的闲置解码目标，没有时返回NULL
+     */
+    @Nullable
+    private Bitmap acquireDecodeTarget(int byteCount) {
+        synchronized (idleDecodeTargets) {
+            final Iterator<Bitmap> iterator = idleDecodeTargets.iterator();
+            while (iterator.hasNext()) {
+                final Bitmap target = iterator.next();
+                if (target.getAllocationByteCount() >= byteCount) {
+                    iterator.remove();
+                    return target;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 放回闲置的解码目标，数量超过工作线程数量时回收最早放入的对象
+     */
+    private void recycleDecodeTarget(@NonNull Bitmap target) {
+        final Bitmap oldest;
+        synchronized (idleDecodeTargets) {
+            if (isReleased || !target.isMutable()) {
+                oldest = target;
+            } else {
+                idleDecodeTargets.offerLast(target);
+                oldest = (idleDecodeTargets.size() > WORKER_COUNT) ? idleDecodeTargets.pollFirst() : null;
+            }
+        }
+        if (oldest != null) {
+            oldest.recycle();
+        }
+    }
+
+    /**
+     * 以 JPEG 格式写入磁盘缓存，写入失败时只影响下一次读取
+     */
+    private void writeDiskCache(@NonNull String key, @NonNull Bitmap frame) {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(16 * 1024);
+        if (!frame.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, outputStream)) {
+            return;
+        }
+        final byte[] data = outputStream.toByteArray();
+        try {
+            diskCache.put(key, new MediaDiskCache.Source() {
+                @NonNull
+                @Override
+                public InputStream open() throws IOException {
+                    return new ByteArrayInputStream(data);
+                }
+            }, "jpg");
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * 把结果交给等待中的回调
+     */
+    private void deliver(@NonNull final String path, final long alignedMs, @NonNull String key, @Nullable final Bitmap frame, @Nullable final Exception error) {
+        final List<Callback> callbacks;
+        synchronized (pendingRequests) {
+            callbacks = pendingRequests.remove(key);
+        }
+        if (callbacks == null || callbacks.isEmpty() || isReleased) {
+            return;
+        }
+        callbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (Callback callback : callbacks) {
+                    if (frame != null) {
+                        callback.onFrame(path, alignedMs, frame);
+                    } else {
+                        callback.onFailed(path, alignedMs, error);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * 优先使用已打开同一视频的闲置对象
+     */
+    @NonNull
+    private Retriever acquireRetriever(@NonNull String path) throws IOException {
+        synchronized (idleRetrievers) {
+            final Iterator<Retriever> iterator = idleRetrievers.iterator();
+            while (iterator.hasNext()) {
+                final Retriever retriever = iterator.next();
+                if (retriever.path.equals(path)) {
+                    iterator.remove();
+                    return retriever;
+                }
+            }
+        }
+
+        final MediaMetadataRetriever mediaRetriever = new MediaMetadataRetriever();
+        try {
+            mediaRetriever.setDataSource(path);
+        } catch (RuntimeException e) {
+            mediaRetriever.release();
+            throw new IOException("无法读取视频：" + path, e);
+        }
+        return new Retriever(path, mediaRetriever);
+    }
+
+    /**
+     * 放回闲置的对象，数量超过工作线程数量时释放最久没有使用的对象
+     */
+    private void recycleRetriever(@NonNull Retriever retriever) {
+        final Retriever oldest;
+        synchronized (idleRetrievers) {
+            if (isReleased) {
+                oldest = retriever;
+            } else {
+                idleRetrievers.offerLast(retriever);
+                oldest = (idleRetrievers.size() > WORKER_COUNT) ? idleRetrievers.pollFirst() : null;
+            }
+        }
+        if (oldest != null) {
+            oldest.release();
+        }
+    }
+
+    /**
+     * 已打开视频的 MediaMetadataRetriever
+     */
+    private static final class Retriever {
+
+        private final String path;
+        private final MediaMetadataRetriever retriever;
+
+        Retriever(String path, MediaMetadataRetriever retriever) {
+            this.path = path;
+            this.retriever = retriever;
+        }
+
+        void release() {
+            try {
+                retriever.release();
+            } catch (RuntimeException ignored) {
+            }
+        }
+
+    }
+
+    /**
+     * 后进先出的任务队列，ThreadPoolExecutor 通过 offer() 加入任务
+     */
+    private static final class LifoQueue extends LinkedBlockingDeque<Runnable> {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public boolean offer(@NonNull Runnable runnable) {
+            return offerFirst(runnable);
+        }
+
+    }
+
+}
@@ -0,0 +1,154 @@
+package com.ocwvar.mediatesttable.Cores;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-10 上午9:50
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   实数FFT
+ *
+ * 基 2 实数FFT：长度为 N 的实数数据打包为 N / 2 的复数数据进行变换，再拆分得到 0 ~ N / 2 的频率点
+ * 旋转因子与位反转表在创建时计算完毕，所有工作数组预先分配，变换过程不产生对象分配
+ * 对象内部带有工作数组，同一对象不能在多个线程中同时使用
+ */
+final class RealFft {
+
+    /**
+     * 实数数据长度
+     */
+    final int size;
+
+    /**
+     * 复数FFT长度，即 size / 2
+     */
+    private final int half;
+
+    //复数FFT使用的旋转因子，长度为 half / 2
+    private final float[] cosTable;
+    private final float[] sinTable;
+
+    //拆分步骤使用的旋转因子，长度为 half
+    private final float[] splitCos;
+    private final float[] splitSin;
+
+    //位反转表
+    private final int[] bitReverse;
+
+    //复数FFT工作数组
+    private final float[] workReal;
+    private final float[] workImaginary;
+
+    /**
+     * @param size 实数数据长度，必须为 2 的幂且不小于 4
+     */
+    RealFft(int size) {
+        if (size < 4 || (size & (size - 1)) != 0) {
+            throw new IllegalArgumentException("size must be a power of two >= 4, got " + size);
+        }
+        this.size = size;
+        this.half = size >> 1;
+
+        this.cosTable = new float[half >> 1];
+        this.sinTable = new float[half >> 1];
+        for (int i = 0; i < cosTable.length; i++) {
+            final double angle = -2.0 * Math.PI * i / half;
+            cosTable[i] = (float) Math.cos(angle);
+            sinTable[i] = (float) Math.sin(angle);
+        }
+
+        this.splitCos = new float[half];
+        this.splitSin = new float[half];
+        for (int i = 0; i < half; i++) {
+            final double angle = -2.0 * Math.PI * i / size;
+            splitCos[i] = (float) Math.cos(angle);
+            splitSin[i] = (float) Math.sin(angle);
+        }
+
+        this.bitReverse = new int[half];
+        final int bits = Integer.numberOfTrailingZeros(half);
+        for (int i = 0; i < half; i++) {
+            bitReverse[i] = (bits == 0) ? 0 : Integer.reverse(i) >>> (32 - bits);
+        }
+
+        this.workReal = new float[half];
+        this.workImaginary = new float[half];
+    }
+
+    /**
+     * 正向变换
+     *
+     * @param input         实数数据，长度至少为 size
+     * @param outReal       变换结果实部，长度至少为 size / 2 + 1
+     * @param outImaginary  变换结果虚部，长度至少为 size / 2 + 1
+     */
+    void forward(float[] input, float[] outReal, float[] outImaginary) {
+        final float[] real = workReal;
+        final float[] imaginary = workImaginary;
+
+        //打包：z[n] = x[2n] + i * x[2n + 1]，同时完成位反转排序
+        for (int i = 0; i < half; i++) {
+            final int target = bitReverse[i];
+            real[target] = input[i << 1];
+            imaginary[target] = input[(i << 1) + 1];
+        }
+
+        //复数FFT蝶形运算
+        for (int length = 2; length <= half; length <<= 1) {
+            final int halfLength = length >> 1;
+            final int tableStep = half / length;
+            for (int start = 0; start < half; start += length) {
+                for (int j = 0; j < halfLength; j++) {
+                    final float wr = cosTable[j * tableStep];
+                    final float wi = sinTable[j * tableStep];
+                    final int a = start + j;
+                    final int b = a + halfLength;
+                    final float tr = real[b] * wr - imaginary[b] * wi;
+                    final float ti = real[b] * wi + imaginary[b] * wr;
+                    real[b] = real[a] - tr;
+                    imaginary[b] = imaginary[a] - ti;
+                    real[a] += tr;
+                    imaginary[a] += ti;
+                }
+            }
+        }
+
+        //拆分：X[k] = (Z[k] + conj(Z[M - k])) / 2 - i * W^k * (Z[k] - conj(Z[M - k])) / 2
+        outReal[0] = real[0] + imaginary[0];
+        outImaginary[0] = 0f;
+        outReal[half] = real[0] - imaginary[0];
+        outImaginary[half] = 0f;
+        for (int k = 1; k < half; k++) {
+            final float zr = real[k];
+            final float zi = imaginary[k];
+            final float cr = real[half - k];
+            final float ci = -imaginary[half - k];
+
+            final float evenReal = (zr + cr) * 0.5f;
+            final float evenImaginary = (zi + ci) * 0.5f;
+            final float oddReal = (zi - ci) * 0.5f;
+            final float oddImaginary = -(zr - cr) * 0.5f;
+
+            final float wr = splitCos[k];
+            final float wi = splitSin[k];
+            outReal[k] = evenReal + oddReal * wr - oddImaginary * wi;
+            outImaginary[k] = evenImaginary + oddReal * wi + oddImaginary * wr;
+        }
+    }
+
+    /**
+     * 计算功率谱（幅度的平方）
+     *
+     * @param input    实数数据，长度至少为 size
+     * @param outPower 功率谱，长度至少为 size / 2 + 1
+     * @param scratch  临时数组，长度至少为 size / 2 + 1，内容会被覆盖
+     */
+    void power(float[] input, float[] outPower, float[] scratch) {
+        forward(input, outPower, scratch);
+        for (int k = 0; k <= half; k++) {
+            final float real = outPower[k];
+            final float imaginary = scratch[k];
+            outPower[k] = real * real + imaginary * imaginary;
+        }
+    }
+
+}
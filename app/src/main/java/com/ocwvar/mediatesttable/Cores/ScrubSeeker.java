@@ -0,0 +1,127 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-8-4 下午2:20
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   拖动进度条时的跳转控制
+ *
+ * 拖动过程中的位置使用快速跳转（跳转到附近的关键帧），同一时间只有一次跳转在执行：
+ * 上一次跳转还没有完成时，新的位置只会替换等待中的位置，跳转完成后只执行最后一个位置
+ * 松开进度条时执行精确跳转，等待中的位置被丢弃
+ * 队列中尚未执行的跳转已经由 CommandQueue 合并，这里处理的是已经交给播放器、正在执行的跳转
+ * 所有方法只在核心的播放器线程中调用
+ */
+final class ScrubSeeker {
+
+    //跳转超过这个时间仍没有完成时不再等待，避免播放器没有回调时拖动一直无效
+    private static final long STALL_NANOS = TimeUnit.SECONDS.toNanos(1L);
+
+    //没有等待中的位置
+    private static final long NONE = -1L;
+
+    /**
+     * 执行跳转的播放器
+     */
+    interface Target {
+
+        /**
+         * @param ms      跳转位置，单位：毫秒
+         * @param isExact True：精确跳转  False：跳转到附近的关键帧，播放器不支持时与精确跳转相同
+         */
+        void seekTo(long ms, boolean isExact);
+
+    }
+
+    private final CoreMetrics metrics;
+    private final Target target;
+
+    //是否有已交给播放器而没有完成的跳转
+    private boolean isInFlight = false;
+    //进行中的跳转开始时间 System.nanoTime()
+    private long inFlightNanos = 0L;
+    //等待上一次跳转完成的位置，没有时为 NONE
+    private long pendingMs = NONE;
+
+    ScrubSeeker(@NonNull CoreMetrics metrics, @NonNull Target target) {
+        this.metrics = metrics;
+        this.target = target;
+    }
+
+    /**
+     * 拖动进度条时跳转
+     *
+     * @param ms 跳转位置，单位：毫秒
+     */
+    void scrubTo(long ms) {
+        if (isInFlight && System.nanoTime() - inFlightNanos < STALL_NANOS) {
+            if (pendingMs != NONE) {
+                metrics.scrubSkipped();
+            }
+            pendingMs = ms;
+            return;
+        }
+        pendingMs = NONE;
+        issue(ms, false);
+    }
+
+    /**
+     * 精确跳转，用于松开进度条与普通的跳转，丢弃等待中的位置
+     *
+     * @param ms 跳转位置，单位：毫秒
+     */
+    void seekTo(long ms) {
+        if (pendingMs != NONE) {
+            metrics.scrubSkipped();
+            pendingMs = NONE;
+        }
+        issue(ms, true);
+    }
+
+    /**
+     * 播放器已在新位置准备好数据，执行等待中的位置
+     */
+    void seekCompleted() {
+        if (!isInFlight) {
+            return;
+        }
+        isInFlight = false;
+        if (pendingMs != NONE) {
+            final long ms = pendingMs;
+            pendingMs = NONE;
+            issue(ms, false);
+        }
+    }
+
+    /**
+     * 播放器停止、重新准备或释放时清除跳转状态
+     */
+    void reset() {
+        isInFlight = false;
+        pendingMs = NONE;
+    }
+
+    /**
+     * @return 是否有等待上一次跳转完成的位置
+     */
+    boolean hasPending() {
+        return pendingMs != NONE;
+    }
+
+    private void issue(long ms, boolean isExact) {
+        isInFlight = true;
+        inFlightNanos = System.nanoTime();
+        if (isExact) {
+            metrics.seekStarted();
+        } else {
+            metrics.scrubSeekStarted();
+        }
+        target.seekTo(ms, isExact);
+    }
+
+}
@@ -0,0 +1,186 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.support.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-21 上午9:30
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   已解码的音效片段
+ *
+ * 数据为 16 位交错PCM，采样率已转换为混音器的输出采样率，声道数为 1 或 2
+ * 数据保存在堆外的 direct ByteBuffer 中，不占用Java堆，也不会增加GC的扫描负担，片段对象被回收时释放
+ * 创建后数据不再改变，只通过绝对位置读取，可以同时被多个声部播放
+ */
+public final class SfxClip {
+
+    //变速变调时每次处理的帧数
+    private static final int STRETCH_CHUNK_FRAMES = 1024;
+
+    final ShortBuffer samples;
+    final int channelCount;
+    final int frameCount;
+    final int sampleRate;
+
+    private final String path;
+
+    SfxClip(@NonNull String path, @NonNull ShortBuffer samples, int channelCount, int sampleRate) {
+        this.path = path;
+        this.samples = samples;
+        this.channelCount = channelCount;
+        this.frameCount = samples.capacity() / channelCount;
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * 将PCM数据复制到堆外内存中
+     *
+     * @param path         文件路径
+     * @param samples      交错PCM数据
+     * @param channelCount 声道数，1 或 2
+     * @param sampleRate   采样率
+     * @return 音效片段
+     */
+    @NonNull
+    static SfxClip wrap(@NonNull String path, @NonNull short[] samples, int channelCount, int sampleRate) {
+        final ShortBuffer buffer = allocate(samples.length);
+        buffer.put(samples, 0, samples.length);
+        return new SfxClip(path, buffer, channelCount, sampleRate);
+    }
+
+    /**
+     * 将解码得到的PCM数据转换为混音器使用的格式：多于 2 个声道时只保留前 2 个，采样率通过线性插值转换
+     *
+     * @param path         文件路径
+     * @param pcm          解码得到的交错PCM数据
+     * @param sampleCount  有效的采样数量（所有声道的总和）
+     * @param channelCount 解码得到的声道数
+     * @param sourceRate   解码得到的采样率
+     * @param targetRate   混音器的输出采样率
+     * @return 音效片段
+     */
+    @NonNull
+    static SfxClip fromPcm(@NonNull String path, @NonNull short[] pcm, int sampleCount, int channelCount, int sourceRate, int targetRate) {
+        final int outputChannels = Math.min(channelCount, 2);
+        final int sourceFrames = sampleCount / channelCount;
+
+        if (sourceRate == targetRate) {
+            final ShortBuffer samples = allocate(sourceFrames * outputChannels);
+            if (outputChannels == channelCount) {
+                samples.put(pcm, 0, sourceFrames * outputChannels);
+            } else {
+                for (int frame = 0; frame < sourceFrames; frame++) {
+                    samples.put(frame * 2, pcm[frame * channelCount]);
+                    samples.put(frame * 2 + 1, pcm[frame * channelCount + 1]);
+                }
+            }
+            return new SfxClip(path, samples, outputChannels, targetRate);
+        }
+
+        final int targetFrames = (int) ((long) sourceFrames * targetRate / sourceRate);
+        final ShortBuffer samples = allocate(targetFrames * outputChannels);
+        final double step = sourceRate / (double) targetRate;
+        for (int frame = 0; frame < targetFrames; frame++) {
+            final double position = frame * step;
+            final int index = (int) position;
+            final int next = Math.min(index + 1, sourceFrames - 1);
+            final float fraction = (float) (position - index);
+            for (int channel = 0; channel < outputChannels; channel++) {
+                final int a = pcm[index * channelCount + channel];
+                final int b = pcm[next * channelCount + channel];
+                samples.put(frame * outputChannels + channel, (short) Math.round(a + (b - a) * fraction));
+            }
+        }
+        return new SfxClip(path, samples, outputChannels, targetRate);
+    }
+
+    /**
+     * 生成变速变调后的新片段，原片段不变。处理整个片段，不能在主线程中调用
+     *
+     * @param speed 播放速度，1 为原速
+     * @param pitch 音调，1 为原调
+     * @return 新的音效片段，速度与音调都为 1 时返回本身
+     */
+    @NonNull
+    SfxClip stretch(float speed, float pitch) {
+        if (speed == 1.0f && pitch == 1.0f) return this;
+
+        final TimeStretcher stretcher = new TimeStretcher(sampleRate, channelCount);
+        stretcher.setParameters(speed, pitch);
+
+        final short[] chunk = new short[STRETCH_CHUNK_FRAMES * channelCount];
+        short[] output = new short[((int) (frameCount / speed) + STRETCH_CHUNK_FRAMES) * channelCount];
+        int outputFrames = 0;
+        int inputFrame = 0;
+        while (!stretcher.isEnded()) {
+            if (inputFrame < frameCount) {
+                final int frames = Math.min(STRETCH_CHUNK_FRAMES, frameCount - inputFrame);
+                for (int i = 0; i < frames * channelCount; i++) {
+                    chunk[i] = samples.get(inputFrame * channelCount + i);
+                }
+                inputFrame += stretcher.queueInput(chunk, 0, frames);
+            } else {
+                stretcher.queueEndOfStream();
+            }
+
+            int read;
+            do {
+                if ((outputFrames + STRETCH_CHUNK_FRAMES) * channelCount > output.length) {
+                    final short[] larger = new short[output.length * 2];
+                    System.arraycopy(output, 0, larger, 0, outputFrames * channelCount);
+                    output = larger;
+                }
+                read = stretcher.readOutput(output, outputFrames * channelCount, STRETCH_CHUNK_FRAMES);
+                outputFrames += read;
+            } while (read > 0);
+        }
+
+        final ShortBuffer buffer = allocate(outputFrames * channelCount);
+        buffer.put(output, 0, outputFrames * channelCount);
+        return new SfxClip(path, buffer, channelCount, sampleRate);
+    }
+
+    /**
+     * @param sampleCount 采样数量
+     * @return 本机字节序的堆外缓冲区
+     */
+    @NonNull
+    private static ShortBuffer allocate(int sampleCount) {
+        return ByteBuffer.allocateDirect(sampleCount * 2).order(ByteOrder.nativeOrder()).asShortBuffer();
+    }
+
+    /**
+     * @return 文件路径
+     */
+    @NonNull
+    public String path() {
+        return path;
+    }
+
+    /**
+     * @return 声道数
+     */
+    public int channelCount() {
+        return channelCount;
+    }
+
+    /**
+     * @return 长度，单位：毫秒
+     */
+    public long durationMillis() {
+        return frameCount * 1000L / sampleRate;
+    }
+
+    /**
+     * @return 占用的堆外内存大小，单位：字节
+     */
+    public long sizeBytes() {
+        return samples.capacity() * 2L;
+    }
+
+}
@@ -0,0 +1,142 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-21 上午10:50
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   音效解码器
+ *
+ * 使用 MediaExtractor 与 MediaCodec 将整个音效文件一次性解码为 16 位PCM，耗时操作，不能在主线程中调用
+ */
+final class SfxDecoder {
+
+    /**
+     * 音效的最大长度，单位：毫秒，更长的文件应该通过 EXOCore 播放
+     */
+    static final long MAX_CLIP_MILLIS = 10_000L;
+
+    //MediaCodec 缓冲区的等待时间
+    private static final long DEQUEUE_TIMEOUT_US = 10_000L;
+
+    private SfxDecoder() {
+    }
+
+    /**
+     * 解码音效文件
+     *
+     * @param path       文件路径
+     * @param targetRate 混音器的输出采样率
+     * @return 音效片段
+     * @throws IOException 文件无法读取、没有音频轨道、解码失败或长度超出 {@link #MAX_CLIP_MILLIS}
+     */
+    @NonNull
+    static SfxClip decode(@NonNull String path, int targetRate) throws IOException {
+        final MediaExtractor extractor = new MediaExtractor();
+        MediaCodec codec = null;
+        try {
+            extractor.setDataSource(path);
+
+            MediaFormat format = null;
+            String mime = null;
+            for (int track = 0; track < extractor.getTrackCount(); track++) {
+                final MediaFormat trackFormat = extractor.getTrackFormat(track);
+                final String trackMime = trackFormat.getString(MediaFormat.KEY_MIME);
+                if (trackMime != null && trackMime.startsWith("audio/")) {
+                    extractor.selectTrack(track);
+                    format = trackFormat;
+                    mime = trackMime;
+                    break;
+                }
+            }
+            if (format == null) {
+                throw new IOException("没有音频轨道：" + path);
+            }
+            if (format.containsKey(MediaFormat.KEY_DURATION) && format.getLong(MediaFormat.KEY_DURATION) > MAX_CLIP_MILLIS * 1000L) {
+                throw new IOException("音效长度超出 " + MAX_CLIP_MILLIS + "ms：" + path);
+            }
+
+            int sampleRate = format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+            int channelCount = format.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+
+            codec = MediaCodec.createDecoderByType(mime);
+            codec.configure(format, null, null, 0);
+            codec.start();
+
+            short[] pcm = new short[sampleRate * channelCount];
+            int sampleCount = 0;
+            final MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+            boolean isInputEnded = false;
+            boolean isOutputEnded = false;
+
+            while (!isOutputEnded) {
+                if (!isInputEnded) {
+                    final int inputIndex = codec.dequeueInputBuffer(DEQUEUE_TIMEOUT_US);
+                    if (inputIndex >= 0) {
+                        final ByteBuffer inputBuffer = codec.getInputBuffer(inputIndex);
+                        final int size = (inputBuffer == null) ? -1 : extractor.readSampleData(inputBuffer, 0);
+                        if (size < 0) {
+                            codec.queueInputBuffer(inputIndex, 0, 0, 0L, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                            isInputEnded = true;
+                        } else {
+                            codec.queueInputBuffer(inputIndex, 0, size, extractor.getSampleTime(), 0);
+                            extractor.advance();
+                        }
+                    }
+                }
+
+                final int outputIndex = codec.dequeueOutputBuffer(info, DEQUEUE_TIMEOUT_US);
+                if (outputIndex >= 0) {
+                    final ByteBuffer outputBuffer = codec.getOutputBuffer(outputIndex);
+                    if (outputBuffer != null && info.size > 0) {
+                        outputBuffer.position(info.offset);
+                        outputBuffer.limit(info.offset + info.size);
+                        final ShortBuffer samples = outputBuffer.order(ByteOrder.nativeOrder()).asShortBuffer();
+                        final int count = samples.remaining();
+                        if (sampleCount + count > pcm.length) {
+                            pcm = Arrays.copyOf(pcm, Math.max(pcm.length * 2, sampleCount + count));
+                        }
+                        samples.get(pcm, sampleCount, count);
+                        sampleCount += count;
+                    }
+                    codec.releaseOutputBuffer(outputIndex, false);
+                    isOutputEnded = (info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0;
+
+                    //文件没有记录长度时按解码结果检查
+                    if (sampleCount / channelCount > sampleRate * MAX_CLIP_MILLIS / 1000L) {
+                        throw new IOException("音效长度超出 " + MAX_CLIP_MILLIS + "ms：" + path);
+                    }
+                } else if (outputIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    final MediaFormat outputFormat = codec.getOutputFormat();
+                    sampleRate = outputFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+                    channelCount = outputFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+                }
+            }
+
+            return SfxClip.fromPcm(path, pcm, sampleCount, channelCount, sampleRate, targetRate);
+        } catch (IllegalStateException e) {
+            throw new IOException("音效解码失败：" + path, e);
+        } finally {
+            if (codec != null) {
+                try {
+                    codec.stop();
+                } catch (IllegalStateException ignored) {
+                }
+                codec.release();
+            }
+            extractor.release();
+        }
+    }
+
+}
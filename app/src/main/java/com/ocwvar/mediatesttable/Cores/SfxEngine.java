@@ -0,0 +1,321 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.content.Context;
+import android.media.AudioAttributes;
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTrack;
+import android.os.Process;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-21 下午2:10
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   低延迟音效引擎
+ *
+ * 与 EXOCore 同时使用：EXOCore 播放音乐，本引擎播放大量同时发生的短音效
+ * 音效文件只解码一次，PCM数据保存在 PcmCache 中，同一文件再次播放时直接使用缓存的数据
+ * 所有音效在同一个 AudioTrack 中混合输出，声部数量固定，触发播放不产生对象分配
+ * 没有音效播放一段时间后暂停 AudioTrack 并挂起混音线程，下一次触发时恢复
+ */
+public final class SfxEngine {
+
+    /**
+     * 默认的声部数量
+     */
+    public static final int DEFAULT_VOICE_COUNT = 32;
+
+    private final String TAG = "SFX引擎";
+
+    //无法读取设备参数时使用的默认值
+    private static final int FALLBACK_SAMPLE_RATE = 44100;
+    private static final int FALLBACK_FRAMES_PER_BUFFER = 256;
+
+    //没有音效播放多久后暂停 AudioTrack，单位：纳秒
+    private static final long IDLE_PAUSE_NANOS = 2_000_000_000L;
+
+    private final int sampleRate;
+    private final int framesPerBuffer;
+    private final AudioTrack audioTrack;
+    private final SfxMixer mixer;
+    private final Thread mixThread;
+
+    private final PcmCache pcmCache;
+    private final PcmCache.Decoder decoder;
+
+    private volatile boolean isReleased = false;
+
+    /**
+     * @param context Context
+     */
+    public SfxEngine(@NonNull Context context) {
+        this(context, DEFAULT_VOICE_COUNT, new PcmCache());
+    }
+
+    /**
+     * @param context    Context
+     * @param voiceCount 声部数量，即最多同时播放的音效数量
+     * @param pcmCache   PCM数据缓存，可以与其他引擎共用
+     */
+    public SfxEngine(@NonNull Context context, int voiceCount, @NonNull PcmCache pcmCache) {
+        this.pcmCache = pcmCache;
+
+        //使用设备的原生采样率与缓冲区大小，避免系统混音器重采样并获得最低的输出延迟
+        final AudioManager audioManager = (AudioManager) context.getApplicationContext().getSystemService(Context.AUDIO_SERVICE);
+        this.sampleRate = parseProperty(audioManager, AudioManager.PROPERTY_OUTPUT_SAMPLE_RATE, FALLBACK_SAMPLE_RATE);
+        this.framesPerBuffer = parseProperty(audioManager, AudioManager.PROPERTY_OUTPUT_FRAMES_PER_BUFFER, FALLBACK_FRAMES_PER_BUFFER);
+
+        final int minBufferBytes = AudioTrack.getMinBufferSize(sampleRate, AudioFormat.CHANNEL_OUT_STEREO, AudioFormat.ENCODING_PCM_16BIT);
+        this.audioTrack = new AudioTrack(
+                new AudioAttributes.Builder()
+                        .setUsage(AudioAttributes.USAGE_GAME)
+                        .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
+                        .build(),
+                new AudioFormat.Builder()
+                        .setSampleRate(sampleRate)
+                        .setChannelMask(AudioFormat.CHANNEL_OUT_STEREO)
+                        .setEncoding(AudioFormat.ENCODING_PCM_16BIT)
+                        .build(),
+                Math.max(minBufferBytes, framesPerBuffer * 4 * 2),
+                AudioTrack.MODE_STREAM,
+                AudioManager.AUDIO_SESSION_ID_GENERATE);
+
+        this.decoder = new PcmCache.Decoder() {
+            @NonNull
+            @Override
+            public SfxClip decode(@NonNull String path) throws IOException {
+                return SfxDecoder.decode(path, sampleRate);
+            }
+        };
+
+        this.mixer = new SfxMixer(voiceCount, framesPerBuffer);
+        this.mixThread = new Thread(new MixLoop(), "SfxMixer");
+        this.mixThread.start();
+    }
+
+    /**
+     * 读取音效，已缓存时直接返回，否则解码后加入缓存。解码是耗时操作，不能在主线程中调用
+     *
+     * @param path 文件路径
+     * @return 音效片段
+     * @throws IOException 文件无法解码或长度超出 {@link SfxDecoder#MAX_CLIP_MILLIS}
+     */
+    @NonNull
+    public SfxClip load(@NonNull String path) throws IOException {
+        return pcmCache.load(path, decoder);
+    }
+
+    /**
+     * 读取音效并生成变速变调后的片段，用于同一音效的多种变化。生成的片段不加入缓存，需要由调用方持有
+     * 解码与处理都是耗时操作，不能在主线程中调用
+     *
+     * @param path  文件路径
+     * @param speed 播放速度，1 为原速
+     * @param pitch 音调，1 为原调，两者都为 1 时返回缓存的片段
+     * @return 音效片段
+     * @throws IOException 文件无法解码或长度超出 {@link SfxDecoder#MAX_CLIP_MILLIS}
+     */
+    @NonNull
+    public SfxClip load(@NonNull String path, float speed, float pitch) throws IOException {
+        return load(path).stretch(speed, pitch);
+    }
+
+    /**
+     * 在工作线程中预先解码音效
+     *
+     * @param paths 文件路径
+     */
+    public void preload(@NonNull final String... paths) {
+        CoreThreads.worker().execute(new Runnable() {
+            @Override
+            public void run() {
+                for (String path : paths) {
+                    if (isReleased) return;
+                    try {
+                        load(path);
+                    } catch (IOException e) {
+                        Log.e(TAG, "预加载音效失败：" + e);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * @return PCM数据缓存
+     */
+    @NonNull
+    public PcmCache pcmCache() {
+        return pcmCache;
+    }
+
+    /**
+     * 播放音效，左右声道使用相同音量
+     *
+     * @param clip 音效片段
+     * @return 声部编号，没有空闲声部或引擎已释放时返回 -1
+     */
+    public int play(@NonNull SfxClip clip) {
+        return play(clip, 1f, 1f);
+    }
+
+    /**
+     * 直接播放已缓存的音效，不进行解码。没有缓存时在工作线程中解码，本次不播放
+     *
+     * @param path        文件路径
+     * @param leftVolume  左声道音量，0 ~ 1
+     * @param rightVolume 右声道音量，0 ~ 1
+     * @return 声部编号，没有缓存、没有空闲声部或引擎已释放时返回 -1
+     */
+    public int play(@NonNull String path, float leftVolume, float rightVolume) {
+        final SfxClip clip = pcmCache.get(path);
+        if (clip == null) {
+            preload(path);
+            return SfxMixer.NO_VOICE;
+        }
+        return play(clip, leftVolume, rightVolume);
+    }
+
+    /**
+     * 播放音效，可在任意线程中调用。持有片段对象时不需要查询缓存，触发播放不产生对象分配
+     *
+     * @param clip        音效片段，必须由本引擎的 load() 生成
+     * @param leftVolume  左声道音量，0 ~ 1
+     * @param rightVolume 右声道音量，0 ~ 1
+     * @return 声部编号，没有空闲声部或引擎已释放时返回 -1
+     */
+    public int play(@NonNull SfxClip clip, float leftVolume, float rightVolume) {
+        if (isReleased || clip.sampleRate != sampleRate) {
+            return SfxMixer.NO_VOICE;
+        }
+        final int voiceId = mixer.trigger(clip, leftVolume, rightVolume);
+        if (voiceId != SfxMixer.NO_VOICE) {
+            //混音线程可能处于挂起状态
+            LockSupport.unpark(mixThread);
+        }
+        return voiceId;
+    }
+
+    /**
+     * 停止播放
+     *
+     * @param voiceId play() 返回的声部编号
+     * @return 执行结果，音效已播放完毕时返回 False
+     */
+    public boolean stop(int voiceId) {
+        return mixer.stop(voiceId);
+    }
+
+    /**
+     * 停止所有音效
+     */
+    public void stopAll() {
+        mixer.stopAll();
+    }
+
+    /**
+     * @param volume 总音量，0 ~ 1
+     */
+    public void setVolume(float volume) {
+        mixer.setMasterVolume(volume);
+    }
+
+    /**
+     * @return 播放中的音效数量
+     */
+    public int activeVoices() {
+        return mixer.activeVoices();
+    }
+
+    /**
+     * @return 因没有空闲声部而丢弃的播放次数
+     */
+    public long droppedCount() {
+        return mixer.droppedCount();
+    }
+
+    /**
+     * @return 输出采样率
+     */
+    public int sampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * @return 每次写入 AudioTrack 的帧数
+     */
+    public int framesPerBuffer() {
+        return framesPerBuffer;
+    }
+
+    /**
+     * 释放引擎，停止所有音效，之后不能再使用。缓存可能与其他引擎共用，不会被清空
+     */
+    public void release() {
+        if (isReleased) return;
+        isReleased = true;
+        mixer.stopAll();
+        LockSupport.unpark(mixThread);
+    }
+
+    private static int parseProperty(@Nullable AudioManager audioManager, @NonNull String key, int fallback) {
+        if (audioManager == null) return fallback;
+        try {
+            final int value = Integer.parseInt(audioManager.getProperty(key));
+            return (value > 0) ? value : fallback;
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    /**
+     * 混音线程：每次混合 framesPerBuffer 帧并以阻塞方式写入 AudioTrack，写入速度即为播放速度
+     */
+    private final class MixLoop implements Runnable {
+
+        @Override
+        public void run() {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+            final short[] buffer = new short[framesPerBuffer * 2];
+            boolean isPlaying = false;
+            long lastActiveNanos = 0L;
+
+            while (!isReleased) {
+                if (mixer.activeVoices() > 0) {
+                    lastActiveNanos = System.nanoTime();
+                } else if (!isPlaying || System.nanoTime() - lastActiveNanos > IDLE_PAUSE_NANOS) {
+                    if (isPlaying) {
+                        audioTrack.pause();
+                        audioTrack.flush();
+                        isPlaying = false;
+                    }
+                    LockSupport.park(this);
+                    continue;
+                }
+
+                if (!isPlaying) {
+                    audioTrack.play();
+                    isPlaying = true;
+                }
+                mixer.mix(buffer, framesPerBuffer);
+                final int result = audioTrack.write(buffer, 0, buffer.length);
+                if (result < 0) {
+                    Log.e(TAG, "AudioTrack 写入失败：" + result);
+                    isReleased = true;
+                    break;
+                }
+            }
+
+            audioTrack.release();
+        }
+
+    }
+
+}
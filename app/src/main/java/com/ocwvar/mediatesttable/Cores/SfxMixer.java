@@ -0,0 +1,274 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.support.annotation.NonNull;
+
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-21 上午10:05
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   音效混音器
+ *
+ * 声部数量在创建时固定，所有缓冲区预先分配，触发与混音都不产生对象分配
+ * 触发线程：trigger() 通过CAS占用一个空闲声部，写入参数后标记为播放中，没有空闲声部时丢弃本次触发
+ * 混音线程：mix() 将所有播放中的声部叠加为 16 位立体声输出，播放完毕或被停止的声部重新标记为空闲
+ *
+ * 声部编号 = 声部代数 << INDEX_BITS | 声部序号，声部被重新占用后旧的编号失效，stop() 不会停止之后的播放
+ */
+final class SfxMixer {
+
+    /**
+     * 最多可使用的声部数量
+     */
+    static final int MAX_VOICES = 1 << 8;
+
+    /**
+     * 没有空闲声部时 trigger() 返回的编号
+     */
+    static final int NO_VOICE = -1;
+
+    private static final int INDEX_BITS = 8;
+    private static final int INDEX_MASK = MAX_VOICES - 1;
+    private static final int GENERATION_MASK = 0x7FFFFF;
+
+    //声部状态
+    private static final int FREE = 0;
+    private static final int CLAIMED = 1;
+    private static final int PLAYING = 2;
+
+    private final Voice[] voices;
+    private final int maxFrames;
+
+    //立体声混音累加缓冲区，只在混音线程中使用
+    private final float[] accumulator;
+
+    private final AtomicInteger activeCount = new AtomicInteger(0);
+    private final AtomicLong triggerCount = new AtomicLong(0L);
+    private final AtomicLong droppedCount = new AtomicLong(0L);
+
+    private volatile float masterVolume = 1f;
+
+    /**
+     * @param voiceCount 声部数量，1 ~ {@link #MAX_VOICES}
+     * @param maxFrames  每次混音的最大帧数
+     */
+    SfxMixer(int voiceCount, int maxFrames) {
+        if (voiceCount < 1 || voiceCount > MAX_VOICES) {
+            throw new IllegalArgumentException("声部数量超出范围：" + voiceCount);
+        }
+        this.voices = new Voice[voiceCount];
+        for (int i = 0; i < voiceCount; i++) {
+            voices[i] = new Voice();
+        }
+        this.maxFrames = maxFrames;
+        this.accumulator = new float[maxFrames * 2];
+    }
+
+    /**
+     * 开始播放音效，可在任意线程中调用
+     *
+     * @param clip        音效片段，采样率需要与混音器输出一致
+     * @param leftVolume  左声道音量，0 ~ 1
+     * @param rightVolume 右声道音量，0 ~ 1
+     * @return 声部编号，没有空闲声部时返回 {@link #NO_VOICE}
+     */
+    int trigger(@NonNull SfxClip clip, float leftVolume, float rightVolume) {
+        triggerCount.incrementAndGet();
+        for (int index = 0; index < voices.length; index++) {
+            final Voice voice = voices[index];
+            if (voice.state.get() != FREE || !voice.state.compareAndSet(FREE, CLAIMED)) {
+                continue;
+            }
+
+            int generation = (voice.generation + 1) & GENERATION_MASK;
+            if (generation == 0) {
+                //代数 0 与声部初始的停止代数相同，跳过
+                generation = 1;
+            }
+            voice.clip = clip;
+            voice.leftVolume = leftVolume;
+            voice.rightVolume = rightVolume;
+            voice.position = 0;
+            voice.generation = generation;
+            activeCount.incrementAndGet();
+            //状态的写入对混音线程发布以上所有参数
+            voice.state.set(PLAYING);
+            return (generation << INDEX_BITS) | index;
+        }
+        droppedCount.incrementAndGet();
+        return NO_VOICE;
+    }
+
+    /**
+     * 停止播放，在下一次混音时生效
+     *
+     * @param voiceId 声部编号
+     * @return 执行结果，声部已播放完毕或已被重新使用时返回 False
+     */
+    boolean stop(int voiceId) {
+        if (voiceId < 0) return false;
+
+        final int index = voiceId & INDEX_MASK;
+        if (index >= voices.length) return false;
+
+        final Voice voice = voices[index];
+        final int generation = voiceId >>> INDEX_BITS;
+        if (voice.state.get() != PLAYING || voice.generation != generation) {
+            return false;
+        }
+        voice.stopGeneration = generation;
+        return true;
+    }
+
+    /**
+     * 停止所有播放中的声部，在下一次混音时生效
+     */
+    void stopAll() {
+        for (Voice voice : voices) {
+            if (voice.state.get() == PLAYING) {
+                voice.stopGeneration = voice.generation;
+            }
+        }
+    }
+
+    /**
+     * @param masterVolume 总音量，0 ~ 1
+     */
+    void setMasterVolume(float masterVolume) {
+        this.masterVolume = Math.max(0f, Math.min(1f, masterVolume));
+    }
+
+    /**
+     * @return 总音量
+     */
+    float masterVolume() {
+        return masterVolume;
+    }
+
+    /**
+     * @return 播放中的声部数量
+     */
+    int activeVoices() {
+        return activeCount.get();
+    }
+
+    /**
+     * @return 声部总数
+     */
+    int voiceCount() {
+        return voices.length;
+    }
+
+    /**
+     * @return 触发次数
+     */
+    long triggerCount() {
+        return triggerCount.get();
+    }
+
+    /**
+     * @return 因没有空闲声部而丢弃的触发次数
+     */
+    long droppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * 混合所有播放中的声部，只能在混音线程中调用
+     *
+     * @param output     输出缓冲区，16 位交错立体声
+     * @param frameCount 输出的帧数，不能超过创建时的最大帧数
+     * @return 混音后仍在播放的声部数量
+     */
+    int mix(@NonNull short[] output, int frameCount) {
+        if (frameCount > maxFrames) {
+            throw new IllegalArgumentException("帧数超出范围：" + frameCount);
+        }
+        final float[] accumulator = this.accumulator;
+        final int sampleCount = frameCount * 2;
+        Arrays.fill(accumulator, 0, sampleCount, 0f);
+
+        for (Voice voice : voices) {
+            if (voice.state.get() != PLAYING) {
+                continue;
+            }
+            if (voice.stopGeneration == voice.generation) {
+                release(voice);
+                continue;
+            }
+
+            final SfxClip clip = voice.clip;
+            final ShortBuffer samples = clip.samples;
+            final float left = voice.leftVolume;
+            final float right = voice.rightVolume;
+            final int position = voice.position;
+            final int frames = Math.min(frameCount, clip.frameCount - position);
+
+            if (clip.channelCount == 1) {
+                for (int frame = 0; frame < frames; frame++) {
+                    final float sample = samples.get(position + frame);
+                    accumulator[frame * 2] += sample * left;
+                    accumulator[frame * 2 + 1] += sample * right;
+                }
+            } else {
+                final int offset = position * 2;
+                for (int i = 0; i < frames * 2; i += 2) {
+                    accumulator[i] += samples.get(offset + i) * left;
+                    accumulator[i + 1] += samples.get(offset + i + 1) * right;
+                }
+            }
+
+            voice.position = position + frames;
+            if (voice.position >= clip.frameCount) {
+                release(voice);
+            }
+        }
+
+        final float masterVolume = this.masterVolume;
+        for (int i = 0; i < sampleCount; i++) {
+            final float sample = accumulator[i] * masterVolume;
+            if (sample >= Short.MAX_VALUE) {
+                output[i] = Short.MAX_VALUE;
+            } else if (sample <= Short.MIN_VALUE) {
+                output[i] = Short.MIN_VALUE;
+            } else {
+                output[i] = (short) sample;
+            }
+        }
+        return activeCount.get();
+    }
+
+    /**
+     * 将声部标记为空闲，只在混音线程中调用
+     */
+    private void release(@NonNull Voice voice) {
+        voice.clip = null;
+        activeCount.decrementAndGet();
+        voice.state.set(FREE);
+    }
+
+    /**
+     * 声部，参数只在占用（CLAIMED）期间由触发线程写入
+     */
+    private static final class Voice {
+
+        private final AtomicInteger state = new AtomicInteger(FREE);
+
+        private SfxClip clip = null;
+        private float leftVolume = 0f;
+        private float rightVolume = 0f;
+        //播放位置，单位：帧，只在混音线程中修改
+        private int position = 0;
+
+        private volatile int generation = 0;
+        //等于 generation 时在下一次混音时停止
+        private volatile int stopGeneration = 0;
+
+    }
+
+}
@@ -0,0 +1,274 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.ExtractorInput;
+import com.google.android.exoplayer2.extractor.ExtractorOutput;
+import com.google.android.exoplayer2.extractor.ExtractorsFactory;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.source.ExtractorMediaSource;
+import com.google.android.exoplayer2.source.MediaSource;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory;
+import com.google.android.exoplayer2.util.Util;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-17 上午10:30
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   ExoPlayer 资源生成管线
+ *
+ * 数据源工厂在管线创建时生成，之后所有资源共用，不再在每次准备时重新生成，本地文件地址通过内存映射读取
+ * 解析器只包含设置的封装格式，减少格式探测（sniff）的次数
+ * 每个地址上一次探测成功的格式会被记录下来，下次准备同一地址时最先尝试此格式
+ */
+public final class SourcePipeline {
+
+    //最多记录的地址数量，超出时移除最久没有使用的记录
+    private static final int MAX_MATCH_RECORDS = 128;
+
+    private final DataSource.Factory dataSourceFactory;
+
+    //地址 → 上一次探测成功的格式，按访问顺序排列
+    private final LinkedHashMap<String, ContainerFormat> matchRecords = new LinkedHashMap<String, ContainerFormat>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ContainerFormat> eldest) {
+            return size() > MAX_MATCH_RECORDS;
+        }
+    };
+
+    private volatile ContainerFormat[] formats;
+
+    //统计数据，只在持有 matchRecords 锁时修改
+    private long matchHitCount = 0L;
+    private long matchMissCount = 0L;
+
+    /**
+     * @param context Context
+     * @param formats 使用的封装格式，为空时使用全部格式
+     */
+    public SourcePipeline(@NonNull Context context, @NonNull ContainerFormat... formats) {
+        this(new MappedFileDataSource.Factory(new DefaultDataSourceFactory(context.getApplicationContext(), Util.getUserAgent(context, context.getPackageName()))), formats);
+    }
+
+    /**
+     * @param dataSourceFactory 所有资源共用的数据源工厂
+     * @param formats           使用的封装格式，为空时使用全部格式
+     */
+    SourcePipeline(@NonNull DataSource.Factory dataSourceFactory, @NonNull ContainerFormat... formats) {
+        this.dataSourceFactory = dataSourceFactory;
+        setFormats(formats);
+    }
+
+    /**
+     * 设置使用的封装格式，之后准备的资源生效
+     *
+     * @param formats 封装格式，为空时使用全部格式
+     */
+    public void setFormats(@NonNull ContainerFormat... formats) {
+        this.formats = (formats.length == 0) ? ContainerFormat.values() : formats.clone();
+    }
+
+    /**
+     * @return 当前使用的封装格式
+     */
+    @NonNull
+    public ContainerFormat[] formats() {
+        return this.formats.clone();
+    }
+
+    /**
+     * @return 共用的数据源工厂
+     */
+    @NonNull
+    public DataSource.Factory dataSourceFactory() {
+        return this.dataSourceFactory;
+    }
+
+    /**
+     * 生成资源
+     *
+     * @param uri          资源地址
+     * @param eventHandler 发送读取错误回调的线程，为NULL时不发送回调
+     * @param listener     读取错误回调
+     * @return 资源对象
+     */
+    @NonNull
+    public MediaSource createMediaSource(@NonNull Uri uri, @Nullable Handler eventHandler, @Nullable ExtractorMediaSource.EventListener listener) {
+        return new ExtractorMediaSource(uri, this.dataSourceFactory, extractorsFactory(uri.toString()), eventHandler, listener);
+    }
+
+    /**
+     * 生成解析器工厂，生成的解析器会最先尝试此地址上一次探测成功的格式
+     *
+     * @param key 资源地址，为NULL时不读取也不记录探测结果
+     * @return 解析器工厂
+     */
+    @NonNull
+    ExtractorsFactory extractorsFactory(@Nullable String key) {
+        return new OrderedExtractorsFactory(key);
+    }
+
+    /**
+     * 清空所有探测记录与统计数据
+     */
+    public void clearMatchRecords() {
+        synchronized (matchRecords) {
+            matchRecords.clear();
+            matchHitCount = 0L;
+            matchMissCount = 0L;
+        }
+    }
+
+    /**
+     * @return 记录的格式第一次尝试就探测成功的次数
+     */
+    public long matchHitCount() {
+        synchronized (matchRecords) {
+            return matchHitCount;
+        }
+    }
+
+    /**
+     * @return 没有记录或记录的格式探测失败的次数
+     */
+    public long matchMissCount() {
+        synchronized (matchRecords) {
+            return matchMissCount;
+        }
+    }
+
+    /**
+     * @param key 资源地址
+     * @return 上一次探测成功的格式，没有记录时返回NULL
+     */
+    @Nullable
+    private ContainerFormat matchedFormat(@NonNull String key) {
+        synchronized (matchRecords) {
+            return matchRecords.get(key);
+        }
+    }
+
+    /**
+     * 记录探测成功的格式
+     *
+     * @param key          资源地址
+     * @param format       探测成功的格式
+     * @param isRemembered 是否为记录中的格式
+     */
+    private void recordMatch(@NonNull String key, @NonNull ContainerFormat format, boolean isRemembered) {
+        synchronized (matchRecords) {
+            if (isRemembered) {
+                matchHitCount++;
+            } else {
+                matchMissCount++;
+            }
+            matchRecords.put(key, format);
+        }
+    }
+
+    /**
+     * 按探测记录排序的解析器工厂，每次准备资源（以及播放器重新准备）时都会调用 createExtractors()
+     */
+    private final class OrderedExtractorsFactory implements ExtractorsFactory {
+
+        private final String key;
+
+        OrderedExtractorsFactory(@Nullable String key) {
+            this.key = key;
+        }
+
+        @Override
+        public Extractor[] createExtractors() {
+            final ContainerFormat[] formats = SourcePipeline.this.formats;
+            final Extractor[] extractors = new Extractor[formats.length];
+
+            if (key == null) {
+                for (int i = 0; i < formats.length; i++) {
+                    extractors[i] = formats[i].createExtractor();
+                }
+                return extractors;
+            }
+
+            //记录中的格式放在第一位，其余格式保持原来的顺序
+            ContainerFormat remembered = matchedFormat(key);
+            int index = 0;
+            for (ContainerFormat format : formats) {
+                if (format == remembered) {
+                    extractors[index++] = new RecordingExtractor(key, format, true);
+                    break;
+                }
+            }
+            if (index == 0) {
+                //记录的格式已不在使用范围内
+                remembered = null;
+            }
+            for (ContainerFormat format : formats) {
+                if (format != remembered) {
+                    extractors[index++] = new RecordingExtractor(key, format, false);
+                }
+            }
+            return extractors;
+        }
+
+    }
+
+    /**
+     * 探测成功时记录格式的解析器，其余操作直接交给实际的解析器
+     */
+    private final class RecordingExtractor implements Extractor {
+
+        private final String key;
+        private final ContainerFormat format;
+        private final boolean isRemembered;
+        private final Extractor extractor;
+
+        RecordingExtractor(@NonNull String key, @NonNull ContainerFormat format, boolean isRemembered) {
+            this.key = key;
+            this.format = format;
+            this.isRemembered = isRemembered;
+            this.extractor = format.createExtractor();
+        }
+
+        @Override
+        public boolean sniff(ExtractorInput input) throws IOException, InterruptedException {
+            final boolean isMatched = extractor.sniff(input);
+            if (isMatched) {
+                recordMatch(key, format, isRemembered);
+            }
+            return isMatched;
+        }
+
+        @Override
+        public void init(ExtractorOutput output) {
+            extractor.init(output);
+        }
+
+        @Override
+        public int read(ExtractorInput input, PositionHolder seekPosition) throws IOException, InterruptedException {
+            return extractor.read(input, seekPosition);
+        }
+
+        @Override
+        public void seek(long position, long timeUs) {
+            extractor.seek(position, timeUs);
+        }
+
+        @Override
+        public void release() {
+            extractor.release();
+        }
+
+    }
+
+}
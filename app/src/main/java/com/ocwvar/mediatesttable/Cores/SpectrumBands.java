@@ -0,0 +1,85 @@
+package com.ocwvar.mediatesttable.Cores;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-7 上午11:05
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   对数频段映射表
+ *
+ * 将 FFT 的线性频率点按对数间隔划分为指定数量的频段，映射表在创建时计算完毕，之后只读
+ * 每个频段至少包含一个频率点，低频部分频率点不足时频段会按顺序依次占用单个频率点
+ */
+final class SpectrumBands {
+
+    /**
+     * FFT 频率点数量（包含直流分量，不包含奈奎斯特频率点）
+     */
+    final int binCount;
+
+    /**
+     * 频段数量
+     */
+    final int bandCount;
+
+    /**
+     * 每个频段的起始频率点（包含）
+     */
+    final int[] bandStart;
+
+    /**
+     * 每个频段的结束频率点（不包含）
+     */
+    final int[] bandEnd;
+
+    /**
+     * @param binCount  FFT 频率点数量，即 FFT 长度的一半
+     * @param bandCount 频段数量，不能超过 binCount - 1
+     */
+    SpectrumBands(int binCount, int bandCount) {
+        if (bandCount <= 0 || bandCount > binCount - 1) {
+            throw new IllegalArgumentException("bandCount must be in [1, " + (binCount - 1) + "], got " + bandCount);
+        }
+
+        this.binCount = binCount;
+        this.bandCount = bandCount;
+        this.bandStart = new int[bandCount];
+        this.bandEnd = new int[bandCount];
+
+        //频率范围：第一个非直流频率点 ~ 奈奎斯特频率，按频率点序号计算即可，与采样率无关
+        final double ratio = Math.log(binCount);
+        int start = 1;
+        for (int band = 0; band < bandCount; band++) {
+            int end = (int) Math.round(Math.exp(ratio * (band + 1) / bandCount));
+            //保证每个频段至少有一个频率点，同时为剩余的频段保留足够的频率点
+            end = Math.max(end, start + 1);
+            end = Math.min(end, binCount - (bandCount - band - 1));
+            if (band == bandCount - 1) {
+                end = binCount;
+            }
+            bandStart[band] = start;
+            bandEnd[band] = end;
+            start = end;
+        }
+    }
+
+    /**
+     * @param binCount  FFT 频率点数量
+     * @param bandCount 频段数量
+     * @return 当前映射表是否与参数相符
+     */
+    boolean matches(int binCount, int bandCount) {
+        return this.binCount == binCount && this.bandCount == bandCount;
+    }
+
+    /**
+     * @param band       频段序号
+     * @param sampleRate 采样率，单位：Hz
+     * @return 频段的中心频率，单位：Hz
+     */
+    float centerFrequency(int band, int sampleRate) {
+        final float binWidth = sampleRate / (binCount * 2f);
+        return (bandStart[band] + bandEnd[band] - 1) * 0.5f * binWidth;
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-6 上午10:12
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   频谱数据解码器
+ *
+ * 将 Visualizer 输出的原生FFT数据解码为对数频段的幅度或分贝数据，解码过程不产生任何对象分配，可在每一帧中重复调用
+ *
+ * 原生FFT数据格式（长度为 n 的 byte 数组，每个数值为有符号 8 位整数）：
+ * [0] 直流分量实部  [1] 奈奎斯特频率实部  [2k] 第 k 个频率点实部  [2k + 1] 第 k 个频率点虚部 （1 <= k < n / 2）
+ */
+final class SpectrumDecoder {
+
+    /**
+     * 分贝模式下的最小输出值
+     */
+    static final float DB_FLOOR = -60f;
+
+    /**
+     * 8 位数据的满量程
+     */
+    private static final float FULL_SCALE = 1f / 128f;
+
+    /**
+     * 分贝模式下最小输出值对应的幅度
+     */
+    private static final float MIN_MAGNITUDE = (float) Math.pow(10.0, DB_FLOOR / 20.0);
+
+    /**
+     * 是否输出分贝数据
+     */
+    private final boolean isDecibel;
+
+    /**
+     * 当前使用的频段映射表，只在FFT长度或输出长度变化时重新生成
+     */
+    private SpectrumBands bands = null;
+
+    /**
+     * @param isDecibel True：输出分贝数据（满量程为 0dB，最小为 {@link #DB_FLOOR}）  False：输出幅度数据（满量程为 1）
+     */
+    SpectrumDecoder(boolean isDecibel) {
+        this.isDecibel = isDecibel;
+    }
+
+    /**
+     * 将原生FFT数据解码为对数频段数据，结果直接写入调用者提供的数组
+     *
+     * @param fftBytes 原生FFT数据
+     * @param output   用于存放结果的数组，数组长度即为频段数量
+     * @return 解码结果，数据无效或频段数量超出可用的频率点数量时返回 False
+     */
+    boolean decode(@Nullable byte[] fftBytes, @NonNull float[] output) {
+        if (fftBytes == null) return false;
+
+        final int binCount = fftBytes.length >> 1;
+        final int bandCount = output.length;
+        if (bandCount <= 0 || bandCount > binCount - 1) return false;
+
+        SpectrumBands bands = this.bands;
+        if (bands == null || !bands.matches(binCount, bandCount)) {
+            bands = new SpectrumBands(binCount, bandCount);
+            this.bands = bands;
+        }
+
+        final int[] bandStart = bands.bandStart;
+        final int[] bandEnd = bands.bandEnd;
+        for (int band = 0; band < bandCount; band++) {
+            //取频段内能量最大的频率点，只比较平方和，开方运算每个频段只进行一次
+            int peak = 0;
+            for (int bin = bandStart[band], end = bandEnd[band]; bin < end; bin++) {
+                final int real = fftBytes[bin << 1];
+                final int imaginary = fftBytes[(bin << 1) + 1];
+                peak = Math.max(peak, real * real + imaginary * imaginary);
+            }
+
+            final float magnitude = (float) Math.sqrt(peak) * FULL_SCALE;
+            if (isDecibel) {
+                output[band] = (magnitude <= MIN_MAGNITUDE) ? DB_FLOOR : (float) (20.0 * Math.log10(magnitude));
+            } else {
+                output[band] = magnitude;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,138 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-6 下午3:40
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   频谱帧环形缓冲区
+ *
+ * 单生产者 / 单消费者，无锁，所有帧数组在创建时预先分配
+ * 生产者（频谱捕获线程）：claim() 获取写入位置 → 写入数据 → publish() 发布
+ * 消费者（渲染线程）：readLatest() 复制最新一帧，不会阻塞生产者
+ * 每个帧数组带有版本号，写入期间为奇数，发布后为偶数，消费者复制前后版本号相同时数据完整
+ */
+final class SpectrumRing {
+
+    /**
+     * 帧发布回调，在生产者线程中执行
+     */
+    interface PublishListener {
+
+        /**
+         * @param sequence 已发布的帧序号
+         */
+        void onPublished(long sequence);
+
+    }
+
+    private final float[][] slots;
+
+    /**
+     * 帧数组的版本号，序号为 n 的帧写入期间为 2n + 1，发布后为 2n + 2，尚未写入时为 0
+     */
+    private final AtomicLongArray slotVersions;
+
+    private volatile PublishListener publishListener = null;
+
+    /**
+     * 最后一次发布的帧序号，-1 表示尚未有数据
+     */
+    private final AtomicLong publishedSequence = new AtomicLong(-1L);
+
+    /**
+     * 生产者正在写入的帧序号，只由生产者线程访问
+     */
+    private long writeSequence = 0L;
+
+    /**
+     * @param slotCount 帧数组数量，最少为 3
+     * @param frameSize 每一帧的数据长度
+     */
+    SpectrumRing(int slotCount, int frameSize) {
+        if (slotCount < 3) {
+            throw new IllegalArgumentException("slotCount must be >= 3");
+        }
+        this.slots = new float[slotCount][frameSize];
+        this.slotVersions = new AtomicLongArray(slotCount);
+    }
+
+    /**
+     * 生产者获取下一帧的写入数组，写入完成后需调用 publish()，若放弃写入则直接忽略即可
+     *
+     * @return 可写入的帧数组
+     */
+    @NonNull
+    float[] claim() {
+        final int index = (int) (writeSequence % slots.length);
+        //getAndSet() 带有完整的内存屏障，之后写入的数据不会先于版本号被消费者看到
+        slotVersions.getAndSet(index, writingVersion(writeSequence));
+        return slots[index];
+    }
+
+    /**
+     * 生产者发布 claim() 得到的帧数组
+     */
+    void publish() {
+        final long sequence = writeSequence;
+        slotVersions.set((int) (sequence % slots.length), publishedVersion(sequence));
+        publishedSequence.lazySet(sequence);
+        writeSequence++;
+
+        final PublishListener listener = publishListener;
+        if (listener != null) {
+            listener.onPublished(sequence);
+        }
+    }
+
+    /**
+     * @param listener 帧发布回调，为NULL时取消
+     */
+    void setPublishListener(@Nullable PublishListener listener) {
+        this.publishListener = listener;
+    }
+
+    /**
+     * 消费者读取最新的一帧数据
+     *
+     * @param output 用于存放结果的数组，长度不一致时复制两者中较短的长度
+     * @return 读取到的帧序号，尚无数据时返回 -1
+     */
+    long readLatest(@NonNull float[] output) {
+        while (true) {
+            final long sequence = publishedSequence.get();
+            if (sequence < 0L) {
+                return -1L;
+            }
+
+            final int index = (int) (sequence % slots.length);
+            final long version = publishedVersion(sequence);
+            if (slotVersions.get(index) != version) {
+                //生产者已绕回到此帧数组，重新读取最新的帧
+                continue;
+            }
+            final float[] slot = slots[index];
+            System.arraycopy(slot, 0, output, 0, Math.min(slot.length, output.length));
+
+            //compareAndSet() 带有完整的内存屏障，复制的读取不会被重排到检查之后。版本号未改变说明复制期间没有被覆盖
+            if (slotVersions.compareAndSet(index, version, version)) {
+                return sequence;
+            }
+        }
+    }
+
+    private static long writingVersion(long sequence) {
+        return (sequence << 1) + 1L;
+    }
+
+    private static long publishedVersion(long sequence) {
+        return (sequence << 1) + 2L;
+    }
+
+}
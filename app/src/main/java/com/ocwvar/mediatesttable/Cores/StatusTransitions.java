@@ -0,0 +1,97 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.support.annotation.NonNull;
+
+import com.google.android.exoplayer2.ExoPlayer;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-12 上午10:15
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   播放器状态转换规则
+ *
+ * 两张规则表按 Status 的声明顺序（PLAYING、PAUSED、STOPPED、EMPTY）排列：
+ * COMMANDS    各状态下可以执行的命令，不在表中的命令会被拒绝
+ * TRANSITIONS 各状态之间是否可以直接转换
+ * 所有核心共用这些规则，由 PlayerStateMachine 执行
+ */
+final class StatusTransitions {
+
+    /**
+     * 命令
+     */
+    static final int CMD_PREPARE = 0;
+    static final int CMD_PLAY = 1;
+    static final int CMD_PAUSE = 2;
+    static final int CMD_STOP = 3;
+    static final int CMD_SEEK = 4;
+    static final int CMD_RELEASE = 5;
+
+    //命令名称，用于状态记录的输出
+    static final String[] COMMAND_NAMES = {"PREPARE", "PLAY", "PAUSE", "STOP", "SEEK", "RELEASE"};
+
+    private static final boolean[][] COMMANDS = {
+            //           PREPARE PLAY   PAUSE  STOP   SEEK   RELEASE
+            /*PLAYING*/ {true,   false, true,  true,  true,  true},
+            /*PAUSED */ {true,   true,  false, true,  true,  true},
+            /*STOPPED*/ {true,   true,  false, false, true,  true},
+            /*EMPTY  */ {true,   false, false, false, false, false}
+    };
+
+    private static final boolean[][] TRANSITIONS = {
+            //           PLAYING PAUSED STOPPED EMPTY
+            /*PLAYING*/ {false,  true,  true,   true},
+            /*PAUSED */ {true,   false, true,   true},
+            /*STOPPED*/ {true,   true,  false,  true},
+            /*EMPTY  */ {true,   true,  false,  false}
+    };
+
+    private StatusTransitions() {
+    }
+
+    /**
+     * @param status  当前状态
+     * @param command 命令：CMD_PLAY 等
+     * @return 当前状态下是否可以执行该命令
+     */
+    static boolean accepts(@NonNull Status status, int command) {
+        return COMMANDS[status.ordinal()][command];
+    }
+
+    /**
+     * @param from 当前状态
+     * @param to   目标状态
+     * @return 是否可以直接转换，相同状态返回 False
+     */
+    static boolean canMove(@NonNull Status from, @NonNull Status to) {
+        return TRANSITIONS[from.ordinal()][to.ordinal()];
+    }
+
+    /**
+     * 根据EXO播放器的状态得到核心的播放状态
+     *
+     * @param playbackState EXO播放器状态
+     * @param playWhenReady 是否当状态为READY时马上播放音频
+     * @param isStopAction  停止状态标记：为True时，暂停播放的状态将从 Pause -> Stop
+     * @return 对应的播放状态
+     */
+    @NonNull
+    static Status fromExoState(int playbackState, boolean playWhenReady, boolean isStopAction) {
+        switch (playbackState) {
+            case ExoPlayer.STATE_READY:
+            case ExoPlayer.STATE_BUFFERING:
+                if (isStopAction) {
+                    //停止标记生效
+                    return Status.STOPPED;
+                }
+                return (playWhenReady) ? Status.PLAYING : Status.PAUSED;
+            case ExoPlayer.STATE_ENDED:
+                return Status.STOPPED;
+            case ExoPlayer.STATE_IDLE:
+            default:
+                return Status.EMPTY;
+        }
+    }
+
+}
@@ -0,0 +1,363 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.support.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-31 上午10:30
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   WSOLA 变速变调处理
+ *
+ * 速度与音调相互独立：先按 速度/音调 进行时间伸缩（不改变音调），再按 音调 进行重采样（同时改变音调与长度），最终长度为原来的 1/速度
+ * 时间伸缩使用 WSOLA：每次取出一段数据，在搜索范围内找到与上一段末尾最相似的位置，在该位置交叉淡化拼接，避免相位不连续产生的杂音
+ * 相似度搜索先以固定步长粗略搜索，再在最佳位置附近逐帧搜索
+ * 所有缓冲区在创建时按最大参数分配，处理过程中不产生对象分配，修改参数也不会重新分配
+ * 数据为 16 位交错PCM，不是线程安全的
+ */
+final class TimeStretcher {
+
+    /**
+     * 时间伸缩倍率（速度/音调）与音调的范围
+     */
+    static final float MIN_RATE = 0.25f;
+    static final float MAX_RATE = 4.0f;
+
+    //交叉淡化长度
+    private static final int OVERLAP_MS = 8;
+
+    //每段数据长度与搜索范围随伸缩倍率变化：倍率越小使用越长的数据段，参考 SoundTouch 的取值
+    private static final float AUTO_TEMPO_LOW = 0.5f;
+    private static final float AUTO_TEMPO_HIGH = 2.0f;
+    private static final int SEQUENCE_MS_AT_LOW = 90;
+    private static final int SEQUENCE_MS_AT_HIGH = 40;
+    private static final int SEEK_MS_AT_LOW = 20;
+    private static final int SEEK_MS_AT_HIGH = 15;
+
+    //粗略搜索的步长，单位：帧
+    private static final int COARSE_STEP = 4;
+
+    private final int sampleRate;
+    private final int channelCount;
+    private final int overlapFrames;
+
+    //等待处理的输入数据
+    private final short[] input;
+    private final int inputCapacityFrames;
+    private int inputFrames = 0;
+
+    //上一段数据末尾用于交叉淡化的部分
+    private final short[] mid;
+    private boolean hasMid = false;
+
+    //时间伸缩后、重采样前的数据
+    private final short[] stretched;
+    private final int stretchedCapacityFrames;
+    private int stretchedFrames = 0;
+
+    private float tempo = 1.0f;
+    private float pitch = 1.0f;
+    private int sequenceFrames;
+    private int seekFrames;
+    private double nominalSkip;
+    private double skipFraction = 0.0;
+    private double resamplePosition = 0.0;
+
+    //按写入时的倍率累计的应有伸缩输出长度，以及实际的伸缩输出长度，用于输入结束时截取准确的长度
+    private double expectedStretchedFrames = 0.0;
+    private long stretchedTotalFrames = 0L;
+
+    private boolean inputEnded = false;
+    private boolean drained = false;
+
+    /**
+     * @param sampleRate   采样率
+     * @param channelCount 声道数
+     */
+    TimeStretcher(int sampleRate, int channelCount) {
+        this.sampleRate = sampleRate;
+        this.channelCount = channelCount;
+        this.overlapFrames = msToFrames(OVERLAP_MS);
+
+        //一次处理需要的最多输入：最长数据段 + 最大搜索范围，或最大倍率下的跳过长度 + 交叉淡化长度
+        final int maxSequenceFrames = msToFrames(SEQUENCE_MS_AT_LOW);
+        final int maxRequiredFrames = Math.max(maxSequenceFrames + msToFrames(SEEK_MS_AT_LOW),
+                (int) Math.ceil(MAX_RATE * (msToFrames(SEQUENCE_MS_AT_HIGH) - overlapFrames)) + overlapFrames);
+        this.inputCapacityFrames = maxRequiredFrames * 2;
+        this.input = new short[inputCapacityFrames * channelCount];
+        this.mid = new short[overlapFrames * channelCount];
+        //至少能放入一段输出，不需要伸缩时输入可以一次复制
+        this.stretchedCapacityFrames = inputCapacityFrames + maxSequenceFrames;
+        this.stretched = new short[stretchedCapacityFrames * channelCount];
+
+        updateSequence();
+    }
+
+    /**
+     * 设置速度与音调，在下一段数据开始生效，超出范围的数值会被限制在范围内
+     *
+     * @param speed 播放速度，1 为原速
+     * @param pitch 音调，1 为原调，2 为升高一个八度
+     */
+    void setParameters(float speed, float pitch) {
+        this.pitch = clamp(pitch);
+        this.tempo = clamp(speed / this.pitch);
+        updateSequence();
+    }
+
+    /**
+     * @return 时间伸缩倍率
+     */
+    float tempo() {
+        return tempo;
+    }
+
+    /**
+     * @return 音调
+     */
+    float pitch() {
+        return pitch;
+    }
+
+    /**
+     * 写入输入数据并进行处理，可写入的数量受缓冲区剩余空间限制
+     *
+     * @param samples 交错PCM数据
+     * @param offset  开始的采样位置
+     * @param frames  帧数
+     * @return 实际写入的帧数，为 0 时需要先读取输出
+     */
+    int queueInput(@NonNull short[] samples, int offset, int frames) {
+        if (inputEnded) return 0;
+
+        final int accepted = Math.min(frames, inputCapacityFrames - inputFrames);
+        System.arraycopy(samples, offset, input, inputFrames * channelCount, accepted * channelCount);
+        inputFrames += accepted;
+        expectedStretchedFrames += accepted / (double) tempo;
+        process();
+        return accepted;
+    }
+
+    /**
+     * 标记输入结束，剩余的输入数据在末尾补充静音后继续处理，输出截取到准确的长度
+     */
+    void queueEndOfStream() {
+        inputEnded = true;
+        process();
+    }
+
+    /**
+     * 读取处理后的数据
+     *
+     * @param samples   输出缓冲区
+     * @param offset    开始的采样位置
+     * @param maxFrames 最多读取的帧数
+     * @return 实际读取的帧数
+     */
+    int readOutput(@NonNull short[] samples, int offset, int maxFrames) {
+        process();
+
+        int frames = 0;
+        if (pitch == 1.0f && resamplePosition == 0.0) {
+            frames = Math.min(maxFrames, stretchedFrames);
+            System.arraycopy(stretched, 0, samples, offset, frames * channelCount);
+            dropStretched(frames);
+        } else {
+            //线性插值重采样，读取位置每帧前进 pitch 帧
+            while (frames < maxFrames) {
+                final int index = (int) resamplePosition;
+                if (index >= stretchedFrames || (index + 1 >= stretchedFrames && !drained)) break;
+
+                final int next = Math.min(index + 1, stretchedFrames - 1);
+                final float fraction = (float) (resamplePosition - index);
+                final int out = offset + frames * channelCount;
+                for (int channel = 0; channel < channelCount; channel++) {
+                    final int a = stretched[index * channelCount + channel];
+                    final int b = stretched[next * channelCount + channel];
+                    samples[out + channel] = (short) Math.round(a + (b - a) * fraction);
+                }
+                frames++;
+                resamplePosition += pitch;
+            }
+            final int consumed = Math.min((int) resamplePosition, stretchedFrames);
+            dropStretched(consumed);
+            resamplePosition -= consumed;
+        }
+
+        //输出区有了空间，继续处理输入
+        if (frames > 0) {
+            process();
+        }
+        return frames;
+    }
+
+    /**
+     * @return 输入已结束且所有数据都已读取
+     */
+    boolean isEnded() {
+        return drained && stretchedFrames == 0;
+    }
+
+    /**
+     * 清除所有数据，参数保持不变
+     */
+    void flush() {
+        inputFrames = 0;
+        stretchedFrames = 0;
+        hasMid = false;
+        skipFraction = 0.0;
+        resamplePosition = 0.0;
+        expectedStretchedFrames = 0.0;
+        stretchedTotalFrames = 0L;
+        inputEnded = false;
+        drained = false;
+    }
+
+    /**
+     * 处理输入缓冲区中的数据，直到输入不足或输出区已满
+     */
+    private void process() {
+        if (drained) return;
+
+        if (tempo == 1.0f && !hasMid) {
+            //不需要时间伸缩，直接复制
+            final int frames = Math.min(inputFrames, stretchedCapacityFrames - stretchedFrames);
+            System.arraycopy(input, 0, stretched, stretchedFrames * channelCount, frames * channelCount);
+            stretchedFrames += frames;
+            stretchedTotalFrames += frames;
+            dropInput(frames);
+        } else {
+            final int outputPerSequence = sequenceFrames - overlapFrames;
+            final int requiredFrames = Math.max(sequenceFrames + seekFrames, (int) Math.ceil(nominalSkip) + overlapFrames);
+            while (stretchedCapacityFrames - stretchedFrames >= outputPerSequence) {
+                if (inputFrames < requiredFrames) {
+                    if (!inputEnded || stretchedTotalFrames >= (long) expectedStretchedFrames) break;
+                    //输入已结束但输出长度不足，补充静音继续处理
+                    Arrays.fill(input, inputFrames * channelCount, requiredFrames * channelCount, (short) 0);
+                    inputFrames = requiredFrames;
+                }
+                processSequence();
+            }
+        }
+
+        if (inputEnded && stretchedTotalFrames >= (long) expectedStretchedFrames) {
+            //去掉补充的静音产生的多余输出
+            final int excess = (int) Math.min(stretchedFrames, stretchedTotalFrames - (long) expectedStretchedFrames);
+            stretchedFrames -= excess;
+            inputFrames = 0;
+            hasMid = false;
+            drained = true;
+        }
+    }
+
+    /**
+     * 处理一段数据：找到最佳拼接位置，交叉淡化后输出，保存末尾用于下一段，然后按倍率跳过输入
+     */
+    private void processSequence() {
+        int out = stretchedFrames * channelCount;
+        final int offset;
+        if (hasMid) {
+            offset = seekBestOverlap();
+            final int base = offset * channelCount;
+            for (int frame = 0; frame < overlapFrames; frame++) {
+                final int fadeIn = frame;
+                final int fadeOut = overlapFrames - frame;
+                for (int channel = 0; channel < channelCount; channel++) {
+                    final int i = frame * channelCount + channel;
+                    stretched[out + i] = (short) ((mid[i] * fadeOut + input[base + i] * fadeIn) / overlapFrames);
+                }
+            }
+            out += overlapFrames * channelCount;
+            System.arraycopy(input, base + overlapFrames * channelCount, stretched, out, (sequenceFrames - overlapFrames * 2) * channelCount);
+        } else {
+            offset = 0;
+            System.arraycopy(input, 0, stretched, out, (sequenceFrames - overlapFrames) * channelCount);
+        }
+        stretchedFrames += sequenceFrames - overlapFrames;
+        stretchedTotalFrames += sequenceFrames - overlapFrames;
+
+        System.arraycopy(input, (offset + sequenceFrames - overlapFrames) * channelCount, mid, 0, overlapFrames * channelCount);
+        hasMid = true;
+
+        skipFraction += nominalSkip;
+        final int skip = (int) skipFraction;
+        skipFraction -= skip;
+        dropInput(skip);
+    }
+
+    /**
+     * @return 搜索范围内与交叉淡化部分最相似的输入位置，单位：帧
+     */
+    private int seekBestOverlap() {
+        int best = 0;
+        double bestScore = -Double.MAX_VALUE;
+        for (int position = 0; position < seekFrames; position += COARSE_STEP) {
+            final double score = correlation(position);
+            if (score > bestScore) {
+                bestScore = score;
+                best = position;
+            }
+        }
+
+        final int start = Math.max(0, best - COARSE_STEP + 1);
+        final int end = Math.min(seekFrames - 1, best + COARSE_STEP - 1);
+        final int coarseBest = best;
+        for (int position = start; position <= end; position++) {
+            if (position == coarseBest) continue;
+            final double score = correlation(position);
+            if (score > bestScore) {
+                bestScore = score;
+                best = position;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @param position 输入位置，单位：帧
+     * @return 交叉淡化部分与该位置数据的归一化互相关
+     */
+    private double correlation(int position) {
+        final int base = position * channelCount;
+        final int length = overlapFrames * channelCount;
+        long correlation = 0L;
+        long norm = 0L;
+        for (int i = 0; i < length; i++) {
+            final int sample = input[base + i];
+            correlation += mid[i] * sample;
+            norm += sample * sample;
+        }
+        return correlation / Math.sqrt(norm + 1.0);
+    }
+
+    /**
+     * 按当前倍率计算数据段长度与搜索范围
+     */
+    private void updateSequence() {
+        final float progress = Math.max(0f, Math.min(1f, (tempo - AUTO_TEMPO_LOW) / (AUTO_TEMPO_HIGH - AUTO_TEMPO_LOW)));
+        this.sequenceFrames = msToFrames(Math.round(SEQUENCE_MS_AT_LOW + (SEQUENCE_MS_AT_HIGH - SEQUENCE_MS_AT_LOW) * progress));
+        this.seekFrames = msToFrames(Math.round(SEEK_MS_AT_LOW + (SEEK_MS_AT_HIGH - SEEK_MS_AT_LOW) * progress));
+        this.nominalSkip = tempo * (sequenceFrames - overlapFrames);
+    }
+
+    private void dropInput(int frames) {
+        inputFrames -= frames;
+        System.arraycopy(input, frames * channelCount, input, 0, inputFrames * channelCount);
+    }
+
+    private void dropStretched(int frames) {
+        stretchedFrames -= frames;
+        System.arraycopy(stretched, frames * channelCount, stretched, 0, stretchedFrames * channelCount);
+    }
+
+    private int msToFrames(int ms) {
+        return sampleRate * ms / 1000;
+    }
+
+    private static float clamp(float rate) {
+        return Math.max(MIN_RATE, Math.min(MAX_RATE, rate));
+    }
+
+}
@@ -0,0 +1,160 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-14 上午10:05
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   视频核心生成工厂
+ *
+ * 根据资源格式规则选择解码引擎：先匹配地址协议（如 rtmp），再匹配文件扩展名（如 flv），都不匹配时使用默认引擎
+ * 规则指定的引擎在当前设备上不可用时，同样使用默认引擎
+ */
+public final class VideoCoreFactory {
+
+    private final Context appContext;
+
+    //格式规则：协议或扩展名（小写） → 引擎
+    private final Map<String, VideoEngine> rules = new HashMap<>();
+
+    private VideoEngine defaultEngine = VideoEngine.SYSTEM;
+
+    //生成的核心共用的磁盘缓存
+    private MediaDiskCache mediaCache = null;
+
+    //生成的核心共用的媒体信息索引
+    private MediaProbe mediaProbe = null;
+
+    public VideoCoreFactory(Context context) {
+        this.appContext = context.getApplicationContext();
+
+        //FLV 与直播流使用 ijk 的硬件解码，常见封装格式使用 ExoPlayer
+        setRule("flv", VideoEngine.IJK);
+        setRule("rtmp", VideoEngine.IJK);
+        setRule("rtsp", VideoEngine.IJK);
+        setRule("mp4", VideoEngine.EXO);
+        setRule("m4v", VideoEngine.EXO);
+        setRule("mkv", VideoEngine.EXO);
+        setRule("webm", VideoEngine.EXO);
+        setRule("ts", VideoEngine.EXO);
+    }
+
+    /**
+     * 设置格式规则
+     *
+     * @param format 地址协议或文件扩展名，不区分大小写
+     * @param engine 使用的引擎，为NULL时移除此规则
+     */
+    public void setRule(@NonNull String format, @Nullable VideoEngine engine) {
+        final String key = format.toLowerCase(Locale.US);
+        if (engine == null) {
+            this.rules.remove(key);
+        } else {
+            this.rules.put(key, engine);
+        }
+    }
+
+    /**
+     * @param engine 没有匹配的规则时使用的引擎
+     */
+    public void setDefaultEngine(@NonNull VideoEngine engine) {
+        this.defaultEngine = engine;
+    }
+
+    /**
+     * @param mediaCache 之后生成的核心使用的磁盘缓存，为NULL时不使用缓存
+     */
+    public void setMediaCache(@Nullable MediaDiskCache mediaCache) {
+        this.mediaCache = mediaCache;
+    }
+
+    /**
+     * @param mediaProbe 之后生成的核心使用的媒体信息索引，为NULL时不使用
+     */
+    public void setMediaProbe(@Nullable MediaProbe mediaProbe) {
+        this.mediaProbe = mediaProbe;
+    }
+
+    /**
+     * 根据格式规则选择引擎
+     *
+     * @param filePath 视频路径或地址
+     * @return 使用的引擎
+     */
+    @NonNull
+    public VideoEngine engineFor(@Nullable String filePath) {
+        if (TextUtils.isEmpty(filePath)) {
+            return this.defaultEngine;
+        }
+
+        VideoEngine engine = null;
+
+        //地址协议
+        final int schemeEnd = filePath.indexOf("://");
+        if (schemeEnd > 0) {
+            engine = this.rules.get(filePath.substring(0, schemeEnd).toLowerCase(Locale.US));
+        }
+
+        //文件扩展名，忽略地址中的参数部分
+        if (engine == null) {
+            int end = filePath.indexOf('?');
+            if (end < 0) {
+                end = filePath.length();
+            }
+            final int dot = filePath.lastIndexOf('.', end - 1);
+            if (dot >= 0 && dot > filePath.lastIndexOf('/', end - 1)) {
+                engine = this.rules.get(filePath.substring(dot + 1, end).toLowerCase(Locale.US));
+            }
+        }
+
+        if (engine == null || !engine.isSupported()) {
+            return this.defaultEngine;
+        }
+        return engine;
+    }
+
+    /**
+     * 生成指定引擎的视频核心
+     *
+     * @param engine 引擎
+     * @return 视频核心
+     */
+    @NonNull
+    public IVideoCore create(@NonNull VideoEngine engine) {
+        final IVideoCore videoCore;
+        switch (engine) {
+            case EXO:
+                videoCore = new ExoVideoCore(this.appContext);
+                break;
+            case IJK:
+            case SYSTEM:
+            default:
+                videoCore = new BLVideoCore(this.appContext, engine);
+                break;
+        }
+        videoCore.setMediaCache(this.mediaCache);
+        videoCore.setMediaProbe(this.mediaProbe);
+        return videoCore;
+    }
+
+    /**
+     * 根据格式规则生成视频核心
+     *
+     * @param filePath 视频路径或地址
+     * @return 视频核心
+     */
+    @NonNull
+    public IVideoCore createFor(@Nullable String filePath) {
+        return create(engineFor(filePath));
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.os.Build;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-14 上午9:30
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   视频解码引擎
+ */
+public enum VideoEngine {
+
+    /**
+     * 系统 MediaPlayer
+     */
+    SYSTEM,
+
+    /**
+     * IjkMediaPlayer，使用 MediaCodec 硬件解码
+     */
+    IJK,
+
+    /**
+     * ExoPlayer
+     */
+    EXO;
+
+    /**
+     * @return 当前设备是否可以使用此引擎
+     */
+    public boolean isSupported() {
+        switch (this) {
+            case IJK:
+                //只打包了 armv7a 与 arm64 的原生库
+                for (String abi : Build.SUPPORTED_ABIS) {
+                    if ("armeabi-v7a".equals(abi) || "arm64-v8a".equals(abi)) {
+                        return true;
+                    }
+                }
+                return false;
+            case SYSTEM:
+            case EXO:
+            default:
+                return true;
+        }
+    }
+
+}
@@ -3,6 +3,7 @@ package com.ocwvar.mediatesttable;
 import android.os.Bundle;
 import android.os.Environment;
 import android.support.annotation.IdRes;
+import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v7.app.AppCompatActivity;
 import android.text.TextUtils;
@@ -14,11 +15,19 @@ import android.widget.EditText;
 import android.widget.RadioGroup;
 import android.widget.TextView;
 
-import com.ocwvar.mediatesttable.Cores.BLVideoCore;
-import com.ocwvar.mediatesttable.Cores.CoreCallback;
+import com.ocwvar.mediatesttable.Cores.CoreEventListener;
+import com.ocwvar.mediatesttable.Cores.CoreThreads;
 import com.ocwvar.mediatesttable.Cores.EXOCore;
 import com.ocwvar.mediatesttable.Cores.IAudioCore;
 import com.ocwvar.mediatesttable.Cores.IVideoCore;
+import com.ocwvar.mediatesttable.Cores.MediaDiskCache;
+import com.ocwvar.mediatesttable.Cores.MediaProbe;
+import com.ocwvar.mediatesttable.Cores.PrepareHandle;
+import com.ocwvar.mediatesttable.Cores.Status;
+import com.ocwvar.mediatesttable.Cores.VideoCoreFactory;
+import com.ocwvar.mediatesttable.Cores.VideoEngine;
+
+import java.io.File;
 
 /**
  * Project MediaTestTable
@@ -27,10 +36,39 @@ import com.ocwvar.mediatesttable.Cores.IVideoCore;
  * File Location com.ocwvar.mediatesttable
  * This file use to :
  */
-public class MainActivity extends AppCompatActivity implements View.OnClickListener, CoreCallback {
+public class MainActivity extends AppCompatActivity implements View.OnClickListener, CoreEventListener {
+
+    //媒体资源磁盘缓存大小上限
+    private static final long MEDIA_CACHE_SIZE = 256L * 1024L * 1024L;
+
+    //资源加载超时时间，单位：毫秒
+    private static final long PREPARE_TIMEOUT = 10_000L;
 
     private IAudioCore core = null;
     private IVideoCore videoCore = null;
+    private VideoCoreFactory videoCoreFactory = null;
+    private MediaDiskCache mediaCache = null;
+    private MediaProbe mediaProbe = null;
+
+    //资源加载结果回调
+    private final PrepareHandle.Listener prepareListener = new PrepareHandle.Listener() {
+        @Override
+        public void onPrepareFinished(@NonNull PrepareHandle handle) {
+            switch (handle.state()) {
+                case READY:
+                    updateResult("加载资源成功，耗时(ms)：" + handle.elapsedMillis());
+                    break;
+                case CANCELLED:
+                    updateResult("加载资源已取消");
+                    break;
+                case TIMEOUT:
+                case FAILED:
+                default:
+                    updateResult("加载资源失败：" + handle.error());
+                    break;
+            }
+        }
+    };
     private EditText sourcePath = null,inputCode = null;
     private TextView resultShower = null;
     private SurfaceView videoDisplay = null;
@@ -42,10 +80,18 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
+        mediaCache = new MediaDiskCache(new File(getCacheDir(), "media"), MEDIA_CACHE_SIZE);
+        mediaProbe = new MediaProbe(new File(getCacheDir(), "media-probe.idx"));
+
         core = new EXOCore(MainActivity.this);
-        core.setCoreCallback(MainActivity.this);
+        core.addEventListener(MainActivity.this, CoreThreads.mainExecutor());
+        core.setMediaCache(mediaCache);
+        core.setMediaProbe(mediaProbe);
 
-        videoCore = new BLVideoCore(MainActivity.this);
+        videoCoreFactory = new VideoCoreFactory(MainActivity.this);
+        videoCoreFactory.setMediaCache(mediaCache);
+        videoCoreFactory.setMediaProbe(mediaProbe);
+        videoCore = videoCoreFactory.create(VideoEngine.SYSTEM);
 
         sourcePath = (EditText) findViewById(R.id.sourcePath);
         inputCode = (EditText) findViewById(R.id.inputCode);
@@ -111,11 +157,8 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
                 updateResult(core.applyPlaybackEffects(inputCodeString));
                 break;
             case R.id.sourceLoad:
-                if (core.prepare(sourcePathString)){
-                    updateResult("加载资源成功");
-                }else {
-                    updateResult("加载资源失败");
-                }
+                core.prepareAsync(sourcePathString, PREPARE_TIMEOUT).addListener(prepareListener, CoreThreads.mainExecutor());
+                updateResult("开始加载资源");
                 break;
             case R.id.actionRelease:
                 core.release();
@@ -151,11 +194,9 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
             case R.id.codeStart:
                 break;
             case R.id.sourceLoad:
-                if (videoCore.prepare(sourcePathString,false)){
-                    updateResult("加载资源成功");
-                }else {
-                    updateResult("加载资源失败");
-                }
+                switchVideoCore(sourcePathString);
+                videoCore.prepareAsync(sourcePathString, false, PREPARE_TIMEOUT).addListener(prepareListener, CoreThreads.mainExecutor());
+                updateResult("开始加载资源");
                 break;
             case R.id.actionRelease:
                 videoCore.releaseVideo();
@@ -172,6 +213,21 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
         }
     }
 
+    /**
+     * 根据资源格式切换视频核心
+     *
+     * @param filePath 视频路径
+     */
+    private void switchVideoCore(final String filePath){
+        final VideoEngine engine = videoCoreFactory.engineFor(filePath);
+        if (videoCore.engine() != engine){
+            videoCore.release();
+            videoCore = videoCoreFactory.create(engine);
+            videoCore.setDisplayObject(videoDisplay.getHolder());
+        }
+        updateResult("解码引擎："+engine.name());
+    }
+
     private void updateResult(final String text){
         if (TextUtils.isEmpty(text)){
             resultShower.append("\n无返回结果");
@@ -181,8 +237,29 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
     }
 
     @Override
-    public void updateResultText(String text) {
-        updateResult(text);
+    public void onStateChanged(@NonNull Status status, boolean playWhenReady) {
+        updateResult("播放器状态：" + status.name() + "  Play When Ready:" + playWhenReady);
+    }
+
+    @Override
+    public void onPositionChanged(long positionMs, int reason) {
+        if (reason == CoreEventListener.POSITION_SEEK) {
+            updateResult("转跳位置：" + positionMs);
+        }
+    }
+
+    @Override
+    public void onBufferingChanged(boolean isBuffering) {
+        updateResult(isBuffering ? "缓冲中" : "缓冲完成");
+    }
+
+    @Override
+    public void onError(int errorType, @NonNull Exception error) {
+        updateResult("发生错误：" + error.getMessage());
+    }
+
+    @Override
+    public void onSpectrumAvailable(long sequence) {
     }
 
 }
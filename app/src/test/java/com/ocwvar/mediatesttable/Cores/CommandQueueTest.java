@@ -0,0 +1,144 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+/**
+ * 播放器命令队列测试，在本机JVM上执行
+ */
+public class CommandQueueTest {
+
+    @Test
+    public void post_coalescesSeeksAndPlayPause() throws Exception {
+        final ManualExecutor executor = new ManualExecutor();
+        final CommandQueue queue = new CommandQueue(executor);
+        final List<String> log = new ArrayList<>();
+
+        queue.post(StatusTransitions.CMD_PREPARE, record(log, "prepare"));
+        queue.post(StatusTransitions.CMD_SEEK, record(log, "seek 1000"));
+        queue.post(StatusTransitions.CMD_SEEK, record(log, "seek 2000"));
+        queue.post(StatusTransitions.CMD_SEEK, record(log, "seek 3000"));
+        queue.post(StatusTransitions.CMD_PLAY, record(log, "play"));
+        queue.post(StatusTransitions.CMD_PAUSE, record(log, "pause"));
+        queue.post(StatusTransitions.CMD_STOP, record(log, "stop"));
+        queue.post(StatusTransitions.CMD_SEEK, record(log, "seek 4000"));
+
+        //只提交了一次处理任务
+        assertEquals(1, executor.tasks.size());
+        assertEquals(3, queue.coalescedCount());
+        assertEquals(5, queue.pendingCount());
+
+        executor.runAll();
+        final String[] expected = {"prepare", "seek 3000", "pause", "stop", "seek 4000"};
+        assertArrayEquals(expected, log.toArray(new String[log.size()]));
+        assertEquals(0, queue.pendingCount());
+    }
+
+    @Test
+    public void post_neverCoalescesStartedCommands() throws Exception {
+        final ManualExecutor executor = new ManualExecutor();
+        final CommandQueue queue = new CommandQueue(executor);
+        final List<String> log = new ArrayList<>();
+
+        //执行中的命令再加入的跳转不会替换已经开始的跳转
+        queue.post(StatusTransitions.CMD_SEEK, new Runnable() {
+            @Override
+            public void run() {
+                log.add("seek 1000");
+                queue.post(StatusTransitions.CMD_SEEK, record(log, "seek 2000"));
+            }
+        });
+        executor.runAll();
+        final String[] expected = {"seek 1000", "seek 2000"};
+        assertArrayEquals(expected, log.toArray(new String[log.size()]));
+        assertEquals(0, queue.coalescedCount());
+    }
+
+    @Test
+    public void postLast_rejectsLaterCommands() throws Exception {
+        final ManualExecutor executor = new ManualExecutor();
+        final CommandQueue queue = new CommandQueue(executor);
+        final List<String> log = new ArrayList<>();
+
+        assertTrue(queue.post(StatusTransitions.CMD_PLAY, record(log, "play")));
+        assertTrue(queue.postLast(StatusTransitions.CMD_RELEASE, record(log, "release")));
+        assertFalse(queue.post(StatusTransitions.CMD_PLAY, record(log, "play")));
+        assertFalse(queue.postLast(StatusTransitions.CMD_RELEASE, record(log, "release")));
+
+        executor.runAll();
+        final String[] expected = {"play", "release"};
+        assertArrayEquals(expected, log.toArray(new String[log.size()]));
+    }
+
+    @Test
+    public void await_waitsForEarlierCommands() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final CommandQueue queue = new CommandQueue(executor);
+            final CountDownLatch release = new CountDownLatch(1);
+            final List<String> log = new ArrayList<>();
+            queue.post(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        release.await();
+                    } catch (InterruptedException ignored) {
+                    }
+                    log.add("blocked");
+                }
+            });
+            queue.post(StatusTransitions.CMD_SEEK, record(log, "seek"));
+
+            //命令被阻塞时等待超时
+            assertFalse(queue.await(50L));
+            release.countDown();
+            assertTrue(queue.await(5000L));
+            synchronized (log) {
+                final String[] expected = {"blocked", "seek"};
+                assertArrayEquals(expected, log.toArray(new String[log.size()]));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Runnable record(final List<String> log, final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                synchronized (log) {
+                    log.add(name);
+                }
+            }
+        };
+    }
+
+    /**
+     * 由测试控制执行时机的 Executor
+     */
+    private static final class ManualExecutor implements Executor {
+
+        private final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                tasks.remove(0).run();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,146 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.support.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * 播放核心事件分发测试，使用手动执行的 Executor，在本机JVM上执行
+ */
+public class CoreEventDispatcherTest {
+
+    @Test
+    public void dispatch_directListenerRunsInline() throws Exception {
+        final CoreEventDispatcher dispatcher = new CoreEventDispatcher();
+        final RecordingListener listener = new RecordingListener();
+        dispatcher.addListener(listener, null);
+
+        dispatcher.stateChanged(Status.PAUSED, true);
+        dispatcher.positionChanged(1500L, CoreEventListener.POSITION_SEEK);
+        dispatcher.bufferingChanged(true);
+        dispatcher.error(CoreEventListener.ERROR_SOURCE, new Exception("boom"));
+        dispatcher.onPublished(7L);
+
+        assertEquals("state PAUSED true|position 1500 0|buffering true|error 0 boom|spectrum 7", listener.joined());
+    }
+
+    @Test
+    public void dispatch_executorListenerKeepsOrderAndSchedulesOnce() throws Exception {
+        final CoreEventDispatcher dispatcher = new CoreEventDispatcher();
+        final RecordingListener listener = new RecordingListener();
+        final ManualExecutor executor = new ManualExecutor();
+        dispatcher.addListener(listener, executor);
+
+        //超过初始队列长度，触发扩容
+        for (int i = 0; i < 40; i++) {
+            dispatcher.positionChanged(i, CoreEventListener.POSITION_DISCONTINUITY);
+        }
+        assertEquals(1, executor.tasks.size());
+        assertTrue(listener.events.isEmpty());
+
+        executor.runAll();
+        assertEquals(40, listener.events.size());
+        for (int i = 0; i < 40; i++) {
+            assertEquals("position " + i + " 1", listener.events.get(i));
+        }
+
+        //队列清空后再次产生事件会重新提交
+        dispatcher.bufferingChanged(false);
+        assertEquals(1, executor.tasks.size());
+    }
+
+    @Test
+    public void dispatch_coalescesPendingSpectrumEvents() throws Exception {
+        final CoreEventDispatcher dispatcher = new CoreEventDispatcher();
+        final RecordingListener listener = new RecordingListener();
+        final ManualExecutor executor = new ManualExecutor();
+        dispatcher.addListener(listener, executor);
+
+        dispatcher.onPublished(1L);
+        dispatcher.stateChanged(Status.PLAYING, true);
+        dispatcher.onPublished(2L);
+        dispatcher.onPublished(3L);
+        executor.runAll();
+
+        assertEquals("spectrum 3|state PLAYING true", listener.joined());
+    }
+
+    @Test
+    public void removeListener_dropsQueuedEvents() throws Exception {
+        final CoreEventDispatcher dispatcher = new CoreEventDispatcher();
+        final RecordingListener listener = new RecordingListener();
+        final ManualExecutor executor = new ManualExecutor();
+        dispatcher.addListener(listener, executor);
+
+        dispatcher.stateChanged(Status.STOPPED, false);
+        dispatcher.removeListener(listener);
+        assertFalse(dispatcher.hasListeners());
+        executor.runAll();
+        dispatcher.stateChanged(Status.EMPTY, false);
+
+        assertTrue(listener.events.isEmpty());
+    }
+
+    private static final class ManualExecutor implements Executor {
+
+        private final ArrayList<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public void execute(@NonNull Runnable command) {
+            tasks.add(command);
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                tasks.remove(0).run();
+            }
+        }
+
+    }
+
+    private static final class RecordingListener implements CoreEventListener {
+
+        private final ArrayList<String> events = new ArrayList<>();
+
+        @Override
+        public void onStateChanged(@NonNull Status status, boolean playWhenReady) {
+            events.add("state " + status.name() + " " + playWhenReady);
+        }
+
+        @Override
+        public void onPositionChanged(long positionMs, int reason) {
+            events.add("position " + positionMs + " " + reason);
+        }
+
+        @Override
+        public void onBufferingChanged(boolean isBuffering) {
+            events.add("buffering " + isBuffering);
+        }
+
+        @Override
+        public void onError(int errorType, @NonNull Exception error) {
+            events.add("error " + errorType + " " + error.getMessage());
+        }
+
+        @Override
+        public void onSpectrumAvailable(long sequence) {
+            events.add("spectrum " + sequence);
+        }
+
+        String joined() {
+            final StringBuilder builder = new StringBuilder();
+            for (String event : events) {
+                if (builder.length() > 0) builder.append('|');
+                builder.append(event);
+            }
+            return builder.toString();
+        }
+
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.support.annotation.NonNull;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 预览画面内存缓存测试，在本机JVM上执行
+ */
+public class FrameLruCacheTest {
+
+    @Test
+    public void put_evictsLeastRecentlyUsedOverBudget() throws Exception {
+        final FrameLruCache<String> cache = newCache(10L);
+
+        cache.put("a", "aaaa");
+        cache.put("b", "bbbb");
+        //访问 a 后 b 成为最久没有使用的记录
+        assertEquals("aaaa", cache.get("a"));
+        cache.put("c", "cccc");
+
+        assertNull(cache.get("b"));
+        assertEquals("aaaa", cache.get("a"));
+        assertEquals("cccc", cache.get("c"));
+        assertEquals(8L, cache.size());
+        assertEquals(1L, cache.evictionCount());
+        assertEquals(3L, cache.hitCount());
+        assertEquals(1L, cache.missCount());
+    }
+
+    @Test
+    public void put_skipsOversizedAndReplacesExisting() throws Exception {
+        final FrameLruCache<String> cache = newCache(10L);
+
+        cache.put("a", "aaaaaaaaaaaa");
+        assertEquals(0, cache.entryCount());
+
+        cache.put("b", "bb");
+        cache.put("b", "BBB");
+        assertEquals("BBB", cache.get("b"));
+        assertEquals(3L, cache.size());
+        //替换不计入因超过上限的移除
+        assertEquals(0L, cache.evictionCount());
+
+        cache.clear();
+        assertEquals(0L, cache.size());
+        assertEquals(0, cache.entryCount());
+    }
+
+    private static FrameLruCache<String> newCache(long maxBytes) {
+        return new FrameLruCache<>(maxBytes, new FrameLruCache.Weigher<String>() {
+            @Override
+            public int sizeOf(@NonNull String value) {
+                return value.length();
+            }
+        });
+    }
+
+}
@@ -0,0 +1,96 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import com.google.android.exoplayer2.C;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+/**
+ * 增益处理器测试，直接调用 process() 处理构造的PCM数据，在本机JVM上执行
+ */
+public class GainProcessorTest {
+
+    private static final int SAMPLE_RATE = 1000;
+
+    @Test
+    public void process_passesThroughAtUnityGain() throws Exception {
+        final GainProcessor processor = configured(2);
+        final short[] output = run(processor, constant(64, 2, (short) 12345));
+
+        for (short sample : output) {
+            assertEquals(12345, sample);
+        }
+    }
+
+    @Test
+    public void rampVolume_reachesTargetAfterExactFrameCount() throws Exception {
+        final GainProcessor processor = configured(1);
+        //采样率 1000Hz 时 100ms 为 100 帧
+        processor.rampVolume(0f, 100L);
+
+        final short[] output = run(processor, constant(150, 1, (short) 10000));
+        assertEquals(5000, output[49], 1);
+        assertTrue(output[98] > 0);
+        assertEquals(0, output[99]);
+        assertEquals(0, output[149]);
+        assertEquals(0f, processor.volume(), 0f);
+    }
+
+    @Test
+    public void fade_keepsEqualPowerAndNotifiesListener() throws Exception {
+        final GainProcessor fadingIn = configured(1);
+        final GainProcessor fadingOut = configured(1);
+        final int[] finished = new int[1];
+        fadingOut.setListener(new GainProcessor.Listener() {
+            @Override
+            public void onFadeFinished(int fadeId) {
+                finished[0] = fadeId;
+            }
+        });
+
+        fadingIn.fade(0f, 1f, 200L);
+        final int fadeId = fadingOut.fade(0f, 200L);
+
+        //分为多个缓冲区处理，渐变不受缓冲区大小影响
+        for (int block = 0; block < 4; block++) {
+            final short[] in = run(fadingIn, constant(50, 1, Short.MAX_VALUE));
+            final short[] out = run(fadingOut, constant(50, 1, Short.MAX_VALUE));
+            for (int i = 0; i < in.length; i++) {
+                final double a = in[i] / (double) Short.MAX_VALUE;
+                final double b = out[i] / (double) Short.MAX_VALUE;
+                assertEquals(1.0, a * a + b * b, 0.01);
+            }
+        }
+        assertEquals(fadeId, finished[0]);
+        assertEquals(0f, fadingOut.fadeGain(), 0f);
+    }
+
+    private static GainProcessor configured(int channelCount) throws Exception {
+        final GainProcessor processor = new GainProcessor();
+        processor.configure(SAMPLE_RATE, channelCount, C.ENCODING_PCM_16BIT);
+        return processor;
+    }
+
+    private static ByteBuffer constant(int frames, int channelCount, short value) {
+        final ByteBuffer buffer = ByteBuffer.allocate(frames * channelCount * 2).order(ByteOrder.nativeOrder());
+        while (buffer.hasRemaining()) {
+            buffer.putShort(value);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static short[] run(GainProcessor processor, ByteBuffer input) {
+        final ByteBuffer output = ByteBuffer.allocate(input.remaining()).order(ByteOrder.nativeOrder());
+        processor.process(input, output);
+        output.flip();
+        final short[] samples = new short[output.remaining() / 2];
+        output.asShortBuffer().get(samples);
+        return samples;
+    }
+
+}
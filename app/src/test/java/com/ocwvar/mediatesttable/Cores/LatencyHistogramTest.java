@@ -0,0 +1,100 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 延迟直方图与性能统计测试，在本机JVM上执行
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketBounds_coverEveryValue() throws Exception {
+        for (long value = 0L; value < 100_000L; value++) {
+            final int index = LatencyHistogram.bucketIndex(value);
+            assertTrue(LatencyHistogram.bucketLowerBound(index) <= value);
+            assertTrue(LatencyHistogram.bucketUpperBound(index) >= value);
+        }
+        //桶的上下限相邻且不重叠
+        for (int index = 0; index < 200; index++) {
+            assertEquals(LatencyHistogram.bucketUpperBound(index) + 1L, LatencyHistogram.bucketLowerBound(index + 1));
+        }
+        assertEquals(LatencyHistogram.bucketIndex(1L << 40), LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void percentile_withinBucketError() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0L, histogram.percentile(50.0));
+
+        for (long value = 1L; value <= 1000L; value++) {
+            histogram.record(value * 1000L);
+        }
+        assertEquals(1000L, histogram.count());
+        assertEquals(1000L, histogram.min());
+        assertEquals(1_000_000L, histogram.max());
+        assertEquals(500_500L, histogram.mean());
+        assertEquals(500_000.0, histogram.percentile(50.0), 500_000.0 * 0.125);
+        assertEquals(990_000.0, histogram.percentile(99.0), 990_000.0 * 0.125);
+        assertEquals(1_000_000L, histogram.percentile(100.0));
+
+        histogram.reset();
+        assertEquals(0L, histogram.count());
+        assertEquals(0L, histogram.min());
+    }
+
+    @Test
+    public void metrics_ignoresBufferingDuringPrepare() throws Exception {
+        final CoreMetrics metrics = new CoreMetrics();
+        final int[] received = new int[1];
+        metrics.addListener(new CoreMetrics.Listener() {
+            @Override
+            public void onMetric(CoreMetrics.Metric metric, long valueUs) {
+                received[0]++;
+            }
+        });
+
+        metrics.prepareStarted();
+        metrics.bufferingStarted();
+        metrics.ready();
+        metrics.firstFrameRendered();
+        assertEquals(1L, metrics.count(CoreMetrics.Metric.PREPARE));
+        assertEquals(1L, metrics.count(CoreMetrics.Metric.FIRST_FRAME));
+        assertEquals(0L, metrics.rebufferCount());
+
+        metrics.bufferingStarted();
+        metrics.ready();
+        assertEquals(1L, metrics.rebufferCount());
+        assertEquals(1L, metrics.count(CoreMetrics.Metric.REBUFFER));
+        assertEquals(3, received[0]);
+
+        final String json = metrics.toJson();
+        assertTrue(json, json.startsWith("{\"counters\":{\"prepare\":1,"));
+        assertTrue(json, json.contains("\"prepareToReady\":{\"count\":1,"));
+    }
+
+    @Test
+    public void metrics_failedPrepareNotRecorded() throws Exception {
+        final CoreMetrics metrics = new CoreMetrics();
+        metrics.prepareStarted();
+        metrics.prepareFailed();
+        metrics.ready();
+        assertEquals(1L, metrics.prepareFailureCount());
+        assertEquals(0L, metrics.count(CoreMetrics.Metric.PREPARE));
+
+        //没有进行中的准备时不计为失败
+        metrics.prepareFailed();
+        assertEquals(1L, metrics.prepareFailureCount());
+
+        //读取出错会被重试，单独计数，不取消进行中的准备
+        metrics.prepareStarted();
+        metrics.loadError();
+        metrics.ready();
+        assertEquals(1L, metrics.loadErrorCount());
+        assertEquals(1L, metrics.prepareFailureCount());
+        assertEquals(1L, metrics.count(CoreMetrics.Metric.PREPARE));
+        assertTrue(metrics.toJson().contains("\"loadError\":1"));
+    }
+
+}
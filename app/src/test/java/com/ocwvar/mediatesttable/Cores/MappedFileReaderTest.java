@@ -0,0 +1,70 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * 内存映射文件读取器测试，使用很小的窗口覆盖跨窗口读取与重新映射，在本机JVM上执行
+ */
+public class MappedFileReaderTest {
+
+    private File file;
+    private byte[] content;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("MappedFileReaderTest", ".bin");
+        content = new byte[1000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 31);
+        }
+        final FileOutputStream outputStream = new FileOutputStream(file);
+        try {
+            outputStream.write(content);
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void read_crossesWindowsAndSeeksBackwards() throws Exception {
+        final MappedFileReader reader = new MappedFileReader(file, 64);
+        try {
+            assertEquals(1000L, reader.length());
+
+            //跨越多个窗口
+            final byte[] target = new byte[300];
+            assertEquals(300, reader.read(50L, target, 0, 300));
+            assertRange(target, 0, 50L, 300);
+
+            //向前移动后重新映射
+            assertEquals(10, reader.read(3L, target, 5, 10));
+            assertRange(target, 5, 3L, 10);
+
+            //最后一个窗口小于窗口大小，只读取到文件末尾
+            assertEquals(40, reader.read(960L, target, 0, 100));
+            assertRange(target, 0, 960L, 40);
+            assertEquals(-1, reader.read(1000L, target, 0, 10));
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void assertRange(byte[] target, int offset, long position, int count) {
+        for (int i = 0; i < count; i++) {
+            assertEquals(content[(int) position + i], target[offset + i]);
+        }
+    }
+
+}
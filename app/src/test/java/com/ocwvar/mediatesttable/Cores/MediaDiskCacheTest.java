@@ -0,0 +1,289 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * 媒体资源磁盘缓存测试，数据来源使用本地临时文件，在本机JVM上执行
+ */
+public class MediaDiskCacheTest {
+
+    private static final long MAX_BYTES = 10_000L;
+
+    /**
+     * 在调用线程中直接执行，后台写入在 resolve() 返回前完成
+     */
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private File root;
+    private File cacheDirectory;
+
+    @Before
+    public void setUp() throws Exception {
+        root = File.createTempFile("MediaDiskCacheTest", "");
+        assertTrue(root.delete());
+        assertTrue(root.mkdirs());
+        cacheDirectory = new File(root, "cache");
+    }
+
+    @After
+    public void tearDown() {
+        delete(root);
+    }
+
+    @Test
+    public void resolve_missFillsThenHits() throws Exception {
+        final MediaDiskCache cache = new MediaDiskCache(cacheDirectory, MAX_BYTES, DIRECT);
+        final File media = createMedia("a.mp3", 3000, 1);
+        final CountingSource source = new CountingSource(media);
+        final String key = MediaDiskCache.contentKey(media);
+
+        assertNull(cache.resolve(key, source, "mp3"));
+        assertEquals(1, source.openCount);
+        assertEquals(0L, cache.hitCount());
+        assertEquals(1L, cache.missCount());
+
+        final File cached = cache.resolve(key, source, "mp3");
+        assertNotNull(cached);
+        assertTrue(cached.getName().endsWith(".mp3"));
+        assertArrayEquals(read(media), read(cached));
+        //命中时不再读取数据来源
+        assertEquals(1, source.openCount);
+        assertEquals(1L, cache.hitCount());
+        assertEquals(0.5f, cache.hitRate(), 0f);
+        assertEquals(3000L, cache.size());
+    }
+
+    @Test
+    public void resolvePath_fillsAfterReleaseThenHits() throws Exception {
+        final MediaDiskCache cache = new MediaDiskCache(cacheDirectory, MAX_BYTES, DIRECT);
+        final File media = createMedia("b.flv", 2000, 2);
+
+        assertEquals(media.getPath(), cache.resolvePath(media.getPath()));
+        //原始资源仍在使用时不写入缓存
+        assertEquals(media.getPath(), cache.resolvePath(media.getPath()));
+        cache.releasePath(media.getPath());
+        assertEquals(0, cache.entryCount());
+        cache.releasePath(media.getPath());
+        assertEquals(1, cache.entryCount());
+
+        final String cachedPath = cache.resolvePath(media.getPath());
+        assertNotEquals(media.getPath(), cachedPath);
+        assertEquals(cacheDirectory.getAbsolutePath(), new File(cachedPath).getAbsoluteFile().getParent());
+        assertArrayEquals(read(media), read(new File(cachedPath)));
+
+        //不存在的文件与网络地址直接返回
+        assertEquals("rtmp://host/live", cache.resolvePath("rtmp://host/live"));
+        assertEquals(new File(root, "missing.mp3").getPath(), cache.resolvePath(new File(root, "missing.mp3").getPath()));
+    }
+
+    @Test
+    public void contentKey_changesWhenFileChanges() throws Exception {
+        final MediaDiskCache cache = new MediaDiskCache(cacheDirectory, MAX_BYTES, DIRECT);
+        final File media = createMedia("c.mp3", 1000, 3);
+        cache.releasePath(cache.resolvePath(media.getPath()));
+        final String oldPath = cache.resolvePath(media.getPath());
+        assertNotEquals(media.getPath(), oldPath);
+        cache.releasePath(oldPath);
+
+        //内容改变后使用新的缓存
+        final String oldKey = MediaDiskCache.contentKey(media);
+        writeMedia(media, 1500, 4);
+        assertNotEquals(oldKey, MediaDiskCache.contentKey(media));
+        cache.releasePath(cache.resolvePath(media.getPath()));
+        assertArrayEquals(read(media), read(new File(cache.resolvePath(media.getPath()))));
+    }
+
+    @Test
+    public void put_evictsLeastRecentlyUsed() throws Exception {
+        final MediaDiskCache cache = new MediaDiskCache(cacheDirectory, MAX_BYTES, DIRECT);
+        final File first = createMedia("1.mp3", 4000, 5);
+        final File second = createMedia("2.mp3", 4000, 6);
+        final File third = createMedia("3.mp3", 4000, 7);
+
+        final File firstCached = cache.put("1", new MediaDiskCache.FileSource(first), "mp3");
+        final File secondCached = cache.put("2", new MediaDiskCache.FileSource(second), "mp3");
+        //访问第一个，第二个成为最久没有使用的
+        assertNotNull(cache.get("1"));
+        cache.put("3", new MediaDiskCache.FileSource(third), "mp3");
+
+        assertNotNull(firstCached);
+        assertNotNull(secondCached);
+        assertTrue(firstCached.exists());
+        assertFalse(secondCached.exists());
+        assertNull(cache.get("2"));
+        assertNotNull(cache.get("3"));
+        assertEquals(1L, cache.evictionCount());
+        assertEquals(2, cache.entryCount());
+        assertEquals(8000L, cache.size());
+    }
+
+    @Test
+    public void trim_skipsPathsInUseUntilReleased() throws Exception {
+        final MediaDiskCache cache = new MediaDiskCache(cacheDirectory, MAX_BYTES, DIRECT);
+        final File first = createMedia("1.mp4", 6000, 10);
+        final File second = createMedia("2.mp4", 6000, 11);
+        cache.releasePath(cache.resolvePath(first.getPath()));
+
+        final String firstPath = cache.resolvePath(first.getPath());
+        assertNotEquals(first.getPath(), firstPath);
+        //第二个资源写入后超过上限，跳过正在使用的第一个缓存
+        cache.releasePath(cache.resolvePath(second.getPath()));
+        assertTrue(new File(firstPath).exists());
+        assertEquals(6000L, cache.size());
+        assertEquals(1L, cache.evictionCount());
+        assertEquals(second.getPath(), cache.resolvePath(second.getPath()));
+
+        //释放后可以被删除
+        cache.releasePath(firstPath);
+        cache.releasePath(second.getPath());
+        assertFalse(new File(firstPath).exists());
+        assertNotEquals(second.getPath(), cache.resolvePath(second.getPath()));
+        assertEquals(6000L, cache.size());
+        assertEquals(2L, cache.evictionCount());
+    }
+
+    @Test
+    public void put_skipsSourceLargerThanCache() throws Exception {
+        final MediaDiskCache cache = new MediaDiskCache(cacheDirectory, MAX_BYTES, DIRECT);
+        final File media = createMedia("large.mp4", (int) MAX_BYTES + 1, 8);
+
+        assertNull(cache.put("large", new MediaDiskCache.FileSource(media), "mp4"));
+        assertEquals(0, cache.entryCount());
+        assertEquals(0L, cache.size());
+        //只剩下索引文件
+        final String[] names = cacheDirectory.list();
+        assertNotNull(names);
+        assertTrue(Arrays.toString(names), names.length <= 1);
+    }
+
+    @Test
+    public void index_survivesRecreation() throws Exception {
+        final File media = createMedia("d.ogg", 2500, 9);
+        final String key = MediaDiskCache.contentKey(media);
+        new MediaDiskCache(cacheDirectory, MAX_BYTES, DIRECT).put(key, new MediaDiskCache.FileSource(media), "ogg");
+
+        //后台读取索引的任务尚未执行时，第一次使用会先读取索引
+        final List<Runnable> queued = new ArrayList<>();
+        final MediaDiskCache reopened = new MediaDiskCache(cacheDirectory, MAX_BYTES, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                queued.add(command);
+            }
+        });
+        assertEquals(1, queued.size());
+        assertEquals(1, reopened.entryCount());
+        assertEquals(2500L, reopened.size());
+        final File cached = reopened.get(key);
+        assertNotNull(cached);
+        assertArrayEquals(read(media), read(cached));
+
+        //缓存文件被外部删除后视为未命中
+        assertTrue(cached.delete());
+        assertNull(reopened.get(key));
+        assertEquals(0, reopened.entryCount());
+    }
+
+    @Test
+    public void failedSource_isNotCached() throws Exception {
+        final MediaDiskCache cache = new MediaDiskCache(cacheDirectory, MAX_BYTES, DIRECT);
+        final MediaDiskCache.Source broken = new MediaDiskCache.Source() {
+            @Override
+            public InputStream open() throws IOException {
+                throw new IOException("无法读取");
+            }
+        };
+
+        assertNull(cache.resolve("broken", broken, null));
+        assertNull(cache.resolve("broken", broken, null));
+        assertEquals(0, cache.entryCount());
+        assertEquals(2L, cache.missCount());
+    }
+
+    private File createMedia(String name, int length, long seed) throws IOException {
+        final File file = new File(root, name);
+        writeMedia(file, length, seed);
+        return file;
+    }
+
+    private static void writeMedia(File file, int length, long seed) throws IOException {
+        final byte[] data = new byte[length];
+        new Random(seed).nextBytes(data);
+        final FileOutputStream outputStream = new FileOutputStream(file);
+        try {
+            outputStream.write(data);
+        } finally {
+            outputStream.close();
+        }
+        //保证修改时间发生变化
+        assertTrue(file.setLastModified(file.lastModified() + seed * 1000L));
+    }
+
+    private static byte[] read(File file) throws IOException {
+        final byte[] data = new byte[(int) file.length()];
+        final FileInputStream inputStream = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset < data.length) {
+                final int count = inputStream.read(data, offset, data.length - offset);
+                if (count < 0) {
+                    break;
+                }
+                offset += count;
+            }
+        } finally {
+            inputStream.close();
+        }
+        return data;
+    }
+
+    private static void delete(File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * 记录读取次数的本地文件数据来源
+     */
+    private static final class CountingSource implements MediaDiskCache.Source {
+
+        private final MediaDiskCache.Source source;
+        private int openCount = 0;
+
+        CountingSource(File file) {
+            this.source = new MediaDiskCache.FileSource(file);
+        }
+
+        @Override
+        public InputStream open() throws IOException {
+            openCount++;
+            return source.open();
+        }
+
+    }
+
+}
@@ -0,0 +1,168 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.support.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * 媒体信息索引测试，探测器使用记录调用次数的替代对象，在本机JVM上执行
+ */
+public class MediaProbeTest {
+
+    /**
+     * 在调用线程中直接执行，探测与回调在 probeAll() 返回前完成
+     */
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private File root;
+    private File indexFile;
+
+    @Before
+    public void setUp() throws Exception {
+        root = File.createTempFile("MediaProbeTest", "");
+        assertTrue(root.delete());
+        assertTrue(root.mkdirs());
+        indexFile = new File(new File(root, "index"), "probe.idx");
+    }
+
+    @After
+    public void tearDown() {
+        delete(root);
+    }
+
+    @Test
+    public void probe_persistsIndexAcrossInstances() throws Exception {
+        final File media = createMedia("a.mp4", 100);
+        final CountingProber prober = new CountingProber();
+        final MediaProbe probe = new MediaProbe(indexFile, 16, prober, DIRECT, DIRECT);
+
+        assertNull(probe.cached(media.getPath()));
+        assertEquals(-1L, probe.durationMs(media.getPath()));
+        //未命中时在后台探测，批次完成后写入索引
+        assertEquals(1, prober.probeCount);
+        //后台探测不再重复查找记录，两次查找各统计一次未命中
+        assertEquals(2L, probe.missCount());
+        assertTrue(indexFile.isFile());
+
+        //后台读取索引的任务尚未执行时，第一次获取会先读取索引
+        final List<Runnable> queued = new ArrayList<>();
+        final MediaProbe reopened = new MediaProbe(indexFile, 16, prober, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                queued.add(command);
+            }
+        }, DIRECT);
+        assertEquals(1, queued.size());
+        final MediaInfo info = reopened.cached(media.getPath());
+        assertNotNull(info);
+        assertEquals(12_345L, info.durationMs());
+        assertEquals("video/avc", info.videoMime());
+        assertEquals("audio/mp4a-latm", info.audioMime());
+        assertEquals(1920, info.width());
+        assertEquals(1080, info.height());
+        assertEquals(12_345L, reopened.durationMs(media.getPath()));
+        assertEquals(1, prober.probeCount);
+    }
+
+    @Test
+    public void cached_missesAfterFileChanges() throws Exception {
+        final File media = createMedia("a.mp3", 100);
+        final CountingProber prober = new CountingProber();
+        final MediaProbe probe = new MediaProbe(indexFile, 16, prober, DIRECT, DIRECT);
+
+        probe.probe(media.getPath());
+        assertNotNull(probe.cached(media.getPath()));
+
+        //文件长度改变后记录失效
+        createMedia("a.mp3", 200);
+        assertNull(probe.cached(media.getPath()));
+        probe.probe(media.getPath());
+        assertEquals(2, prober.probeCount);
+    }
+
+    @Test
+    public void probeAll_reportsEachFileAndTrimsOldest() throws Exception {
+        final File a = createMedia("a.mp4", 10);
+        final File b = createMedia("b.mp4", 10);
+        final File c = createMedia("c.mp4", 10);
+        final File missing = new File(root, "missing.mp4");
+        final CountingProber prober = new CountingProber();
+        final MediaProbe probe = new MediaProbe(indexFile, 2, prober, DIRECT, DIRECT);
+
+        final List<String> probed = new ArrayList<>();
+        final List<String> failed = new ArrayList<>();
+        probe.probeAll(Arrays.asList(a.getPath(), b.getPath(), missing.getPath(), c.getPath()), new MediaProbe.Callback() {
+            @Override
+            public void onProbed(@NonNull String path, @NonNull MediaInfo info) {
+                probed.add(path);
+            }
+
+            @Override
+            public void onFailed(@NonNull String path, @NonNull IOException e) {
+                failed.add(path);
+            }
+        });
+
+        assertEquals(Arrays.asList(a.getPath(), b.getPath(), c.getPath()), probed);
+        assertEquals(Arrays.asList(missing.getPath()), failed);
+        //超过记录数量上限时移除最久没有使用的记录
+        assertEquals(2, probe.entryCount());
+        assertNull(probe.cached(a.getPath()));
+        assertNotNull(probe.cached(c.getPath()));
+    }
+
+    private File createMedia(String name, int size) throws IOException {
+        final File file = new File(root, name);
+        final FileOutputStream outputStream = new FileOutputStream(file);
+        try {
+            outputStream.write(new byte[size]);
+        } finally {
+            outputStream.close();
+        }
+        return file;
+    }
+
+    private static void delete(File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * 返回固定结果并记录调用次数的探测器
+     */
+    private static final class CountingProber implements MediaProbe.Prober {
+
+        private int probeCount = 0;
+
+        @NonNull
+        @Override
+        public MediaInfo probe(@NonNull String path) throws IOException {
+            probeCount++;
+            return new MediaInfo(12_345L, "audio/mp4a-latm", "video/avc", 1920, 1080, 4_000_000);
+        }
+
+    }
+
+}
@@ -0,0 +1,140 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * 已解码PCM数据缓存测试，解码器按文件长度生成PCM数据，在本机JVM上执行
+ */
+public class PcmCacheTest {
+
+    private static final int SAMPLE_RATE = 48000;
+
+    private File root;
+
+    @Before
+    public void setUp() throws Exception {
+        root = File.createTempFile("PcmCacheTest", "");
+        assertTrue(root.delete());
+        assertTrue(root.mkdirs());
+    }
+
+    @After
+    public void tearDown() {
+        final File[] files = root.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                assertTrue(file.delete());
+            }
+        }
+        assertTrue(root.delete());
+    }
+
+    @Test
+    public void load_decodesOnceThenHits() throws Exception {
+        final PcmCache cache = new PcmCache(10_000L);
+        final CountingDecoder decoder = new CountingDecoder();
+        final String path = createMedia("a.ogg", 1000).getPath();
+
+        final SfxClip first = cache.load(path, decoder);
+        final SfxClip second = cache.load(path, decoder);
+        assertSame(first, second);
+        assertSame(first, cache.get(path));
+        assertEquals(1, decoder.decodeCount);
+        assertEquals(2L, cache.hitCount());
+        assertEquals(1L, cache.missCount());
+        assertEquals(2f / 3f, cache.hitRate(), 1e-6f);
+        assertEquals(2000L, cache.size());
+        assertTrue(first.samples.isDirect());
+    }
+
+    @Test
+    public void get_missesAfterFileChanges() throws Exception {
+        final PcmCache cache = new PcmCache(10_000L);
+        final CountingDecoder decoder = new CountingDecoder();
+        final File media = createMedia("b.wav", 1000);
+
+        cache.load(media.getPath(), decoder);
+        //内容与修改时间都改变
+        writeFile(media, 1500);
+        assertTrue(media.setLastModified(media.lastModified() + 10_000L));
+
+        assertNull(cache.get(media.getPath()));
+        assertEquals(0, cache.entryCount());
+        assertEquals(0L, cache.size());
+
+        final SfxClip clip = cache.load(media.getPath(), decoder);
+        assertEquals(2, decoder.decodeCount);
+        assertEquals(1500, clip.frameCount);
+    }
+
+    @Test
+    public void put_evictsLeastRecentlyUsed() throws Exception {
+        final PcmCache cache = new PcmCache(5000L);
+        final CountingDecoder decoder = new CountingDecoder();
+        final String a = createMedia("a.mp3", 1000).getPath();
+        final String b = createMedia("b.mp3", 1000).getPath();
+        final String c = createMedia("c.mp3", 1000).getPath();
+
+        cache.load(a, decoder);
+        cache.load(b, decoder);
+        //访问 a 后 b 成为最久没有使用的片段
+        assertNotNull(cache.get(a));
+        cache.load(c, decoder);
+
+        assertNull(cache.get(b));
+        assertNotNull(cache.get(a));
+        assertNotNull(cache.get(c));
+        assertEquals(1L, cache.evictionCount());
+        assertEquals(4000L, cache.size());
+    }
+
+    @Test
+    public void put_skipsClipLargerThanLimit() throws Exception {
+        final PcmCache cache = new PcmCache(1000L);
+        final CountingDecoder decoder = new CountingDecoder();
+        final String path = createMedia("big.mp3", 1000).getPath();
+
+        assertNotNull(cache.load(path, decoder));
+        assertEquals(0, cache.entryCount());
+        assertEquals(0L, cache.size());
+    }
+
+    private File createMedia(String name, int length) throws IOException {
+        final File file = new File(root, name);
+        writeFile(file, length);
+        return file;
+    }
+
+    private static void writeFile(File file, int length) throws IOException {
+        final FileOutputStream outputStream = new FileOutputStream(file);
+        try {
+            outputStream.write(new byte[length]);
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    /**
+     * 生成单声道片段，帧数等于文件长度
+     */
+    private static final class CountingDecoder implements PcmCache.Decoder {
+
+        private int decodeCount = 0;
+
+        @Override
+        public SfxClip decode(String path) throws IOException {
+            decodeCount++;
+            return SfxClip.wrap(path, new short[(int) new File(path).length()], 1, SAMPLE_RATE);
+        }
+
+    }
+
+}
@@ -0,0 +1,199 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.support.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * 效果指令解析与执行测试，使用手动推进时间的 Scheduler，在本机JVM上执行
+ */
+public class PlaybackEffectsTest {
+
+    @Test
+    public void parse_acceptsArbitrarySpeedAndVolume() throws Exception {
+        final EffectCommand speed = EffectCommand.parse("SP_1.25");
+        assertEquals(EffectCommand.PLAYBACK_PARAMETERS, speed.type);
+        assertEquals(1.25f, speed.value, 0f);
+        assertEquals(1.0f, speed.pitch, 0f);
+
+        final EffectCommand pitch = EffectCommand.parse("SP_1_1.5");
+        assertEquals(1.0f, pitch.value, 0f);
+        assertEquals(1.5f, pitch.pitch, 0f);
+
+        final EffectCommand volume = EffectCommand.parse(" @250:VO_0.5_300 ");
+        assertEquals(EffectCommand.VOLUME, volume.type);
+        assertEquals(0.5f, volume.value, 0f);
+        assertEquals(300L, volume.rampMillis);
+        assertEquals(250L, volume.delayMillis);
+
+        assertNull(EffectCommand.parse("SP_0"));
+        assertNull(EffectCommand.parse("SP_1_2_3"));
+        assertNull(EffectCommand.parse("VO_1.5"));
+        assertNull(EffectCommand.parse("VO_abc"));
+        assertNull(EffectCommand.parse("@x:VI_ON"));
+        assertNull(EffectCommand.parse("XX_UNKNOWN"));
+    }
+
+    @Test
+    public void apply_setsVolume() throws Exception {
+        final RecordingTarget target = new RecordingTarget();
+        final PlaybackEffects effects = new PlaybackEffects(target, new ManualScheduler());
+
+        assertEquals("音量大小：0.5", effects.apply("VO_0.5"));
+        assertEquals(0.5f, target.volume, 0f);
+    }
+
+    @Test
+    public void apply_mergesBatchAndRejectsInvalidProgram() throws Exception {
+        final RecordingTarget target = new RecordingTarget();
+        final PlaybackEffects effects = new PlaybackEffects(target, new ManualScheduler());
+
+        effects.apply("VI_ON;SP_D;VI_STREAM;SP_1.5_1;VO_0.2");
+        assertEquals("visualizerOn|stream|speed 1.5 1.0|volume 0.2 0", target.joined());
+
+        //任意一条指令无效时不执行任何操作
+        target.calls.clear();
+        assertEquals("无效指令：SP_99", effects.apply("VI_OFF;SP_99"));
+        assertTrue(target.calls.isEmpty());
+
+        //相同的指令只解析一次
+        assertSame(effects.compile("SP_N"), effects.compile("SP_N"));
+    }
+
+    @Test
+    public void apply_runsScheduledBatches() throws Exception {
+        final RecordingTarget target = new RecordingTarget();
+        final ManualScheduler scheduler = new ManualScheduler();
+        final PlaybackEffects effects = new PlaybackEffects(target, scheduler);
+
+        effects.apply("@100:VO_0_100;@50:SP_S;SP_N");
+        assertEquals("speed 1.0 1.0", target.joined());
+        assertEquals(2, effects.scheduledCount());
+
+        scheduler.advance(50L);
+        assertEquals("speed 1.0 1.0|speed 0.5 1.0", target.joined());
+
+        //音量渐变只发出一次请求，不再通过 Scheduler 定时更新
+        scheduler.advance(50L);
+        assertEquals("speed 1.0 1.0|speed 0.5 1.0|volume 0.0 100", target.joined());
+        assertEquals(0, effects.scheduledCount());
+        assertTrue(scheduler.tasks.isEmpty());
+    }
+
+    @Test
+    public void cancel_dropsPendingEffects() throws Exception {
+        final RecordingTarget target = new RecordingTarget();
+        final ManualScheduler scheduler = new ManualScheduler();
+        final PlaybackEffects effects = new PlaybackEffects(target, scheduler);
+
+        effects.apply("VO_0_1000;@500:SP_D");
+        scheduler.advance(100L);
+
+        effects.apply("CLR");
+        scheduler.advance(2000L);
+        assertEquals("volume 0.0 1000", target.joined());
+        assertTrue(scheduler.tasks.isEmpty());
+    }
+
+    /**
+     * 手动推进时间的 Scheduler
+     */
+    private static final class ManualScheduler implements PlaybackEffects.Scheduler {
+
+        private final ArrayList<Runnable> tasks = new ArrayList<>();
+        private final ArrayList<Long> dueTimes = new ArrayList<>();
+        private long now = 0L;
+
+        @Override
+        public void postDelayed(@NonNull Runnable task, long delayMillis) {
+            tasks.add(task);
+            dueTimes.add(now + delayMillis);
+        }
+
+        @Override
+        public void removeCallbacks(@NonNull Runnable task) {
+            int index;
+            while ((index = tasks.indexOf(task)) >= 0) {
+                tasks.remove(index);
+                dueTimes.remove(index);
+            }
+        }
+
+        /**
+         * 推进时间并按到期顺序执行任务
+         */
+        void advance(long millis) {
+            final long end = now + millis;
+            while (true) {
+                int next = -1;
+                for (int i = 0; i < tasks.size(); i++) {
+                    if (dueTimes.get(i) <= end && (next < 0 || dueTimes.get(i) < dueTimes.get(next))) {
+                        next = i;
+                    }
+                }
+                if (next < 0) break;
+                now = Math.max(now, dueTimes.remove(next));
+                tasks.remove(next).run();
+            }
+            now = end;
+        }
+
+    }
+
+    private static final class RecordingTarget implements PlaybackEffects.Target {
+
+        private final ArrayList<String> calls = new ArrayList<>();
+        private float volume = 1f;
+
+        @Override
+        public void enableVisualizer() {
+            calls.add("visualizerOn");
+        }
+
+        @Override
+        public void disableVisualizer() {
+            calls.add("visualizerOff");
+        }
+
+        @Override
+        public void enableSpectrumStream() {
+            calls.add("stream");
+        }
+
+        @Override
+        public void disableSpectrumStream() {
+            calls.add("pull");
+        }
+
+        @Override
+        public void enablePcmAnalyzer() {
+            calls.add("pcm");
+        }
+
+        @Override
+        public void setPlaybackParameters(float speed, float pitch) {
+            calls.add("speed " + speed + " " + pitch);
+        }
+
+        @Override
+        public void setVolume(float volume, long rampMillis) {
+            this.volume = volume;
+            calls.add("volume " + volume + " " + rampMillis);
+        }
+
+        String joined() {
+            final StringBuilder builder = new StringBuilder();
+            for (String call : calls) {
+                if (builder.length() > 0) builder.append('|');
+                builder.append(call);
+            }
+            return builder.toString();
+        }
+
+    }
+
+}
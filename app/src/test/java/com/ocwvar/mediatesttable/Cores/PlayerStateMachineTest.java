@@ -0,0 +1,129 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import com.google.android.exoplayer2.ExoPlayer;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * 播放器状态机测试，在本机JVM上执行
+ */
+public class PlayerStateMachineTest {
+
+    @Test
+    public void command_followsTableAndRecordsRejections() throws Exception {
+        final PlayerStateMachine machine = new PlayerStateMachine();
+
+        //没有资源时只能准备
+        assertNull(machine.command(StatusTransitions.CMD_PLAY));
+        assertNull(machine.command(StatusTransitions.CMD_SEEK));
+        assertEquals(Status.EMPTY, machine.command(StatusTransitions.CMD_PREPARE));
+
+        machine.observe(Status.PAUSED);
+        assertNull(machine.command(StatusTransitions.CMD_PAUSE));
+        assertEquals(Status.PAUSED, machine.command(StatusTransitions.CMD_PLAY, Status.PLAYING));
+        assertEquals(Status.PLAYING, machine.status());
+
+        //停止后可以重新播放
+        assertEquals(Status.PLAYING, machine.command(StatusTransitions.CMD_STOP, Status.STOPPED));
+        assertNull(machine.command(StatusTransitions.CMD_STOP));
+        assertEquals(Status.STOPPED, machine.command(StatusTransitions.CMD_PLAY));
+
+        int rejected = 0;
+        for (long entry : machine.trace()) {
+            if (PlayerStateMachine.isRejected(entry)) rejected++;
+        }
+        assertEquals(4, rejected);
+        final long[] trace = machine.trace();
+        final long last = trace[trace.length - 1];
+        assertEquals(Status.STOPPED, PlayerStateMachine.traceFrom(last));
+        assertEquals(StatusTransitions.CMD_STOP, PlayerStateMachine.traceCause(last));
+        assertTrue(PlayerStateMachine.isRejected(last));
+    }
+
+    @Test
+    public void syncExoState_appliesStopActionOnce() throws Exception {
+        final PlayerStateMachine machine = new PlayerStateMachine();
+
+        assertEquals(Status.PLAYING, machine.syncExoState(ExoPlayer.STATE_READY, true));
+        assertTrue(machine.isReady());
+
+        //停止：暂停后的 READY 变为 STOPPED，标记随后失效
+        machine.setStopAction(true);
+        assertEquals(Status.STOPPED, machine.syncExoState(ExoPlayer.STATE_READY, false));
+        assertFalse(machine.isStopAction());
+        assertEquals(Status.PAUSED, machine.syncExoState(ExoPlayer.STATE_READY, false));
+
+        assertEquals(Status.EMPTY, machine.syncExoState(ExoPlayer.STATE_IDLE, false));
+        assertFalse(machine.isReady());
+    }
+
+    @Test
+    public void command_onlyOneConcurrentCallerWins() throws Exception {
+        final int threads = 8;
+        for (int round = 0; round < 200; round++) {
+            final PlayerStateMachine machine = new PlayerStateMachine();
+            machine.observe(Status.PLAYING);
+
+            final CountDownLatch start = new CountDownLatch(1);
+            final CountDownLatch done = new CountDownLatch(threads);
+            final AtomicInteger pauseWinners = new AtomicInteger();
+            final AtomicInteger stopWinners = new AtomicInteger();
+            for (int i = 0; i < threads; i++) {
+                final boolean isPause = (i % 2) == 0;
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                            if (isPause) {
+                                if (machine.command(StatusTransitions.CMD_PAUSE, Status.PAUSED) != null) pauseWinners.incrementAndGet();
+                            } else {
+                                if (machine.command(StatusTransitions.CMD_STOP, Status.STOPPED) != null) stopWinners.incrementAndGet();
+                            }
+                        } catch (InterruptedException ignored) {
+                        } finally {
+                            done.countDown();
+                        }
+                    }
+                }).start();
+            }
+            start.countDown();
+            done.await();
+
+            //暂停与停止只有一个从 PLAYING 转换成功，之后的暂停被拒绝，暂停后的停止仍然可以执行一次
+            final int winners = pauseWinners.get() + stopWinners.get();
+            assertTrue(pauseWinners.get() <= 1 && stopWinners.get() <= 1 && winners >= 1);
+            assertEquals((stopWinners.get() == 1) ? Status.STOPPED : Status.PAUSED, machine.status());
+            int transitions = 0;
+            for (long entry : machine.trace()) {
+                if (!PlayerStateMachine.isRejected(entry) && PlayerStateMachine.traceCause(entry) != PlayerStateMachine.CAUSE_PLAYER) {
+                    assertNotEquals(PlayerStateMachine.traceFrom(entry), PlayerStateMachine.traceTo(entry));
+                    transitions++;
+                }
+            }
+            assertEquals(winners, transitions);
+        }
+    }
+
+    @Test
+    public void trace_keepsNewestEntries() throws Exception {
+        final PlayerStateMachine machine = new PlayerStateMachine();
+        for (int i = 0; i < PlayerStateMachine.TRACE_SIZE + 10; i++) {
+            machine.observe((i % 2 == 0) ? Status.PAUSED : Status.PLAYING);
+        }
+
+        final long[] trace = machine.trace();
+        assertEquals(PlayerStateMachine.TRACE_SIZE, trace.length);
+        assertEquals(Status.PLAYING, PlayerStateMachine.traceTo(trace[trace.length - 1]));
+        for (int i = 1; i < trace.length; i++) {
+            assertEquals(PlayerStateMachine.traceTo(trace[i - 1]), PlayerStateMachine.traceFrom(trace[i]));
+        }
+        assertTrue(machine.dumpTrace().contains("PAUSED -> PLAYING (PLAYER)"));
+    }
+
+}
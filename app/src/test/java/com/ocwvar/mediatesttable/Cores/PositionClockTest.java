@@ -0,0 +1,83 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 播放位置时钟测试，使用指定的时间戳代替 System.nanoTime()，在本机JVM上执行
+ */
+public class PositionClockTest {
+
+    private static final long MS = 1_000_000L;
+
+    @Test
+    public void positionUs_interpolatesWithSpeed() throws Exception {
+        final PositionClock clock = new PositionClock();
+        assertEquals(PositionClock.UNSET, clock.positionUs(0L));
+
+        clock.anchor(1_000_000L, 0L, 1f, true);
+        assertEquals(1_000_000L, clock.positionUs(0L));
+        assertEquals(1_000_250L, clock.positionUs(250_000L));
+        assertEquals(1_010_000L, clock.positionUs(10 * MS));
+
+        clock.setSpeed(2f, 10 * MS);
+        assertEquals(1_010_000L, clock.positionUs(10 * MS));
+        assertEquals(1_030_000L, clock.positionUs(20 * MS));
+    }
+
+    @Test
+    public void positionUs_holdsWhilePaused() throws Exception {
+        final PositionClock clock = new PositionClock();
+        clock.anchor(5_000L, 0L, 1f, false);
+        assertEquals(5_000L, clock.positionUs(100 * MS));
+
+        //暂停时不修正误差
+        clock.sync(9_000L, 100 * MS);
+        assertEquals(5_000L, clock.positionUs(200 * MS));
+    }
+
+    @Test
+    public void sync_correctsSmallDriftWithoutJumping() throws Exception {
+        final PositionClock clock = new PositionClock();
+        clock.anchor(0L, 0L, 1f, true);
+
+        //播放器实际比推算位置快 20ms
+        long now = 0L;
+        long previous = 0L;
+        for (int i = 1; i <= 40; i++) {
+            now = i * 50 * MS;
+            final long reported = now / 1000L + 20_000L;
+            final long before = clock.positionUs(now);
+            clock.sync(reported, now);
+            //同步前后位置连续
+            assertEquals(before, clock.positionUs(now));
+            assertTrue(before >= previous);
+            previous = before;
+        }
+        final long error = (now / 1000L + 20_000L) - clock.positionUs(now);
+        assertTrue("误差应已基本消除：" + error, Math.abs(error) < 1_000L);
+    }
+
+    @Test
+    public void sync_reanchorsOnLargeError() throws Exception {
+        final PositionClock clock = new PositionClock();
+        clock.anchor(0L, 0L, 1f, true);
+
+        clock.sync(60_000_000L, 100 * MS);
+        assertEquals(60_000_000L, clock.positionUs(100 * MS));
+        assertEquals(60_010_000L, clock.positionUs(110 * MS));
+    }
+
+    @Test
+    public void positionUs_clampedToDuration() throws Exception {
+        final PositionClock clock = new PositionClock();
+        clock.setDurationUs(2_000_000L);
+        clock.anchor(1_990_000L, 0L, 1f, true);
+        assertEquals(2_000_000L, clock.positionUs(50 * MS));
+
+        clock.reset();
+        assertEquals(PositionClock.UNSET, clock.positionUs(50 * MS));
+    }
+
+}
@@ -0,0 +1,190 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * 异步准备结果测试，在本机JVM上执行
+ */
+public class PrepareHandleTest {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private ScheduledThreadPoolExecutor scheduler;
+
+    @Before
+    public void setUp() {
+        scheduler = new ScheduledThreadPoolExecutor(1);
+        scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void armTimeout_abortsOnceWhenNotFinished() throws Exception {
+        final PrepareHandle handle = new PrepareHandle("a.mp3");
+        final CountingRunnable abortAction = new CountingRunnable();
+        handle.setAbortAction(abortAction);
+        handle.armTimeout(20L, scheduler);
+
+        assertEquals(PrepareHandle.State.TIMEOUT, handle.await(5L, TimeUnit.SECONDS));
+        awaitScheduler();
+        assertTrue(handle.error() instanceof TimeoutException);
+        //超时后再完成不改变状态
+        assertFalse(handle.setReady());
+        assertFalse(handle.cancel());
+        assertEquals(1, abortAction.count.get());
+    }
+
+    @Test
+    public void finish_cancelsArmedTimeout() throws Exception {
+        final PrepareHandle handle = new PrepareHandle("a.mp3");
+        final CountingRunnable abortAction = new CountingRunnable();
+        handle.setAbortAction(abortAction);
+        handle.armTimeout(10_000L, scheduler);
+        assertEquals(1, scheduler.getQueue().size());
+
+        assertTrue(handle.setReady());
+        assertEquals(0, scheduler.getQueue().size());
+        assertEquals(PrepareHandle.State.READY, handle.state());
+        assertNull(handle.error());
+
+        //已完成时不再设置超时
+        handle.armTimeout(10L, scheduler);
+        assertEquals(0, scheduler.getQueue().size());
+        assertEquals(0, abortAction.count.get());
+    }
+
+    @Test
+    public void finish_racesTimeoutWithSingleOutcome() throws Exception {
+        for (int i = 0; i < 200; i++) {
+            final PrepareHandle handle = new PrepareHandle("a.mp3");
+            final CountingRunnable abortAction = new CountingRunnable();
+            handle.setAbortAction(abortAction);
+            handle.armTimeout(1L, scheduler);
+            TimeUnit.MICROSECONDS.sleep(i * 5L);
+            final boolean isReady = handle.setReady();
+
+            assertEquals(isReady ? PrepareHandle.State.READY : PrepareHandle.State.TIMEOUT, handle.await(5L, TimeUnit.SECONDS));
+            awaitScheduler();
+            //只有超时才释放资源
+            assertEquals(isReady ? 0 : 1, abortAction.count.get());
+        }
+    }
+
+    @Test
+    public void addListener_dispatchesOnceAfterFinish() throws Exception {
+        final PrepareHandle handle = new PrepareHandle("a.mp3");
+        final AtomicInteger before = new AtomicInteger();
+        final AtomicInteger after = new AtomicInteger();
+        handle.addListener(new CountingListener(before), DIRECT);
+
+        assertTrue(handle.setFailed(new RuntimeException("error")));
+        assertEquals(1, before.get());
+
+        //已完成时马上发送，之后的完成调用不再发送
+        handle.addListener(new CountingListener(after), DIRECT);
+        assertEquals(1, after.get());
+        assertFalse(handle.setReady());
+        assertFalse(handle.cancel());
+        assertEquals(1, before.get());
+        assertEquals(1, after.get());
+        assertEquals(PrepareHandle.State.FAILED, handle.state());
+    }
+
+    @Test
+    public void cancel_runsAbortActionOnce() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            final PrepareHandle handle = new PrepareHandle("a.mp3");
+            final CountingRunnable abortAction = new CountingRunnable();
+            handle.setAbortAction(abortAction);
+
+            //多个线程同时取消
+            final CountDownLatch start = new CountDownLatch(1);
+            final AtomicInteger cancelled = new AtomicInteger();
+            final Thread[] threads = new Thread[4];
+            for (int t = 0; t < threads.length; t++) {
+                threads[t] = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        if (handle.cancel()) {
+                            cancelled.incrementAndGet();
+                        }
+                    }
+                });
+                threads[t].start();
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            assertEquals(1, cancelled.get());
+            assertEquals(1, abortAction.count.get());
+            assertEquals(PrepareHandle.State.CANCELLED, handle.state());
+            assertFalse(handle.cancel());
+            assertEquals(1, abortAction.count.get());
+        }
+    }
+
+    /**
+     * 超时任务在通知完成后才释放资源，等待计时线程执行完之前的任务
+     */
+    private void awaitScheduler() throws Exception {
+        scheduler.submit(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }).get(5L, TimeUnit.SECONDS);
+    }
+
+    private static final class CountingRunnable implements Runnable {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public void run() {
+            count.incrementAndGet();
+        }
+
+    }
+
+    private static final class CountingListener implements PrepareHandle.Listener {
+
+        private final AtomicInteger count;
+
+        CountingListener(AtomicInteger count) {
+            this.count = count;
+        }
+
+        @Override
+        public void onPrepareFinished(PrepareHandle handle) {
+            count.incrementAndGet();
+        }
+
+    }
+
+}
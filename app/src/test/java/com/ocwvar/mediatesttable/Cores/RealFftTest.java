@@ -0,0 +1,122 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 实数FFT测试，与直接计算的离散傅里叶变换比较，在本机JVM上执行
+ */
+public class RealFftTest {
+
+    private static final int[] SIZES = {4, 8, 64, 1024};
+
+    @Test
+    public void forward_matchesNaiveDft_sine() throws Exception {
+        for (int size : SIZES) {
+            //不在频率点中心的正弦波加上直流分量，所有频率点都有数值
+            final float[] input = new float[size];
+            for (int i = 0; i < size; i++) {
+                input[i] = (float) (0.25 + Math.sin(2.0 * Math.PI * (size / 8.0 + 0.3) * i / size));
+            }
+            assertMatchesDft(input);
+        }
+    }
+
+    @Test
+    public void forward_matchesNaiveDft_impulse() throws Exception {
+        for (int size : SIZES) {
+            final float[] input = new float[size];
+            input[3] = 1f;
+            assertMatchesDft(input);
+
+            //脉冲的幅度谱是平坦的
+            final float[] power = new float[size / 2 + 1];
+            new RealFft(size).power(input, power, new float[size / 2 + 1]);
+            for (float value : power) {
+                assertEquals(1f, value, 1e-5f);
+            }
+        }
+    }
+
+    @Test
+    public void forward_matchesNaiveDft_noise() throws Exception {
+        final Random random = new Random(42L);
+        for (int size : SIZES) {
+            final float[] input = new float[size];
+            for (int i = 0; i < size; i++) {
+                input[i] = random.nextFloat() * 2f - 1f;
+            }
+            assertMatchesDft(input);
+        }
+    }
+
+    @Test
+    public void constructor_rejectsInvalidSize() throws Exception {
+        for (int size : new int[]{0, 2, 6, 1000}) {
+            try {
+                new RealFft(size);
+                fail("size " + size);
+            } catch (IllegalArgumentException expected) {
+                //长度不是 2 的幂或小于 4
+            }
+        }
+    }
+
+    /**
+     * 正向变换与功率谱都与参考实现比较，误差按输入的总幅度计算
+     */
+    private static void assertMatchesDft(float[] input) {
+        final int size = input.length;
+        final double[][] reference = naiveDft(input);
+        final RealFft fft = new RealFft(size);
+        final float[] real = new float[size / 2 + 1];
+        final float[] imaginary = new float[size / 2 + 1];
+
+        double sum = 0.0;
+        for (float value : input) {
+            sum += Math.abs(value);
+        }
+        final double tolerance = Math.max(sum, 1.0) * 1e-5;
+
+        //重复变换，检查工作数组不会影响下一次结果
+        for (int round = 0; round < 2; round++) {
+            fft.forward(input, real, imaginary);
+            for (int k = 0; k <= size / 2; k++) {
+                assertEquals("size " + size + " 实部 " + k, reference[0][k], real[k], tolerance);
+                assertEquals("size " + size + " 虚部 " + k, reference[1][k], imaginary[k], tolerance);
+            }
+        }
+
+        final float[] power = new float[size / 2 + 1];
+        fft.power(input, power, new float[size / 2 + 1]);
+        for (int k = 0; k <= size / 2; k++) {
+            final double expected = reference[0][k] * reference[0][k] + reference[1][k] * reference[1][k];
+            assertEquals("size " + size + " 功率 " + k, expected, power[k], tolerance * (Math.sqrt(expected) * 2.0 + tolerance));
+        }
+    }
+
+    /**
+     * 参考实现：直接计算离散傅里叶变换
+     *
+     * @return [0] 实部  [1] 虚部，长度为输入长度的一半加一
+     */
+    private static double[][] naiveDft(float[] samples) {
+        final int length = samples.length;
+        final double[][] result = new double[2][length / 2 + 1];
+        for (int k = 0; k <= length / 2; k++) {
+            double real = 0.0, imaginary = 0.0;
+            for (int n = 0; n < length; n++) {
+                final double angle = -2.0 * Math.PI * k * n / length;
+                real += samples[n] * Math.cos(angle);
+                imaginary += samples[n] * Math.sin(angle);
+            }
+            result[0][k] = real;
+            result[1][k] = imaginary;
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 拖动跳转控制测试，在本机JVM上执行
+ */
+public class ScrubSeekerTest {
+
+    @Test
+    public void scrubTo_keepsOnlyLatestPositionWhileSeeking() throws Exception {
+        final CoreMetrics metrics = new CoreMetrics();
+        final List<String> log = new ArrayList<>();
+        final ScrubSeeker seeker = new ScrubSeeker(metrics, record(log));
+
+        seeker.scrubTo(1000L);
+        seeker.scrubTo(2000L);
+        seeker.scrubTo(3000L);
+        seeker.scrubTo(4000L);
+        assertTrue(seeker.hasPending());
+
+        //上一次跳转完成后只执行最后一个位置
+        metrics.ready();
+        seeker.seekCompleted();
+        metrics.ready();
+        seeker.seekCompleted();
+        assertFalse(seeker.hasPending());
+
+        final String[] expected = {"sync 1000", "sync 4000"};
+        assertArrayEquals(expected, log.toArray(new String[log.size()]));
+        assertEquals(2L, metrics.scrubSeekCount());
+        assertEquals(2L, metrics.scrubSkippedCount());
+        assertEquals(2L, metrics.count(CoreMetrics.Metric.SCRUB_SEEK));
+        assertEquals(0L, metrics.seekCount());
+    }
+
+    @Test
+    public void seekTo_dropsPendingPositionAndSeeksExactly() throws Exception {
+        final CoreMetrics metrics = new CoreMetrics();
+        final List<String> log = new ArrayList<>();
+        final ScrubSeeker seeker = new ScrubSeeker(metrics, record(log));
+
+        seeker.scrubTo(1000L);
+        seeker.scrubTo(2000L);
+        //松开进度条，精确跳转不等待拖动中的跳转完成
+        seeker.seekTo(2500L);
+        assertFalse(seeker.hasPending());
+
+        metrics.ready();
+        seeker.seekCompleted();
+
+        final String[] expected = {"sync 1000", "exact 2500"};
+        assertArrayEquals(expected, log.toArray(new String[log.size()]));
+        assertEquals(1L, metrics.scrubSkippedCount());
+        assertEquals(1L, metrics.seekCount());
+        //精确跳转取消了拖动跳转的计时
+        assertEquals(0L, metrics.count(CoreMetrics.Metric.SCRUB_SEEK));
+        assertEquals(1L, metrics.count(CoreMetrics.Metric.SEEK));
+    }
+
+    @Test
+    public void reset_discardsPendingPosition() throws Exception {
+        final CoreMetrics metrics = new CoreMetrics();
+        final List<String> log = new ArrayList<>();
+        final ScrubSeeker seeker = new ScrubSeeker(metrics, record(log));
+
+        seeker.scrubTo(1000L);
+        seeker.scrubTo(2000L);
+        seeker.reset();
+        seeker.seekCompleted();
+        seeker.scrubTo(3000L);
+
+        final String[] expected = {"sync 1000", "sync 3000"};
+        assertArrayEquals(expected, log.toArray(new String[log.size()]));
+    }
+
+    private static ScrubSeeker.Target record(final List<String> log) {
+        return new ScrubSeeker.Target() {
+            @Override
+            public void seekTo(long ms, boolean isExact) {
+                log.add((isExact ? "exact " : "sync ") + ms);
+            }
+        };
+    }
+
+}
@@ -0,0 +1,118 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * 音效混音器测试，在本机JVM上执行
+ */
+public class SfxMixerTest {
+
+    private static final int SAMPLE_RATE = 48000;
+    private static final int FRAMES = 64;
+
+    @Test
+    public void mix_sumsVoicesWithVolume() throws Exception {
+        final SfxMixer mixer = new SfxMixer(4, FRAMES);
+        final short[] output = new short[FRAMES * 2];
+
+        mixer.trigger(mono(1000, FRAMES), 1f, 0.5f);
+        mixer.trigger(stereo(200, -300, FRAMES), 1f, 1f);
+        assertEquals(2, mixer.activeVoices());
+
+        //两个声部都在本次混音中播放完毕
+        assertEquals(0, mixer.mix(output, FRAMES));
+        for (int frame = 0; frame < FRAMES; frame++) {
+            assertEquals(1200, output[frame * 2]);
+            assertEquals(200, output[frame * 2 + 1]);
+        }
+
+        mixer.mix(output, FRAMES);
+        for (short sample : output) {
+            assertEquals(0, sample);
+        }
+    }
+
+    @Test
+    public void mix_continuesAcrossBuffersAndClips() throws Exception {
+        final SfxMixer mixer = new SfxMixer(2, FRAMES);
+        final short[] output = new short[FRAMES * 2];
+
+        mixer.trigger(mono(Short.MAX_VALUE, FRAMES + FRAMES / 2), 1f, 1f);
+        mixer.trigger(mono(Short.MAX_VALUE, FRAMES * 2), 1f, 1f);
+
+        assertEquals(2, mixer.mix(output, FRAMES));
+        assertEquals(Short.MAX_VALUE, output[0]);
+
+        //第一个声部在第二次混音的中途结束
+        assertEquals(0, mixer.mix(output, FRAMES));
+        assertEquals(Short.MAX_VALUE, output[(FRAMES / 2 - 1) * 2]);
+        assertEquals(Short.MAX_VALUE, output[(FRAMES - 1) * 2]);
+    }
+
+    @Test
+    public void trigger_dropsWhenVoicesAreExhausted() throws Exception {
+        final SfxMixer mixer = new SfxMixer(2, FRAMES);
+        final SfxClip clip = mono(100, FRAMES * 4);
+
+        assertNotEquals(SfxMixer.NO_VOICE, mixer.trigger(clip, 1f, 1f));
+        assertNotEquals(SfxMixer.NO_VOICE, mixer.trigger(clip, 1f, 1f));
+        assertEquals(SfxMixer.NO_VOICE, mixer.trigger(clip, 1f, 1f));
+        assertEquals(3, mixer.triggerCount());
+        assertEquals(1, mixer.droppedCount());
+    }
+
+    @Test
+    public void stop_ignoresReusedVoice() throws Exception {
+        final SfxMixer mixer = new SfxMixer(1, FRAMES);
+        final short[] output = new short[FRAMES * 2];
+        final SfxClip clip = mono(100, FRAMES * 4);
+
+        final int first = mixer.trigger(clip, 1f, 1f);
+        assertTrue(mixer.stop(first));
+        assertEquals(0, mixer.mix(output, FRAMES));
+        assertEquals(0, output[0]);
+
+        //同一个声部被重新占用后，旧的编号不会停止新的播放
+        final int second = mixer.trigger(clip, 1f, 1f);
+        assertNotEquals(first, second);
+        assertFalse(mixer.stop(first));
+        assertEquals(1, mixer.mix(output, FRAMES));
+        assertEquals(100, output[0]);
+    }
+
+    @Test
+    public void fromPcm_resamplesAndDropsExtraChannels() throws Exception {
+        //三声道 24kHz → 立体声 48kHz
+        final short[] pcm = new short[]{0, 100, 7, 1000, 1100, 7, 2000, 2100, 7};
+        final SfxClip clip = SfxClip.fromPcm("test", pcm, pcm.length, 3, SAMPLE_RATE / 2, SAMPLE_RATE);
+
+        assertEquals(2, clip.channelCount());
+        assertEquals(6, clip.frameCount);
+        assertEquals(0, clip.samples.get(0));
+        assertEquals(100, clip.samples.get(1));
+        assertEquals(500, clip.samples.get(2));
+        assertEquals(600, clip.samples.get(3));
+        assertEquals(1000, clip.samples.get(4));
+        assertEquals(2000, clip.samples.get(10));
+    }
+
+    private static SfxClip mono(int value, int frames) {
+        final short[] samples = new short[frames];
+        Arrays.fill(samples, (short) value);
+        return SfxClip.wrap("mono", samples, 1, SAMPLE_RATE);
+    }
+
+    private static SfxClip stereo(int left, int right, int frames) {
+        final short[] samples = new short[frames * 2];
+        for (int frame = 0; frame < frames; frame++) {
+            samples[frame * 2] = (short) left;
+            samples[frame * 2 + 1] = (short) right;
+        }
+        return SfxClip.wrap("stereo", samples, 2, SAMPLE_RATE);
+    }
+
+}
@@ -0,0 +1,196 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * 频谱数据解码器测试，在本机JVM上执行
+ */
+public class SpectrumDecoderTest {
+
+    private static final int CAPTURE_SIZE = 1024;
+    private static final int SAMPLE_RATE = 44100;
+
+    /**
+     * 参考FFT中最大频率点量化后的数值
+     */
+    private static final double QUANTIZE_PEAK = 100.0;
+
+    @Test
+    public void decode_matchesReferenceFft() throws Exception {
+        //不在频率点中心的正弦波，会产生频谱泄漏，用于检查所有频段
+        final double[][] reference = referenceFft(sine(1234.5, CAPTURE_SIZE));
+        final byte[] fft = toVisualizerFormat(reference);
+
+        for (int bandCount : new int[]{32, 64, 128}) {
+            final SpectrumBands bands = new SpectrumBands(CAPTURE_SIZE / 2, bandCount);
+            final float[] output = new float[bandCount];
+            assertTrue(new SpectrumDecoder(false).decode(fft, output));
+
+            int expectedPeakBand = -1;
+            double expectedPeak = -1.0;
+            for (int band = 0; band < bandCount; band++) {
+                //参考值：频段内最大幅度，满量程为 1
+                double expected = 0.0;
+                for (int bin = bands.bandStart[band]; bin < bands.bandEnd[band]; bin++) {
+                    expected = Math.max(expected, Math.hypot(reference[0][bin], reference[1][bin]) / 128.0);
+                }
+                //误差不超过量化误差
+                assertEquals("频段 " + band + "/" + bandCount, expected, output[band], Math.sqrt(2.0) * 0.5 / 128.0);
+
+                if (expected > expectedPeak) {
+                    expectedPeak = expected;
+                    expectedPeakBand = band;
+                }
+            }
+
+            assertEquals(expectedPeakBand, argMax(output));
+            final float center = bands.centerFrequency(expectedPeakBand, SAMPLE_RATE);
+            final float binWidth = SAMPLE_RATE / (float) CAPTURE_SIZE;
+            assertTrue("峰值频段应包含正弦波频率：" + center, Math.abs(center - 1234.5f) <= binWidth * (bands.bandEnd[expectedPeakBand] - bands.bandStart[expectedPeakBand]));
+        }
+    }
+
+    @Test
+    public void decode_decibelOutput() throws Exception {
+        final double[][] reference = referenceFft(sine(SAMPLE_RATE / (double) CAPTURE_SIZE * 40.0, CAPTURE_SIZE));
+        final byte[] fft = toVisualizerFormat(reference);
+
+        final float[] magnitude = new float[64];
+        final float[] decibel = new float[64];
+        assertTrue(new SpectrumDecoder(false).decode(fft, magnitude));
+        assertTrue(new SpectrumDecoder(true).decode(fft, decibel));
+
+        for (int band = 0; band < magnitude.length; band++) {
+            if (magnitude[band] <= Math.pow(10.0, SpectrumDecoder.DB_FLOOR / 20.0)) {
+                assertEquals(SpectrumDecoder.DB_FLOOR, decibel[band], 0f);
+            } else {
+                assertEquals(20.0 * Math.log10(magnitude[band]), decibel[band], 1e-3);
+            }
+        }
+        //正好落在频率点中心的正弦波，峰值为量化时的满值
+        assertEquals(20.0 * Math.log10(QUANTIZE_PEAK / 128.0), decibel[argMax(decibel)], 1e-3);
+    }
+
+    @Test
+    public void decode_rejectsInvalidInput() throws Exception {
+        final SpectrumDecoder decoder = new SpectrumDecoder(false);
+        assertFalse(decoder.decode(null, new float[IAudioCore.SPECTRUM_SIZE]));
+        assertFalse(decoder.decode(new byte[CAPTURE_SIZE], new float[0]));
+        assertFalse(decoder.decode(new byte[CAPTURE_SIZE], new float[CAPTURE_SIZE / 2]));
+    }
+
+    @Test
+    public void bands_coverAllBinsInOrder() throws Exception {
+        for (int bandCount : new int[]{1, 32, 64, 128, CAPTURE_SIZE / 2 - 1}) {
+            final SpectrumBands bands = new SpectrumBands(CAPTURE_SIZE / 2, bandCount);
+            assertEquals(1, bands.bandStart[0]);
+            assertEquals(CAPTURE_SIZE / 2, bands.bandEnd[bandCount - 1]);
+            for (int band = 0; band < bandCount; band++) {
+                assertTrue(bands.bandEnd[band] > bands.bandStart[band]);
+                if (band > 0) {
+                    assertEquals(bands.bandEnd[band - 1], bands.bandStart[band]);
+                }
+            }
+            if (bandCount > 1 && bandCount < CAPTURE_SIZE / 2 - 1) {
+                //对数分布：高频频段比低频频段宽
+                assertTrue(bands.bandEnd[bandCount - 1] - bands.bandStart[bandCount - 1] > bands.bandEnd[0] - bands.bandStart[0]);
+            }
+        }
+    }
+
+    @Test
+    public void decode_steadyStateDoesNotAllocate() throws Exception {
+        final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) return;
+        final com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        if (!threadBean.isThreadAllocatedMemorySupported()) return;
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        final long threadID = Thread.currentThread().getId();
+        final SpectrumDecoder decoder = new SpectrumDecoder(true);
+        final byte[] fft = toVisualizerFormat(referenceFft(sine(440.0, CAPTURE_SIZE)));
+        final float[] output = new float[IAudioCore.SPECTRUM_SIZE];
+
+        //预热，让JIT完成编译
+        for (int i = 0; i < 20000; i++) {
+            decoder.decode(fft, output);
+        }
+
+        //计算测量本身产生的分配量
+        long start = threadBean.getThreadAllocatedBytes(threadID);
+        final long overhead = threadBean.getThreadAllocatedBytes(threadID) - start;
+
+        start = threadBean.getThreadAllocatedBytes(threadID);
+        for (int i = 0; i < 10000; i++) {
+            decoder.decode(fft, output);
+        }
+        final long allocated = threadBean.getThreadAllocatedBytes(threadID) - start - overhead;
+
+        assertEquals("稳定状态下每次解码都不应分配内存", 0L, allocated);
+    }
+
+    private static double[] sine(double frequency, int length) {
+        final double[] samples = new double[length];
+        for (int i = 0; i < length; i++) {
+            samples[i] = Math.sin(2.0 * Math.PI * frequency * i / SAMPLE_RATE);
+        }
+        return samples;
+    }
+
+    /**
+     * 参考实现：直接计算离散傅里叶变换
+     *
+     * @return [0] 实部  [1] 虚部，长度为输入长度的一半
+     */
+    private static double[][] referenceFft(double[] samples) {
+        final int length = samples.length;
+        final double[][] result = new double[2][length / 2];
+        double peak = 0.0;
+        for (int k = 0; k < length / 2; k++) {
+            double real = 0.0, imaginary = 0.0;
+            for (int n = 0; n < length; n++) {
+                final double angle = -2.0 * Math.PI * k * n / length;
+                real += samples[n] * Math.cos(angle);
+                imaginary += samples[n] * Math.sin(angle);
+            }
+            result[0][k] = real;
+            result[1][k] = imaginary;
+            peak = Math.max(peak, Math.hypot(real, imaginary));
+        }
+
+        //缩放至 8 位数据范围，之后的参考值使用量化前的数据
+        final double scale = QUANTIZE_PEAK / peak;
+        for (int k = 0; k < length / 2; k++) {
+            result[0][k] *= scale;
+            result[1][k] *= scale;
+        }
+        return result;
+    }
+
+    /**
+     * 将参考FFT结果量化为 Visualizer 的数据格式
+     */
+    private static byte[] toVisualizerFormat(double[][] reference) {
+        final int binCount = reference[0].length;
+        final byte[] bytes = new byte[binCount * 2];
+        bytes[0] = (byte) Math.round(reference[0][0]);
+        for (int k = 1; k < binCount; k++) {
+            bytes[2 * k] = (byte) Math.round(reference[0][k]);
+            bytes[2 * k + 1] = (byte) Math.round(reference[1][k]);
+        }
+        return bytes;
+    }
+
+    private static int argMax(float[] values) {
+        int index = 0;
+        for (int i = 1; i < values.length; i++) {
+            if (values[i] > values[index]) index = i;
+        }
+        return index;
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 变速变调测试，使用正弦波检查输出长度与频率，在本机JVM上执行
+ */
+public class TimeStretcherTest {
+
+    private static final int SAMPLE_RATE = 44100;
+    private static final int CHANNELS = 2;
+    private static final double FREQUENCY = 440.0;
+
+    @Test
+    public void unity_passesThroughUnchanged() throws Exception {
+        final short[] input = sine(SAMPLE_RATE / 2);
+        final short[] output = stretch(input, 1.0f, 1.0f);
+
+        assertArrayEquals(input, output);
+    }
+
+    @Test
+    public void speed_changesLengthAndKeepsPitch() throws Exception {
+        final short[] input = sine(SAMPLE_RATE * 2);
+        for (float speed : new float[]{0.5f, 1.5f, 2.0f}) {
+            final short[] output = stretch(input, speed, 1.0f);
+            final int frames = output.length / CHANNELS;
+
+            assertEquals(SAMPLE_RATE * 2 / speed, frames, SAMPLE_RATE * 0.02);
+            assertEquals(FREQUENCY, frequency(output), FREQUENCY * 0.02);
+        }
+    }
+
+    @Test
+    public void pitch_changesFrequencyAndKeepsLength() throws Exception {
+        final short[] input = sine(SAMPLE_RATE * 2);
+        final short[] output = stretch(input, 1.0f, 1.5f);
+
+        assertEquals(SAMPLE_RATE * 2, output.length / CHANNELS, SAMPLE_RATE * 0.02);
+        assertEquals(FREQUENCY * 1.5, frequency(output), FREQUENCY * 1.5 * 0.02);
+    }
+
+    /**
+     * 以不规则的块大小写入与读取，模拟播放时的缓冲区
+     */
+    private static short[] stretch(short[] input, float speed, float pitch) {
+        final TimeStretcher stretcher = new TimeStretcher(SAMPLE_RATE, CHANNELS);
+        stretcher.setParameters(speed, pitch);
+
+        final int inputFrames = input.length / CHANNELS;
+        final short[] output = new short[(int) (inputFrames / speed * 1.2f + SAMPLE_RATE) * CHANNELS];
+        int written = 0;
+        int read = 0;
+        int chunk = 0;
+        while (!stretcher.isEnded()) {
+            if (written < inputFrames) {
+                final int frames = Math.min(256 + (chunk++ % 5) * 300, inputFrames - written);
+                written += stretcher.queueInput(input, written * CHANNELS, frames);
+            } else {
+                stretcher.queueEndOfStream();
+            }
+            read += stretcher.readOutput(output, read * CHANNELS, Math.min(700, output.length / CHANNELS - read));
+        }
+
+        final short[] result = new short[read * CHANNELS];
+        System.arraycopy(output, 0, result, 0, result.length);
+        return result;
+    }
+
+    private static short[] sine(int frames) {
+        final short[] samples = new short[frames * CHANNELS];
+        for (int frame = 0; frame < frames; frame++) {
+            final short value = (short) (Math.sin(2.0 * Math.PI * FREQUENCY * frame / SAMPLE_RATE) * 12000.0);
+            for (int channel = 0; channel < CHANNELS; channel++) {
+                samples[frame * CHANNELS + channel] = value;
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * @return 左声道中间部分按上升过零点估计的频率
+     */
+    private static double frequency(short[] samples) {
+        final int frames = samples.length / CHANNELS;
+        final int start = frames / 4;
+        final int end = frames * 3 / 4;
+        int crossings = 0;
+        for (int frame = start + 1; frame < end; frame++) {
+            if (samples[(frame - 1) * CHANNELS] < 0 && samples[frame * CHANNELS] >= 0) {
+                crossings++;
+            }
+        }
+        return crossings * (double) SAMPLE_RATE / (end - start);
+    }
+
+}
@@ -0,0 +1,168 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import android.net.Uri;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-19 下午3:00
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   本地文件读取吞吐量基准测试
+ *
+ * 每次操作读取 readLength 字节，到达文件末尾后从头开始，吞吐量 × readLength 即为读取速度
+ * fileInputStream   原来的 content:// 地址读取方式，ContentDataSource 最终从 ParcelFileDescriptor 的 FileInputStream 读取
+ * mappedDataSource  MappedFileDataSource 从内存映射读取
+ *
+ * 两者都读取已在页缓存中的文件，只比较系统调用与复制的开销，不包括 ContentResolver 打开文件时的跨进程调用
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocalFileReadBenchmark {
+
+    private static final int FILE_SIZE = 32 * 1024 * 1024;
+
+    @Param({"4096", "65536"})
+    public int readLength;
+
+    private File file;
+    private byte[] buffer;
+
+    private FileInputStream inputStream;
+    private MappedFileDataSource dataSource;
+    private DataSpec dataSpec;
+
+    @Setup
+    public void setup() throws IOException {
+        file = File.createTempFile("LocalFileReadBenchmark", ".flv");
+        final byte[] data = new byte[1024 * 1024];
+        new Random(FILE_SIZE).nextBytes(data);
+        final FileOutputStream outputStream = new FileOutputStream(file);
+        try {
+            for (int written = 0; written < FILE_SIZE; written += data.length) {
+                outputStream.write(data);
+            }
+        } finally {
+            outputStream.close();
+        }
+
+        buffer = new byte[readLength];
+        inputStream = new FileInputStream(file);
+        dataSource = new MappedFileDataSource(new UnsupportedDataSource());
+        dataSpec = new DataSpec(new FileUri(file), 0L, C.LENGTH_UNSET);
+        dataSource.open(dataSpec);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        inputStream.close();
+        dataSource.close();
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    @Benchmark
+    public int fileInputStream() throws IOException {
+        int count = inputStream.read(buffer, 0, readLength);
+        if (count < 0) {
+            inputStream.close();
+            inputStream = new FileInputStream(file);
+            count = inputStream.read(buffer, 0, readLength);
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int mappedDataSource() throws IOException {
+        int count = dataSource.read(buffer, 0, readLength);
+        if (count == C.RESULT_END_OF_INPUT) {
+            dataSource.close();
+            dataSource.open(dataSpec);
+            count = dataSource.read(buffer, 0, readLength);
+        }
+        return count;
+    }
+
+    /**
+     * 本地文件地址
+     */
+    private static final class FileUri extends Uri {
+
+        private final File file;
+
+        FileUri(File file) {
+            this.file = file;
+        }
+
+        @Override
+        public String getScheme() {
+            return "file";
+        }
+
+        @Override
+        public String getPath() {
+            return file.getPath();
+        }
+
+        @Override
+        public String toString() {
+            return "file://" + file.getPath();
+        }
+
+    }
+
+    /**
+     * 基准测试只读取本地文件，不会使用上游数据源
+     */
+    private static final class UnsupportedDataSource implements DataSource {
+
+        @Override
+        public long open(DataSpec dataSpec) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int readLength) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Uri getUri() {
+            return null;
+        }
+
+        @Override
+        public void close() {
+        }
+
+    }
+
+}
@@ -0,0 +1,132 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-12 下午2:40
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   效果指令分发基准测试
+ *
+ * 只测量 applyPlaybackEffects 中指令解析与分发的开销，执行对象与定时任务均为空操作
+ * parse：每次重新解析指令，即没有缓存时的开销
+ * dispatch：命中解析缓存后的执行开销，即重复执行相同指令时的开销
+ * run：直接执行已解析的指令，不包括缓存查找
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlaybackEffectsBenchmark {
+
+    @Param({"SP_N", "SP_1.25_0.9", "VO_0.5", "VI_ON;SP_D;VO_0.8", "@500:SP_S", "XX_UNKNOWN"})
+    public String code;
+
+    private PlaybackEffects effects;
+    private EffectProgram program;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        effects = new PlaybackEffects(new BlackholeTarget(blackhole), new DiscardScheduler());
+        program = effects.compile(code);
+    }
+
+    @Benchmark
+    public EffectProgram parse() {
+        return EffectProgram.parse(code);
+    }
+
+    @Benchmark
+    public String dispatch() {
+        return effects.apply(code);
+    }
+
+    @Benchmark
+    public void run() {
+        effects.run(program);
+        //定时批次不会执行，清空记录避免列表增长
+        effects.cancel();
+    }
+
+    /**
+     * 丢弃所有定时任务
+     */
+    private static final class DiscardScheduler implements PlaybackEffects.Scheduler {
+
+        @Override
+        public void postDelayed(Runnable task, long delayMillis) {
+        }
+
+        @Override
+        public void removeCallbacks(Runnable task) {
+        }
+
+    }
+
+    /**
+     * 将所有操作交给 Blackhole，避免分发过程被JIT优化掉
+     */
+    private static final class BlackholeTarget implements PlaybackEffects.Target {
+
+        private final Blackhole blackhole;
+
+        BlackholeTarget(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void enableVisualizer() {
+            blackhole.consume(1);
+        }
+
+        @Override
+        public void disableVisualizer() {
+            blackhole.consume(2);
+        }
+
+        @Override
+        public void enableSpectrumStream() {
+            blackhole.consume(3);
+        }
+
+        @Override
+        public void disableSpectrumStream() {
+            blackhole.consume(4);
+        }
+
+        @Override
+        public void enablePcmAnalyzer() {
+            blackhole.consume(5);
+        }
+
+        @Override
+        public void setPlaybackParameters(float speed, float pitch) {
+            blackhole.consume(speed);
+            blackhole.consume(pitch);
+        }
+
+        @Override
+        public void setVolume(float volume, long rampMillis) {
+            blackhole.consume(volume);
+            blackhole.consume(rampMillis);
+        }
+
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-11 上午10:30
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   RealFft 变换吞吐量基准测试
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RealFftBenchmark {
+
+    @Param({"512", "1024", "2048", "4096"})
+    public int size;
+
+    private RealFft fft;
+    private float[] input;
+    private float[] outReal;
+    private float[] outImaginary;
+
+    @Setup
+    public void setup() {
+        fft = new RealFft(size);
+        input = new float[size];
+        outReal = new float[size / 2 + 1];
+        outImaginary = new float[size / 2 + 1];
+
+        final Random random = new Random(size);
+        for (int i = 0; i < size; i++) {
+            input[i] = random.nextFloat() * 2f - 1f;
+        }
+    }
+
+    @Benchmark
+    public float[] forward() {
+        fft.forward(input, outReal, outImaginary);
+        return outReal;
+    }
+
+    @Benchmark
+    public float[] power() {
+        fft.power(input, outReal, outImaginary);
+        return outReal;
+    }
+
+}
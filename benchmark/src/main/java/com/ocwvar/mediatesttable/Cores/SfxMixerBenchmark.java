@@ -0,0 +1,75 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-21 下午4:20
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   音效混音器基准测试
+ *
+ * 每次操作混合一个 256 帧的缓冲区，播放完毕的声部马上重新触发，始终保持 voices 个声部同时播放
+ * 48kHz 下每个缓冲区的时长为 5.3ms，单次操作耗时需要远小于此值；gc.alloc.rate.norm 应为 0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SfxMixerBenchmark {
+
+    private static final int SAMPLE_RATE = 48000;
+    private static final int FRAMES_PER_BUFFER = 256;
+
+    @Param({"8", "32"})
+    public int voices;
+
+    private SfxMixer mixer;
+    private SfxClip[] clips;
+    private short[] output;
+    private int nextClip = 0;
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(SAMPLE_RATE);
+        //长度 50 ~ 500ms 的单声道与立体声音效
+        clips = new SfxClip[16];
+        for (int i = 0; i < clips.length; i++) {
+            final int channelCount = (i % 2) + 1;
+            final int frames = SAMPLE_RATE / 20 + random.nextInt(SAMPLE_RATE * 9 / 20);
+            final short[] samples = new short[frames * channelCount];
+            for (int j = 0; j < samples.length; j++) {
+                samples[j] = (short) (random.nextGaussian() * 4000.0);
+            }
+            clips[i] = SfxClip.wrap("clip" + i, samples, channelCount, SAMPLE_RATE);
+        }
+        mixer = new SfxMixer(voices, FRAMES_PER_BUFFER);
+        output = new short[FRAMES_PER_BUFFER * 2];
+    }
+
+    @Benchmark
+    public short[] triggerAndMix() {
+        while (mixer.activeVoices() < voices) {
+            mixer.trigger(clips[nextClip], 0.8f, 0.6f);
+            nextClip = (nextClip + 1) % clips.length;
+        }
+        mixer.mix(output, FRAMES_PER_BUFFER);
+        return output;
+    }
+
+}
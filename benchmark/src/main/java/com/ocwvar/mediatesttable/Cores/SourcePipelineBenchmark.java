@@ -0,0 +1,163 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import com.google.android.exoplayer2.extractor.DefaultExtractorsFactory;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.ExtractorInput;
+import com.google.android.exoplayer2.extractor.ExtractorsFactory;
+import com.google.android.exoplayer2.upstream.DataSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-17 下午2:00
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   资源准备过程中解析器生成与格式探测的基准测试
+ *
+ * 按 ExoPlayer 选择解析器的方式依次探测，直到探测成功：
+ * defaultExtractors  原来的做法，每次准备都生成 DefaultExtractorsFactory 并尝试全部格式
+ * restrictedFormats  只尝试音频核心使用的格式
+ * rememberedFormat   只尝试音频核心使用的格式，并最先尝试上一次探测成功的格式
+ *
+ * 解析器为 src/stubs 中的替代类，探测窗口大小与实际解析器一致
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SourcePipelineBenchmark {
+
+    //与 EXOCore 默认使用的格式一致
+    private static final ContainerFormat[] AUDIO_FORMATS = {ContainerFormat.MP3, ContainerFormat.OGG, ContainerFormat.WAV, ContainerFormat.MP4, ContainerFormat.ADTS};
+
+    @Param({"MP3", "OGG", "WAV"})
+    public String format;
+
+    private MemoryExtractorInput input;
+    private ExtractorsFactory restrictedFactory;
+    private ExtractorsFactory rememberedFactory;
+
+    @Setup
+    public void setup() throws IOException, InterruptedException {
+        final byte[] sample = new byte[64 * 1024];
+        new Random(format.hashCode()).nextBytes(sample);
+        final byte[] header = header(ContainerFormat.valueOf(format));
+        System.arraycopy(header, 0, sample, 0, header.length);
+        input = new MemoryExtractorInput(sample);
+
+        final SourcePipeline pipeline = new SourcePipeline(new DataSource.Factory() {
+            @Override
+            public DataSource createDataSource() {
+                throw new UnsupportedOperationException();
+            }
+        }, AUDIO_FORMATS);
+        restrictedFactory = pipeline.extractorsFactory(null);
+        rememberedFactory = pipeline.extractorsFactory("file:///sample." + format);
+
+        //第一次准备，记录探测成功的格式
+        select(rememberedFactory.createExtractors());
+    }
+
+    @Benchmark
+    public Extractor defaultExtractors() throws IOException, InterruptedException {
+        return select(new DefaultExtractorsFactory().createExtractors());
+    }
+
+    @Benchmark
+    public Extractor restrictedFormats() throws IOException, InterruptedException {
+        return select(restrictedFactory.createExtractors());
+    }
+
+    @Benchmark
+    public Extractor rememberedFormat() throws IOException, InterruptedException {
+        return select(rememberedFactory.createExtractors());
+    }
+
+    /**
+     * 与 ExoPlayer 中 ExtractorHolder.selectExtractor() 的过程一致
+     *
+     * @param extractors 解析器
+     * @return 探测成功的解析器
+     */
+    private Extractor select(Extractor[] extractors) throws IOException, InterruptedException {
+        for (Extractor extractor : extractors) {
+            try {
+                if (extractor.sniff(input)) {
+                    return extractor;
+                }
+            } finally {
+                input.resetPeekPosition();
+            }
+        }
+        throw new IllegalStateException("没有可用的解析器：" + format);
+    }
+
+    /**
+     * @param format 封装格式
+     * @return 替代解析器可以识别的文件头
+     */
+    private static byte[] header(ContainerFormat format) {
+        switch (format) {
+            case MP3:
+                return new byte[]{'I', 'D', '3'};
+            case OGG:
+                return new byte[]{'O', 'g', 'g', 'S'};
+            case WAV:
+                return new byte[]{'R', 'I', 'F', 'F'};
+            default:
+                throw new IllegalArgumentException(format.name());
+        }
+    }
+
+    /**
+     * 内存中的解析器输入，只支持格式探测
+     */
+    private static final class MemoryExtractorInput implements ExtractorInput {
+
+        private final byte[] data;
+        private int peekPosition = 0;
+
+        MemoryExtractorInput(byte[] data) {
+            this.data = data;
+        }
+
+        @Override
+        public boolean peekFully(byte[] target, int offset, int length, boolean allowEndOfInput) {
+            if (peekPosition + length > data.length) {
+                return false;
+            }
+            System.arraycopy(data, peekPosition, target, offset, length);
+            peekPosition += length;
+            return true;
+        }
+
+        @Override
+        public void resetPeekPosition() {
+            peekPosition = 0;
+        }
+
+        @Override
+        public long getLength() {
+            return data.length;
+        }
+
+    }
+
+}
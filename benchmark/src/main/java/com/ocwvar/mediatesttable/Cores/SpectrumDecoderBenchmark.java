@@ -0,0 +1,65 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-12 下午2:10
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   频谱数据解码吞吐量基准测试
+ *
+ * 对应 EXOCore.VisualizerLoader 中每一帧执行的频谱转换
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpectrumDecoderBenchmark {
+
+    /**
+     * Visualizer 的捕获大小
+     */
+    @Param({"512", "1024"})
+    public int captureSize;
+
+    @Param({"32", "64", "128"})
+    public int bandCount;
+
+    @Param({"false", "true"})
+    public boolean decibel;
+
+    private SpectrumDecoder decoder;
+    private byte[] fft;
+    private float[] output;
+
+    @Setup
+    public void setup() {
+        decoder = new SpectrumDecoder(decibel);
+        fft = new byte[captureSize];
+        output = new float[bandCount];
+        new Random(captureSize).nextBytes(fft);
+    }
+
+    @Benchmark
+    public float[] decode() {
+        decoder.decode(fft, output);
+        return output;
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import com.google.android.exoplayer2.ExoPlayer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-12 下午3:05
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   播放状态转换基准测试
+ *
+ * 按一次完整播放过程中EXO播放器回调的顺序执行状态转换
+ * stateMachineCycle 通过 PlayerStateMachine 执行同样的过程，包括状态字的 CAS 与环形记录的写入，gc.alloc.rate.norm 应为 0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatusTransitionsBenchmark {
+
+    //加载 → 缓冲 → 就绪 → 播放 → 缓冲 → 播放 → 暂停 → 停止 → 结束 → 释放
+    private static final int[] STATES = {
+            ExoPlayer.STATE_BUFFERING, ExoPlayer.STATE_READY, ExoPlayer.STATE_READY, ExoPlayer.STATE_BUFFERING,
+            ExoPlayer.STATE_READY, ExoPlayer.STATE_READY, ExoPlayer.STATE_READY, ExoPlayer.STATE_ENDED, ExoPlayer.STATE_IDLE
+    };
+    private static final boolean[] PLAY_WHEN_READY = {false, false, true, true, true, false, false, false, false};
+    private static final boolean[] STOP_ACTION = {false, false, false, false, false, false, true, false, false};
+
+    private final PlayerStateMachine stateMachine = new PlayerStateMachine();
+
+    @Benchmark
+    @OperationsPerInvocation(9)
+    public void exoPlaybackCycle(Blackhole blackhole) {
+        for (int i = 0; i < STATES.length; i++) {
+            blackhole.consume(StatusTransitions.fromExoState(STATES[i], PLAY_WHEN_READY[i], STOP_ACTION[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(9)
+    public void stateMachineCycle(Blackhole blackhole) {
+        for (int i = 0; i < STATES.length; i++) {
+            if (STOP_ACTION[i]) {
+                stateMachine.setStopAction(true);
+            }
+            blackhole.consume(stateMachine.syncExoState(STATES[i], PLAY_WHEN_READY[i]));
+        }
+    }
+
+    @Benchmark
+    public Status readStatus() {
+        return stateMachine.status();
+    }
+
+}
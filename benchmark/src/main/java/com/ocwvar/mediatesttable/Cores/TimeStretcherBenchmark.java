@@ -0,0 +1,84 @@
+package com.ocwvar.mediatesttable.Cores;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Project MediaTestTable
+ * Created by OCWVAR
+ * On 17-7-31 下午3:00
+ * File Location com.ocwvar.mediatesttable.Cores
+ * This file use to :   变速变调基准测试
+ *
+ * 每次操作处理 1 秒的立体声音频，按 1024 帧的缓冲区写入与读取，与播放时的调用方式相同
+ * 结果单位为毫秒，实时倍率 = 1000 / 单次操作耗时，例如 5ms 即比实时快 200 倍；gc.alloc.rate.norm 应为 0
+ * parameters 为 速度_音调
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimeStretcherBenchmark {
+
+    private static final int CHANNELS = 2;
+    private static final int FRAMES_PER_BUFFER = 1024;
+
+    @Param({"44100", "48000"})
+    public int sampleRate;
+
+    @Param({"0.5_1", "1.25_1", "2_1", "1_1.5", "1.5_0.8"})
+    public String parameters;
+
+    private TimeStretcher stretcher;
+    private short[] input;
+    private short[] output;
+
+    @Setup
+    public void setup() {
+        final String[] values = parameters.split("_");
+        stretcher = new TimeStretcher(sampleRate, CHANNELS);
+        stretcher.setParameters(Float.parseFloat(values[0]), Float.parseFloat(values[1]));
+
+        //音乐信号：两个随时间变化的音调加上少量噪声
+        final Random random = new Random(sampleRate);
+        input = new short[sampleRate * CHANNELS];
+        for (int frame = 0; frame < sampleRate; frame++) {
+            final double t = frame / (double) sampleRate;
+            final double value = Math.sin(2.0 * Math.PI * (220.0 + 110.0 * t) * t) * 6000.0
+                    + Math.sin(2.0 * Math.PI * 660.0 * t) * 3000.0
+                    + random.nextGaussian() * 500.0;
+            input[frame * CHANNELS] = (short) value;
+            input[frame * CHANNELS + 1] = (short) (value * 0.8);
+        }
+        output = new short[FRAMES_PER_BUFFER * 8 * CHANNELS];
+    }
+
+    @Benchmark
+    public int stretchOneSecond() {
+        int read = 0;
+        int written = 0;
+        while (written < sampleRate) {
+            written += stretcher.queueInput(input, written * CHANNELS, Math.min(FRAMES_PER_BUFFER, sampleRate - written));
+            int frames;
+            while ((frames = stretcher.readOutput(output, 0, output.length / CHANNELS)) > 0) {
+                read += frames;
+            }
+        }
+        return read;
+    }
+
+}
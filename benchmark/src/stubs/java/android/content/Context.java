@@ -0,0 +1,12 @@
+package android.content;
+
+/**
+ * JVM基准测试使用的替代类，只包含核心代码用到的方法
+ */
+public abstract class Context {
+
+    public abstract Context getApplicationContext();
+
+    public abstract String getPackageName();
+
+}
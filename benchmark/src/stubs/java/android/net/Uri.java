@@ -0,0 +1,15 @@
+package android.net;
+
+/**
+ * JVM基准测试使用的替代类，只包含核心代码用到的方法
+ */
+public abstract class Uri {
+
+    public abstract String getScheme();
+
+    public abstract String getPath();
+
+    @Override
+    public abstract String toString();
+
+}
@@ -0,0 +1,15 @@
+package com.google.android.exoplayer2;
+
+/**
+ * JVM基准测试使用的替代类，只包含核心代码用到的常量，数值与 ExoPlayer 一致
+ */
+public final class C {
+
+    public static final int LENGTH_UNSET = -1;
+
+    public static final int RESULT_END_OF_INPUT = -1;
+
+    private C() {
+    }
+
+}
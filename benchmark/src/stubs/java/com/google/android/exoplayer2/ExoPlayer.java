@@ -0,0 +1,16 @@
+package com.google.android.exoplayer2;
+
+/**
+ * JVM基准测试使用的替代类，只包含核心代码用到的常量，数值与 ExoPlayer 一致
+ */
+public interface ExoPlayer {
+
+    int STATE_IDLE = 1;
+
+    int STATE_BUFFERING = 2;
+
+    int STATE_READY = 3;
+
+    int STATE_ENDED = 4;
+
+}
@@ -0,0 +1,37 @@
+package com.google.android.exoplayer2.extractor;
+
+import com.google.android.exoplayer2.extractor.flv.FlvExtractor;
+import com.google.android.exoplayer2.extractor.mkv.MatroskaExtractor;
+import com.google.android.exoplayer2.extractor.mp3.Mp3Extractor;
+import com.google.android.exoplayer2.extractor.mp4.FragmentedMp4Extractor;
+import com.google.android.exoplayer2.extractor.mp4.Mp4Extractor;
+import com.google.android.exoplayer2.extractor.ogg.OggExtractor;
+import com.google.android.exoplayer2.extractor.ts.Ac3Extractor;
+import com.google.android.exoplayer2.extractor.ts.AdtsExtractor;
+import com.google.android.exoplayer2.extractor.ts.PsExtractor;
+import com.google.android.exoplayer2.extractor.ts.TsExtractor;
+import com.google.android.exoplayer2.extractor.wav.WavExtractor;
+
+/**
+ * JVM基准测试使用的替代类，解析器顺序与 ExoPlayer 中的同名类一致
+ */
+public final class DefaultExtractorsFactory implements ExtractorsFactory {
+
+    @Override
+    public Extractor[] createExtractors() {
+        return new Extractor[]{
+                new MatroskaExtractor(),
+                new FragmentedMp4Extractor(),
+                new Mp4Extractor(),
+                new Mp3Extractor(),
+                new AdtsExtractor(),
+                new Ac3Extractor(),
+                new TsExtractor(),
+                new FlvExtractor(),
+                new OggExtractor(),
+                new PsExtractor(),
+                new WavExtractor()
+        };
+    }
+
+}
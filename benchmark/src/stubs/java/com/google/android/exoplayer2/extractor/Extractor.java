@@ -0,0 +1,26 @@
+package com.google.android.exoplayer2.extractor;
+
+import java.io.IOException;
+
+/**
+ * JVM基准测试使用的替代类，方法与 ExoPlayer 中的接口一致
+ */
+public interface Extractor {
+
+    int RESULT_CONTINUE = 0;
+
+    int RESULT_SEEK = 1;
+
+    int RESULT_END_OF_INPUT = -1;
+
+    boolean sniff(ExtractorInput input) throws IOException, InterruptedException;
+
+    void init(ExtractorOutput output);
+
+    int read(ExtractorInput input, PositionHolder seekPosition) throws IOException, InterruptedException;
+
+    void seek(long position, long timeUs);
+
+    void release();
+
+}
@@ -0,0 +1,16 @@
+package com.google.android.exoplayer2.extractor;
+
+import java.io.IOException;
+
+/**
+ * JVM基准测试使用的替代类，只包含格式探测用到的方法，与 ExoPlayer 中的接口一致
+ */
+public interface ExtractorInput {
+
+    boolean peekFully(byte[] target, int offset, int length, boolean allowEndOfInput) throws IOException, InterruptedException;
+
+    void resetPeekPosition();
+
+    long getLength();
+
+}
@@ -0,0 +1,10 @@
+package com.google.android.exoplayer2.extractor;
+
+/**
+ * JVM基准测试使用的替代类，与 ExoPlayer 中的接口一致
+ */
+public interface ExtractorsFactory {
+
+    Extractor[] createExtractors();
+
+}
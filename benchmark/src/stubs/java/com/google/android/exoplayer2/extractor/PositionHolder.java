@@ -0,0 +1,10 @@
+package com.google.android.exoplayer2.extractor;
+
+/**
+ * JVM基准测试使用的替代类，与 ExoPlayer 中的同名类一致
+ */
+public final class PositionHolder {
+
+    public long position;
+
+}
@@ -0,0 +1,63 @@
+package com.google.android.exoplayer2.extractor;
+
+import java.io.IOException;
+
+/**
+ * JVM基准测试使用的解析器替代类的基类，ExoPlayer 中没有此类
+ *
+ * 探测时读取与实际解析器相同长度的探测窗口，并在窗口中查找格式标记（模拟同步字查找），只有标记位于指定位置时才算探测成功
+ * 因此探测失败的解析器会扫描整个窗口，开销与探测窗口大小成正比
+ */
+public abstract class SniffingExtractor implements Extractor {
+
+    private final byte[] magic;
+    private final int magicOffset;
+    private final byte[] window;
+
+    protected SniffingExtractor(byte[] magic, int magicOffset, int sniffBytes) {
+        this.magic = magic;
+        this.magicOffset = magicOffset;
+        this.window = new byte[sniffBytes];
+    }
+
+    @Override
+    public boolean sniff(ExtractorInput input) throws IOException, InterruptedException {
+        final int length = (int) Math.min(window.length, input.getLength());
+        if (!input.peekFully(window, 0, length, true)) {
+            return false;
+        }
+        for (int position = 0; position + magic.length <= length; position++) {
+            if (matchesAt(position)) {
+                return position == magicOffset;
+            }
+        }
+        return false;
+    }
+
+    private boolean matchesAt(int position) {
+        for (int i = 0; i < magic.length; i++) {
+            if (window[position + i] != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void init(ExtractorOutput output) {
+    }
+
+    @Override
+    public int read(ExtractorInput input, PositionHolder seekPosition) {
+        return RESULT_END_OF_INPUT;
+    }
+
+    @Override
+    public void seek(long position, long timeUs) {
+    }
+
+    @Override
+    public void release() {
+    }
+
+}
@@ -0,0 +1,14 @@
+package com.google.android.exoplayer2.extractor.mkv;
+
+import com.google.android.exoplayer2.extractor.SniffingExtractor;
+
+/**
+ * JVM基准测试使用的替代类，探测窗口大小与 ExoPlayer 中的同名解析器一致
+ */
+public final class MatroskaExtractor extends SniffingExtractor {
+
+    public MatroskaExtractor() {
+        super(new byte[]{0x1A, 0x45, (byte) 0xDF, (byte) 0xA3}, 0, 1024);
+    }
+
+}
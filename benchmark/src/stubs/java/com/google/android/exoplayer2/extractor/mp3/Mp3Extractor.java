@@ -0,0 +1,14 @@
+package com.google.android.exoplayer2.extractor.mp3;
+
+import com.google.android.exoplayer2.extractor.SniffingExtractor;
+
+/**
+ * JVM基准测试使用的替代类，探测窗口大小与 ExoPlayer 中的同名解析器一致
+ */
+public final class Mp3Extractor extends SniffingExtractor {
+
+    public Mp3Extractor() {
+        super(new byte[]{'I', 'D', '3'}, 0, 4096);
+    }
+
+}
@@ -0,0 +1,14 @@
+package com.google.android.exoplayer2.extractor.mp4;
+
+import com.google.android.exoplayer2.extractor.SniffingExtractor;
+
+/**
+ * JVM基准测试使用的替代类，探测窗口大小与 ExoPlayer 中的同名解析器一致
+ */
+public final class FragmentedMp4Extractor extends SniffingExtractor {
+
+    public FragmentedMp4Extractor() {
+        super(new byte[]{'m', 'o', 'o', 'f'}, 4, 4096);
+    }
+
+}
@@ -0,0 +1,14 @@
+package com.google.android.exoplayer2.extractor.ts;
+
+import com.google.android.exoplayer2.extractor.SniffingExtractor;
+
+/**
+ * JVM基准测试使用的替代类，探测窗口大小与 ExoPlayer 中的同名解析器一致
+ */
+public final class AdtsExtractor extends SniffingExtractor {
+
+    public AdtsExtractor() {
+        super(new byte[]{(byte) 0xFF, (byte) 0xF1}, 0, 8192);
+    }
+
+}
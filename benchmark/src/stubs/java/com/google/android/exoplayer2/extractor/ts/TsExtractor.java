@@ -0,0 +1,14 @@
+package com.google.android.exoplayer2.extractor.ts;
+
+import com.google.android.exoplayer2.extractor.SniffingExtractor;
+
+/**
+ * JVM基准测试使用的替代类，探测窗口大小与 ExoPlayer 中的同名解析器一致
+ */
+public final class TsExtractor extends SniffingExtractor {
+
+    public TsExtractor() {
+        super(new byte[]{0x47, 0x40, 0x00}, 0, 940);
+    }
+
+}
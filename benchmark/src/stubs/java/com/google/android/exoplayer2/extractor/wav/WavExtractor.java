@@ -0,0 +1,14 @@
+package com.google.android.exoplayer2.extractor.wav;
+
+import com.google.android.exoplayer2.extractor.SniffingExtractor;
+
+/**
+ * JVM基准测试使用的替代类，探测窗口大小与 ExoPlayer 中的同名解析器一致
+ */
+public final class WavExtractor extends SniffingExtractor {
+
+    public WavExtractor() {
+        super(new byte[]{'R', 'I', 'F', 'F'}, 0, 12);
+    }
+
+}
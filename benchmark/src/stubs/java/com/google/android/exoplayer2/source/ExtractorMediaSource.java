@@ -0,0 +1,25 @@
+package com.google.android.exoplayer2.source;
+
+import android.net.Uri;
+import android.os.Handler;
+
+import com.google.android.exoplayer2.extractor.ExtractorsFactory;
+import com.google.android.exoplayer2.upstream.DataSource;
+
+import java.io.IOException;
+
+/**
+ * JVM基准测试使用的替代类，只包含核心代码用到的方法
+ */
+public final class ExtractorMediaSource implements MediaSource {
+
+    public interface EventListener {
+
+        void onLoadError(IOException error);
+
+    }
+
+    public ExtractorMediaSource(Uri uri, DataSource.Factory dataSourceFactory, ExtractorsFactory extractorsFactory, Handler eventHandler, EventListener eventListener) {
+    }
+
+}
@@ -0,0 +1,7 @@
+package com.google.android.exoplayer2.source;
+
+/**
+ * JVM基准测试使用的替代类，只包含核心代码用到的类型
+ */
+public interface MediaSource {
+}
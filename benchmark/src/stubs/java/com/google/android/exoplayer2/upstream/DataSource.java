@@ -0,0 +1,26 @@
+package com.google.android.exoplayer2.upstream;
+
+import android.net.Uri;
+
+import java.io.IOException;
+
+/**
+ * JVM基准测试使用的替代类，方法与 ExoPlayer 中的接口一致
+ */
+public interface DataSource {
+
+    interface Factory {
+
+        DataSource createDataSource();
+
+    }
+
+    long open(DataSpec dataSpec) throws IOException;
+
+    int read(byte[] buffer, int offset, int readLength) throws IOException;
+
+    Uri getUri();
+
+    void close() throws IOException;
+
+}
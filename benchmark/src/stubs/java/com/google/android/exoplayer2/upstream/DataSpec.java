@@ -0,0 +1,22 @@
+package com.google.android.exoplayer2.upstream;
+
+import android.net.Uri;
+
+/**
+ * JVM基准测试使用的替代类，只包含核心代码用到的字段
+ */
+public final class DataSpec {
+
+    public final Uri uri;
+
+    public final long position;
+
+    public final long length;
+
+    public DataSpec(Uri uri, long position, long length) {
+        this.uri = uri;
+        this.position = position;
+        this.length = length;
+    }
+
+}
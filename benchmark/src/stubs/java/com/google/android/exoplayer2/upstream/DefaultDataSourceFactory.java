@@ -0,0 +1,18 @@
+package com.google.android.exoplayer2.upstream;
+
+import android.content.Context;
+
+/**
+ * JVM基准测试使用的替代类，只包含核心代码用到的方法
+ */
+public final class DefaultDataSourceFactory implements DataSource.Factory {
+
+    public DefaultDataSourceFactory(Context context, String userAgent) {
+    }
+
+    @Override
+    public DataSource createDataSource() {
+        throw new UnsupportedOperationException();
+    }
+
+}
@@ -0,0 +1,17 @@
+package com.google.android.exoplayer2.util;
+
+import android.content.Context;
+
+/**
+ * JVM基准测试使用的替代类，只包含核心代码用到的方法
+ */
+public final class Util {
+
+    private Util() {
+    }
+
+    public static String getUserAgent(Context context, String applicationName) {
+        return applicationName;
+    }
+
+}